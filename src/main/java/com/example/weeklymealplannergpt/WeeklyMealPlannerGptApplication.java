@@ -1,20 +1,18 @@
 package com.example.weeklymealplannergpt;
 
+import com.example.weeklymealplannergpt.config.OutboundProperties;
+import com.example.weeklymealplannergpt.config.ResilienceProperties;
+import com.example.weeklymealplannergpt.config.TheMealDbCacheProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties({OutboundProperties.class, ResilienceProperties.class, TheMealDbCacheProperties.class})
 public class WeeklyMealPlannerGptApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(WeeklyMealPlannerGptApplication.class, args);
     }
 
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
-
 }
@@ -1,8 +1,149 @@
 package com.example.weeklymealplannergpt.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+/**
+ * Med {@code spring.threads.virtual.enabled=true} kører Tomcat-requests og vores egne executors
+ * på virtual threads. Grænsen for samtidighed flyttes så fra
+ * trådpuljernes størrelse til semaphorer pr. downstream, se {@link OutboundConcurrencyInterceptor}
+ * og {@code spring.task.execution.simple.concurrency-limit}.
+ */
 @Configuration
 @EnableAsync
-public class AsyncConfig {}
+public class AsyncConfig {
+
+    /**
+     * Kører streamede madplan-genereringer, så Tomcats request-tråde frigives med det samme.
+     * Begrænset kø, så et load-peak afvises i stedet for at hobe sig op i hukommelsen.
+     */
+    @Bean
+    public TaskExecutor mealPlanStreamExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${mealplan.stream.pool-size:16}") int poolSize,
+            @Value("${mealplan.stream.queue-capacity:100}") int queueCapacity,
+            @Value("${mealplan.stream.virtual-concurrency-limit:1000}") int virtualConcurrencyLimit) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("mealplan-stream-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(virtualConcurrencyLimit);
+            executor.setRejectTasksWhenLimitReached(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mealplan-stream-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Workers til madplan-jobs. Afviste jobs ligger stadig i {@code meal_plan_job} og samles op
+     * af sweeperen, så køen kan holdes lille.
+     */
+    @Bean
+    public TaskExecutor mealPlanJobExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${mealplan.jobs.pool-size:8}") int poolSize,
+            @Value("${mealplan.jobs.queue-capacity:50}") int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("mealplan-job-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(poolSize);
+            executor.setRejectTasksWhenLimitReached(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mealplan-job-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Workers til email-outboxen. Afviste mails ligger stadig i {@code email_outbox} og samles op
+     * af dispatcheren, så køen kan holdes lille. Puljen begrænser også samtidige SMTP-forbindelser.
+     */
+    @Bean
+    public TaskExecutor emailOutboxExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${email.outbox.pool-size:4}") int poolSize,
+            @Value("${email.outbox.queue-capacity:100}") int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("email-outbox-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(poolSize);
+            executor.setRejectTasksWhenLimitReached(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("email-outbox-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Kører den ugentlige udsendelse uden for scheduler-tråden. Én kørsel ad gangen; den er allerede
+     * begrænset af {@code email.dispatch.messages-per-second}.
+     */
+    @Bean
+    public TaskExecutor emailDispatchExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("email-dispatch-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(1);
+            executor.setRejectTasksWhenLimitReached(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        executor.setThreadNamePrefix("email-dispatch-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Genererer planer til madplan-puljen. Lille, så opfyldning ikke tager OpenAI-kapacitet fra brugerne;
+     * afviste opfyldninger tages ved næste miss eller natlige kørsel.
+     */
+    @Bean
+    public TaskExecutor mealPlanPoolExecutor(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${mealplan.pool.refill-threads:2}") int poolSize,
+            @Value("${mealplan.pool.queue-capacity:20}") int queueCapacity) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("mealplan-pool-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(poolSize);
+            executor.setRejectTasksWhenLimitReached(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mealplan-pool-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.weeklymealplannergpt.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Markerer en {@code Consumer} parameter i en controller, der skal udfyldes med den indloggede bruger.
+ * Se {@link CurrentConsumerArgumentResolver}.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentConsumer {
+}
@@ -0,0 +1,44 @@
+package com.example.weeklymealplannergpt.config;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.service.consumer.ConsumerService;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Slår den indloggede bruger op ud fra OAuth2-principalens email.
+ * Går gennem {@link ConsumerService#findByEmail}, som cacher, så de fleste requests ikke rammer databasen.
+ */
+@Component
+public class CurrentConsumerArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final ConsumerService consumerService;
+
+    public CurrentConsumerArgumentResolver(ConsumerService consumerService) {
+        this.consumerService = consumerService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentConsumer.class)
+                && Consumer.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Consumer resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                    NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof OAuth2User principal)) {
+            throw new AuthenticationCredentialsNotFoundException("No OAuth2 user in security context");
+        }
+        return consumerService.findByEmail(principal.getAttribute("email"));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.weeklymealplannergpt.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+
+/**
+ * Én HTTP-klient pr. downstream, så OpenAI og TheMealDB har hver deres pool og timeouts.
+ * <p>
+ *      Typen vælges med {@code outbound.clients.<navn>.type}. {@code apache} giver en keep-alive pool med
+ *      pool-metrics ({@code httpcomponents.httpclient.pool.*}) og bruges af begge downstreams som standard.
+ *      {@code jdk} giver HTTP/2, hvor serveren understøtter det, men har ingen pool-metrics og ignorerer
+ *      {@code max-connections}. For begge måles aktive og ventende kald pr. host via
+ *      {@link OutboundConcurrencyInterceptor} ({@code outbound.requests.*}), og det er den, der begrænser samtidighed.
+ * </p>
+ */
+@Configuration
+public class HttpClientConfig {
+
+    public static final String OPENAI = "openai";
+    public static final String THEMEALDB = "themealdb";
+
+    @Bean
+    public OutboundConcurrencyInterceptor outboundConcurrencyInterceptor(OutboundProperties properties,
+                                                                         MeterRegistry meterRegistry) {
+        OutboundConcurrencyInterceptor interceptor = new OutboundConcurrencyInterceptor(
+                properties.getMaxConcurrency(),
+                properties.getDefaultMaxConcurrency(),
+                properties.getAcquireTimeout());
+
+        for (String host : interceptor.configuredHosts()) {
+            Gauge.builder("outbound.requests.active", interceptor, i -> i.activeRequests(host))
+                    .description("Outbound requests currently in flight")
+                    .tag("host", host)
+                    .register(meterRegistry);
+            Gauge.builder("outbound.requests.waiting", interceptor, i -> i.waitingRequests(host))
+                    .description("Outbound requests waiting for a concurrency permit")
+                    .tag("host", host)
+                    .register(meterRegistry);
+        }
+        return interceptor;
+    }
+
+    @Bean
+    public ClientHttpRequestFactory openAiRequestFactory(OutboundProperties properties, MeterRegistry meterRegistry) {
+        return requestFactory(OPENAI, properties.client(OPENAI), meterRegistry);
+    }
+
+    @Bean
+    public ClientHttpRequestFactory theMealDbRequestFactory(OutboundProperties properties, MeterRegistry meterRegistry) {
+        return requestFactory(THEMEALDB, properties.client(THEMEALDB), meterRegistry);
+    }
+
+    @Bean
+    public RestTemplate openAiRestTemplate(@Qualifier("openAiRequestFactory") ClientHttpRequestFactory requestFactory,
+                                           OutboundConcurrencyInterceptor interceptor) {
+        return restTemplate(requestFactory, interceptor);
+    }
+
+    @Bean
+    public RestTemplate theMealDbRestTemplate(@Qualifier("theMealDbRequestFactory") ClientHttpRequestFactory requestFactory,
+                                              OutboundConcurrencyInterceptor interceptor) {
+        return restTemplate(requestFactory, interceptor);
+    }
+
+    static RestTemplate restTemplate(ClientHttpRequestFactory requestFactory, OutboundConcurrencyInterceptor interceptor) {
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(interceptor);
+        return restTemplate;
+    }
+
+    static ClientHttpRequestFactory requestFactory(String name, OutboundProperties.Client client,
+                                                   MeterRegistry meterRegistry) {
+        return switch (client.getType()) {
+            case APACHE -> apacheRequestFactory(name, client, meterRegistry);
+            case JDK -> jdkRequestFactory(client);
+        };
+    }
+
+    private static ClientHttpRequestFactory apacheRequestFactory(String name, OutboundProperties.Client client,
+                                                                 MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(client.getMaxConnections())
+                // Én host pr. klient, så hele poolen må bruges mod den
+                .setMaxConnPerRoute(client.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(client.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(client.getReadTimeout()))
+                        .setTimeToLive(TimeValue.of(client.getTimeToLive()))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(client.getConnectionRequestTimeout()))
+                        .setResponseTimeout(Timeout.of(client.getReadTimeout()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(client.getIdleTimeout()))
+                .build();
+
+        // Lukker klient og pool ved shutdown (DisposableBean)
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    /**
+     * JDK-klienten styrer selv sine forbindelser, så {@code max-connections} bruges ikke, og der er ingen pool at
+     * måle. {@code setReadTimeout} begrænser kun ventetiden på svarets headers; et body der går i stå undervejs,
+     * fanges ikke.
+     */
+    private static ClientHttpRequestFactory jdkRequestFactory(OutboundProperties.Client client) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(client.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(client.getReadTimeout());
+        return requestFactory;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.weeklymealplannergpt.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Begrænser antallet af samtidige udgående kald pr. host med en {@link Semaphore}.
+ * <p>
+ *      Med virtual threads er der ikke længere en trådpulje, der naturligt begrænser hvor mange
+ *      kald vi sender til OpenAI eller TheMealDB. Kald ud over grænsen venter op til
+ *      {@code acquireTimeout} og fejler derefter med {@link ResourceAccessException}.
+ *      Tilladelsen holdes til svaret lukkes, ikke kun til headers er modtaget, så også et SSE-stream
+ *      der læses løbende tæller med. {@code RestTemplate} lukker altid svaret.
+ * </p>
+ */
+public class OutboundConcurrencyInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundConcurrencyInterceptor.class);
+
+    private final Map<String, Integer> limitsByHost;
+    private final int defaultLimit;
+    private final Duration acquireTimeout;
+    private final Map<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+
+    public OutboundConcurrencyInterceptor(Map<String, Integer> limitsByHost, int defaultLimit, Duration acquireTimeout) {
+        this.limitsByHost = Map.copyOf(limitsByHost);
+        this.defaultLimit = defaultLimit;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String host = request.getURI().getHost();
+        Semaphore permits = permitsByHost.computeIfAbsent(host,
+                key -> new Semaphore(limitsByHost.getOrDefault(key, defaultLimit), true));
+
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warn("Outbound concurrency limit reached for {}", host);
+                throw new ResourceAccessException("Too many concurrent requests to " + host);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while waiting for a permit to " + host);
+        }
+
+        try {
+            return new PermitReleasingResponse(execution.execute(request, body), permits);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int availablePermits(String host) {
+        Semaphore permits = permitsByHost.get(host);
+        return permits != null ? permits.availablePermits() : limitsByHost.getOrDefault(host, defaultLimit);
+    }
+
+    public int activeRequests(String host) {
+        return limitsByHost.getOrDefault(host, defaultLimit) - availablePermits(host);
+    }
+
+    public int waitingRequests(String host) {
+        Semaphore permits = permitsByHost.get(host);
+        return permits != null ? permits.getQueueLength() : 0;
+    }
+
+    public Set<String> configuredHosts() {
+        return limitsByHost.keySet();
+    }
+
+    /**
+     * Frigiver tilladelsen når svaret lukkes. Kun én gang, selvom {@link #close} kaldes flere gange.
+     */
+    private static final class PermitReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitReleasingResponse(ClientHttpResponse delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
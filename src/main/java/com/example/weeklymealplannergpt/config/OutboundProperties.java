@@ -0,0 +1,68 @@
+package com.example.weeklymealplannergpt.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "outbound")
+public class OutboundProperties {
+
+    /** Maks samtidige kald pr. host, fx {@code outbound.max-concurrency[api.openai.com]=64}. */
+    private Map<String, Integer> maxConcurrency = new HashMap<>();
+
+    /** Bruges for hosts uden egen grænse. */
+    private int defaultMaxConcurrency = 32;
+
+    /** Hvor længe et kald må vente på en ledig plads, før det fejler. */
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+
+    /** HTTP-klient pr. downstream, fx {@code outbound.clients.openai.type=jdk}. */
+    private Map<String, Client> clients = new HashMap<>();
+
+    public Client client(String name) {
+        return clients.getOrDefault(name, new Client());
+    }
+
+    public enum ClientType {
+        /** Apache HttpClient 5 med keep-alive pool og pool-metrics. Kun HTTP/1.1. */
+        APACHE,
+        /**
+         * JDK {@code java.net.http.HttpClient}. Forhandler HTTP/2 via ALPN og multiplexer over få forbindelser.
+         * Ingen pool-metrics, og read timeout gælder kun headers.
+         */
+        JDK
+    }
+
+    @Getter
+    @Setter
+    public static class Client {
+
+        private ClientType type = ClientType.APACHE;
+
+        private Duration connectTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Maks tid uden data fra serveren. Et hængende upstream-kald fejler efter denne tid. Med JDK gælder den kun
+         * ventetiden på headers.
+         */
+        private Duration readTimeout = Duration.ofSeconds(30);
+
+        /** Hvor længe et kald må vente på en ledig forbindelse i poolen (kun APACHE). */
+        private Duration connectionRequestTimeout = Duration.ofSeconds(5);
+
+        /** Størrelse på forbindelsespoolen (kun APACHE). */
+        private int maxConnections = 20;
+
+        /** Ubrugte forbindelser lukkes efter denne tid (kun APACHE). */
+        private Duration idleTimeout = Duration.ofSeconds(30);
+
+        /** Forbindelser genbruges højst så længe, så DNS-ændringer slår igennem (kun APACHE). */
+        private Duration timeToLive = Duration.ofMinutes(5);
+    }
+}
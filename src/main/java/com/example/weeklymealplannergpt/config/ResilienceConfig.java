@@ -0,0 +1,19 @@
+package com.example.weeklymealplannergpt.config;
+
+import com.example.weeklymealplannergpt.service.resilience.ResilientCaller;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Resilience-politik pr. downstream, se {@link ResilientCaller}. Konfigureres under
+ * {@code resilience.upstreams.<navn>}; metrics publiceres som {@code resilience.*} med tag {@code upstream}.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Bean
+    public ResilientCaller openAiResilientCaller(ResilienceProperties properties, MeterRegistry meterRegistry) {
+        return new ResilientCaller(HttpClientConfig.OPENAI, properties.policy(HttpClientConfig.OPENAI), meterRegistry);
+    }
+}
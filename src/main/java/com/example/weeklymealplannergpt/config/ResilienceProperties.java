@@ -0,0 +1,73 @@
+package com.example.weeklymealplannergpt.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "resilience")
+public class ResilienceProperties {
+
+    /** Politik pr. downstream, fx {@code resilience.upstreams.openai.retry.max-attempts=3}. */
+    private Map<String, Policy> upstreams = new HashMap<>();
+
+    public Policy policy(String name) {
+        return upstreams.getOrDefault(name, new Policy());
+    }
+
+    @Getter
+    @Setter
+    public static class Policy {
+        private CircuitBreaker circuitBreaker = new CircuitBreaker();
+        private Retry retry = new Retry();
+        private Hedge hedge = new Hedge();
+        private Bulkhead bulkhead = new Bulkhead();
+    }
+
+    @Getter
+    @Setter
+    public static class CircuitBreaker {
+        /** Antal seneste kald fejlraten beregnes over. */
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 0.5;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenCalls = 3;
+    }
+
+    @Getter
+    @Setter
+    public static class Retry {
+        /** Forsøg i alt pr. kald, inklusive det første. */
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(500);
+        private Duration maxBackoff = Duration.ofSeconds(5);
+        /** Retries (og hedges) i forhold til nye kald, på tværs af alle kaldere. */
+        private double budgetRatio = 0.2;
+        private int budgetCapacity = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class Hedge {
+        /** Sender et ekstra kald, hvis det første ikke har svaret efter p-percentilen. Koster ekstra tokens. */
+        private boolean enabled = false;
+        private double percentile = 0.95;
+        /** Hedger aldrig tidligere end dette, så korte udsving ikke fordobler trafikken. */
+        private Duration minDelay = Duration.ofSeconds(2);
+        private int minSamples = 20;
+    }
+
+    @Getter
+    @Setter
+    public static class Bulkhead {
+        private int maxConcurrentCalls = 32;
+        /** Kortere end {@code outbound.acquire-timeout}, så kaldere fejler hurtigt når vi er mættet. */
+        private Duration maxWait = Duration.ofSeconds(1);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.weeklymealplannergpt.config;
+
+import com.example.weeklymealplannergpt.service.cache.InMemorySharedCacheTier;
+import com.example.weeklymealplannergpt.service.cache.RedisSharedCacheTier;
+import com.example.weeklymealplannergpt.service.cache.SharedCacheTier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Vælger det delte cache-lag bag meal-cachen med {@code meal.cache.shared.type}:
+ * {@code none} (standard, kun lokal cache), {@code local} (indlejret stand-in i samme JVM) eller
+ * {@code redis} (forbindelse via {@code spring.data.redis.*}).
+ */
+@Configuration
+public class SharedCacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "meal.cache.shared.type", havingValue = "local")
+    public SharedCacheTier localSharedCacheTier(@Value("${meal.cache.shared.max-entries:100000}") int maxEntries) {
+        return new InMemorySharedCacheTier(maxEntries);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "meal.cache.shared.type", havingValue = "redis")
+    public RedisMessageListenerContainer sharedCacheListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "meal.cache.shared.type", havingValue = "redis")
+    public SharedCacheTier redisSharedCacheTier(StringRedisTemplate redisTemplate,
+                                                RedisMessageListenerContainer sharedCacheListenerContainer) {
+        return new RedisSharedCacheTier(redisTemplate, sharedCacheListenerContainer);
+    }
+}
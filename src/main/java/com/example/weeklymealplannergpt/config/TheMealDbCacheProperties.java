@@ -0,0 +1,31 @@
+package com.example.weeklymealplannergpt.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "themealdb.cache")
+public class TheMealDbCacheProperties {
+
+    /** Maks antal svar i hukommelsen. Resten hentes fra {@code themealdb_cache}-tabellen. */
+    private int maxEntries = 10_000;
+
+    /** {@code search.php?s=} */
+    private Duration searchTtl = Duration.ofDays(1);
+
+    /** {@code filter.php?i=} */
+    private Duration filterTtl = Duration.ofDays(1);
+
+    /** {@code lookup.php?i=}. En ret ændrer sig sjældent. */
+    private Duration lookupTtl = Duration.ofDays(7);
+
+    /** TTL for tomme svar, så ukendte søgninger ikke rammer TheMealDB hver gang. */
+    private Duration negativeTtl = Duration.ofHours(1);
+
+    /** Hvor længe efter TTL et svar stadig må bruges, mens det opdateres i baggrunden. */
+    private Duration staleWhileRevalidate = Duration.ofDays(7);
+}
@@ -0,0 +1,22 @@
+package com.example.weeklymealplannergpt.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final CurrentConsumerArgumentResolver currentConsumerArgumentResolver;
+
+    public WebConfig(CurrentConsumerArgumentResolver currentConsumerArgumentResolver) {
+        this.currentConsumerArgumentResolver = currentConsumerArgumentResolver;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(currentConsumerArgumentResolver);
+    }
+}
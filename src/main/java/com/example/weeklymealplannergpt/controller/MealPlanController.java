@@ -1,44 +1,126 @@
 package com.example.weeklymealplannergpt.controller;
 
+import com.example.weeklymealplannergpt.config.CurrentConsumer;
+import com.example.weeklymealplannergpt.dto.EmailStatus;
 import com.example.weeklymealplannergpt.dto.MealPlanResponse;
+import com.example.weeklymealplannergpt.dto.PlanHistoryPage;
 import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.EmailOutbox;
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.model.MealPlanJob;
 import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
-import com.example.weeklymealplannergpt.service.consumer.ConsumerService;
+import com.example.weeklymealplannergpt.service.email.EmailOutboxService;
+import com.example.weeklymealplannergpt.service.job.MealPlanJobService;
 import com.example.weeklymealplannergpt.service.mealplan.MealPlanService;
+import com.example.weeklymealplannergpt.service.mealplan.MealPlanStreamListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/mealplan")
 public class MealPlanController {
 
+    private static final Logger logger = LoggerFactory.getLogger(MealPlanController.class);
+
     @Autowired
     private MealPlanService mealPlanService;
 
     @Autowired
-    private ConsumerService consumerService;
+    private MealPlanJobService mealPlanJobService;
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+
+    @Autowired
+    @Qualifier("mealPlanStreamExecutor")
+    private TaskExecutor mealPlanStreamExecutor;
+
+    @Value("${mealplan.stream.timeout:PT3M}")
+    private Duration streamTimeout = Duration.ofMinutes(3);
 
     @PostMapping("/generate")
     public MealPlanResponse generateMealPlan(
-            @AuthenticationPrincipal OAuth2User principal,
+            @CurrentConsumer Consumer consumer,
             @RequestParam(defaultValue = "monthly") String type) {
+        return mealPlanService.generateMonthlyMealPlan(consumer);
+    }
 
-        String email = principal.getAttribute("email");
-        Consumer consumer = consumerService.findByEmail(email);
+    /**
+     * Streamer madplanen som Server-Sent Events: et {@code meal} event pr. meal, efterfulgt af
+     * {@code complete} med id'et på den gemte plan, eller {@code error} hvis genereringen fejler.
+     * Selve genereringen kører på {@code mealPlanStreamExecutor}, så request-tråden frigives med det samme.
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMealPlan(
+            @CurrentConsumer Consumer consumer,
+            @RequestParam(defaultValue = "monthly") String type) {
+        int weeks = "weekly".equalsIgnoreCase(type) ? 1 : 4;
 
-        return mealPlanService.generateMonthlyMealPlan(consumer);
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        try {
+            mealPlanStreamExecutor.execute(() -> {
+                try {
+                    mealPlanService.streamMealPlan(consumer, weeks, new SseMealPlanListener(emitter));
+                    emitter.complete();
+                } catch (Exception e) {
+                    logger.warn("Streaming meal plan failed for consumer {}: {}", consumer.getId(), e.getMessage());
+                    sendError(emitter, "Failed to generate meal plan. Please try again later.");
+                }
+            });
+        } catch (TaskRejectedException e) {
+            logger.warn("Rejected streaming meal plan for consumer {}: executor is saturated", consumer.getId());
+            sendError(emitter, "Too many meal plans are being generated right now. Please try again shortly.");
+        }
+        return emitter;
+    }
+
+    /**
+     * Lægger genereringen i kø og svarer med det samme med 202 og jobbets id.
+     * Klienten poller {@code GET /api/mealplan/jobs/{jobId}} indtil status er COMPLETED eller FAILED.
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<MealPlanJob> enqueueMealPlan(
+            @CurrentConsumer Consumer consumer,
+            @RequestParam(defaultValue = "monthly") String type) {
+        int weeks = "weekly".equalsIgnoreCase(type) ? 1 : 4;
+
+        MealPlanJob job = mealPlanJobService.enqueue(consumer, weeks);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/mealplan/jobs/" + job.getId()))
+                .body(job);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<MealPlanJob> getJob(
+            @CurrentConsumer Consumer consumer,
+            @PathVariable UUID jobId) {
+        try {
+            return ResponseEntity.ok()
+                    .header("Cache-Control", "no-store")
+                    .body(mealPlanJobService.getJob(jobId, consumer.getId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
     }
 
     @GetMapping("/current")
-    public ResponseEntity<WeeklyMealPlan> getCurrentWeekPlan(@AuthenticationPrincipal OAuth2User principal) {
-        String email = principal.getAttribute("email");
-        Consumer consumer = consumerService.findByEmail(email);
+    public ResponseEntity<WeeklyMealPlan> getCurrentWeekPlan(@CurrentConsumer Consumer consumer) {
         WeeklyMealPlan plan = mealPlanService.getCurrentWeekPlan(consumer.getId());
         
         if (plan == null) {
@@ -50,28 +132,110 @@ public class MealPlanController {
     }
 
     @GetMapping("/history")
-    public ResponseEntity<List<WeeklyMealPlan>> getPlanHistory(@AuthenticationPrincipal OAuth2User principal) {
-        String email = principal.getAttribute("email");
-        Consumer consumer = consumerService.findByEmail(email);
+    public ResponseEntity<List<WeeklyMealPlan>> getPlanHistory(@CurrentConsumer Consumer consumer) {
         List<WeeklyMealPlan> history = mealPlanService.getPlanHistory(consumer.getId());
         return ResponseEntity.ok()
                 .header("Cache-Control", "private, max-age=300")
                 .body(history);
     }
     
+    /**
+     * Pagineret historik med lette DTO'er (id, uge, meal-navne og billeder).
+     * Send {@code nextCursor} fra svaret med som {@code cursor} for at hente næste side.
+     */
+    @GetMapping("/history/page")
+    public ResponseEntity<PlanHistoryPage> getPlanHistoryPage(
+            @CurrentConsumer Consumer consumer,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size) {
+        try {
+            PlanHistoryPage page = mealPlanService.getPlanHistoryPage(consumer.getId(), cursor, size);
+            return ResponseEntity.ok()
+                    .header("Cache-Control", "private, max-age=300")
+                    .body(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{mealPlanId}")
+    public ResponseEntity<WeeklyMealPlan> getPlan(
+            @CurrentConsumer Consumer consumer,
+            @PathVariable Long mealPlanId) {
+        try {
+            return ResponseEntity.ok()
+                    .header("Cache-Control", "private, max-age=300")
+                    .body(mealPlanService.getPlan(consumer.getId(), mealPlanId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Lægger mailen i outboxen og svarer med det samme med 202 og mailens id.
+     * Klienten kan følge afsendelsen på {@code GET /api/mealplan/emails/{emailId}}.
+     */
     @PostMapping("/{mealPlanId}/email")
-    public ResponseEntity<Map<String, String>> sendMealPlanByEmail(
-            @AuthenticationPrincipal OAuth2User principal,
+    public ResponseEntity<EmailStatus> sendMealPlanByEmail(
+            @CurrentConsumer Consumer consumer,
             @PathVariable Long mealPlanId) {
-        String email = principal.getAttribute("email");
-        Consumer consumer = consumerService.findByEmail(email);
-        
         try {
-            mealPlanService.sendMealPlanByEmail(consumer.getId(), mealPlanId);
-            return ResponseEntity.ok(Map.of("message", "Email sent successfully"));
-        } catch (Exception e) {
-            return ResponseEntity.badRequest()
-                .body(Map.of("error", "Failed to send email: " + e.getMessage()));
+            EmailOutbox email = mealPlanService.sendMealPlanByEmail(consumer.getId(), mealPlanId);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/mealplan/emails/" + email.getId()))
+                    .body(toEmailStatus(email));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/emails/{emailId}")
+    public ResponseEntity<EmailStatus> getEmailStatus(
+            @CurrentConsumer Consumer consumer,
+            @PathVariable UUID emailId) {
+        try {
+            return ResponseEntity.ok()
+                    .header("Cache-Control", "no-store")
+                    .body(toEmailStatus(emailOutboxService.getStatus(emailId, consumer.getId())));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    private EmailStatus toEmailStatus(EmailOutbox email) {
+        return new EmailStatus(email.getId(), email.getStatus(), email.getAttempts(), email.getSentAt());
+    }
+
+    private void sendError(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(Map.of("message", message)));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private record SseMealPlanListener(SseEmitter emitter) implements MealPlanStreamListener {
+
+        @Override
+        public void onMeal(int index, Meal meal) {
+            send(SseEmitter.event().name("meal").data(Map.of("index", index, "meal", meal)));
+        }
+
+        @Override
+        public void onComplete(MealPlanResponse response) {
+            send(SseEmitter.event().name("complete").data(Map.of(
+                    "mealPlanId", response.getMealPlan().getId(),
+                    "message", response.getMessage())));
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // Klienten har lukket forbindelsen; planen gemmes stadig færdig.
+                logger.debug("Client disconnected from meal plan stream: {}", e.getMessage());
+            }
         }
     }
 }
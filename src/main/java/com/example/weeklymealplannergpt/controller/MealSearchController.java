@@ -0,0 +1,29 @@
+package com.example.weeklymealplannergpt.controller;
+
+import com.example.weeklymealplannergpt.dto.MealSearchHit;
+import com.example.weeklymealplannergpt.service.search.MealSearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/meals")
+public class MealSearchController {
+
+    @Autowired
+    private MealSearchService mealSearchService;
+
+    /**
+     * Søger i navne og ingredienser på gemte meals, fx {@code ?q=chick tomato}. Ufuldstændige ord
+     * og små stavefejl matcher også; bedste match først.
+     */
+    @GetMapping("/search")
+    public List<MealSearchHit> search(@RequestParam("q") String query,
+                                      @RequestParam(defaultValue = "20") int limit) {
+        return mealSearchService.search(query, limit);
+    }
+}
@@ -1,11 +1,10 @@
 package com.example.weeklymealplannergpt.controller;
 
+import com.example.weeklymealplannergpt.config.CurrentConsumer;
 import com.example.weeklymealplannergpt.dto.PreferencesRequest;
 import com.example.weeklymealplannergpt.model.Consumer;
 import com.example.weeklymealplannergpt.service.consumer.ConsumerService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -16,18 +15,14 @@ public class ProfileController {
     private ConsumerService consumerService;
 
     @GetMapping("/profile")
-    public Consumer profile(@AuthenticationPrincipal OAuth2User principal) {
-        String email = principal.getAttribute("email");
-        return consumerService.findByEmail(email);
+    public Consumer profile(@CurrentConsumer Consumer consumer) {
+        return consumer;
     }
 
     @PutMapping("/profile/preferences")
     public Consumer updatePreferences(
-            @AuthenticationPrincipal OAuth2User principal,
+            @CurrentConsumer Consumer consumer,
             @RequestBody PreferencesRequest request) {
-        String email = principal.getAttribute("email");
-        Consumer consumer = consumerService.findByEmail(email);
-        
         consumer.setDietType(request.getDietType());
         consumer.setAllergies(request.getAllergies());
         consumer.setDislikes(request.getDislikes());
@@ -0,0 +1,22 @@
+package com.example.weeklymealplannergpt.dto;
+
+import com.example.weeklymealplannergpt.model.EmailOutboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Det klienten ser af en mail i outboxen. Fejltekster og interne felter bliver på serveren.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailStatus {
+    private UUID id;
+    private EmailOutboxStatus status;
+    private int attempts;
+    private Instant sentAt;
+}
@@ -0,0 +1,18 @@
+package com.example.weeklymealplannergpt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MealSearchHit {
+    private Long id;
+    private String mealName;
+    private String imgUrl;
+    private List<String> ingredients;
+    private double score;
+}
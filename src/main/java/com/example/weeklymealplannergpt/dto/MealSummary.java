@@ -0,0 +1,13 @@
+package com.example.weeklymealplannergpt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MealSummary {
+    private String mealName;
+    private String imgUrl;
+}
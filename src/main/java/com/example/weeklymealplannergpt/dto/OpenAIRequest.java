@@ -1,5 +1,6 @@
 package com.example.weeklymealplannergpt.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -12,6 +13,53 @@ public class OpenAIRequest {
     private List<Message> messages;
     private double temperature;
     private int max_tokens;
+    private boolean stream;
+
+    // Må kun sendes når stream=true
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private StreamOptions stream_options;
+
+    // Udeladt: modellen svarer med fri tekst
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ResponseFormat response_format;
+
+    @Getter
+    @Setter
+    public static class ResponseFormat {
+        private String type;
+
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private JsonSchema json_schema;
+
+        public ResponseFormat(String type, JsonSchema json_schema) {
+            this.type = type;
+            this.json_schema = json_schema;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class JsonSchema {
+        private String name;
+        private boolean strict;
+        private Object schema;
+
+        public JsonSchema(String name, boolean strict, Object schema) {
+            this.name = name;
+            this.strict = strict;
+            this.schema = schema;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class StreamOptions {
+        private boolean include_usage;
+
+        public StreamOptions(boolean include_usage) {
+            this.include_usage = include_usage;
+        }
+    }
 
     @Getter
     @Setter
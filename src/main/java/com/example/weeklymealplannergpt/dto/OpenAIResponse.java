@@ -1,6 +1,7 @@
 package com.example.weeklymealplannergpt.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -11,12 +12,17 @@ import java.util.List;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class OpenAIResponse {
     private List<Choice> choices;
+    private Usage usage;
 
     @Getter
     @Setter
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class Choice {
         private Message message;
+
+        // "length" betyder at svaret blev skåret af ved max_tokens
+        @JsonProperty("finish_reason")
+        private String finishReason;
     }
 
     @Getter
@@ -25,4 +31,15 @@ public class OpenAIResponse {
     public static class Message {
         private String content;
     }
+
+    @Getter
+    @Setter
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Usage {
+        @JsonProperty("prompt_tokens")
+        private int promptTokens;
+
+        @JsonProperty("completion_tokens")
+        private int completionTokens;
+    }
 }
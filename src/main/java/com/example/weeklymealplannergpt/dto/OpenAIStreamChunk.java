@@ -0,0 +1,33 @@
+package com.example.weeklymealplannergpt.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * Et enkelt {@code data:} event fra chat-completions når {@code stream=true}.
+ * Med {@code stream_options.include_usage} har det sidste event tomme {@code choices} og {@code usage} sat.
+ */
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OpenAIStreamChunk {
+    private List<Choice> choices;
+    private OpenAIResponse.Usage usage;
+
+    @Getter
+    @Setter
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Choice {
+        private Delta delta;
+    }
+
+    @Getter
+    @Setter
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Delta {
+        private String content;
+    }
+}
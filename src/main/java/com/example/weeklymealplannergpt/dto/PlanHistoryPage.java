@@ -0,0 +1,19 @@
+package com.example.weeklymealplannergpt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * En side af historikken. {@code nextCursor} sendes med som {@code cursor} for at hente næste side,
+ * og er null på sidste side.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlanHistoryPage {
+    private List<PlanSummary> plans;
+    private String nextCursor;
+}
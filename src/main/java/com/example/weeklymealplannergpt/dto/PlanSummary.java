@@ -0,0 +1,20 @@
+package com.example.weeklymealplannergpt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Let udgave af {@code WeeklyMealPlan} til historikken. Fulde detaljer hentes via {@code GET /api/mealplan/{id}}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlanSummary {
+    private Long id;
+    private LocalDate weekStartDate;
+    private List<MealSummary> meals;
+}
@@ -0,0 +1,12 @@
+package com.example.weeklymealplannergpt.exception;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Kaldet blev afvist lokalt uden at gå upstream, fordi circuit breakeren er åben eller bulkheaden er fuld.
+ */
+public class UpstreamUnavailableException extends RestClientException {
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
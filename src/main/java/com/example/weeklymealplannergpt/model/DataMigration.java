@@ -0,0 +1,41 @@
+package com.example.weeklymealplannergpt.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Markør for en engangs-datamigrering. Unik pr. navn, så kun én node starter den.
+ * {@code lastId} er cursoren: en afbrudt migrering fortsætter efter den sidst behandlede række.
+ * {@code claimToken} skiftes hver gang en node overtager migreringen; fremdrift gemmes kun med det aktuelle token.
+ * Er {@code finishedAt} sat, springes migreringen over ved opstart.
+ */
+@Entity
+@Table(name = "data_migration", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_data_migration_name", columnNames = "name")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class DataMigration {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(nullable = false, length = 64)
+    private String name;
+
+    @Column(name = "claim_token")
+    private UUID claimToken;
+
+    private long lastId;
+    private long processed;
+
+    private Instant startedAt;
+    private Instant heartbeatAt;
+    private Instant finishedAt;
+}
@@ -0,0 +1,49 @@
+package com.example.weeklymealplannergpt.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Én ugentlig udsendelse af madplaner. Unik pr. uge, så to noder ikke kan starte samme udsendelse.
+ * {@code lastPlanId} er cursoren: en afbrudt kørsel fortsætter efter den sidst afsendte plan.
+ * {@code claimToken} skiftes hver gang en node overtager kørslen; fremdrift gemmes kun med det aktuelle token.
+ */
+@Entity
+@Table(name = "email_dispatch_run", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_email_dispatch_week", columnNames = "week_start_date")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class EmailDispatchRun {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(name = "week_start_date", nullable = false)
+    private LocalDate weekStartDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EmailDispatchStatus status;
+
+    @Column(name = "claim_token")
+    private UUID claimToken;
+
+    private long lastPlanId;
+    private int sent;
+    private int failed;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private Instant startedAt;
+    private Instant heartbeatAt;
+    private Instant finishedAt;
+}
@@ -0,0 +1,6 @@
+package com.example.weeklymealplannergpt.model;
+
+public enum EmailDispatchStatus {
+    RUNNING,
+    COMPLETED
+}
@@ -0,0 +1,55 @@
+package com.example.weeklymealplannergpt.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * En mail der venter på, er i gang med eller er færdig med at blive sendt.
+ * Dispatcheren finder forfaldne mails via status + nextAttemptAt, og klienter poller på id + consumer_id.
+ * {@code claimToken} skiftes ved hvert claim; udfaldet gemmes kun med det aktuelle token.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "idx_outbox_status_next", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_outbox_consumer", columnList = "consumer_id")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class EmailOutbox {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(name = "consumer_id", nullable = false)
+    private UUID consumerId;
+
+    @Column(nullable = false)
+    private Long mealPlanId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EmailOutboxStatus status;
+
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "claim_token")
+    private UUID claimToken;
+
+    private Instant claimedAt;
+    private Instant sentAt;
+}
@@ -0,0 +1,8 @@
+package com.example.weeklymealplannergpt.model;
+
+public enum EmailOutboxStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
@@ -1,20 +1,26 @@
 package com.example.weeklymealplannergpt.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.util.List;
 import java.util.Objects;
 
-@Entity
 /**
  * MealCacheService.getMealByName() bruger mealName til lookup. Uden index = O(n) scan.
+ * {@code normalized_name} er den naturlige nøgle: unik, så to samtidige genereringer ikke kan
+ * indsætte samme meal to gange.
  */
+@Entity
 @Table(name = "meal", indexes = {
         @Index(name = "idx_meal_name", columnList = "mealName")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_meal_normalized_name", columnNames = "normalized_name")
 })
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor
 public class Meal {
@@ -24,9 +30,29 @@ public class Meal {
     private Long id;
     private String mealName, imgUrl;
 
+    @JsonIgnore
+    @Column(name = "normalized_name")
+    private String normalizedName;
+
+    // Ingredienser for op til 100 meals hentes i én query, når en side af meals indlæses
     @ElementCollection(fetch = FetchType.EAGER)
+    @BatchSize(size = 100)
     private List<String> ingredients;
 
+    /**
+     * Rettens kanoniske nøgle, se {@link MealNameCanonicalizer#canonicalKey}. Bruges både som cache-nøgle
+     * og i {@code normalized_name}, så samme ret på en anden dag eller uge genbruges.
+     */
+    public static String normalizeName(String mealName) {
+        return MealNameCanonicalizer.canonicalKey(mealName);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateNormalizedName() {
+        normalizedName = normalizeName(mealName);
+    }
+
     /**
      * Denne metode siger, at hvis to Meal objekter hedder det samme
      * Så er deres hash-værdi lig med hinanden. Altså kan der ikke eksistere to af samme navn.
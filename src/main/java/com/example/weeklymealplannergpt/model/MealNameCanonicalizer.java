@@ -0,0 +1,100 @@
+package com.example.weeklymealplannergpt.model;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Adskiller hvornår en ret serveres fra hvilken ret det er.
+ * <p>
+ *      Modellen navngiver retter som {@code "Week 1 Monday - Spaghetti Bolognese"}. {@link #displayName} fjerner
+ *      plan-pladsen ("Week 1 Monday - ", "Day 3:", "(Tuesday)") og samler whitespace. {@link #canonicalKey}
+ *      fjerner desuden accenter, tegnsætning og flertals-endelser, så fx {@code "Week 3 Friday – Fish Tacos"}
+ *      og {@code "fish taco"} giver samme nøgle. Nøglen bruges i cachen og i {@code normalized_name}.
+ * </p>
+ */
+public final class MealNameCanonicalizer {
+
+    // Kun fulde dagnavne: forkortelser som "Sun" og "Wed" er også almindelige ord i retter ("Sun-Dried Tomato")
+    private static final String WEEKDAY = "monday|tuesday|wednesday|thursday|friday|saturday|sunday"
+            + "|mandag|tirsdag|onsdag|torsdag|fredag|lørdag|søndag";
+    private static final String NUMBERED = "\\s*#?\\d+";
+    private static final String SEPARATOR = "\\s*[:\\-–—|]";
+
+    // Kun de former prompten beder om: "Week 1 Monday -", "Day 3:" og "(Tuesday)". Kræver skilletegn eller
+    // parentes, så "Monday Night Chili" ikke mister "Monday"
+    private static final Pattern SCHEDULE_PREFIX = Pattern.compile(
+            "^\\s*(?:"
+                    + "(?:week|uge)" + NUMBERED + "(?:[\\s,/]*(?:(?:day|dag)" + NUMBERED + "|(?:" + WEEKDAY + ")))?" + SEPARATOR
+                    + "|(?:day|dag|dinner|meal)" + NUMBERED + SEPARATOR
+                    + "|[(\\[]\\s*(?:" + WEEKDAY + ")\\s*[)\\]](?:" + SEPARATOR + ")?"
+                    + ")\\s*",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern APOSTROPHES = Pattern.compile("['’`]");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final Pattern SIBILANT_PLURAL = Pattern.compile("(?:ch|sh|x|ss|zz)es$");
+    private static final Pattern SIBILANT_E = Pattern.compile("(?:ch|sh|x|ss|zz)e$");
+
+    private static final Set<String> INVARIANT = Set.of("molasses", "swiss");
+
+    private MealNameCanonicalizer() {
+    }
+
+    /**
+     * Rettens navn uden plan-plads, til visning og lagring i {@code meal_name}.
+     */
+    public static String displayName(String mealName) {
+        if (mealName == null) return null;
+        String dish = SCHEDULE_PREFIX.matcher(mealName).replaceFirst("");
+        if (dish.isBlank()) {
+            dish = mealName;
+        }
+        return WHITESPACE.matcher(dish.trim()).replaceAll(" ");
+    }
+
+    /**
+     * Nøgle for retten: uden plan-plads, små bogstaver, uden accenter og tegnsætning, ord i ental.
+     */
+    public static String canonicalKey(String mealName) {
+        if (mealName == null) return null;
+        String folded = DIACRITICS.matcher(Normalizer.normalize(displayName(mealName), Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT)
+                .replace("&", " and ");
+        folded = APOSTROPHES.matcher(folded).replaceAll("");
+
+        StringBuilder key = new StringBuilder(folded.length());
+        for (String token : NON_WORD.split(folded)) {
+            if (token.isEmpty()) continue;
+            if (!key.isEmpty()) key.append(' ');
+            key.append(singular(token));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Enkle engelske flertalsregler. Målet er at begge former giver samme nøgle, ikke korrekt grammatik:
+     * ental og flertal foldes til samme stamme, fx "quiche"/"quiches" til "quich" og "cookie"/"cookies" til "cooky".
+     */
+    static String singular(String token) {
+        int length = token.length();
+        if (length <= 3 || INVARIANT.contains(token)) return token;
+        if (token.endsWith("ies") && length > 4) return token.substring(0, length - 3) + "y";
+        if (token.endsWith("ie")) return token.substring(0, length - 2) + "y";
+        if (token.endsWith("oes") || SIBILANT_PLURAL.matcher(token).find()) {
+            return token.substring(0, length - 2);
+        }
+        // Ental med stum e efter hvislelyd ("quiche", "mousse") mister e'et ligesom flertallet mister "es"
+        if (SIBILANT_E.matcher(token).find()) {
+            return token.substring(0, length - 1);
+        }
+        if (token.endsWith("s") && !token.endsWith("ss") && !token.endsWith("us") && !token.endsWith("is")) {
+            return token.substring(0, length - 1);
+        }
+        return token;
+    }
+}
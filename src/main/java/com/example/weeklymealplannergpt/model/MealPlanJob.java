@@ -0,0 +1,53 @@
+package com.example.weeklymealplannergpt.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Workeren finder ventende jobs via status + createdAt, og klienter poller på id + consumer_id.
+ * {@code claimToken} skiftes ved hvert claim; resultatet gemmes kun med det aktuelle token.
+ */
+@Entity
+@Table(name = "meal_plan_job", indexes = {
+        @Index(name = "idx_job_status_created", columnList = "status, created_at"),
+        @Index(name = "idx_job_consumer", columnList = "consumer_id")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class MealPlanJob {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(name = "consumer_id", nullable = false)
+    private UUID consumerId;
+
+    private int weeks;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private MealPlanJobStatus status;
+
+    private Long mealPlanId;
+
+    @Column(length = 2000)
+    private String message;
+
+    @Column(length = 1000)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "claim_token")
+    private UUID claimToken;
+
+    private Instant startedAt;
+    private Instant finishedAt;
+}
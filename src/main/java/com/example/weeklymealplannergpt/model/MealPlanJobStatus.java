@@ -0,0 +1,8 @@
+package com.example.weeklymealplannergpt.model;
+
+public enum MealPlanJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
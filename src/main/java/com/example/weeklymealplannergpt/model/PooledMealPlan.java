@@ -0,0 +1,39 @@
+package com.example.weeklymealplannergpt.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * En forud-genereret madplan til en {@link PreferenceProfile}. Retterne gemmes som JSON og først som
+ * {@link Meal}-entities når planen udleveres, ligesom et svar fra OpenAI.
+ */
+@Entity
+@Table(name = "meal_plan_pool", indexes = {
+        @Index(name = "idx_pool_profile", columnList = "profile_key, created_at")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class PooledMealPlan {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "profile_key", nullable = false, length = 64)
+    private String profileKey;
+
+    @Column(nullable = false, length = 16000)
+    private String mealsJson;
+
+    @Column(length = 2000)
+    private String message;
+
+    private int deliveries;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,34 @@
+package com.example.weeklymealplannergpt.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Hvilke brugere en forud-genereret plan er udleveret til. Den unikke nøgle sikrer at ingen får samme plan to gange.
+ */
+@Entity
+@Table(name = "meal_plan_pool_delivery", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_pool_delivery", columnNames = {"pooled_plan_id", "consumer_id"})
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class PooledPlanDelivery {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "pooled_plan_id", nullable = false)
+    private Long pooledPlanId;
+
+    @Column(name = "consumer_id", nullable = false)
+    private UUID consumerId;
+
+    @Column(nullable = false)
+    private Instant deliveredAt;
+}
@@ -0,0 +1,40 @@
+package com.example.weeklymealplannergpt.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Hvor ofte en normaliseret præferenceprofil (kost, allergier, dislikes, uger) beder om en madplan.
+ * Allergier og dislikes gemmes normaliserede og adskilt af linjeskift, så profilen kan genskabes til generering.
+ */
+@Entity
+@Table(name = "meal_plan_profile", indexes = {
+        @Index(name = "idx_profile_last_requested", columnList = "last_requested_at")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class PreferenceProfile {
+
+    @Id
+    @Column(name = "profile_key", length = 64)
+    private String profileKey;
+
+    private String dietType;
+
+    @Column(length = 2000)
+    private String allergies;
+
+    @Column(length = 2000)
+    private String dislikes;
+
+    private int weeks;
+
+    private long requestCount;
+
+    @Column(name = "last_requested_at", nullable = false)
+    private Instant lastRequestedAt;
+}
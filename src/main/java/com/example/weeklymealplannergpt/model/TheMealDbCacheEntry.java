@@ -0,0 +1,30 @@
+package com.example.weeklymealplannergpt.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Gemt TheMealDB-svar. {@code body} er JSON-listen af meals, eller {@code null} for et tomt svar
+ * (negativ cache). Friskhed regnes ud fra {@code fetchedAt} ved læsning, så ændrede TTL'er også
+ * gælder for eksisterende rækker.
+ */
+@Entity
+@Table(name = "themealdb_cache")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor
+public class TheMealDbCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", length = 300)
+    private String cacheKey;
+
+    @Lob
+    private String body;
+
+    @Column(name = "fetched_at", nullable = false)
+    private Instant fetchedAt;
+}
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -33,12 +34,16 @@ public class WeeklyMealPlan {
     @JoinColumn(name = "consumer_id")
     private Consumer consumer;
 
+    // Meals for op til 50 planer hentes i én query, når en side planer indlæses (fx til udsendelse).
+    // Rækkefølgen er planens pladser (uge for uge, mandag-fredag), så den gemmes i meal_order.
     @ManyToMany(fetch = FetchType.EAGER)
+    @BatchSize(size = 50)
     @JoinTable(
         name = "weekly_meal_plan_meals",
         joinColumns = @JoinColumn(name = "weekly_meal_plan_id"),
         inverseJoinColumns = @JoinColumn(name = "meal_id")
     )
+    @OrderColumn(name = "meal_order")
     private List<Meal> meals;
 
 }
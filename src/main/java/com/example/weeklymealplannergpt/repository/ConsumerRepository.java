@@ -1,11 +1,25 @@
 package com.example.weeklymealplannergpt.repository;
 
 import com.example.weeklymealplannergpt.model.Consumer;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.Optional;
 import java.util.UUID;
 
 public interface ConsumerRepository extends JpaRepository<Consumer, UUID> {
+    /**
+     * Kaldes ved hvert API-kald (via {@code @CurrentConsumer}). Allergier og dislikes hentes med i samme
+     * query, så den cachede consumer kan bruges uden for sessionen.
+     */
+    @EntityGraph(attributePaths = {"allergies", "dislikes"})
     Optional<Consumer> findByEmail(String email);
+
+    /**
+     * Henter også allergier og dislikes, så baggrundsjobs (uden open-in-view)
+     * kan bygge prompten uden LazyInitializationException.
+     */
+    @Override
+    @EntityGraph(attributePaths = {"allergies", "dislikes"})
+    Optional<Consumer> findById(UUID id);
 }
@@ -0,0 +1,48 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.DataMigration;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface DataMigrationRepository extends JpaRepository<DataMigration, UUID> {
+
+    Optional<DataMigration> findByName(String name);
+
+    /**
+     * Overtager en ufærdig migrering der er sluppet ({@code claimToken} er null) eller ikke har meldt fremdrift
+     * siden {@code staleBefore}. Returnerer 0 hvis den er færdig eller stadig kører på en anden node.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update DataMigration m set m.claimToken = :claimToken, m.heartbeatAt = :now where m.id = :id " +
+            "and m.finishedAt is null and (m.claimToken is null or m.heartbeatAt < :staleBefore)")
+    int claim(@Param("id") UUID id, @Param("claimToken") UUID claimToken,
+              @Param("now") Instant now, @Param("staleBefore") Instant staleBefore);
+
+    /**
+     * Gemmer cursor og status, men kun så længe migreringen stadig tilhører {@code claimToken}.
+     * Returnerer 0 hvis en anden node har overtaget den.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update DataMigration m set m.lastId = :lastId, m.processed = :processed, m.heartbeatAt = :heartbeatAt, " +
+            "m.finishedAt = :finishedAt where m.id = :id and m.claimToken = :claimToken and m.finishedAt is null")
+    int updateProgress(@Param("id") UUID id, @Param("claimToken") UUID claimToken, @Param("lastId") long lastId,
+                       @Param("processed") long processed, @Param("heartbeatAt") Instant heartbeatAt,
+                       @Param("finishedAt") Instant finishedAt);
+
+    /**
+     * Slipper migreringen efter en fejl, så næste opstart (på en hvilken som helst node) kan fortsætte med det samme.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update DataMigration m set m.claimToken = null where m.id = :id and m.claimToken = :claimToken")
+    int release(@Param("id") UUID id, @Param("claimToken") UUID claimToken);
+}
@@ -0,0 +1,49 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.EmailDispatchRun;
+import com.example.weeklymealplannergpt.model.EmailDispatchStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface EmailDispatchRunRepository extends JpaRepository<EmailDispatchRun, UUID> {
+
+    Optional<EmailDispatchRun> findByWeekStartDate(LocalDate weekStartDate);
+
+    List<EmailDispatchRun> findByStatusAndHeartbeatAtBefore(EmailDispatchStatus status, Instant heartbeatBefore);
+
+    /**
+     * Overtager en kørsel som ingen node har meldt fremdrift på siden {@code staleBefore}, med et nyt
+     * {@code claimToken}. Returnerer 0 hvis kørslen stadig er i gang på en anden node (eller er færdig).
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EmailDispatchRun r set r.heartbeatAt = :now, r.claimToken = :claimToken where r.id = :id " +
+            "and r.status = com.example.weeklymealplannergpt.model.EmailDispatchStatus.RUNNING " +
+            "and r.heartbeatAt < :staleBefore")
+    int claimStale(@Param("id") UUID id, @Param("claimToken") UUID claimToken,
+                   @Param("now") Instant now, @Param("staleBefore") Instant staleBefore);
+
+    /**
+     * Gemmer cursor, tællere og status, men kun så længe kørslen stadig tilhører {@code claimToken}.
+     * Returnerer 0 hvis en anden node har overtaget kørslen.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EmailDispatchRun r set r.status = :status, r.lastPlanId = :lastPlanId, r.sent = :sent, " +
+            "r.failed = :failed, r.lastError = :lastError, r.heartbeatAt = :heartbeatAt, r.finishedAt = :finishedAt " +
+            "where r.id = :id and r.claimToken = :claimToken " +
+            "and r.status = com.example.weeklymealplannergpt.model.EmailDispatchStatus.RUNNING")
+    int updateProgress(@Param("id") UUID id, @Param("claimToken") UUID claimToken,
+                       @Param("status") EmailDispatchStatus status, @Param("lastPlanId") long lastPlanId,
+                       @Param("sent") int sent, @Param("failed") int failed, @Param("lastError") String lastError,
+                       @Param("heartbeatAt") Instant heartbeatAt, @Param("finishedAt") Instant finishedAt);
+}
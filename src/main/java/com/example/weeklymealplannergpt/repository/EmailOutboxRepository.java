@@ -0,0 +1,59 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.EmailOutbox;
+import com.example.weeklymealplannergpt.model.EmailOutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, UUID> {
+
+    Optional<EmailOutbox> findByIdAndConsumerId(UUID id, UUID consumerId);
+
+    List<EmailOutbox> findTop50ByStatusAndNextAttemptAtBeforeOrderByNextAttemptAtAsc(EmailOutboxStatus status, Instant dueBefore);
+
+    /**
+     * Flytter en mail fra PENDING til SENDING med et nyt {@code claimToken}. Returnerer 0 hvis en anden worker
+     * allerede har taget den.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EmailOutbox e set e.status = com.example.weeklymealplannergpt.model.EmailOutboxStatus.SENDING, " +
+            "e.claimedAt = :now, e.claimToken = :claimToken " +
+            "where e.id = :id and e.status = com.example.weeklymealplannergpt.model.EmailOutboxStatus.PENDING")
+    int claim(@Param("id") UUID id, @Param("claimToken") UUID claimToken, @Param("now") Instant now);
+
+    /**
+     * Gemmer udfaldet af et afsendelsesforsøg, men kun hvis mailen stadig er SENDING under {@code claimToken}.
+     * Returnerer 0 hvis mailen er sat tilbage i køen og taget af en anden worker i mellemtiden.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EmailOutbox e set e.status = :status, e.attempts = :attempts, e.lastError = :lastError, " +
+            "e.nextAttemptAt = :nextAttemptAt, e.sentAt = :sentAt, e.claimedAt = null, e.claimToken = null " +
+            "where e.id = :id and e.claimToken = :claimToken " +
+            "and e.status = com.example.weeklymealplannergpt.model.EmailOutboxStatus.SENDING")
+    int finish(@Param("id") UUID id, @Param("claimToken") UUID claimToken,
+               @Param("status") EmailOutboxStatus status, @Param("attempts") int attempts,
+               @Param("lastError") String lastError, @Param("nextAttemptAt") Instant nextAttemptAt,
+               @Param("sentAt") Instant sentAt);
+
+    /**
+     * Sætter mails hvis worker døde midt i afsendelsen tilbage i køen. Tokenet nulstilles, så en langsom worker
+     * ikke kan gemme sit udfald oven i den næste.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update EmailOutbox e set e.status = com.example.weeklymealplannergpt.model.EmailOutboxStatus.PENDING, " +
+            "e.claimedAt = null, e.claimToken = null " +
+            "where e.status = com.example.weeklymealplannergpt.model.EmailOutboxStatus.SENDING " +
+            "and e.claimedAt < :claimedBefore")
+    int requeueStale(@Param("claimedBefore") Instant claimedBefore);
+}
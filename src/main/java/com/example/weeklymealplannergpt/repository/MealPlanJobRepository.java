@@ -0,0 +1,57 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.MealPlanJob;
+import com.example.weeklymealplannergpt.model.MealPlanJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface MealPlanJobRepository extends JpaRepository<MealPlanJob, UUID> {
+
+    Optional<MealPlanJob> findByIdAndConsumerId(UUID id, UUID consumerId);
+
+    List<MealPlanJob> findTop50ByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(MealPlanJobStatus status, Instant createdBefore);
+
+    /**
+     * Flytter et job fra QUEUED til RUNNING med et nyt {@code claimToken}. Returnerer 0 hvis en anden
+     * worker allerede har taget det.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update MealPlanJob j set j.status = com.example.weeklymealplannergpt.model.MealPlanJobStatus.RUNNING, " +
+            "j.startedAt = :now, j.claimToken = :claimToken " +
+            "where j.id = :id and j.status = com.example.weeklymealplannergpt.model.MealPlanJobStatus.QUEUED")
+    int claim(@Param("id") UUID id, @Param("claimToken") UUID claimToken, @Param("now") Instant now);
+
+    /**
+     * Gemmer resultatet af et job, men kun hvis det stadig kører under {@code claimToken}.
+     * Returnerer 0 hvis jobbet er sat tilbage i køen og taget af en anden worker i mellemtiden.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update MealPlanJob j set j.status = :status, j.mealPlanId = :mealPlanId, j.message = :message, " +
+            "j.error = :error, j.finishedAt = :finishedAt where j.id = :id and j.claimToken = :claimToken " +
+            "and j.status = com.example.weeklymealplannergpt.model.MealPlanJobStatus.RUNNING")
+    int complete(@Param("id") UUID id, @Param("claimToken") UUID claimToken,
+                 @Param("status") MealPlanJobStatus status, @Param("mealPlanId") Long mealPlanId,
+                 @Param("message") String message, @Param("error") String error,
+                 @Param("finishedAt") Instant finishedAt);
+
+    /**
+     * Sætter jobs der har kørt urimeligt længe (fx fordi noden blev genstartet) tilbage i køen.
+     * Tokenet nulstilles, så en langsom worker ikke kan gemme sit resultat oven i den næste kørsel.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update MealPlanJob j set j.status = com.example.weeklymealplannergpt.model.MealPlanJobStatus.QUEUED, " +
+            "j.startedAt = null, j.claimToken = null where j.status = com.example.weeklymealplannergpt.model.MealPlanJobStatus.RUNNING " +
+            "and j.startedAt < :startedBefore")
+    int requeueStale(@Param("startedBefore") Instant startedBefore);
+}
@@ -1,7 +1,37 @@
 package com.example.weeklymealplannergpt.repository;
 
 import com.example.weeklymealplannergpt.model.Meal;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface MealRepository extends JpaRepository<Meal, Long> {
+import java.util.Collection;
+import java.util.List;
+
+public interface MealRepository extends JpaRepository<Meal, Long>, MealRepositoryCustom {
+
+    /**
+     * Slår alle navne i en plan op i én query, inkl. ingredienser, i stedet for én query pr. meal.
+     */
+    @Query("select distinct m from Meal m left join fetch m.ingredients where m.normalizedName in :names")
+    List<Meal> findAllByNormalizedNameIn(@Param("names") Collection<String> names);
+
+    /**
+     * Meal-id'er til cache warm-up: senest brugt i en plan først, derefter oftest brugt.
+     * Meals der aldrig er brugt kommer sidst, nyeste først.
+     */
+    @Query(value = """
+            select m.id from meal m
+            left join weekly_meal_plan_meals pm on pm.meal_id = m.id
+            group by m.id
+            order by coalesce(max(pm.weekly_meal_plan_id), 0) desc, count(pm.meal_id) desc, m.id desc
+            """, nativeQuery = true)
+    List<Long> findIdsByRecentUse(Pageable pageable);
+
+    /**
+     * Keyset-side til gennemløb af hele tabellen uden at holde alle meals i hukommelsen på én gang.
+     */
+    List<Meal> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 }
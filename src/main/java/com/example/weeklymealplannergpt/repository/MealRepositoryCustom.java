@@ -0,0 +1,19 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.Meal;
+
+import java.util.List;
+import java.util.Set;
+
+public interface MealRepositoryCustom {
+    void insertAll(List<Meal> meals);
+    CanonicalizedBatch canonicalizeNames(long afterId, int batchSize);
+
+    /**
+     * @param lastId       største id i batchen; næste batch starter efter det
+     * @param rows         antal meals læst; færre end batch-størrelsen betyder at tabellen er gennemløbet
+     * @param affectedKeys gamle og nye {@code normalized_name} for meals der er omdøbt eller slettet
+     */
+    record CanonicalizedBatch(long lastId, int rows, Set<String> affectedKeys) {
+    }
+}
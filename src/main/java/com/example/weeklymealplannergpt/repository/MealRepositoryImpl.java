@@ -0,0 +1,177 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.model.MealNameCanonicalizer;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JDBC-batch indsættelse af meals.
+ * <p>
+ *      {@code Meal} bruger IDENTITY, hvilket slår Hibernates JDBC batching fra, og hver
+ *      {@code save()} skriver desuden ingredienserne én række ad gangen. Her indsættes alle nye meals
+ *      i én batch (med genererede id'er) og alle ingredienser i én batch mere.
+ *      Med MySQL skal {@code rewriteBatchedStatements=true} stå i JDBC-URL'en, før batchen bliver til
+ *      multi-row INSERTs.
+ * </p>
+ * Kører i kalderens transaktion. Et dubleret {@code normalized_name} giver {@code DuplicateKeyException}.
+ */
+public class MealRepositoryImpl implements MealRepositoryCustom {
+
+    private static final String INSERT_MEAL =
+            "insert into meal (meal_name, img_url, normalized_name) values (?, ?, ?)";
+    private static final String INSERT_INGREDIENT =
+            "insert into meal_ingredients (meal_id, ingredients) values (?, ?)";
+    private static final int BATCH_SIZE = 100;
+    private static final RowMapper<StoredMeal> STORED_MEAL = (rs, i) ->
+            new StoredMeal(rs.getLong("id"), rs.getString("meal_name"), rs.getString("normalized_name"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public MealRepositoryImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void insertAll(List<Meal> meals) {
+        if (meals.isEmpty()) return;
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_MEAL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Meal meal = meals.get(i);
+                        ps.setString(1, meal.getMealName());
+                        ps.setString(2, meal.getImgUrl());
+                        ps.setString(3, Meal.normalizeName(meal.getMealName()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return meals.size();
+                    }
+                },
+                keyHolder);
+
+        // H2 kalder nøglen ID, MySQL GENERATED_KEY, så vi tager bare første kolonne
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> ingredientRows = new ArrayList<>();
+        for (int i = 0; i < meals.size(); i++) {
+            Meal meal = meals.get(i);
+            meal.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            meal.setNormalizedName(Meal.normalizeName(meal.getMealName()));
+            if (meal.getIngredients() != null) {
+                for (String ingredient : meal.getIngredients()) {
+                    ingredientRows.add(new Object[]{meal.getId(), ingredient});
+                }
+            }
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_INGREDIENT, ingredientRows, BATCH_SIZE, (ps, row) -> {
+            ps.setLong(1, (Long) row[0]);
+            ps.setString(2, (String) row[1]);
+        });
+    }
+
+    /**
+     * Sætter {@code meal_name} og {@code normalized_name} efter {@link MealNameCanonicalizer} på de næste
+     * {@code batchSize} meals efter {@code afterId}, i id-orden og i én transaktion pr. batch.
+     * <p>
+     *      Meals der nu giver samme nøgle (fx "Week 1 Monday - Soup" og "Week 2 Friday - Soup") slås sammen til
+     *      det ældste: planer peges om, og dubletten slettes. Nøglens nuværende ejer findes i databasen, så
+     *      dubletter på tværs af batches også fanges. Ejer en senere meal nøglen under et gammelt navn, som den
+     *      selv skifter væk fra, nulstilles den først, så unik-constraint'en ikke rammes. Hver batch kan køres
+     *      igen uden at ændre noget, så en afbrudt kørsel kan fortsætte fra sidste {@code lastId}.
+     * </p>
+     */
+    @Override
+    public CanonicalizedBatch canonicalizeNames(long afterId, int batchSize) {
+        return transactionTemplate.execute(status -> {
+            List<StoredMeal> rows = jdbcTemplate.query(
+                    "select id, meal_name, normalized_name from meal where meal_name is not null and id > ? " +
+                            "order by id limit ?",
+                    STORED_MEAL, afterId, batchSize);
+            if (rows.isEmpty()) return new CanonicalizedBatch(afterId, 0, Set.of());
+
+            Set<String> keys = new HashSet<>();
+            rows.forEach(row -> keys.add(MealNameCanonicalizer.canonicalKey(row.mealName())));
+            Map<String, StoredMeal> owners = new HashMap<>();
+            namedJdbcTemplate.query("select id, meal_name, normalized_name from meal where normalized_name in (:keys)",
+                    Map.of("keys", keys), STORED_MEAL).forEach(owner -> owners.put(owner.normalizedName(), owner));
+
+            Set<String> affectedKeys = new HashSet<>();
+            Set<Long> deleted = new HashSet<>();
+            for (StoredMeal row : rows) {
+                if (deleted.contains(row.id())) continue;
+                String key = MealNameCanonicalizer.canonicalKey(row.mealName());
+                String displayName = MealNameCanonicalizer.displayName(row.mealName());
+                StoredMeal owner = owners.get(key);
+
+                if (owner != null && owner.id() != row.id()
+                        && !key.equals(MealNameCanonicalizer.canonicalKey(owner.mealName()))) {
+                    jdbcTemplate.update("update meal set normalized_name = null where id = ?", owner.id());
+                    owners.remove(key);
+                    affectedKeys.add(key);
+                    owner = null;
+                }
+
+                if (owner != null && owner.id() < row.id()) {
+                    merge(owner.id(), row.id());
+                    deleted.add(row.id());
+                    affectedKeys.add(key);
+                    if (row.normalizedName() != null) affectedKeys.add(row.normalizedName());
+                    continue;
+                }
+                if (owner != null && owner.id() > row.id()) {
+                    merge(row.id(), owner.id());
+                    deleted.add(owner.id());
+                    owners.remove(key);
+                    affectedKeys.add(key);
+                }
+
+                if (!key.equals(row.normalizedName()) || !displayName.equals(row.mealName())) {
+                    jdbcTemplate.update("update meal set meal_name = ?, normalized_name = ? where id = ?",
+                            displayName, key, row.id());
+                    affectedKeys.add(key);
+                    if (row.normalizedName() != null) {
+                        affectedKeys.add(row.normalizedName());
+                        owners.remove(row.normalizedName(), row);
+                    }
+                    owners.put(key, new StoredMeal(row.id(), displayName, key));
+                }
+            }
+            return new CanonicalizedBatch(rows.getLast().id(), rows.size(), affectedKeys);
+        });
+    }
+
+    // Kun meal_id skiftes, så planens meal_order (pladsen) bevares
+    private void merge(long survivorId, long duplicateId) {
+        jdbcTemplate.update("update weekly_meal_plan_meals set meal_id = ? where meal_id = ?", survivorId, duplicateId);
+        jdbcTemplate.update("delete from meal_ingredients where meal_id = ?", duplicateId);
+        jdbcTemplate.update("delete from meal where id = ?", duplicateId);
+    }
+
+    private record StoredMeal(long id, String mealName, String normalizedName) {
+    }
+}
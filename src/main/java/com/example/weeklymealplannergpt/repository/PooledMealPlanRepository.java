@@ -0,0 +1,59 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.PooledMealPlan;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface PooledMealPlanRepository extends JpaRepository<PooledMealPlan, Long> {
+
+    /**
+     * Planer for profilen, som brugeren ikke har fået før, og som hverken er for gamle eller udleveret
+     * for mange gange. Mindst brugte først, så puljen slides jævnt.
+     */
+    @Query("select p from PooledMealPlan p where p.profileKey = :profileKey " +
+            "and p.deliveries < :maxDeliveries and p.createdAt > :createdAfter " +
+            "and not exists (select d.id from PooledPlanDelivery d " +
+            "where d.pooledPlanId = p.id and d.consumerId = :consumerId) " +
+            "order by p.deliveries, p.id")
+    List<PooledMealPlan> findServable(@Param("profileKey") String profileKey,
+                                      @Param("consumerId") UUID consumerId,
+                                      @Param("maxDeliveries") int maxDeliveries,
+                                      @Param("createdAfter") Instant createdAfter,
+                                      Limit limit);
+
+    long countByProfileKeyAndDeliveriesLessThanAndCreatedAtAfter(String profileKey, int maxDeliveries, Instant createdAfter);
+
+    /**
+     * Tæller en udlevering, hvis planen stadig har plads. Returnerer 0 hvis andre nåede at bruge den sidste.
+     */
+    @Modifying
+    @Query("update PooledMealPlan p set p.deliveries = p.deliveries + 1 " +
+            "where p.id = :id and p.deliveries < :maxDeliveries")
+    int recordDelivery(@Param("id") Long id, @Param("maxDeliveries") int maxDeliveries);
+
+    @Modifying
+    @Query("update PooledMealPlan p set p.deliveries = p.deliveries - 1 where p.id = :id and p.deliveries > 0")
+    int releaseDelivery(@Param("id") Long id);
+
+    /**
+     * Fjerner opbrugte og for gamle planer sammen med deres udleveringer.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from PooledPlanDelivery d where d.pooledPlanId in (select p.id from PooledMealPlan p " +
+            "where p.deliveries >= :maxDeliveries or p.createdAt <= :createdAfter)")
+    int deleteRetiredDeliveries(@Param("maxDeliveries") int maxDeliveries, @Param("createdAfter") Instant createdAfter);
+
+    @Transactional
+    @Modifying
+    @Query("delete from PooledMealPlan p where p.deliveries >= :maxDeliveries or p.createdAt <= :createdAfter")
+    int deleteRetired(@Param("maxDeliveries") int maxDeliveries, @Param("createdAfter") Instant createdAfter);
+}
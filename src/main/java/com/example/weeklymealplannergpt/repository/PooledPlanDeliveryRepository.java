@@ -0,0 +1,16 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.PooledPlanDelivery;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.UUID;
+
+public interface PooledPlanDeliveryRepository extends JpaRepository<PooledPlanDelivery, Long> {
+
+    @Modifying
+    @Query("delete from PooledPlanDelivery d where d.pooledPlanId = :planId and d.consumerId = :consumerId")
+    int deleteDelivery(@Param("planId") Long planId, @Param("consumerId") UUID consumerId);
+}
@@ -0,0 +1,26 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.PreferenceProfile;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PreferenceProfileRepository extends JpaRepository<PreferenceProfile, String> {
+
+    /**
+     * Lægger {@code count} forespørgsler til profilen. Returnerer 0 hvis profilen ikke findes endnu.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update PreferenceProfile p set p.requestCount = p.requestCount + :count, p.lastRequestedAt = :now " +
+            "where p.profileKey = :profileKey")
+    int recordRequests(@Param("profileKey") String profileKey, @Param("count") long count, @Param("now") Instant now);
+
+    List<PreferenceProfile> findByLastRequestedAtAfterOrderByRequestCountDesc(Instant requestedAfter, Limit limit);
+}
@@ -0,0 +1,7 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.TheMealDbCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TheMealDbCacheRepository extends JpaRepository<TheMealDbCacheEntry, String> {
+}
@@ -1,13 +1,68 @@
 package com.example.weeklymealplannergpt.repository;
 
 import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 public interface WeeklyMealPlanRepository extends JpaRepository<WeeklyMealPlan, Long> {
     List<WeeklyMealPlan> findByConsumerIdOrderByWeekStartDateDesc(UUID consumerId);
     WeeklyMealPlan findByConsumerIdAndWeekStartDate(UUID consumerId, LocalDate weekStartDate);
+
+    /**
+     * Første side af historikken. Kun id og dato - ingen meals eller ingredienser.
+     */
+    @Query("select p.id as id, p.weekStartDate as weekStartDate from WeeklyMealPlan p " +
+            "where p.consumer.id = :consumerId order by p.weekStartDate desc, p.id desc")
+    List<PlanHeader> findHistoryHeaders(@Param("consumerId") UUID consumerId, Limit limit);
+
+    /**
+     * Keyset-pagination: næste side starter efter (weekStartDate, id) fra sidste række,
+     * så databasen bruger {@code idx_consumer_week} i stedet for at tælle en OFFSET igennem.
+     */
+    @Query("select p.id as id, p.weekStartDate as weekStartDate from WeeklyMealPlan p " +
+            "where p.consumer.id = :consumerId and (p.weekStartDate < :weekStartDate " +
+            "or (p.weekStartDate = :weekStartDate and p.id < :id)) " +
+            "order by p.weekStartDate desc, p.id desc")
+    List<PlanHeader> findHistoryHeadersAfter(@Param("consumerId") UUID consumerId,
+                                             @Param("weekStartDate") LocalDate weekStartDate,
+                                             @Param("id") Long id,
+                                             Limit limit);
+
+    /**
+     * Navne og billeder for meals i flere planer på én gang (uden ingredienser), i planens rækkefølge.
+     */
+    @Query("select p.id as planId, m.mealName as mealName, m.imgUrl as imgUrl " +
+            "from WeeklyMealPlan p join p.meals m where p.id in :planIds order by p.id, index(m)")
+    List<PlanMealRow> findMealSummaries(@Param("planIds") Collection<Long> planIds);
+
+    /**
+     * Keyset-side af ugens planer til udsendelse, med consumer. Har en consumer flere planer
+     * for ugen, er det kun den nyeste der kommer med.
+     */
+    @Query("select p from WeeklyMealPlan p join fetch p.consumer " +
+            "where p.weekStartDate = :weekStartDate and p.id > :afterId " +
+            "and p.id = (select max(p2.id) from WeeklyMealPlan p2 " +
+            "where p2.consumer = p.consumer and p2.weekStartDate = p.weekStartDate) " +
+            "order by p.id")
+    List<WeeklyMealPlan> findForDispatch(@Param("weekStartDate") LocalDate weekStartDate,
+                                         @Param("afterId") long afterId,
+                                         Limit limit);
+
+    interface PlanHeader {
+        Long getId();
+        LocalDate getWeekStartDate();
+    }
+
+    interface PlanMealRow {
+        Long getPlanId();
+        String getMealName();
+        String getImgUrl();
+    }
 }
@@ -0,0 +1,197 @@
+package com.example.weeklymealplannergpt.service.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Trådsikker, begrænset LRU cache.
+ * <p>
+ *      Opslag og skrivninger går direkte mod en {@link ConcurrentHashMap} uden lås.
+ *      Rækkefølgen for LRU holdes i en access-ordered {@link LinkedHashMap}, som kun
+ *      opdateres af den tråd der har {@code evictionLock}. Læsninger og skrivninger
+ *      registreres i buffere og afspilles samlet, så travle tråde aldrig venter på hinanden.
+ * </p>
+ */
+public class ConcurrentLruCache<K, V> {
+
+    private static final int READ_BUFFER_SIZE = 256;
+    private static final int READ_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 4;
+    private static final int WRITE_BUFFER_LIMIT = 128;
+
+    private final int maximumSize;
+    private final ConcurrentHashMap<K, V> data;
+    private final LinkedHashMap<K, V> accessOrder;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final Queue<K> readBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger readBufferSize = new AtomicInteger();
+    private final Queue<K> writeBuffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger writeBufferSize = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final BiConsumer<K, V> evictionListener;
+
+    public ConcurrentLruCache(int maximumSize) {
+        this(maximumSize, (key, value) -> { });
+    }
+
+    public ConcurrentLruCache(int maximumSize, BiConsumer<K, V> evictionListener) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.data = new ConcurrentHashMap<>(Math.min(maximumSize, 1 << 16));
+        this.accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+        this.evictionListener = evictionListener;
+    }
+
+    public V get(K key) {
+        V value = data.get(key);
+        if (value == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        recordRead(key);
+        return value;
+    }
+
+    /**
+     * Læser uden at tælle som hit/miss og uden at flytte nøglen i LRU-rækkefølgen.
+     */
+    public V peek(K key) {
+        return data.get(key);
+    }
+
+    public void put(K key, V value) {
+        data.put(key, value);
+        recordWrite(key);
+    }
+
+    public void remove(K key) {
+        if (data.remove(key) != null) {
+            recordWrite(key);
+        }
+    }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            data.clear();
+            accessOrder.clear();
+            readBuffer.clear();
+            readBufferSize.set(0);
+            writeBuffer.clear();
+            writeBufferSize.set(0);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), data.size());
+    }
+
+    private void recordRead(K key) {
+        if (readBufferSize.get() < READ_BUFFER_SIZE) {
+            readBuffer.offer(key);
+            if (readBufferSize.incrementAndGet() >= READ_DRAIN_THRESHOLD) {
+                drainBuffers();
+            }
+        }
+    }
+
+    /**
+     * Er skrivebufferen fuld, venter skriveren på låsen i stedet for at gå videre. Ellers kan
+     * andre tråde blive ved med at skrive, mens låsens ejer ikke får CPU, og cachen vokser
+     * langt ud over {@code maximumSize}.
+     */
+    private void recordWrite(K key) {
+        writeBuffer.offer(key);
+        if (writeBufferSize.incrementAndGet() <= WRITE_BUFFER_LIMIT) {
+            drainBuffers();
+            return;
+        }
+        evictionLock.lock();
+        try {
+            drainAll();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Afspiller bufferne hvis låsen er ledig. En tråd der ikke får låsen, lader ejeren
+     * tage arbejdet; tjekket efter unlock sikrer at en skrivning aldrig bliver liggende.
+     */
+    private void drainBuffers() {
+        while (evictionLock.tryLock()) {
+            try {
+                drainAll();
+            } finally {
+                evictionLock.unlock();
+            }
+            if (writeBuffer.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void drainAll() {
+        drainReadBuffer();
+        drainWriteBuffer();
+        evictIfNeeded();
+    }
+
+    private void drainReadBuffer() {
+        K key;
+        while ((key = readBuffer.poll()) != null) {
+            readBufferSize.decrementAndGet();
+            accessOrder.get(key);
+        }
+    }
+
+    private void drainWriteBuffer() {
+        K key;
+        while ((key = writeBuffer.poll()) != null) {
+            writeBufferSize.decrementAndGet();
+            V current = data.get(key);
+            if (current != null) {
+                accessOrder.put(key, current);
+            } else {
+                accessOrder.remove(key);
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<K, V>> iterator = accessOrder.entrySet().iterator();
+        while (accessOrder.size() > maximumSize && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            iterator.remove();
+            if (data.remove(eldest.getKey(), eldest.getValue())) {
+                evictions.increment();
+                evictionListener.accept(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.weeklymealplannergpt.service.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Indlejret {@link SharedCacheTier} i samme JVM.
+ * <p>
+ *      Bruges i tests og lokalt ({@code meal.cache.shared.type=local}), hvor flere cache-instanser
+ *      deler én instans af denne klasse og dermed opfører sig som noder mod samme Redis.
+ *      Beskeder leveres synkront til alle lyttere, også afsenderen, ligesom Redis pub/sub.
+ * </p>
+ */
+public class InMemorySharedCacheTier implements SharedCacheTier {
+
+    private final ConcurrentLruCache<String, Entry> entries;
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    public InMemorySharedCacheTier(int maximumSize) {
+        this.entries = new ConcurrentLruCache<>(maximumSize);
+    }
+
+    @Override
+    public String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.expiresAt() > 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        entries.put(key, new Entry(value, System.nanoTime() + ttl.toNanos()));
+    }
+
+    @Override
+    public void evict(String key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public void publish(String channel, String message) {
+        listeners.getOrDefault(channel, List.of()).forEach(listener -> listener.accept(message));
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        listeners.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    private record Entry(String value, long expiresAt) {}
+}
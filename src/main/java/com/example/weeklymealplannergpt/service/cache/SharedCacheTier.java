@@ -0,0 +1,29 @@
+package com.example.weeklymealplannergpt.service.cache;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Cache-lag der deles af alle instanser, fx Redis.
+ * <p>
+ *      Værdier er strenge (typisk JSON), så en implementation ikke skal kende typerne. Ud over key/value
+ *      understøttes beskeder på en kanal, som alle instanser lytter på; de bruges til at invalidere
+ *      hver instans' lokale near-cache. Kalderen skal behandle en {@link RuntimeException} som en miss,
+ *      så et nede delt lag ikke vælter requests.
+ * </p>
+ */
+public interface SharedCacheTier {
+
+    /**
+     * @return værdien, eller {@code null} hvis nøglen ikke findes eller er udløbet
+     */
+    String get(String key);
+
+    void put(String key, String value, Duration ttl);
+
+    void evict(String key);
+
+    void publish(String channel, String message);
+
+    void subscribe(String channel, Consumer<String> listener);
+}
@@ -0,0 +1,99 @@
+package com.example.weeklymealplannergpt.service.cache;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Samler samtidige kald med samme nøgle til ét kald ("single-flight").
+ * <p>
+ *      Den første tråd for en nøgle udfører {@code loader}; alle andre tråde med samme nøgle
+ *      venter på det samme resultat. Vellykkede resultater gemmes kort tid, så kald der kommer
+ *      lige efter også slipper for at gå upstream.
+ * </p>
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, Expiring<V>> recent = new ConcurrentHashMap<>();
+    private final Predicate<V> cacheable;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder recentHits = new LongAdder();
+
+    public SingleFlight(Predicate<V> cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    public V execute(K key, Duration resultTtl, Callable<V> loader) throws Exception {
+        Expiring<V> cached = recent.get(key);
+        if (cached != null) {
+            if (!cached.isExpired()) {
+                recentHits.increment();
+                return cached.value();
+            }
+            recent.remove(key, cached);
+        }
+
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            V value = loader.call();
+            if (resultTtl != null && !resultTtl.isZero() && cacheable.test(value)) {
+                purgeExpired();
+                recent.put(key, new Expiring<>(value, System.nanoTime() + resultTtl.toNanos()));
+            }
+            call.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getRecentHits() {
+        return recentHits.sum();
+    }
+
+    private V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void purgeExpired() {
+        recent.entrySet().removeIf(entry -> entry.getValue().isExpired());
+    }
+
+    private record Expiring<V>(V value, long expiresAtNanos) {
+        boolean isExpired() {
+            return System.nanoTime() - expiresAtNanos >= 0;
+        }
+    }
+}
@@ -3,16 +3,38 @@ package com.example.weeklymealplannergpt.service.consumer;
 import com.example.weeklymealplannergpt.exception.ConsumerNotFoundException;
 import com.example.weeklymealplannergpt.model.Consumer;
 import com.example.weeklymealplannergpt.repository.ConsumerRepository;
+import com.example.weeklymealplannergpt.service.cache.ConcurrentLruCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * Consumer-opslag med en lille TTL-cache foran databasen.
+ * <p>
+ *      Hvert API-kald slår den indloggede bruger op via email, så cachen sparer en query (plus
+ *      allergier/dislikes) pr. request. Cachede consumers er detached men fuldt indlæst, se
+ *      {@link ConsumerRepository#findByEmail}. Hver kalder får sin egen kopi, så en request der ændrer
+ *      præferencerne ikke ændrer dem for samtidige requests eller cachen. {@link #save} og {@link #deleteById}
+ *      fjerner brugeren fra cachen, når ændringen er gemt; TTL'en begrænser hvor længe en anden instans kan
+ *      se gamle præferencer.
+ * </p>
+ */
 @Service
 public class ConsumerServiceImpl implements ConsumerService {
 
+    private static final int MAX_CACHED_CONSUMERS = 10_000;
+
     private final ConsumerRepository consumerRepository;
+    private final ConcurrentLruCache<String, CachedConsumer> consumersByEmail = new ConcurrentLruCache<>(MAX_CACHED_CONSUMERS);
+    private final ConcurrentLruCache<UUID, CachedConsumer> consumersById = new ConcurrentLruCache<>(MAX_CACHED_CONSUMERS);
+
+    @Value("${consumer.cache.ttl:PT5M}")
+    private Duration cacheTtl = Duration.ofMinutes(5);
 
     public ConsumerServiceImpl(ConsumerRepository consumerRepository) {
         this.consumerRepository = consumerRepository;
@@ -24,18 +46,34 @@ public class ConsumerServiceImpl implements ConsumerService {
         if (consumer.getId() == null && consumerRepository.findByEmail(consumer.getEmail()).isPresent()) {
             throw new IllegalArgumentException("Consumer already exists");
         }
-        return consumerRepository.save(consumer);
+        Consumer saved = consumerRepository.save(consumer);
+        evict(consumer);
+        return saved;
     }
 
     @Override
     public Consumer findByEmail(String email) {
-        return consumerRepository.findByEmail(email)
+        CachedConsumer cached = fresh(consumersByEmail.get(email));
+        if (cached != null) {
+            return copyOf(cached.consumer());
+        }
+
+        Consumer consumer = consumerRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("Consumer not found"));
+        cache(consumer);
+        return consumer;
     }
 
     @Override
     public Optional<Consumer> findById(UUID id) {
-        return Optional.ofNullable(consumerRepository.findById(id).orElseThrow(() -> new ConsumerNotFoundException("Consumer not found")));
+        CachedConsumer cached = fresh(consumersById.get(id));
+        if (cached != null) {
+            return Optional.of(copyOf(cached.consumer()));
+        }
+
+        Consumer consumer = consumerRepository.findById(id).orElseThrow(() -> new ConsumerNotFoundException("Consumer not found"));
+        cache(consumer);
+        return Optional.of(consumer);
     }
 
     @Override
@@ -48,14 +86,60 @@ public class ConsumerServiceImpl implements ConsumerService {
         if (!consumerRepository.existsById(id)) {
             throw new ConsumerNotFoundException("Consumer not found");
         }
+        evictById(id);
         consumerRepository.deleteById(id);
     }
 
     @Override
     public boolean existsById(UUID id) {
-        return consumerRepository.existsById(id);
+        return fresh(consumersById.get(id)) != null || consumerRepository.existsById(id);
     }
 
+    private void cache(Consumer consumer) {
+        CachedConsumer entry = new CachedConsumer(copyOf(consumer), System.nanoTime() + cacheTtl.toNanos());
+        consumersByEmail.put(consumer.getEmail(), entry);
+        consumersById.put(consumer.getId(), entry);
+    }
+
+    private void evict(Consumer consumer) {
+        if (consumer.getEmail() != null) {
+            consumersByEmail.remove(consumer.getEmail());
+        }
+        if (consumer.getId() != null) {
+            evictById(consumer.getId());
+        }
+    }
+
+    private void evictById(UUID id) {
+        CachedConsumer cached = consumersById.get(id);
+        if (cached != null) {
+            consumersByEmail.remove(cached.consumer().getEmail());
+        }
+        consumersById.remove(id);
+    }
+
+    private CachedConsumer fresh(CachedConsumer cached) {
+        if (cached == null || System.nanoTime() - cached.expiresAt() > 0) {
+            return null;
+        }
+        return cached;
+    }
+
+    // Uden mealPlans: de er lazy og bruges ikke af cachens kaldere
+    private static Consumer copyOf(Consumer consumer) {
+        Consumer copy = new Consumer();
+        copy.setId(consumer.getId());
+        copy.setEmail(consumer.getEmail());
+        copy.setName(consumer.getName());
+        copy.setDietType(consumer.getDietType());
+        copy.setLanguage(consumer.getLanguage());
+        copy.setAllergies(consumer.getAllergies() != null ? new HashSet<>(consumer.getAllergies()) : null);
+        copy.setDislikes(consumer.getDislikes() != null ? new HashSet<>(consumer.getDislikes()) : null);
+        return copy;
+    }
+
+    private record CachedConsumer(Consumer consumer, long expiresAt) {}
+
     private void validateEmail(String email) {
         if (email == null || email.isEmpty()) {
             throw new IllegalArgumentException("Email can not be null or empty");
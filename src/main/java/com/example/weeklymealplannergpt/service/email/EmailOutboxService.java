@@ -0,0 +1,11 @@
+package com.example.weeklymealplannergpt.service.email;
+
+import com.example.weeklymealplannergpt.model.EmailOutbox;
+
+import java.util.UUID;
+
+public interface EmailOutboxService {
+    EmailOutbox enqueueMealPlan(UUID consumerId, Long mealPlanId);
+    EmailOutbox getStatus(UUID emailId, UUID consumerId);
+    void deliver(UUID emailId);
+}
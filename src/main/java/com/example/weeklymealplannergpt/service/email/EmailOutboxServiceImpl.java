@@ -0,0 +1,184 @@
+package com.example.weeklymealplannergpt.service.email;
+
+import com.example.weeklymealplannergpt.model.EmailOutbox;
+import com.example.weeklymealplannergpt.model.EmailOutboxStatus;
+import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
+import com.example.weeklymealplannergpt.repository.EmailOutboxRepository;
+import com.example.weeklymealplannergpt.repository.WeeklyMealPlanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Transactional outbox for mails.
+ * <p>
+ *      {@link #enqueueMealPlan} gemmer mailen i {@code email_outbox} i kalderens transaktion og giver den til
+ *      {@code emailOutboxExecutor}, når transaktionen er committed. Fejler afsendelsen, prøves igen med
+ *      eksponentiel backoff, op til {@code email.outbox.max-attempts}; derefter står den som FAILED med fejlen.
+ *      Er puljen fuld, eller genstarter noden, samles mailen op af {@link #dispatchDue}. {@code claim} sikrer
+ *      at en mail kun sendes af én worker ad gangen, og {@code finish} gemmer kun udfaldet hvis workerens
+ *      {@code claimToken} stadig gælder.
+ * </p>
+ */
+@Service
+public class EmailOutboxServiceImpl implements EmailOutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxServiceImpl.class);
+
+    private final EmailOutboxRepository outboxRepository;
+    private final WeeklyMealPlanRepository weeklyMealPlanRepository;
+    private final EmailService emailService;
+    private final TaskExecutor outboxExecutor;
+
+    @Value("${email.outbox.max-attempts:8}")
+    private int maxAttempts = 8;
+
+    @Value("${email.outbox.initial-backoff:PT30S}")
+    private Duration initialBackoff = Duration.ofSeconds(30);
+
+    @Value("${email.outbox.max-backoff:PT30M}")
+    private Duration maxBackoff = Duration.ofMinutes(30);
+
+    @Value("${email.outbox.stale-after:PT5M}")
+    private Duration staleAfter = Duration.ofMinutes(5);
+
+    public EmailOutboxServiceImpl(
+            EmailOutboxRepository outboxRepository,
+            WeeklyMealPlanRepository weeklyMealPlanRepository,
+            EmailService emailService,
+            @Qualifier("emailOutboxExecutor") TaskExecutor outboxExecutor) {
+        this.outboxRepository = outboxRepository;
+        this.weeklyMealPlanRepository = weeklyMealPlanRepository;
+        this.emailService = emailService;
+        this.outboxExecutor = outboxExecutor;
+    }
+
+    @Override
+    @Transactional
+    public EmailOutbox enqueueMealPlan(UUID consumerId, Long mealPlanId) {
+        Instant now = Instant.now();
+        EmailOutbox email = new EmailOutbox();
+        email.setConsumerId(consumerId);
+        email.setMealPlanId(mealPlanId);
+        email.setStatus(EmailOutboxStatus.PENDING);
+        email.setCreatedAt(now);
+        email.setNextAttemptAt(now);
+
+        EmailOutbox saved = outboxRepository.save(email);
+        logger.info("Queued meal plan {} email {} for consumer: {}", mealPlanId, saved.getId(), consumerId);
+        afterCommit(() -> submit(saved.getId()));
+        return saved;
+    }
+
+    @Override
+    public EmailOutbox getStatus(UUID emailId, UUID consumerId) {
+        return outboxRepository.findByIdAndConsumerId(emailId, consumerId)
+                .orElseThrow(() -> new IllegalArgumentException("Email not found"));
+    }
+
+    @Override
+    public void deliver(UUID emailId) {
+        UUID claimToken = UUID.randomUUID();
+        if (outboxRepository.claim(emailId, claimToken, Instant.now()) == 0) {
+            logger.debug("Email {} already claimed by another worker", emailId);
+            return;
+        }
+
+        EmailOutbox email = outboxRepository.findById(emailId)
+                .orElseThrow(() -> new IllegalStateException("Claimed email disappeared: " + emailId));
+        email.setAttempts(email.getAttempts() + 1);
+
+        Optional<WeeklyMealPlan> mealPlan = weeklyMealPlanRepository.findById(email.getMealPlanId());
+        if (mealPlan.isEmpty()) {
+            logger.warn("Email {} dropped: meal plan {} no longer exists", emailId, email.getMealPlanId());
+            finish(email, claimToken, EmailOutboxStatus.FAILED, "Meal plan no longer exists");
+            return;
+        }
+
+        try {
+            emailService.sendMealPlan(mealPlan.get().getConsumer(), mealPlan.get());
+            email.setSentAt(Instant.now());
+            finish(email, claimToken, EmailOutboxStatus.SENT, null);
+        } catch (Exception e) {
+            String error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            if (email.getAttempts() >= maxAttempts) {
+                logger.error("Email {} failed permanently after {} attempts", emailId, email.getAttempts(), e);
+                finish(email, claimToken, EmailOutboxStatus.FAILED, error);
+            } else {
+                Duration backoff = backoff(email.getAttempts());
+                logger.warn("Email {} attempt {} failed, retrying in {}: {}", emailId, email.getAttempts(), backoff, error);
+                email.setNextAttemptAt(Instant.now().plus(backoff));
+                finish(email, claimToken, EmailOutboxStatus.PENDING, error);
+            }
+        }
+    }
+
+    /**
+     * Opsamler mails der ikke blev startet med det samme: afviste submits, retries der er forfaldne,
+     * mails fra før en genstart og mails hvis worker døde midt i afsendelsen.
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.dispatch-interval:PT15S}")
+    public void dispatchDue() {
+        int requeued = outboxRepository.requeueStale(Instant.now().minus(staleAfter));
+        if (requeued > 0) {
+            logger.warn("Requeued {} stale outbox emails", requeued);
+        }
+
+        outboxRepository.findTop50ByStatusAndNextAttemptAtBeforeOrderByNextAttemptAtAsc(
+                        EmailOutboxStatus.PENDING, Instant.now())
+                .forEach(email -> submit(email.getId()));
+    }
+
+    Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private void finish(EmailOutbox email, UUID claimToken, EmailOutboxStatus status, String error) {
+        email.setStatus(status);
+        email.setClaimedAt(null);
+        email.setClaimToken(null);
+        if (error != null) {
+            email.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        }
+        int updated = outboxRepository.finish(email.getId(), claimToken, status, email.getAttempts(),
+                email.getLastError(), email.getNextAttemptAt(), email.getSentAt());
+        if (updated == 0) {
+            logger.warn("Email {} was requeued and claimed by another worker; discarding this outcome", email.getId());
+        }
+    }
+
+    private void submit(UUID emailId) {
+        try {
+            outboxExecutor.execute(() -> deliver(emailId));
+        } catch (TaskRejectedException e) {
+            logger.warn("Email outbox executor saturated; email {} stays queued", emailId);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -3,8 +3,10 @@ package com.example.weeklymealplannergpt.service.email;
 import com.example.weeklymealplannergpt.model.Consumer;
 import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
 import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
 
 public interface EmailService {
     void sendWeeklyMealPlan(Consumer consumer) throws MessagingException;
     void sendMealPlan(Consumer consumer, WeeklyMealPlan mealPlan) throws MessagingException;
+    MimeMessage createMealPlanMessage(Consumer consumer, WeeklyMealPlan mealPlan) throws MessagingException;
 }
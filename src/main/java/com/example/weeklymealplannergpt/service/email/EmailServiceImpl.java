@@ -1,28 +1,45 @@
 package com.example.weeklymealplannergpt.service.email;
 
 import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.Meal;
 import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
+import com.example.weeklymealplannergpt.service.cache.ConcurrentLruCache;
+import jakarta.activation.DataHandler;
 import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.MailException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.context.Context;
+import org.springframework.web.util.HtmlUtils;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
 
 @Service
 public class EmailServiceImpl implements EmailService {
 
     private static final Logger logger = LoggerFactory.getLogger(EmailServiceImpl.class);
 
+    private static final String NAME_SLOT = "name";
+    private static final String EMAIL_SLOT = "email";
+    // Kun bogstaver og tal, så Thymeleaf ikke escaper dem, og tilfældige, så de ikke kan optræde i en meal
+    private static final String NAME_MARKER = "rcptname" + UUID.randomUUID().toString().replace("-", "");
+    private static final String EMAIL_MARKER = "rcptemail" + UUID.randomUUID().toString().replace("-", "");
+    private static final Map<String, String> MARKERS = Map.of(NAME_MARKER, NAME_SLOT, EMAIL_MARKER, EMAIL_SLOT);
+    private static final int MAX_RENDERED_BODIES = 1000;
+
     private final JavaMailSender javaMailSender;
     private final SpringTemplateEngine templateEngine;
+    private final ConcurrentLruCache<BodyKey, SplicedHtml> renderedBodies = new ConcurrentLruCache<>(MAX_RENDERED_BODIES);
 
 
     public EmailServiceImpl(JavaMailSender javaMailSender, SpringTemplateEngine templateEngine) {
@@ -30,33 +47,85 @@ public class EmailServiceImpl implements EmailService {
         this.templateEngine = templateEngine;
     }
 
-    @Async
     public void sendWeeklyMealPlan(Consumer consumer) throws MessagingException {
         sendMealPlan(consumer, null);
     }
 
-    @Async
     public void sendMealPlan(Consumer consumer, WeeklyMealPlan mealPlan) throws MessagingException {
-        
-        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
-
         try {
-            helper.setTo(consumer.getEmail());
-            helper.setSubject("Your meal plan for this week is ready!");
-
-            Context context = new Context();
-            context.setVariable("consumer", consumer);
-            context.setVariable("mealPlan", mealPlan);
-            
-            String html = templateEngine.process("weekly-meal-plan", context);
-
-            helper.setText(html, true);
-            javaMailSender.send(mimeMessage);
+            javaMailSender.send(createMealPlanMessage(consumer, mealPlan));
             logger.info("Email sent successfully to {}", consumer.getEmail());
         } catch (MessagingException | MailException e) {
             logger.error("Failed to send email to {}", consumer.getEmail(), e);
             throw new RuntimeException("Failed to send email", e);
         }
     }
+
+    /**
+     * Bygger madplan-mailen uden at sende den. Trådsikker, så udsendelsen kan rendere mange mails parallelt.
+     * <p>
+     *      Skabelonen renderes kun én gang pr. liste af meals, med markører i stedet for modtagerens navn og email
+     *      (Thymeleaf cacher selv den parsede skabelon). Pr. modtager splejses de HTML-escapede felter ind, og
+     *      bodyen streames direkte fra de cachede bytes, se {@link SplicedHtml}.
+     * </p>
+     */
+    public MimeMessage createMealPlanMessage(Consumer consumer, WeeklyMealPlan mealPlan) throws MessagingException {
+        MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+
+        helper.setTo(consumer.getEmail());
+        helper.setSubject("Your meal plan for this week is ready!");
+
+        MimeBodyPart body = new MimeBodyPart();
+        body.setDataHandler(new DataHandler(renderedBody(mealPlan).dataSource(Map.of(
+                NAME_SLOT, escape(consumer.getName()),
+                EMAIL_SLOT, escape(consumer.getEmail())))));
+        // Fast encoding, så JavaMail ikke skal læse hele bodyen igennem for at vælge en
+        body.setHeader("Content-Transfer-Encoding", "quoted-printable");
+        helper.getMimeMultipart().addBodyPart(body);
+        return mimeMessage;
+    }
+
+    private SplicedHtml renderedBody(WeeklyMealPlan mealPlan) {
+        BodyKey key = BodyKey.of(mealPlan);
+        SplicedHtml rendered = key != null ? renderedBodies.get(key) : null;
+        if (rendered != null) return rendered;
+
+        Consumer placeholder = new Consumer();
+        placeholder.setName(NAME_MARKER);
+        placeholder.setEmail(EMAIL_MARKER);
+
+        Context context = new Context();
+        context.setVariable("consumer", placeholder);
+        context.setVariable("mealPlan", mealPlan);
+
+        rendered = SplicedHtml.split(templateEngine.process("weekly-meal-plan", context), MARKERS);
+        if (key != null) {
+            renderedBodies.put(key, rendered);
+        }
+        return rendered;
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : HtmlUtils.htmlEscape(value, "UTF-8");
+    }
+
+    /**
+     * Mailens indhold afhænger kun af om der er en plan og hvilke meals den har, i rækkefølge.
+     * Meals uden id (ikke gemt endnu) caches ikke.
+     */
+    private record BodyKey(boolean hasPlan, List<Long> mealIds) {
+
+        static BodyKey of(WeeklyMealPlan mealPlan) {
+            if (mealPlan == null) return new BodyKey(false, List.of());
+            if (mealPlan.getMeals() == null) return new BodyKey(true, null);
+
+            List<Long> mealIds = new ArrayList<>(mealPlan.getMeals().size());
+            for (Meal meal : mealPlan.getMeals()) {
+                if (meal.getId() == null) return null;
+                mealIds.add(meal.getId());
+            }
+            return new BodyKey(true, mealIds);
+        }
+    }
 }
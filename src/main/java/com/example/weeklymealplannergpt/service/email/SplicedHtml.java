@@ -0,0 +1,111 @@
+package com.example.weeklymealplannergpt.service.email;
+
+import jakarta.activation.DataSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Færdigrenderet HTML, delt op omkring modtager-felter og gemt som UTF-8 bytes.
+ * <p>
+ *      Den fælles del af mailen renderes og encodes én gang. Pr. modtager encodes kun felterne, og
+ *      {@link #dataSource} streamer stykkerne efter hinanden ind i MIME-bodyen uden at samle dem i én
+ *      {@code String}. Immutable og trådsikker.
+ * </p>
+ */
+final class SplicedHtml {
+
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+
+    // literals har altid én mere end slots: literal, slot, literal, ..., literal
+    private final byte[][] literals;
+    private final String[] slots;
+
+    private SplicedHtml(byte[][] literals, String[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+    }
+
+    /**
+     * @param markers markør i den renderede HTML -> navnet på feltet den skal erstattes af
+     */
+    static SplicedHtml split(String html, Map<String, String> markers) {
+        List<byte[]> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+
+        int position = 0;
+        while (true) {
+            int next = -1;
+            String marker = null;
+            for (String candidate : markers.keySet()) {
+                int index = html.indexOf(candidate, position);
+                if (index >= 0 && (next < 0 || index < next)) {
+                    next = index;
+                    marker = candidate;
+                }
+            }
+            if (marker == null) break;
+
+            literals.add(html.substring(position, next).getBytes(StandardCharsets.UTF_8));
+            slots.add(markers.get(marker));
+            position = next + marker.length();
+        }
+        literals.add(html.substring(position).getBytes(StandardCharsets.UTF_8));
+
+        return new SplicedHtml(literals.toArray(byte[][]::new), slots.toArray(String[]::new));
+    }
+
+    /**
+     * @param values feltnavn -> allerede HTML-escapet værdi; manglende felter bliver tomme
+     */
+    DataSource dataSource(Map<String, String> values) {
+        byte[][] resolved = new byte[slots.length][];
+        for (int i = 0; i < slots.length; i++) {
+            String value = values.get(slots[i]);
+            resolved[i] = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        }
+        return new SplicedDataSource(resolved);
+    }
+
+    private final class SplicedDataSource implements DataSource {
+
+        private final byte[][] resolved;
+
+        private SplicedDataSource(byte[][] resolved) {
+            this.resolved = resolved;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            List<InputStream> parts = new ArrayList<>(literals.length + resolved.length);
+            for (int i = 0; i < resolved.length; i++) {
+                parts.add(new ByteArrayInputStream(literals[i]));
+                parts.add(new ByteArrayInputStream(resolved[i]));
+            }
+            parts.add(new ByteArrayInputStream(literals[resolved.length]));
+            return new SequenceInputStream(Collections.enumeration(parts));
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new UnsupportedOperationException("Read-only data source");
+        }
+
+        @Override
+        public String getContentType() {
+            return CONTENT_TYPE;
+        }
+
+        @Override
+        public String getName() {
+            return "meal-plan.html";
+        }
+    }
+}
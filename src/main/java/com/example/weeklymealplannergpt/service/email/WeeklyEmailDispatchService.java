@@ -0,0 +1,9 @@
+package com.example.weeklymealplannergpt.service.email;
+
+import com.example.weeklymealplannergpt.model.EmailDispatchRun;
+
+import java.time.LocalDate;
+
+public interface WeeklyEmailDispatchService {
+    EmailDispatchRun dispatch(LocalDate weekStartDate);
+}
@@ -0,0 +1,247 @@
+package com.example.weeklymealplannergpt.service.email;
+
+import com.example.weeklymealplannergpt.model.EmailDispatchRun;
+import com.example.weeklymealplannergpt.model.EmailDispatchStatus;
+import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
+import com.example.weeklymealplannergpt.repository.EmailDispatchRunRepository;
+import com.example.weeklymealplannergpt.repository.WeeklyMealPlanRepository;
+import com.example.weeklymealplannergpt.service.resilience.RateLimiter;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sender ugens madplan til alle consumers der har en plan for ugen.
+ * <p>
+ *      Planerne gennemløbes i keyset-sider af {@code email.dispatch.batch-size}. Hver side renderes parallelt
+ *      og sendes som ét batch over én SMTP-forbindelse ({@link JavaMailSender#send(MimeMessage...)}), begrænset
+ *      til {@code email.dispatch.messages-per-second}. Efter hvert batch gemmes cursor og tællere i
+ *      {@link EmailDispatchRun}, så en afbrudt kørsel fortsætter hvor den slap; i værste fald sendes det
+ *      sidste batch igen. Afviste modtagere tælles som fejlet, og udsendelsen fortsætter.
+ * </p>
+ * <p>
+ *      De planlagte kørsler afleveres til {@code emailDispatchExecutor}, så en udsendelse på flere timer ikke
+ *      holder scheduler-tråden fra outbox, jobs og de andre {@code @Scheduled} opgaver. Overtager en anden node
+ *      en kørsel ({@code claimToken}), afvises denne nodes næste skrivning, og den stopper.
+ * </p>
+ */
+@Service
+public class WeeklyEmailDispatchServiceImpl implements WeeklyEmailDispatchService, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(WeeklyEmailDispatchServiceImpl.class);
+
+    private final WeeklyMealPlanRepository planRepository;
+    private final EmailDispatchRunRepository runRepository;
+    private final EmailService emailService;
+    private final JavaMailSender javaMailSender;
+    private final RateLimiter rateLimiter;
+    private final ExecutorService renderExecutor;
+    private final TaskExecutor dispatchExecutor;
+
+    @Value("${email.dispatch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${email.dispatch.batch-size:50}")
+    private int batchSize = 50;
+
+    @Value("${email.dispatch.stale-after:PT10M}")
+    private Duration staleAfter = Duration.ofMinutes(10);
+
+    public WeeklyEmailDispatchServiceImpl(
+            WeeklyMealPlanRepository planRepository,
+            EmailDispatchRunRepository runRepository,
+            EmailService emailService,
+            JavaMailSender javaMailSender,
+            @Qualifier("emailDispatchExecutor") TaskExecutor dispatchExecutor,
+            @Value("${email.dispatch.messages-per-second:10}") double messagesPerSecond,
+            @Value("${email.dispatch.render-threads:4}") int renderThreads) {
+        this.planRepository = planRepository;
+        this.runRepository = runRepository;
+        this.emailService = emailService;
+        this.javaMailSender = javaMailSender;
+        this.dispatchExecutor = dispatchExecutor;
+        this.rateLimiter = new RateLimiter(messagesPerSecond);
+        this.renderExecutor = Executors.newFixedThreadPool(renderThreads,
+                Thread.ofPlatform().name("email-render-", 0).daemon().factory());
+    }
+
+    @Scheduled(cron = "${email.dispatch.cron:0 0 7 * * MON}")
+    public void dispatchCurrentWeek() {
+        if (!enabled) return;
+        submit(LocalDate.now().with(DayOfWeek.MONDAY));
+    }
+
+    /**
+     * Genoptager kørsler hvis node er stoppet midt i udsendelsen.
+     */
+    @Scheduled(fixedDelayString = "${email.dispatch.resume-interval:PT5M}")
+    public void resumeInterruptedRuns() {
+        if (!enabled) return;
+        runRepository.findByStatusAndHeartbeatAtBefore(EmailDispatchStatus.RUNNING, Instant.now().minus(staleAfter))
+                .forEach(run -> submit(run.getWeekStartDate()));
+    }
+
+    private void submit(LocalDate weekStartDate) {
+        try {
+            dispatchExecutor.execute(() -> dispatch(weekStartDate));
+        } catch (TaskRejectedException e) {
+            logger.warn("Email dispatch executor busy; weekly dispatch for {} is resumed later", weekStartDate);
+        }
+    }
+
+    /**
+     * Starter eller genoptager udsendelsen for ugen og kører den færdig på den kaldende tråd.
+     *
+     * @return kørslen; er den allerede færdig eller i gang på en anden node, returneres den uændret
+     */
+    @Override
+    public EmailDispatchRun dispatch(LocalDate weekStartDate) {
+        Optional<EmailDispatchRun> claimed = claim(weekStartDate);
+        if (claimed.isEmpty()) {
+            return runRepository.findByWeekStartDate(weekStartDate).orElseThrow();
+        }
+
+        EmailDispatchRun run = claimed.get();
+        long start = System.nanoTime();
+        logger.info("Weekly email dispatch for {} starting after plan {}", weekStartDate, run.getLastPlanId());
+
+        try {
+            List<WeeklyMealPlan> page;
+            do {
+                page = planRepository.findForDispatch(weekStartDate, run.getLastPlanId(), Limit.of(batchSize));
+                if (page.isEmpty()) break;
+
+                sendBatch(run, page);
+                run.setLastPlanId(page.getLast().getId());
+                run.setHeartbeatAt(Instant.now());
+                if (!saveProgress(run)) return run;
+                logger.info("Weekly email dispatch for {}: {} sent, {} failed after {} ms", weekStartDate,
+                        run.getSent(), run.getFailed(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } while (page.size() == batchSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Weekly email dispatch for {} interrupted after plan {}", weekStartDate, run.getLastPlanId());
+            return run;
+        }
+
+        run.setStatus(EmailDispatchStatus.COMPLETED);
+        run.setFinishedAt(Instant.now());
+        if (!saveProgress(run)) return run;
+        logger.info("Weekly email dispatch for {} completed: {} sent, {} failed in {} ms", weekStartDate,
+                run.getSent(), run.getFailed(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return run;
+    }
+
+    private Optional<EmailDispatchRun> claim(LocalDate weekStartDate) {
+        Instant now = Instant.now();
+        Optional<EmailDispatchRun> existing = runRepository.findByWeekStartDate(weekStartDate);
+
+        if (existing.isEmpty()) {
+            EmailDispatchRun run = new EmailDispatchRun();
+            run.setWeekStartDate(weekStartDate);
+            run.setStatus(EmailDispatchStatus.RUNNING);
+            run.setStartedAt(now);
+            run.setHeartbeatAt(now);
+            run.setClaimToken(UUID.randomUUID());
+            try {
+                return Optional.of(runRepository.saveAndFlush(run));
+            } catch (DataIntegrityViolationException e) {
+                logger.info("Weekly email dispatch for {} was started by another node", weekStartDate);
+                return Optional.empty();
+            }
+        }
+
+        EmailDispatchRun run = existing.get();
+        if (run.getStatus() == EmailDispatchStatus.COMPLETED) {
+            logger.debug("Weekly email dispatch for {} already completed", weekStartDate);
+            return Optional.empty();
+        }
+        if (runRepository.claimStale(run.getId(), UUID.randomUUID(), now, now.minus(staleAfter)) == 0) {
+            logger.info("Weekly email dispatch for {} is running on another node", weekStartDate);
+            return Optional.empty();
+        }
+        return runRepository.findById(run.getId());
+    }
+
+    /**
+     * @return false hvis en anden node har overtaget kørslen; så skal denne node stoppe
+     */
+    private boolean saveProgress(EmailDispatchRun run) {
+        int updated = runRepository.updateProgress(run.getId(), run.getClaimToken(), run.getStatus(),
+                run.getLastPlanId(), run.getSent(), run.getFailed(), run.getLastError(),
+                run.getHeartbeatAt(), run.getFinishedAt());
+        if (updated == 0) {
+            logger.warn("Weekly email dispatch for {} was taken over by another node; stopping after plan {}",
+                    run.getWeekStartDate(), run.getLastPlanId());
+            return false;
+        }
+        return true;
+    }
+
+    private void sendBatch(EmailDispatchRun run, List<WeeklyMealPlan> plans) throws InterruptedException {
+        List<Future<MimeMessage>> rendering = new ArrayList<>(plans.size());
+        for (WeeklyMealPlan plan : plans) {
+            rendering.add(renderExecutor.submit(() -> emailService.createMealPlanMessage(plan.getConsumer(), plan)));
+        }
+
+        List<MimeMessage> messages = new ArrayList<>(plans.size());
+        for (int i = 0; i < rendering.size(); i++) {
+            try {
+                messages.add(rendering.get(i).get());
+            } catch (ExecutionException e) {
+                String email = plans.get(i).getConsumer().getEmail();
+                logger.warn("Could not render meal plan email for {}", email, e.getCause());
+                fail(run, 1, "Render failed for " + email + ": " + e.getCause().getMessage());
+            }
+        }
+        if (messages.isEmpty()) return;
+
+        rateLimiter.acquire(messages.size());
+        try {
+            javaMailSender.send(messages.toArray(MimeMessage[]::new));
+            run.setSent(run.getSent() + messages.size());
+        } catch (MailSendException e) {
+            int failed = e.getFailedMessages().isEmpty() ? messages.size() : e.getFailedMessages().size();
+            logger.warn("{} of {} meal plan emails were rejected: {}", failed, messages.size(), e.getMessage());
+            run.setSent(run.getSent() + messages.size() - failed);
+            fail(run, failed, e.getMessage());
+        }
+    }
+
+    private void fail(EmailDispatchRun run, int count, String error) {
+        run.setFailed(run.getFailed() + count);
+        if (error != null) {
+            run.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        renderExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.weeklymealplannergpt.service.job;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.MealPlanJob;
+
+import java.util.UUID;
+
+public interface MealPlanJobService {
+    MealPlanJob enqueue(Consumer consumer, int weeks);
+    MealPlanJob getJob(UUID jobId, UUID consumerId);
+    void runJob(UUID jobId);
+    void dispatchPendingJobs();
+}
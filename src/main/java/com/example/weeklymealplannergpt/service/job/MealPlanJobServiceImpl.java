@@ -0,0 +1,134 @@
+package com.example.weeklymealplannergpt.service.job;
+
+import com.example.weeklymealplannergpt.dto.MealPlanResponse;
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.MealPlanJob;
+import com.example.weeklymealplannergpt.model.MealPlanJobStatus;
+import com.example.weeklymealplannergpt.repository.MealPlanJobRepository;
+import com.example.weeklymealplannergpt.service.consumer.ConsumerService;
+import com.example.weeklymealplannergpt.service.mealplan.MealPlanService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Kører madplan-genereringer som jobs i baggrunden.
+ * <p>
+ *      {@link #enqueue} gemmer et job i {@code meal_plan_job} og giver det til en begrænset worker-pulje.
+ *      Hvis puljen er fuld, eller noden genstarter, bliver jobbet liggende i tabellen og samles op af
+ *      {@link #dispatchPendingJobs}. {@code claim} sikrer at kun én worker kører et job ad gangen, og
+ *      {@code complete} gemmer kun resultatet hvis workerens {@code claimToken} stadig gælder.
+ * </p>
+ */
+@Service
+public class MealPlanJobServiceImpl implements MealPlanJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MealPlanJobServiceImpl.class);
+
+    private final MealPlanJobRepository jobRepository;
+    private final MealPlanService mealPlanService;
+    private final ConsumerService consumerService;
+    private final TaskExecutor jobExecutor;
+
+    @Value("${mealplan.jobs.stale-after:PT10M}")
+    private Duration staleAfter = Duration.ofMinutes(10);
+
+    @Value("${mealplan.jobs.dispatch-delay:PT15S}")
+    private Duration dispatchDelay = Duration.ofSeconds(15);
+
+    public MealPlanJobServiceImpl(
+            MealPlanJobRepository jobRepository,
+            MealPlanService mealPlanService,
+            ConsumerService consumerService,
+            @Qualifier("mealPlanJobExecutor") TaskExecutor jobExecutor) {
+        this.jobRepository = jobRepository;
+        this.mealPlanService = mealPlanService;
+        this.consumerService = consumerService;
+        this.jobExecutor = jobExecutor;
+    }
+
+    public MealPlanJob enqueue(Consumer consumer, int weeks) {
+        MealPlanJob job = new MealPlanJob();
+        job.setConsumerId(consumer.getId());
+        job.setWeeks(weeks);
+        job.setStatus(MealPlanJobStatus.QUEUED);
+        job.setCreatedAt(Instant.now());
+
+        MealPlanJob saved = jobRepository.save(job);
+        logger.info("Queued {}-week meal plan job {} for consumer: {}", weeks, saved.getId(), consumer.getId());
+        submit(saved.getId());
+        return saved;
+    }
+
+    public MealPlanJob getJob(UUID jobId, UUID consumerId) {
+        return jobRepository.findByIdAndConsumerId(jobId, consumerId)
+                .orElseThrow(() -> new IllegalArgumentException("Meal plan job not found"));
+    }
+
+    public void runJob(UUID jobId) {
+        UUID claimToken = UUID.randomUUID();
+        if (jobRepository.claim(jobId, claimToken, Instant.now()) == 0) {
+            logger.debug("Job {} already claimed by another worker", jobId);
+            return;
+        }
+
+        MealPlanJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalStateException("Claimed job disappeared: " + jobId));
+
+        try {
+            Consumer consumer = consumerService.findById(job.getConsumerId()).orElseThrow();
+            MealPlanResponse response = job.getWeeks() == 1
+                    ? mealPlanService.generateWeeklyMealPlan(consumer)
+                    : mealPlanService.generateMonthlyMealPlan(consumer);
+
+            job.setStatus(MealPlanJobStatus.COMPLETED);
+            job.setMealPlanId(response.getMealPlan().getId());
+            job.setMessage(response.getMessage());
+            logger.info("Job {} completed with meal plan {}", jobId, job.getMealPlanId());
+        } catch (Exception e) {
+            logger.error("Job {} failed", jobId, e);
+            job.setStatus(MealPlanJobStatus.FAILED);
+            job.setError("Failed to generate meal plan. Please try again later.");
+        }
+
+        job.setFinishedAt(Instant.now());
+        int updated = jobRepository.complete(jobId, claimToken, job.getStatus(), job.getMealPlanId(),
+                job.getMessage(), job.getError(), job.getFinishedAt());
+        if (updated == 0) {
+            logger.warn("Job {} was requeued and claimed by another worker; discarding this result", jobId);
+        }
+    }
+
+    /**
+     * Opsamler jobs der ikke blev startet med det samme: afviste submits, jobs fra før en genstart
+     * og jobs hvis worker døde midt i kørslen.
+     */
+    @Scheduled(fixedDelayString = "${mealplan.jobs.dispatch-interval:PT15S}")
+    public void dispatchPendingJobs() {
+        int requeued = jobRepository.requeueStale(Instant.now().minus(staleAfter));
+        if (requeued > 0) {
+            logger.warn("Requeued {} stale meal plan jobs", requeued);
+        }
+
+        jobRepository.findTop50ByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(
+                        MealPlanJobStatus.QUEUED, Instant.now().minus(dispatchDelay))
+                .forEach(job -> submit(job.getId()));
+    }
+
+    private void submit(UUID jobId) {
+        try {
+            jobExecutor.execute(() -> runJob(jobId));
+        } catch (TaskRejectedException e) {
+            logger.warn("Job executor saturated; job {} stays queued", jobId);
+        }
+    }
+}
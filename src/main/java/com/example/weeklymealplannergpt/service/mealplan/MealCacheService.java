@@ -1,9 +1,14 @@
 package com.example.weeklymealplannergpt.service.mealplan;
 
 import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.service.cache.CacheStats;
+
+import java.util.Collection;
 
 public interface MealCacheService {
     void initCache();
     Meal getMealByName(String name);
     void addToCache(Meal meal);
+    void evict(Collection<String> keys);
+    CacheStats getStats();
 }
@@ -2,53 +2,179 @@ package com.example.weeklymealplannergpt.service.mealplan;
 
 import com.example.weeklymealplannergpt.model.Meal;
 import com.example.weeklymealplannergpt.repository.MealRepository;
-import com.example.weeklymealplannergpt.service.openai.OpenAIService;
-import jakarta.annotation.PostConstruct;
+import com.example.weeklymealplannergpt.service.cache.CacheStats;
+import com.example.weeklymealplannergpt.service.cache.ConcurrentLruCache;
+import com.example.weeklymealplannergpt.service.cache.SharedCacheTier;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * LRU-cache af meals, slået op på {@link Meal#normalizeName}.
+ * <p>
+ *      Med {@code meal.cache.shared.type} sat ligger et {@link SharedCacheTier} bag den lokale cache
+ *      (near-cache), så en meal som én instans har slået op eller oprettet også rammer på de andre.
+ *      Når en instans lægger en ny eller ændret meal i cachen, sendes en invalidering på
+ *      {@code meal.cache.shared.channel}, og de andre instanser smider deres lokale kopi.
+ *      Fejl i det delte lag logges og behandles som en miss.
+ * </p>
+ * <p>
+ *      Cachen varmes op i baggrunden, når applikationen er klar, med de senest og oftest brugte meals
+ *      i sider af {@code meal.cache.warm-up.page-size}, højst så mange som cachen kan rumme. Opstarten
+ *      venter altså ikke på hele meal-tabellen, og kald der kommer før warm-up er færdig, falder blot
+ *      igennem til databasen. Fremdrift logges pr. side og kan ses i {@code meal.cache.warmup.*} metrics.
+ * </p>
+ */
 @Service
-public class MealCacheServiceImpl implements MealCacheService {
+public class MealCacheServiceImpl implements MealCacheService, DisposableBean {
 
     private static final Logger logger = LoggerFactory.getLogger(MealCacheServiceImpl.class);
-    private final Map<String, Meal> mealCache = new LinkedHashMap<>();
-
-    private final MealRepository mealRepository;
 
     @Getter
     private static final int MAX_CACHE_SIZE = 1000;
 
-    public MealCacheServiceImpl(MealRepository mealRepository) {
+    private final ConcurrentLruCache<String, Meal> mealCache = new ConcurrentLruCache<>(MAX_CACHE_SIZE,
+            (key, meal) -> logger.warn("Meal cache exceeded max size. Evicted {}", key));
+
+    private static final String SHARED_KEY_PREFIX = "meal:";
+    private static final String INVALIDATE_ALL = "*";
+
+    private final MealRepository mealRepository;
+    private final SharedCacheTier sharedTier;
+    private final ObjectMapper objectMapper;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final String invalidationChannel;
+    private final Duration sharedTtl;
+    private final Counter sharedHits;
+    private final Counter sharedMisses;
+    private final Counter sharedErrors;
+    private final ExecutorService warmUpExecutor =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("meal-cache-warm-up").factory());
+    private final AtomicInteger warmedUp = new AtomicInteger();
+    private final Timer warmUpTimer;
+
+    @Value("${meal.cache.warm-up.enabled:true}")
+    private boolean warmUpEnabled = true;
+
+    @Value("${meal.cache.warm-up.max-meals:1000}")
+    private int warmUpMaxMeals = MAX_CACHE_SIZE;
+
+    @Value("${meal.cache.warm-up.page-size:200}")
+    private int warmUpPageSize = 200;
+
+    public MealCacheServiceImpl(MealRepository mealRepository, MeterRegistry meterRegistry,
+                                Optional<SharedCacheTier> sharedTier, ObjectMapper objectMapper,
+                                @Value("${meal.cache.shared.channel:meal-cache-invalidation}") String invalidationChannel,
+                                @Value("${meal.cache.shared.ttl:PT1H}") Duration sharedTtl) {
         this.mealRepository = mealRepository;
+        this.sharedTier = sharedTier.orElse(null);
+        this.objectMapper = objectMapper;
+        this.invalidationChannel = invalidationChannel;
+        this.sharedTtl = sharedTtl;
+        this.sharedHits = sharedCounter(meterRegistry, "hit");
+        this.sharedMisses = sharedCounter(meterRegistry, "miss");
+        this.sharedErrors = sharedCounter(meterRegistry, "error");
+        if (this.sharedTier != null) {
+            this.sharedTier.subscribe(invalidationChannel, this::onInvalidation);
+        }
+        Gauge.builder("meal.cache.warmup.loaded", warmedUp, AtomicInteger::get)
+                .description("Meals loaded into the meal cache by the latest warm-up")
+                .register(meterRegistry);
+        this.warmUpTimer = Timer.builder("meal.cache.warmup.duration").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpInBackground() {
+        if (!warmUpEnabled) {
+            logger.info("Meal cache warm-up is disabled.");
+            return;
+        }
+        warmUpExecutor.execute(() -> {
+            try {
+                initCache();
+            } catch (RuntimeException e) {
+                logger.error("Meal cache warm-up stopped after {} meals", warmedUp.get(), e);
+            }
+        });
     }
 
-    @PostConstruct
+    /**
+     * Indlæser de senest og oftest brugte meals side for side, til {@code meal.cache.warm-up.max-meals}
+     * eller cachens maks størrelse er nået. Ingredienser hentes i batches, se {@link Meal#getIngredients}.
+     */
+    @Override
     public void initCache(){
-        mealRepository.findAll().forEach(this::addToCache);
-        logger.info("Meal cache initialized with {} items.", mealCache.size());
+        long start = System.nanoTime();
+        int target = Math.min(warmUpMaxMeals, MAX_CACHE_SIZE);
+        int pageSize = Math.max(1, Math.min(warmUpPageSize, target));
+        int loaded = 0;
+        warmedUp.set(0);
+
+        for (int page = 0; loaded < target; page++) {
+            List<Long> ids = mealRepository.findIdsByRecentUse(PageRequest.of(page, pageSize));
+            if (ids.isEmpty()) break;
+
+            List<Long> wanted = ids.subList(0, Math.min(ids.size(), target - loaded));
+            for (Meal meal : mealRepository.findAllById(wanted)) {
+                mealCache.put(Meal.normalizeName(meal.getMealName()), meal);
+            }
+            loaded += wanted.size();
+            warmedUp.set(loaded);
+            logger.info("Meal cache warm-up: {}/{} meals after {} ms",
+                    loaded, target, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            if (ids.size() < pageSize) break;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        warmUpTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        logger.info("Meal cache initialized with {} items in {} ms.", mealCache.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
     }
 
     public Meal getMealByName(String name){
         if (name == null) return null;
-        return mealCache.get(name.toLowerCase());
+        String key = Meal.normalizeName(name);
+        Meal meal = mealCache.get(key);
+        if (meal != null || sharedTier == null) return meal;
+
+        meal = readShared(key);
+        if (meal != null) {
+            mealCache.put(key, meal);
+        }
+        return meal;
     }
 
     /**
      * Tilføjer {@code Meal} til cache.
      * <p>
      *      Hvis {@code Meal} er null eller ikke har noget navn, bliver det ignoreret.
-     *      Konvereter meal navn til små bogstaver for case-insenstive søgning.
-     *      Fjerner det ældste meal, hvis cachen overskrider maks antal meals (forhindrer memory leaks).
-     *      Holder cachen sikker, begrænset i størrelse og muliggør stadig hurtig (O(1)) opslag.
+     *      Nøglen er {@link Meal#normalizeName}, samme som {@code normalized_name} i databasen.
+     *      Fjerner det mindst nyligt brugte meal, hvis cachen overskrider maks antal meals (forhindrer memory leaks).
+     *      Cachen er trådsikker, så samtidige generate-kald kan læse og skrive uden at korrumpere den.
+     *      Er meal'en ny for denne instans, skrives den også til det delte lag, og de andre instanser invalideres.
      * </p>
      *
      * @param meal (Meal der skal tilføjes til cache)
@@ -57,13 +183,97 @@ public class MealCacheServiceImpl implements MealCacheService {
     public void addToCache(Meal meal){
         if (meal == null || meal.getMealName() == null) return;
 
-        if (mealCache.size() >= MAX_CACHE_SIZE) {
-            String firstKey = mealCache.keySet().iterator().next();
-            mealCache.remove(firstKey);
-            logger.warn("Meal cache exceeded max size. Evicted {}", firstKey);
+        String key = Meal.normalizeName(meal.getMealName());
+        Meal previous = mealCache.peek(key);
+        mealCache.put(key, meal);
+        logger.debug("Added meal '{}' to cache.", meal.getMealName());
+
+        // Samme række som før: intet nyt at dele, og de andre instansers kopier er stadig gyldige
+        if (sharedTier == null || (previous != null && Objects.equals(previous.getId(), meal.getId()))) return;
+        writeShared(key, meal);
+        publishInvalidation(key);
+    }
+
+    /**
+     * Fjerner meals fra den lokale cache og det delte lag og beder de andre instanser gøre det samme.
+     * Bruges når rækker er omdøbt eller slettet uden om cachen, fx af {@link MealNameMigrationService}.
+     */
+    @Override
+    public void evict(Collection<String> keys) {
+        for (String key : keys) {
+            mealCache.remove(key);
+            evictShared(key);
+            publishInvalidation(key);
+        }
+    }
+
+    public CacheStats getStats() {
+        return mealCache.stats();
+    }
+
+    private Meal readShared(String key) {
+        try {
+            String json = sharedTier.get(SHARED_KEY_PREFIX + key);
+            if (json == null) {
+                sharedMisses.increment();
+                return null;
+            }
+            sharedHits.increment();
+            return objectMapper.readValue(json, Meal.class);
+        } catch (JsonProcessingException | RuntimeException e) {
+            sharedErrors.increment();
+            logger.warn("Could not read meal '{}' from shared cache: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeShared(String key, Meal meal) {
+        try {
+            sharedTier.put(SHARED_KEY_PREFIX + key, objectMapper.writeValueAsString(meal), sharedTtl);
+        } catch (JsonProcessingException | RuntimeException e) {
+            sharedErrors.increment();
+            logger.warn("Could not write meal '{}' to shared cache: {}", key, e.getMessage());
+        }
+    }
+
+    private void evictShared(String key) {
+        if (sharedTier == null) return;
+        try {
+            sharedTier.evict(SHARED_KEY_PREFIX + key);
+        } catch (RuntimeException e) {
+            sharedErrors.increment();
+            logger.warn("Could not evict meal '{}' from shared cache: {}", key, e.getMessage());
+        }
+    }
+
+    private void publishInvalidation(String key) {
+        if (sharedTier == null) return;
+        try {
+            sharedTier.publish(invalidationChannel, nodeId + "|" + key);
+        } catch (RuntimeException e) {
+            sharedErrors.increment();
+            logger.warn("Could not publish meal cache invalidation for '{}': {}", key, e.getMessage());
+        }
+    }
+
+    private void onInvalidation(String message) {
+        int separator = message.indexOf('|');
+        if (separator < 0 || message.substring(0, separator).equals(nodeId)) return;
+
+        String key = message.substring(separator + 1);
+        if (INVALIDATE_ALL.equals(key)) {
+            mealCache.clear();
+        } else {
+            mealCache.remove(key);
         }
+    }
+
+    private static Counter sharedCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("meal.cache.shared.requests").tag("result", result).register(meterRegistry);
+    }
 
-        mealCache.put(meal.getMealName().toLowerCase(), meal);
-        logger.info("Added meal '{}' to cache.", meal.getMealName());
+    @Override
+    public void destroy() {
+        warmUpExecutor.shutdownNow();
     }
 }
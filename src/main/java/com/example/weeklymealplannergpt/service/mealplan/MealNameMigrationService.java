@@ -0,0 +1,9 @@
+package com.example.weeklymealplannergpt.service.mealplan;
+
+import com.example.weeklymealplannergpt.model.DataMigration;
+
+import java.util.Optional;
+
+public interface MealNameMigrationService {
+    Optional<DataMigration> migrate();
+}
@@ -0,0 +1,177 @@
+package com.example.weeklymealplannergpt.service.mealplan;
+
+import com.example.weeklymealplannergpt.model.DataMigration;
+import com.example.weeklymealplannergpt.repository.DataMigrationRepository;
+import com.example.weeklymealplannergpt.repository.MealRepository;
+import com.example.weeklymealplannergpt.repository.MealRepositoryCustom.CanonicalizedBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engangs-migrering af gemte meal-navne til {@link com.example.weeklymealplannergpt.model.MealNameCanonicalizer}.
+ * <p>
+ *      Kører i baggrunden når applikationen er klar, så opstarten hverken venter på eller kan vælte på den.
+ *      En række i {@code data_migration} sikrer at kun én node kører den, og at den kun kører én gang: når den
+ *      er færdig, koster senere opstarter ét opslag. Meals behandles i keyset-batches af
+ *      {@code meal.migration.canonicalize-names.batch-size}, hver i sin egen transaktion, og cursoren gemmes
+ *      efter hver batch. Fejler en batch, logges det, migreringen slippes, og næste opstart fortsætter fra cursoren.
+ *      Cache-nøgler for omdøbte og sammenlagte meals fjernes efter hver batch.
+ * </p>
+ */
+@Service
+public class MealNameMigrationServiceImpl implements MealNameMigrationService, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MealNameMigrationServiceImpl.class);
+
+    static final String MIGRATION_NAME = "meal-name-canonicalization";
+
+    private final DataMigrationRepository migrationRepository;
+    private final MealRepository mealRepository;
+    private final MealCacheService mealCacheService;
+    private final ExecutorService migrationExecutor =
+            Executors.newSingleThreadExecutor(Thread.ofVirtual().name("meal-name-migration").factory());
+
+    @Value("${meal.migration.canonicalize-names.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${meal.migration.canonicalize-names.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${meal.migration.canonicalize-names.stale-after:PT10M}")
+    private Duration staleAfter = Duration.ofMinutes(10);
+
+    public MealNameMigrationServiceImpl(DataMigrationRepository migrationRepository, MealRepository mealRepository,
+                                        MealCacheService mealCacheService) {
+        this.migrationRepository = migrationRepository;
+        this.mealRepository = mealRepository;
+        this.mealCacheService = mealCacheService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInBackground() {
+        if (!enabled) {
+            logger.info("Meal name migration is disabled.");
+            return;
+        }
+        migrationExecutor.execute(this::migrate);
+    }
+
+    /**
+     * Kører migreringen færdig på den kaldende tråd, hvis den ikke allerede er færdig eller i gang på en anden node.
+     *
+     * @return migreringen som den står efter kørslen, eller tom hvis denne node ikke fik lov at køre den
+     */
+    @Override
+    public Optional<DataMigration> migrate() {
+        Optional<DataMigration> claimed;
+        try {
+            claimed = claim();
+        } catch (RuntimeException e) {
+            logger.error("Could not claim meal name migration; retrying on next start", e);
+            return Optional.empty();
+        }
+        if (claimed.isEmpty()) return Optional.empty();
+
+        DataMigration migration = claimed.get();
+        long start = System.nanoTime();
+        logger.info("Meal name migration starting after meal {}", migration.getLastId());
+
+        try {
+            CanonicalizedBatch batch;
+            do {
+                batch = mealRepository.canonicalizeNames(migration.getLastId(), batchSize);
+                if (!batch.affectedKeys().isEmpty()) {
+                    mealCacheService.evict(batch.affectedKeys());
+                }
+
+                Instant now = Instant.now();
+                migration.setLastId(batch.lastId());
+                migration.setProcessed(migration.getProcessed() + batch.rows());
+                migration.setHeartbeatAt(now);
+                if (batch.rows() < batchSize) {
+                    migration.setFinishedAt(now);
+                }
+                if (!saveProgress(migration)) return Optional.of(migration);
+            } while (migration.getFinishedAt() == null);
+        } catch (RuntimeException e) {
+            logger.error("Meal name migration failed after meal {}; retrying on next start", migration.getLastId(), e);
+            release(migration);
+            return Optional.of(migration);
+        }
+
+        logger.info("Meal name migration completed: {} meals in {} ms", migration.getProcessed(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return Optional.of(migration);
+    }
+
+    private Optional<DataMigration> claim() {
+        Instant now = Instant.now();
+        Optional<DataMigration> existing = migrationRepository.findByName(MIGRATION_NAME);
+
+        if (existing.isEmpty()) {
+            DataMigration migration = new DataMigration();
+            migration.setName(MIGRATION_NAME);
+            migration.setClaimToken(UUID.randomUUID());
+            migration.setStartedAt(now);
+            migration.setHeartbeatAt(now);
+            try {
+                return Optional.of(migrationRepository.saveAndFlush(migration));
+            } catch (DataIntegrityViolationException e) {
+                logger.info("Meal name migration was started by another node");
+                return Optional.empty();
+            }
+        }
+
+        DataMigration migration = existing.get();
+        if (migration.getFinishedAt() != null) {
+            logger.debug("Meal name migration already completed");
+            return Optional.empty();
+        }
+        if (migrationRepository.claim(migration.getId(), UUID.randomUUID(), now, now.minus(staleAfter)) == 0) {
+            logger.info("Meal name migration is running on another node");
+            return Optional.empty();
+        }
+        return migrationRepository.findById(migration.getId());
+    }
+
+    /**
+     * @return false hvis en anden node har overtaget migreringen; så skal denne node stoppe
+     */
+    private boolean saveProgress(DataMigration migration) {
+        int updated = migrationRepository.updateProgress(migration.getId(), migration.getClaimToken(),
+                migration.getLastId(), migration.getProcessed(), migration.getHeartbeatAt(), migration.getFinishedAt());
+        if (updated == 0) {
+            logger.warn("Meal name migration was taken over by another node; stopping after meal {}",
+                    migration.getLastId());
+            return false;
+        }
+        return true;
+    }
+
+    private void release(DataMigration migration) {
+        try {
+            migrationRepository.release(migration.getId(), migration.getClaimToken());
+        } catch (RuntimeException e) {
+            logger.warn("Could not release meal name migration; another node takes over after {}", staleAfter, e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        migrationExecutor.shutdownNow();
+    }
+}
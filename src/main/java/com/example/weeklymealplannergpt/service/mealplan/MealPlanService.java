@@ -1,7 +1,9 @@
 package com.example.weeklymealplannergpt.service.mealplan;
 
 import com.example.weeklymealplannergpt.dto.MealPlanResponse;
+import com.example.weeklymealplannergpt.dto.PlanHistoryPage;
 import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.EmailOutbox;
 import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
 
 import java.util.List;
@@ -10,7 +12,10 @@ import java.util.UUID;
 public interface MealPlanService {
     MealPlanResponse generateWeeklyMealPlan(Consumer consumer);
     MealPlanResponse generateMonthlyMealPlan(Consumer consumer);
+    void streamMealPlan(Consumer consumer, int weeks, MealPlanStreamListener listener);
     WeeklyMealPlan getCurrentWeekPlan(UUID consumerId);
     List<WeeklyMealPlan> getPlanHistory(UUID consumerId);
-    void sendMealPlanByEmail(UUID consumerId, Long mealPlanId);
+    PlanHistoryPage getPlanHistoryPage(UUID consumerId, String cursor, int size);
+    WeeklyMealPlan getPlan(UUID consumerId, Long mealPlanId);
+    EmailOutbox sendMealPlanByEmail(UUID consumerId, Long mealPlanId);
 }
@@ -1,39 +1,63 @@
 package com.example.weeklymealplannergpt.service.mealplan;
 
 import com.example.weeklymealplannergpt.dto.MealPlanResponse;
+import com.example.weeklymealplannergpt.dto.MealSummary;
+import com.example.weeklymealplannergpt.dto.PlanHistoryPage;
+import com.example.weeklymealplannergpt.dto.PlanSummary;
 import com.example.weeklymealplannergpt.exception.MealGenerationException;
 import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.EmailOutbox;
 import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.model.MealNameCanonicalizer;
 import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
 import com.example.weeklymealplannergpt.repository.MealRepository;
 import com.example.weeklymealplannergpt.repository.WeeklyMealPlanRepository;
 import com.example.weeklymealplannergpt.service.consumer.ConsumerService;
-import com.example.weeklymealplannergpt.service.email.EmailService;
+import com.example.weeklymealplannergpt.service.email.EmailOutboxService;
+import com.example.weeklymealplannergpt.service.openai.MealPlanGeneration;
 import com.example.weeklymealplannergpt.service.openai.OpenAIService;
-import jakarta.mail.MessagingException;
+import com.example.weeklymealplannergpt.service.pool.MealPlanPoolService;
+import com.example.weeklymealplannergpt.service.pool.PooledPlanClaim;
+import com.example.weeklymealplannergpt.service.search.MealSearchService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoField;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @Service
 public class MealPlanServiceImpl implements MealPlanService {
     
     private static final Logger logger = LoggerFactory.getLogger(MealPlanServiceImpl.class);
+    private static final int MAX_PERSIST_ATTEMPTS = 3;
+    private static final int MAX_HISTORY_PAGE_SIZE = 50;
 
     private final OpenAIService openAIService;
     private final ConsumerService consumerService;
     private final WeeklyMealPlanRepository weeklyMealPlanRepository;
     private final MealRepository mealRepository;
     private final MealCacheService mealCacheService;
-    private final EmailService emailService;
+    private final MealSearchService mealSearchService;
+    private final EmailOutboxService emailOutboxService;
+    private final MealPlanPoolService mealPlanPoolService;
+    private final TransactionTemplate transactionTemplate;
 
     public MealPlanServiceImpl(
             OpenAIService openAIService,
@@ -41,30 +65,38 @@ public class MealPlanServiceImpl implements MealPlanService {
             WeeklyMealPlanRepository weeklyMealPlanRepository,
             MealRepository mealRepository,
             MealCacheService mealCacheService,
-            EmailService emailService) {
+            MealSearchService mealSearchService,
+            EmailOutboxService emailOutboxService,
+            MealPlanPoolService mealPlanPoolService,
+            PlatformTransactionManager transactionManager) {
         this.openAIService = openAIService;
         this.consumerService = consumerService;
         this.weeklyMealPlanRepository = weeklyMealPlanRepository;
         this.mealRepository = mealRepository;
         this.mealCacheService = mealCacheService;
-        this.emailService = emailService;
+        this.mealSearchService = mealSearchService;
+        this.emailOutboxService = emailOutboxService;
+        this.mealPlanPoolService = mealPlanPoolService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     private LocalDate getWeekStartDate(){
         return LocalDate.now().with(java.time.DayOfWeek.MONDAY);
     }
 
-    @Transactional
     public MealPlanResponse generateWeeklyMealPlan(Consumer consumer) {
         return generateMealPlan(consumer, 1);
     }
     
-    @Transactional
     public MealPlanResponse generateMonthlyMealPlan(Consumer consumer) {
         return generateMealPlan(consumer, 4);
     }
     
-    @Transactional
+    /**
+     * OpenAI-kaldet kører uden transaktion, så der ikke holdes en DB-forbindelse under netværkskaldet.
+     * Kun gemning af meals og plan sker i én kort transaktion, og nye meals caches først efter commit.
+     * Har {@link MealPlanPoolService} en forud-genereret plan til brugerens profil, bruges den i stedet for OpenAI.
+     */
     protected MealPlanResponse generateMealPlan(Consumer consumer, int weeks) {
         logger.info("Generating {}-week meal plan for consumer: {}", weeks, consumer.getId());
         
@@ -74,53 +106,174 @@ public class MealPlanServiceImpl implements MealPlanService {
         }
         
         try {
-            List<Meal> generatedMeals = openAIService.generateMealPlan(consumer, weeks);
-            String message = openAIService.getLastGeneratedMessage();
-            logger.info("Generated {} meals", generatedMeals.size());
+            Optional<PooledPlanClaim> pooled = mealPlanPoolService.claim(consumer, weeks);
+            MealPlanGeneration generation = pooled.isPresent()
+                    ? pooled.get().generation()
+                    : openAIService.generateMealPlan(consumer, weeks);
+            List<Meal> generatedMeals = generation.meals();
+            logger.info("Generated {} meals in {} ms using {} tokens",
+                    generatedMeals.size(), generation.latency().toMillis(), generation.usage().totalTokens());
             
-            if (generatedMeals == null || generatedMeals.isEmpty()) {
+            if (generatedMeals.isEmpty()) {
                 logger.warn("No meals generated for consumer: {}", consumer.getId());
                 throw new MealGenerationException("Could not generate meals. Please try again.");
             }
 
+            List<Meal> loadedMeals = new ArrayList<>();
+            MealPlanResponse response;
+            try {
+                response = inPersistenceTransaction(() -> {
+                    loadedMeals.clear();
+                    List<Meal> finalMeals = resolveMeals(generatedMeals, loadedMeals);
+                    return savePlan(consumer, weeks, finalMeals, generation.message());
+                });
+            } catch (RuntimeException e) {
+                // Udleveringen fra puljen er committed for sig; uden gemt plan skal brugeren kunne få den igen
+                pooled.ifPresent(mealPlanPoolService::release);
+                throw e;
+            }
+
+            onMealsStored(loadedMeals);
+            return response;
+        } catch (MealGenerationException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Unexpected error generating meal plan for consumer: {}", consumer.getId(), e);
+            throw new MealGenerationException("Failed to generate meal plan", e);
+        }
+    }
+
+    /**
+     * Som {@link #generateMealPlan}, men hvert meal sendes til {@code listener} så snart OpenAI har
+     * genereret det og det er slået op i cachen eller gemt. Til sidst gemmes planen og sendes samlet.
+     */
+    public void streamMealPlan(Consumer consumer, int weeks, MealPlanStreamListener listener) {
+        logger.info("Streaming {}-week meal plan for consumer: {}", weeks, consumer.getId());
+
+        if(!consumerService.existsById(consumer.getId())) {
+            logger.error("Consumer does not exist: {}", consumer.getId());
+            throw new IllegalArgumentException("Consumer does not exist");
+        }
+
+        try {
             List<Meal> finalMeals = new ArrayList<>();
+            MealPlanGeneration generation = openAIService.streamMealPlan(consumer, weeks, generatedMeal -> {
+                List<Meal> loadedMeals = new ArrayList<>(1);
+                Meal meal = inPersistenceTransaction(() -> {
+                    loadedMeals.clear();
+                    return resolveMeals(List.of(generatedMeal), loadedMeals).get(0);
+                });
+                onMealsStored(loadedMeals);
+                finalMeals.add(meal);
+                listener.onMeal(finalMeals.size() - 1, meal);
+            });
 
-            for (Meal generatedMeal : generatedMeals) {
-                Meal existingMeal = mealCacheService.getMealByName(generatedMeal.getMealName());
-
-                if (existingMeal != null) {
-                    logger.debug("Using cached meal: {}", existingMeal.getMealName());
-                    finalMeals.add(existingMeal);
-                } else {
-                    logger.debug("Saving new meal to database: {}", generatedMeal.getMealName());
-                    Meal savedMeal = mealRepository.save(generatedMeal);
-                    mealCacheService.addToCache(savedMeal);
-                    finalMeals.add(savedMeal);
-                }
+            if (finalMeals.isEmpty()) {
+                logger.warn("No meals streamed for consumer: {}", consumer.getId());
+                throw new MealGenerationException("Could not generate meals. Please try again.");
             }
 
-            WeeklyMealPlan plan = new WeeklyMealPlan();
-            plan.setConsumer(consumer);
-            plan.setWeekStartDate(getWeekStartDate());
-            plan.setMeals(finalMeals);
-            
-            WeeklyMealPlan saved = weeklyMealPlanRepository.save(plan);
-            logger.info("Successfully saved meal plan with ID: {}", saved.getId());
-            
-            if (message == null || message.isEmpty()) {
-                message = String.format("Your %d-week meal plan with %d meals has been created successfully!", 
-                    weeks, finalMeals.size());
-            }
-            
-            return new MealPlanResponse(saved, message);
+            listener.onComplete(savePlan(consumer, weeks, finalMeals, generation.message()));
         } catch (MealGenerationException e) {
             throw e;
         } catch (Exception e) {
-            logger.error("Unexpected error generating meal plan for consumer: {}", consumer.getId(), e);
+            logger.error("Unexpected error streaming meal plan for consumer: {}", consumer.getId(), e);
             throw new MealGenerationException("Failed to generate meal plan", e);
         }
     }
 
+    /**
+     * Finder eller opretter alle meals i planen med et fast antal statements.
+     * <p>
+     *      Navne der ikke er i cachen slås op i én {@code IN} query; de resterende indsættes i én JDBC batch
+     *      (plus én batch for ingredienser). Meals der er hentet eller oprettet lægges i {@code loadedMeals},
+     *      så de kan caches når transaktionen er committed.
+     * </p>
+     */
+    private List<Meal> resolveMeals(List<Meal> generatedMeals, List<Meal> loadedMeals) {
+        Map<String, Meal> resolved = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+
+        for (Meal generatedMeal : generatedMeals) {
+            String key = Meal.normalizeName(generatedMeal.getMealName());
+            Meal cachedMeal = mealCacheService.getMealByName(generatedMeal.getMealName());
+            if (cachedMeal != null) {
+                resolved.put(key, cachedMeal);
+            } else if (key != null) {
+                missing.add(key);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (Meal existingMeal : mealRepository.findAllByNormalizedNameIn(missing)) {
+                resolved.put(existingMeal.getNormalizedName(), existingMeal);
+                loadedMeals.add(existingMeal);
+            }
+        }
+
+        List<Meal> newMeals = new ArrayList<>();
+        for (Meal generatedMeal : generatedMeals) {
+            String key = Meal.normalizeName(generatedMeal.getMealName());
+            if (!resolved.containsKey(key)) {
+                // Gem kun rettens navn; dag og uge følger af placeringen i planen
+                generatedMeal.setMealName(MealNameCanonicalizer.displayName(generatedMeal.getMealName()));
+                resolved.put(key, generatedMeal);
+                newMeals.add(generatedMeal);
+            }
+        }
+
+        if (!newMeals.isEmpty()) {
+            logger.debug("Inserting {} new meals", newMeals.size());
+            mealRepository.insertAll(newMeals);
+            loadedMeals.addAll(newMeals);
+        }
+
+        return generatedMeals.stream()
+                .map(meal -> resolved.get(Meal.normalizeName(meal.getMealName())))
+                .toList();
+    }
+
+    /**
+     * Kaldes efter commit med de meals, der er hentet eller oprettet, så cache og søgeindex kun ser
+     * meals der faktisk findes i databasen.
+     */
+    private void onMealsStored(List<Meal> meals) {
+        meals.forEach(mealCacheService::addToCache);
+        mealSearchService.index(meals);
+    }
+
+    /**
+     * Kører {@code action} i en transaktion. Hvis en anden generering har indsat samme meal imens,
+     * rulles der tilbage og prøves igen; anden gang findes mealet af {@code IN} query'en.
+     */
+    private <T> T inPersistenceTransaction(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (DuplicateKeyException e) {
+                if (attempt >= MAX_PERSIST_ATTEMPTS) throw e;
+                logger.info("Meal inserted concurrently, retrying persistence (attempt {})", attempt + 1);
+            }
+        }
+    }
+
+    private MealPlanResponse savePlan(Consumer consumer, int weeks, List<Meal> finalMeals, String message) {
+        WeeklyMealPlan plan = new WeeklyMealPlan();
+        plan.setConsumer(consumer);
+        plan.setWeekStartDate(getWeekStartDate());
+        plan.setMeals(finalMeals);
+
+        WeeklyMealPlan saved = weeklyMealPlanRepository.save(plan);
+        logger.info("Successfully saved meal plan with ID: {}", saved.getId());
+
+        if (message == null || message.isEmpty()) {
+            message = String.format("Your %d-week meal plan with %d meals has been created successfully!",
+                weeks, finalMeals.size());
+        }
+
+        return new MealPlanResponse(saved, message);
+    }
+
     public WeeklyMealPlan getCurrentWeekPlan(UUID consumerId) {
         logger.debug("Fetching current week plan for consumer: {}", consumerId);
         return weeklyMealPlanRepository.findByConsumerIdAndWeekStartDate(
@@ -132,23 +285,81 @@ public class MealPlanServiceImpl implements MealPlanService {
         return weeklyMealPlanRepository.findByConsumerIdOrderByWeekStartDateDesc(consumerId);
     }
     
+    /**
+     * Henter en side af historikken med to queries: plan-headers (keyset) og meal-navne for de planer.
+     * <p>
+     *      Cursoren er {@code <weekStartDate>_<id>} for sidste plan på forrige side. Der hentes én plan
+     *      ekstra for at vide, om der findes en næste side.
+     * </p>
+     */
+    @Transactional(readOnly = true)
+    public PlanHistoryPage getPlanHistoryPage(UUID consumerId, String cursor, int size) {
+        int pageSize = Math.clamp(size, 1, MAX_HISTORY_PAGE_SIZE);
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<WeeklyMealPlanRepository.PlanHeader> headers;
+        if (cursor == null || cursor.isBlank()) {
+            headers = weeklyMealPlanRepository.findHistoryHeaders(consumerId, limit);
+        } else {
+            String[] parts = cursor.split("_", 2);
+            try {
+                headers = weeklyMealPlanRepository.findHistoryHeadersAfter(
+                        consumerId, LocalDate.parse(parts[0]), Long.parseLong(parts[1]), limit);
+            } catch (DateTimeParseException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid history cursor");
+            }
+        }
+
+        boolean hasNext = headers.size() > pageSize;
+        if (hasNext) {
+            headers = headers.subList(0, pageSize);
+        }
+
+        Map<Long, List<MealSummary>> mealsByPlan = new HashMap<>();
+        if (!headers.isEmpty()) {
+            List<Long> planIds = headers.stream().map(WeeklyMealPlanRepository.PlanHeader::getId).toList();
+            for (WeeklyMealPlanRepository.PlanMealRow row : weeklyMealPlanRepository.findMealSummaries(planIds)) {
+                mealsByPlan.computeIfAbsent(row.getPlanId(), id -> new ArrayList<>())
+                        .add(new MealSummary(row.getMealName(), row.getImgUrl()));
+            }
+        }
+
+        List<PlanSummary> plans = headers.stream()
+                .map(header -> new PlanSummary(header.getId(), header.getWeekStartDate(),
+                        mealsByPlan.getOrDefault(header.getId(), List.of())))
+                .toList();
+
+        String nextCursor = null;
+        if (hasNext) {
+            PlanSummary last = plans.get(plans.size() - 1);
+            nextCursor = last.getWeekStartDate() + "_" + last.getId();
+        }
+        return new PlanHistoryPage(plans, nextCursor);
+    }
+
+    public WeeklyMealPlan getPlan(UUID consumerId, Long mealPlanId) {
+        WeeklyMealPlan mealPlan = weeklyMealPlanRepository.findById(mealPlanId)
+            .orElseThrow(() -> new IllegalArgumentException("Meal plan not found"));
+
+        if (!mealPlan.getConsumer().getId().equals(consumerId)) {
+            throw new IllegalArgumentException("Meal plan not found");
+        }
+        return mealPlan;
+    }
+
+    /**
+     * Lægger mailen i outboxen i samme transaktion som ejerskabstjekket og returnerer med det samme.
+     * Selve afsendelsen sker i baggrunden, se {@link EmailOutboxService}.
+     */
     @Transactional
-    public void sendMealPlanByEmail(UUID consumerId, Long mealPlanId) {
-        logger.info("Sending meal plan {} by email to consumer: {}", mealPlanId, consumerId);
-        
+    public EmailOutbox sendMealPlanByEmail(UUID consumerId, Long mealPlanId) {
         WeeklyMealPlan mealPlan = weeklyMealPlanRepository.findById(mealPlanId)
             .orElseThrow(() -> new IllegalArgumentException("Meal plan not found"));
             
         if (!mealPlan.getConsumer().getId().equals(consumerId)) {
             throw new IllegalArgumentException("Meal plan does not belong to consumer");
         }
-        
-        try {
-            emailService.sendMealPlan(mealPlan.getConsumer(), mealPlan);
-            logger.info("Successfully sent meal plan email");
-        } catch (MessagingException e) {
-            logger.error("Failed to send meal plan email", e);
-            throw new RuntimeException("Failed to send email", e);
-        }
+
+        return emailOutboxService.enqueueMealPlan(consumerId, mealPlanId);
     }
 }
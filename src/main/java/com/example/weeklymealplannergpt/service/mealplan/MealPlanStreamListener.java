@@ -0,0 +1,14 @@
+package com.example.weeklymealplannergpt.service.mealplan;
+
+import com.example.weeklymealplannergpt.dto.MealPlanResponse;
+import com.example.weeklymealplannergpt.model.Meal;
+
+/**
+ * Modtager en madplan løbende, mens den bliver genereret.
+ * {@link #onMeal} kaldes når et meal er genereret og enten fundet i cachen eller gemt,
+ * {@link #onComplete} når hele planen er gemt.
+ */
+public interface MealPlanStreamListener {
+    void onMeal(int index, Meal meal);
+    void onComplete(MealPlanResponse response);
+}
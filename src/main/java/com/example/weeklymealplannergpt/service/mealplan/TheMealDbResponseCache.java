@@ -0,0 +1,190 @@
+package com.example.weeklymealplannergpt.service.mealplan;
+
+import com.example.weeklymealplannergpt.config.TheMealDbCacheProperties;
+import com.example.weeklymealplannergpt.dto.TheMealDbResponse;
+import com.example.weeklymealplannergpt.model.TheMealDbCacheEntry;
+import com.example.weeklymealplannergpt.repository.TheMealDbCacheRepository;
+import com.example.weeklymealplannergpt.service.cache.CacheStats;
+import com.example.weeklymealplannergpt.service.cache.ConcurrentLruCache;
+import com.example.weeklymealplannergpt.service.cache.SingleFlight;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * To-lags cache for TheMealDB-svar.
+ * <p>
+ *      Første lag er en {@link ConcurrentLruCache} i heap, så gentagne opslag er et map-opslag. Andet lag er
+ *      tabellen {@code themealdb_cache}, så cachen overlever genstart (med en persistent database).
+ *      Hvert endpoint har sin egen TTL, og tomme svar gemmes med en kortere TTL. Et udløbet svar bruges
+ *      stadig i {@code stale-while-revalidate}-vinduet, mens det hentes igen i baggrunden, og som
+ *      fallback hvis TheMealDB fejler.
+ * </p>
+ */
+@Component
+public class TheMealDbResponseCache implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TheMealDbResponseCache.class);
+
+    public enum Endpoint { SEARCH, FILTER, LOOKUP }
+
+    private final TheMealDbCacheRepository repository;
+    private final TheMealDbCacheProperties properties;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader mealListReader;
+
+    private final ConcurrentLruCache<String, CachedResponse> memory;
+    private final SingleFlight<String, CachedResponse> fetches = new SingleFlight<>(response -> true);
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refreshExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("themealdb-refresh-", 0).factory());
+
+    public TheMealDbResponseCache(TheMealDbCacheRepository repository, TheMealDbCacheProperties properties,
+                                  ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.mealListReader = objectMapper.readerForListOf(TheMealDbResponse.MealDto.class);
+        this.memory = new ConcurrentLruCache<>(properties.getMaxEntries());
+    }
+
+    /**
+     * @param loader henter fra TheMealDB; et tomt resultat gemmes som negativt svar
+     */
+    public List<TheMealDbResponse.MealDto> get(Endpoint endpoint, String query,
+                                               Supplier<List<TheMealDbResponse.MealDto>> loader) {
+        String key = key(endpoint, query);
+        CachedResponse cached = memory.get(key);
+        if (cached == null) {
+            cached = loadPersisted(key);
+            if (cached != null) {
+                memory.put(key, cached);
+            }
+        }
+
+        Instant now = Instant.now();
+        if (cached != null) {
+            Instant expiresAt = cached.fetchedAt().plus(ttl(endpoint, cached));
+            if (now.isBefore(expiresAt)) {
+                return cached.meals();
+            }
+            if (now.isBefore(expiresAt.plus(properties.getStaleWhileRevalidate()))) {
+                refreshInBackground(key, loader);
+                return cached.meals();
+            }
+        }
+
+        try {
+            return fetch(key, loader).meals();
+        } catch (RuntimeException e) {
+            if (cached == null) throw e;
+            logger.warn("TheMealDB lookup {} failed, serving expired response: {}", key, e.getMessage());
+            return cached.meals();
+        }
+    }
+
+    public CacheStats getStats() {
+        return memory.stats();
+    }
+
+    @Override
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    static String key(Endpoint endpoint, String query) {
+        return endpoint.name().toLowerCase(Locale.ROOT) + ":" + query.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private Duration ttl(Endpoint endpoint, CachedResponse cached) {
+        if (cached.meals().isEmpty()) {
+            return properties.getNegativeTtl();
+        }
+        return switch (endpoint) {
+            case SEARCH -> properties.getSearchTtl();
+            case FILTER -> properties.getFilterTtl();
+            case LOOKUP -> properties.getLookupTtl();
+        };
+    }
+
+    private void refreshInBackground(String key, Supplier<List<TheMealDbResponse.MealDto>> loader) {
+        if (!refreshing.add(key)) return;
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    fetch(key, loader);
+                } catch (RuntimeException e) {
+                    logger.warn("Background refresh of {} failed: {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    private CachedResponse fetch(String key, Supplier<List<TheMealDbResponse.MealDto>> loader) {
+        try {
+            return fetches.execute(key, Duration.ZERO, () -> {
+                List<TheMealDbResponse.MealDto> meals = loader.get();
+                CachedResponse response = new CachedResponse(
+                        meals == null ? List.of() : List.copyOf(meals), Instant.now());
+                memory.put(key, response);
+                persist(key, response);
+                return response;
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("TheMealDB lookup " + key + " failed", e);
+        }
+    }
+
+    private CachedResponse loadPersisted(String key) {
+        try {
+            return repository.findById(key)
+                    .map(entry -> new CachedResponse(readMeals(entry.getBody()), entry.getFetchedAt()))
+                    .orElse(null);
+        } catch (RuntimeException e) {
+            logger.warn("Could not read cached TheMealDB response {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void persist(String key, CachedResponse response) {
+        try {
+            String body = response.meals().isEmpty() ? null : objectMapper.writeValueAsString(response.meals());
+            repository.save(new TheMealDbCacheEntry(key, body, response.fetchedAt()));
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Cachen må aldrig få selve opslaget til at fejle
+            logger.warn("Could not persist TheMealDB response {}: {}", key, e.getMessage());
+        }
+    }
+
+    private List<TheMealDbResponse.MealDto> readMeals(String body) {
+        if (body == null) return List.of();
+        try {
+            return List.copyOf(mealListReader.<List<TheMealDbResponse.MealDto>>readValue(body));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record CachedResponse(List<TheMealDbResponse.MealDto> meals, Instant fetchedAt) {}
+}
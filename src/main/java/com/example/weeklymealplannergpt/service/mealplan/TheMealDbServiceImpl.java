@@ -2,6 +2,7 @@ package com.example.weeklymealplannergpt.service.mealplan;
 
 import com.example.weeklymealplannergpt.dto.TheMealDbResponse;
 import com.example.weeklymealplannergpt.model.Meal;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
@@ -13,11 +14,14 @@ public class TheMealDbServiceImpl implements TheMealDBService {
 
     private final RestTemplate restTemplate;
     private final MealCacheService mealCacheService;
+    private final TheMealDbResponseCache responseCache;
     private static final String API_BASE_URL = "https://www.themealdb.com/api/json/v1/1";
 
-    public TheMealDbServiceImpl(RestTemplate restTemplate, MealCacheService mealCacheService) {
+    public TheMealDbServiceImpl(@Qualifier("theMealDbRestTemplate") RestTemplate restTemplate, MealCacheService mealCacheService,
+                                TheMealDbResponseCache responseCache) {
         this.restTemplate = restTemplate;
         this.mealCacheService = mealCacheService;
+        this.responseCache = responseCache;
     }
 
     public List<TheMealDbResponse.MealDto> searchMealsByName(String name) {
@@ -26,22 +30,24 @@ public class TheMealDbServiceImpl implements TheMealDBService {
             return List.of(convertToDto(cachedMeal));
         }
         
-        String url = API_BASE_URL + "/search.php?s=" + name;
-        TheMealDbResponse response = restTemplate.getForObject(url, TheMealDbResponse.class);
-        return response != null && response.getMeals() != null ? response.getMeals() : Collections.emptyList();
+        return responseCache.get(TheMealDbResponseCache.Endpoint.SEARCH, name,
+                () -> fetchMeals(API_BASE_URL + "/search.php?s=" + name));
     }
 
     public List<TheMealDbResponse.MealDto> searchMealsByIngredient(String ingredient) {
-        String url = API_BASE_URL + "/filter.php?i=" + ingredient;
-        TheMealDbResponse response = restTemplate.getForObject(url, TheMealDbResponse.class);
-        return response != null && response.getMeals() != null ? response.getMeals() : Collections.emptyList();
+        return responseCache.get(TheMealDbResponseCache.Endpoint.FILTER, ingredient,
+                () -> fetchMeals(API_BASE_URL + "/filter.php?i=" + ingredient));
     }
 
     public TheMealDbResponse.MealDto getMealById(String id) {
-        String url = API_BASE_URL + "/lookup.php?i=" + id;
+        List<TheMealDbResponse.MealDto> meals = responseCache.get(TheMealDbResponseCache.Endpoint.LOOKUP, id,
+                () -> fetchMeals(API_BASE_URL + "/lookup.php?i=" + id));
+        return meals.isEmpty() ? null : meals.get(0);
+    }
+
+    private List<TheMealDbResponse.MealDto> fetchMeals(String url) {
         TheMealDbResponse response = restTemplate.getForObject(url, TheMealDbResponse.class);
-        return response != null && response.getMeals() != null && !response.getMeals().isEmpty() 
-            ? response.getMeals().get(0) : null;
+        return response != null && response.getMeals() != null ? response.getMeals() : Collections.emptyList();
     }
 
     private TheMealDbResponse.MealDto convertToDto(Meal meal) {
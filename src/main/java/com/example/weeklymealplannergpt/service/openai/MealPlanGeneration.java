@@ -0,0 +1,45 @@
+package com.example.weeklymealplannergpt.service.openai;
+
+import com.example.weeklymealplannergpt.model.Meal;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Resultatet af én generering: retterne, OpenAIs besked til brugeren, token-forbrug og hvor lang tid
+ * upstream-kaldet tog. Immutable, så {@link OpenAIService} kan bruges af mange tråde på én gang.
+ * <p>
+ *      Delte kaldere (coalescing) får samme {@code usage} og {@code latency}, men hver sine {@link Meal}-kopier.
+ * </p>
+ */
+public record MealPlanGeneration(List<Meal> meals, String message, TokenUsage usage, Duration latency) {
+
+    public MealPlanGeneration {
+        meals = List.copyOf(meals);
+        usage = usage != null ? usage : TokenUsage.UNKNOWN;
+    }
+
+    static MealPlanGeneration failed(Duration latency) {
+        return new MealPlanGeneration(List.of(), null, TokenUsage.UNKNOWN, latency);
+    }
+
+    MealPlanGeneration withMeals(List<Meal> meals) {
+        return new MealPlanGeneration(meals, message, usage, latency);
+    }
+
+    public boolean isEmpty() {
+        return meals.isEmpty();
+    }
+
+    /**
+     * Tokens som OpenAI har afregnet for kaldet. {@link #UNKNOWN} hvis svaret ikke havde {@code usage}.
+     */
+    public record TokenUsage(int promptTokens, int completionTokens) {
+
+        public static final TokenUsage UNKNOWN = new TokenUsage(0, 0);
+
+        public int totalTokens() {
+            return promptTokens + completionTokens;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.weeklymealplannergpt.service.openai;
+
+import com.example.weeklymealplannergpt.model.Meal;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Meal-plan JSON'en som modellen svarer med, bundet direkte til records.
+ * <p>
+ *      {@link #parse} springer en evt. {@code ```json} fence over ved at flytte startpositionen i en
+ *      {@link StringReader} i stedet for at lave substrings. Jackson stopper efter rod-objektet, så en
+ *      afsluttende fence eller tekst bliver aldrig læst. Readeren er immutable og deles af alle tråde.
+ * </p>
+ * {@link #JSON_SCHEMA} beskriver samme form til OpenAIs structured outputs. {@code imgUrl} er udeladt der,
+ * da modellen alligevel kun sendte en tom streng; det sparer output-tokens.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+record MealPlanPayload(String message, List<MealPayload> meals) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final ObjectReader READER = MAPPER.readerFor(MealPlanPayload.class);
+
+    static final String SCHEMA_NAME = "meal_plan";
+    static final JsonNode JSON_SCHEMA = readSchema("""
+            {
+              "type": "object",
+              "properties": {
+                "message": {"type": "string"},
+                "meals": {
+                  "type": "array",
+                  "items": {
+                    "type": "object",
+                    "properties": {
+                      "mealName": {"type": "string"},
+                      "ingredients": {"type": "array", "items": {"type": "string"}}
+                    },
+                    "required": ["mealName", "ingredients"],
+                    "additionalProperties": false
+                  }
+                }
+              },
+              "required": ["message", "meals"],
+              "additionalProperties": false
+            }
+            """);
+
+    MealPlanPayload {
+        meals = meals != null ? meals : List.of();
+    }
+
+    static MealPlanPayload parse(String content) throws IOException {
+        StringReader reader = new StringReader(content);
+        reader.skip(startOfJson(content));
+        return READER.readValue(reader);
+    }
+
+    private static JsonNode readSchema(String schema) {
+        try {
+            return MAPPER.readTree(schema);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid meal plan JSON schema", e);
+        }
+    }
+
+    /**
+     * Første {@code {}}, eller 0 hvis der ikke er noget, så Jackson selv melder fejlen.
+     */
+    static int startOfJson(CharSequence content) {
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '{') return i;
+        }
+        return 0;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record MealPayload(String mealName, List<String> ingredients, String imgUrl) {
+
+        Meal toMeal() {
+            Meal meal = new Meal();
+            meal.setMealName(mealName);
+            meal.setImgUrl(imgUrl != null ? imgUrl : "");
+            meal.setIngredients(ingredients);
+            return meal;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.weeklymealplannergpt.service.openai;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Holder den kompilerede meal-plan prompt.
+ * <p>
+ *      Skabelonen læses og kompileres én gang ved opstart. Peger {@code openai.prompt.location} på en fil
+ *      ({@code file:...}), tjekkes den for ændringer hvert {@code openai.prompt.reload-interval}, så ops kan
+ *      justere prompten uden deploy. En ændret skabelon med ukendte slots afvises, og den gamle bruges videre.
+ * </p>
+ */
+@Component
+public class MealPlanPromptProvider {
+
+    private static final Logger logger = LoggerFactory.getLogger(MealPlanPromptProvider.class);
+
+    public static final Set<String> SLOTS = Set.of("allergies", "dietType", "dislikes", "weeks", "totalMeals", "maxIngredients", "avoid", "theme");
+
+    private final Resource location;
+    private volatile PromptTemplate template;
+    private volatile long lastModified;
+
+    public MealPlanPromptProvider(
+            @Value("${openai.prompt.location:classpath:prompts/chatgpt-prompt.txt}") Resource location) {
+        this.location = location;
+        try {
+            this.lastModified = lastModified();
+            this.template = load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load prompt template from " + location, e);
+        }
+        logger.info("Loaded meal plan prompt from {} with slots {}", location, template.getSlotNames());
+    }
+
+    public PromptTemplate getTemplate() {
+        return template;
+    }
+
+    @Scheduled(fixedDelayString = "${openai.prompt.reload-interval:PT30S}")
+    public void reloadIfChanged() {
+        if (!location.isFile()) return;
+
+        try {
+            long modified = lastModified();
+            if (modified == lastModified) return;
+
+            template = load();
+            lastModified = modified;
+            logger.info("Reloaded meal plan prompt from {}", location);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Keeping previous meal plan prompt; could not reload {}: {}", location, e.getMessage());
+        }
+    }
+
+    private PromptTemplate load() throws IOException {
+        PromptTemplate compiled = PromptTemplate.compile(location.getContentAsString(StandardCharsets.UTF_8));
+
+        Set<String> unknown = new HashSet<>(compiled.getSlotNames());
+        unknown.removeAll(SLOTS);
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown prompt slots " + unknown + ", expected " + SLOTS);
+        }
+        return compiled;
+    }
+
+    private long lastModified() throws IOException {
+        return location.isFile() ? location.lastModified() : 0L;
+    }
+}
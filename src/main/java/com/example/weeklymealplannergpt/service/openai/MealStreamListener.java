@@ -0,0 +1,8 @@
+package com.example.weeklymealplannergpt.service.openai;
+
+import com.example.weeklymealplannergpt.model.Meal;
+
+@FunctionalInterface
+public interface MealStreamListener {
+    void onMeal(Meal meal);
+}
@@ -1,13 +1,12 @@
 package com.example.weeklymealplannergpt.service.openai;
 
 import com.example.weeklymealplannergpt.model.Consumer;
-import com.example.weeklymealplannergpt.model.Meal;
 
 import java.io.IOException;
-import java.util.List;
 
 public interface OpenAIService {
-    List<Meal> generateMealPlan(Consumer consumer) throws IOException;
-    List<Meal> generateMealPlan(Consumer consumer, int weeks) throws IOException;
-    String getLastGeneratedMessage();
+    MealPlanGeneration generateMealPlan(Consumer consumer) throws IOException;
+    MealPlanGeneration generateMealPlan(Consumer consumer, int weeks) throws IOException;
+    MealPlanGeneration generateMealPlan(PreferenceFingerprint preferences);
+    MealPlanGeneration streamMealPlan(Consumer consumer, int weeks, MealStreamListener listener) throws IOException;
 }
@@ -2,28 +2,53 @@ package com.example.weeklymealplannergpt.service.openai;
 
 import com.example.weeklymealplannergpt.dto.OpenAIRequest;
 import com.example.weeklymealplannergpt.dto.OpenAIResponse;
+import com.example.weeklymealplannergpt.dto.OpenAIStreamChunk;
+import com.example.weeklymealplannergpt.exception.UpstreamUnavailableException;
 import com.example.weeklymealplannergpt.model.Consumer;
 import com.example.weeklymealplannergpt.model.Meal;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.example.weeklymealplannergpt.model.MealNameCanonicalizer;
+import com.example.weeklymealplannergpt.service.cache.SingleFlight;
+import com.example.weeklymealplannergpt.service.resilience.ResilientCaller;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.Getter;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import org.springframework.core.io.Resource;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
-public class OpenAIServiceImpl implements OpenAIService {
+public class OpenAIServiceImpl implements OpenAIService, DisposableBean {
 
     private static final Logger logger = LoggerFactory.getLogger(OpenAIServiceImpl.class);
 
+    private static final int MEALS_PER_WEEK = 5;
+
+    // Køkkener som uge-forespørgslerne fordeles på ved opdelt generering
+    private static final List<String> WEEK_THEMES = List.of(
+            "Mediterranean and Italian", "East and Southeast Asian", "Latin American",
+            "Nordic and Central European", "Middle Eastern and Indian", "American comfort food");
+
     @Value("${openai.api.key}")
     private String openAiApiKey;
 
@@ -33,57 +58,344 @@ public class OpenAIServiceImpl implements OpenAIService {
     @Value("${openai.model}")
     private String model;
 
-    @Value("classpath:prompts/chatgpt-prompt.txt")
-    private Resource promptTemplate;
+    /**
+     * Hvor længe et færdigt resultat genbruges for identiske præferencer. 0 slår det fra,
+     * men samtidige kald med samme fingerprint deler stadig ét upstream-kald.
+     */
+    @Value("${openai.coalescing.result-ttl:PT30S}")
+    private Duration coalescingResultTtl = Duration.ZERO;
+
+    @Value("${openai.temperature:0.7}")
+    private double temperature = 0.7;
+
+    /**
+     * {@code json_schema} (structured outputs) eller {@code json_object} til modeller uden schema-support.
+     */
+    @Value("${openai.response-format:json_schema}")
+    private String responseFormat = "json_schema";
+
+    @Value("${openai.max-ingredients-per-meal:8}")
+    private int maxIngredientsPerMeal = 8;
+
+    /**
+     * Genererer planer over flere uger som én forespørgsel pr. uge, der kører samtidig. Se {@link #generateChunked}.
+     */
+    @Value("${openai.chunked-generation.enabled:true}")
+    private boolean chunkedGeneration = true;
 
     private final RestTemplate restTemplate;
+    private final ResilientCaller resilientCaller;
     private final ObjectMapper objectMapper;
-    
-    @Getter
-    private String lastGeneratedMessage;
+    private final ObjectReader chunkReader;
+    private final MealPlanPromptProvider promptProvider;
+    private final DistributionSummary promptChars;
+    private final DistributionSummary promptTokens;
+    private final Counter promptTokensUsed;
+    private final Counter completionTokensUsed;
+    private final Timer blockingLatency;
+    private final Timer streamingLatency;
+    private final SingleFlight<PreferenceFingerprint, MealPlanGeneration> inFlightPlans =
+            new SingleFlight<>(generation -> !generation.isEmpty());
+    // Upstream-kaldene begrænses af bulkhead og outbound-semaphorer, ikke af denne executor
+    private final ExecutorService chunkExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public OpenAIServiceImpl(RestTemplate restTemplate) {
+    public OpenAIServiceImpl(@Qualifier("openAiRestTemplate") RestTemplate restTemplate,
+                             @Qualifier("openAiResilientCaller") ResilientCaller resilientCaller,
+                             MealPlanPromptProvider promptProvider, MeterRegistry meterRegistry) {
         this.restTemplate = restTemplate;
+        this.resilientCaller = resilientCaller;
         this.objectMapper = new ObjectMapper();
+        this.chunkReader = objectMapper.readerFor(OpenAIStreamChunk.class);
+        this.promptProvider = promptProvider;
+        this.promptChars = DistributionSummary.builder("openai.prompt.size")
+                .description("Characters in the meal plan prompt sent to OpenAI")
+                .baseUnit("characters")
+                .register(meterRegistry);
+        this.promptTokens = DistributionSummary.builder("openai.prompt.tokens.estimated")
+                .description("Estimated prompt tokens (characters / 4)")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+        this.promptTokensUsed = Counter.builder("openai.tokens")
+                .description("Tokens billed by OpenAI")
+                .tag("type", "prompt")
+                .register(meterRegistry);
+        this.completionTokensUsed = Counter.builder("openai.tokens")
+                .description("Tokens billed by OpenAI")
+                .tag("type", "completion")
+                .register(meterRegistry);
+        this.blockingLatency = Timer.builder("openai.generation.latency")
+                .description("Duration of meal plan generation calls to OpenAI")
+                .tag("mode", "blocking")
+                .register(meterRegistry);
+        this.streamingLatency = Timer.builder("openai.generation.latency")
+                .description("Duration of meal plan generation calls to OpenAI")
+                .tag("mode", "stream")
+                .register(meterRegistry);
     }
 
-    public List<Meal> generateMealPlan(Consumer consumer) throws IOException {
+    public MealPlanGeneration generateMealPlan(Consumer consumer) throws IOException {
         return generateMealPlan(consumer, 1);
     }
 
-    public List<Meal> generateMealPlan(Consumer consumer, int weeks) throws IOException {
-        int totalMeals = weeks * 5;
+    /**
+     * Prompten bygges kun af præferencerne, så brugere med samme {@link PreferenceFingerprint}
+     * deler ét OpenAI-kald. Hver kalder får sine egne {@code Meal}-kopier, da de bliver gemt som entities.
+     */
+    public MealPlanGeneration generateMealPlan(Consumer consumer, int weeks) throws IOException {
+        PreferenceFingerprint fingerprint = PreferenceFingerprint.of(consumer, weeks);
+        MealPlanGeneration generation;
+        try {
+            generation = inFlightPlans.execute(fingerprint, coalescingResultTtl, () -> generate(fingerprint));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Meal plan generation was interrupted", e);
+        } catch (Exception e) {
+            throw new IOException("Meal plan generation failed", e);
+        }
+
+        return generation.withMeals(generation.meals().stream().map(this::copyOf).toList());
+    }
+
+    /**
+     * Går uden om coalescing og resultat-cachen: hvert kald skal give en ny plan, så puljen ikke fyldes med dubletter.
+     */
+    public MealPlanGeneration generateMealPlan(PreferenceFingerprint preferences) {
+        return generate(preferences);
+    }
+
+    private MealPlanGeneration generate(PreferenceFingerprint preferences) {
+        int weeks = preferences.weeks();
+        return chunkedGeneration && weeks > 1
+                ? generateChunked(preferences)
+                : getMealPlanFromPrompt(buildPrompt(preferences), weeks * MEALS_PER_WEEK);
+    }
+
+    /**
+     * Latency følger antallet af output-tokens, så hver uge genereres for sig og samtidig; en 4-ugers plan
+     * tager derfor ca. som en 1-ugers. Hver uge får sit eget køkken ({@link #WEEK_THEMES}), så forespørgslerne
+     * ikke alle svarer med de samme populære retter. Retter der alligevel går igen på tværs af ugerne (samme
+     * {@link MealNameCanonicalizer#canonicalKey}) eller mangler, erstattes bagefter i én lille forespørgsel
+     * med alle valgte retter som "undgå"-liste. Ugerne beholder deres pladser: uge N er {@code meals[5N..5N+4]}.
+     * Giver erstatningen for få retter, bruges ugens egen gentagelse på pladsen; mangler der stadig en ret,
+     * fejler planen hellere end at ugerne forskydes.
+     */
+    private MealPlanGeneration generateChunked(PreferenceFingerprint preferences) {
+        long start = System.nanoTime();
+        int weeks = preferences.weeks();
+
+        // Tilfældig start i listen, så gentagne planer for samme profil (fx til puljen) også varierer
+        int firstTheme = ThreadLocalRandom.current().nextInt(WEEK_THEMES.size());
+        List<CompletableFuture<MealPlanGeneration>> chunks = new ArrayList<>(weeks);
+        for (int week = 0; week < weeks; week++) {
+            String theme = " Theme for this week: " + WEEK_THEMES.get((firstTheme + week) % WEEK_THEMES.size()) + ".";
+            String weekPrompt = buildPrompt(preferences, 1, MEALS_PER_WEEK, "", theme);
+            chunks.add(CompletableFuture.supplyAsync(
+                    () -> getMealPlanFromPrompt(weekPrompt, MEALS_PER_WEEK), chunkExecutor));
+        }
+
+        Meal[] slots = new Meal[weeks * MEALS_PER_WEEK];
+        List<Deque<Meal>> repeatsByWeek = new ArrayList<>(weeks);
+        Set<String> chosenKeys = new HashSet<>();
+        List<String> chosenNames = new ArrayList<>();
+        String message = null;
+        int promptTokensTotal = 0;
+        int completionTokensTotal = 0;
+
+        for (int week = 0; week < weeks; week++) {
+            MealPlanGeneration chunk = chunks.get(week).join();
+            promptTokensTotal += chunk.usage().promptTokens();
+            completionTokensTotal += chunk.usage().completionTokens();
+            if (message == null) {
+                message = chunk.message();
+            }
+
+            Deque<Meal> repeats = new ArrayDeque<>();
+            repeatsByWeek.add(repeats);
+            int slot = week * MEALS_PER_WEEK;
+            for (Meal meal : chunk.meals()) {
+                if (slot == (week + 1) * MEALS_PER_WEEK) break;
+                if (chosenKeys.add(MealNameCanonicalizer.canonicalKey(meal.getMealName()))) {
+                    chosenNames.add(MealNameCanonicalizer.displayName(meal.getMealName()));
+                    slots[slot++] = meal;
+                } else {
+                    repeats.add(meal);
+                }
+            }
+        }
+
+        if (chosenNames.isEmpty()) {
+            return MealPlanGeneration.failed(Duration.ofNanos(System.nanoTime() - start));
+        }
 
-        String template = new String(promptTemplate.getInputStream().readAllBytes());
-        String prompt = String.format(
-                template,
-                consumer.getAllergies(),
-                consumer.getDietType(),
-                consumer.getDislikes(),
-                weeks,
-                totalMeals,
-                weeks,
-                totalMeals,
-                consumer.getDietType(),
-                weeks,
-                totalMeals
-        );
+        int missing = slots.length - chosenNames.size();
+        if (missing > 0) {
+            logger.info("Replacing {} repeated or missing meals in {}-week plan", missing, weeks);
+            String avoid = " Do not use any of these dishes: " + String.join(", ", chosenNames) + ".";
+            MealPlanGeneration replacement = getMealPlanFromPrompt(buildPrompt(preferences, 1, missing, avoid, ""), missing);
+            promptTokensTotal += replacement.usage().promptTokens();
+            completionTokensTotal += replacement.usage().completionTokens();
+
+            Iterator<Meal> replacements = replacement.meals().iterator();
+            for (int slot = 0; slot < slots.length && replacements.hasNext(); slot++) {
+                while (slots[slot] == null && replacements.hasNext()) {
+                    Meal meal = replacements.next();
+                    if (chosenKeys.add(MealNameCanonicalizer.canonicalKey(meal.getMealName()))) {
+                        slots[slot] = meal;
+                    }
+                }
+            }
+        }
 
-        return getMealPlanFromPrompt(prompt);
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (slots[slot] != null) continue;
+            Meal repeat = repeatsByWeek.get(slot / MEALS_PER_WEEK).poll();
+            if (repeat == null) {
+                logger.warn("{}-week plan is missing a meal in week {} after replacement", weeks, slot / MEALS_PER_WEEK + 1);
+                return MealPlanGeneration.failed(Duration.ofNanos(System.nanoTime() - start));
+            }
+            slots[slot] = repeat;
+        }
+
+        return new MealPlanGeneration(Arrays.asList(slots), message,
+                new MealPlanGeneration.TokenUsage(promptTokensTotal, completionTokensTotal),
+                Duration.ofNanos(System.nanoTime() - start));
     }
 
-    private List<Meal> getMealPlanFromPrompt(String prompt) {
+    /**
+     * Streamer svaret fra OpenAI og sender hvert {@code Meal} til {@code listener}, så snart det er parset.
+     * Går uden om coalescing, da hver kalder skal have sine egne events løbende.
+     */
+    public MealPlanGeneration streamMealPlan(Consumer consumer, int weeks, MealStreamListener listener) throws IOException {
+        String prompt = buildPrompt(PreferenceFingerprint.of(consumer, weeks));
+        OpenAIRequest request = buildRequest(prompt, weeks * MEALS_PER_WEEK);
+        request.setStream(true);
+        request.setStream_options(new OpenAIRequest.StreamOptions(true));
+
+        StreamingMealPlanParser parser = new StreamingMealPlanParser(listener);
+        MealPlanGeneration.TokenUsage usage = null;
+        long start = System.nanoTime();
         try {
-            OpenAIRequest request = new OpenAIRequest();
-            request.setModel(model);
-            request.setTemperature(0.7);
-            request.setMax_tokens(4000);
-            
-            List<OpenAIRequest.Message> messages = new ArrayList<>();
-            messages.add(new OpenAIRequest.Message("system", 
-                "You are a helpful meal planning assistant. Always respond with valid JSON."));
-            messages.add(new OpenAIRequest.Message("user", prompt));
-            request.setMessages(messages);
+            // Ingen retry: de første retter kan allerede være sendt til klienten
+            usage = resilientCaller.callOnce(() -> restTemplate.execute(
+                    openAiApiUrl,
+                    HttpMethod.POST,
+                    clientRequest -> {
+                        clientRequest.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        clientRequest.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                        clientRequest.getHeaders().setBearerAuth(openAiApiKey);
+                        objectMapper.writeValue(clientRequest.getBody(), request);
+                    },
+                    clientResponse -> readEventStream(clientResponse.getBody(), parser)));
+            parser.finish();
+        } catch (UpstreamUnavailableException e) {
+            logger.warn("Not streaming from OpenAI API: {}", e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error streaming from OpenAI API after {} meals: ", parser.getMeals().size(), e);
+        }
+
+        logger.info("Streamed {} meals", parser.getMeals().size());
+        return record(streamingLatency, start, parser.getMeals(), parser.getMessage(), usage);
+    }
+
+    /**
+     * Sender indholdet videre til {@code parser} og returnerer token-forbruget fra det sidste event, hvis det kom.
+     */
+    private MealPlanGeneration.TokenUsage readEventStream(InputStream body, StreamingMealPlanParser parser) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        MealPlanGeneration.TokenUsage usage = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith("data:")) continue;
+
+            String data = line.substring(5).trim();
+            if ("[DONE]".equals(data)) break;
+            if (data.isEmpty()) continue;
+
+            OpenAIStreamChunk chunk = chunkReader.readValue(data);
+            if (chunk.getUsage() != null) {
+                usage = toTokenUsage(chunk.getUsage());
+            }
+            if (chunk.getChoices() == null) continue;
+            for (OpenAIStreamChunk.Choice choice : chunk.getChoices()) {
+                if (choice.getDelta() != null) {
+                    parser.feed(choice.getDelta().getContent());
+                }
+            }
+        }
+        return usage;
+    }
+
+    private String buildPrompt(PreferenceFingerprint preferences) {
+        return buildPrompt(preferences, preferences.weeks(), preferences.weeks() * MEALS_PER_WEEK, "", "");
+    }
+
+    private String buildPrompt(PreferenceFingerprint preferences, int weeks, int totalMeals, String avoid, String theme) {
+        String prompt = promptProvider.getTemplate().render(Map.of(
+                "allergies", preferences.allergies().toString(),
+                "dietType", preferences.dietType(),
+                "dislikes", preferences.dislikes().toString(),
+                "weeks", Integer.toString(weeks),
+                "totalMeals", Integer.toString(totalMeals),
+                "maxIngredients", Integer.toString(maxIngredientsPerMeal),
+                "avoid", avoid,
+                "theme", theme));
+
+        promptChars.record(prompt.length());
+        promptTokens.record(estimateTokens(prompt));
+        return prompt;
+    }
+
+    /**
+     * Groft estimat: ca. 4 tegn pr. token for engelsk tekst. Godt nok til at følge udviklingen i pris.
+     */
+    static int estimateTokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    /**
+     * Output-budget for {@code totalMeals} retter med højst {@code maxIngredients} ingredienser hver.
+     * Et meal koster ca. 8 tokens til navnet (kun retten; ugedag følger af placeringen), 5 pr. ingrediens
+     * og 15 til JSON-syntaks; beskeden ca. 80.
+     * 25% luft, så en lidt længere plan ikke skæres af midt i JSON'en.
+     */
+    static int maxTokens(int totalMeals, int maxIngredients) {
+        int perMeal = 8 + maxIngredients * 5 + 15;
+        return (80 + totalMeals * perMeal) * 5 / 4;
+    }
+
+    private OpenAIRequest buildRequest(String prompt, int totalMeals) {
+        OpenAIRequest request = new OpenAIRequest();
+        request.setModel(model);
+        request.setTemperature(temperature);
+        request.setMax_tokens(maxTokens(totalMeals, maxIngredientsPerMeal));
+        request.setResponse_format("json_schema".equals(responseFormat)
+                ? new OpenAIRequest.ResponseFormat("json_schema", new OpenAIRequest.JsonSchema(
+                        MealPlanPayload.SCHEMA_NAME, true, MealPlanPayload.JSON_SCHEMA))
+                : new OpenAIRequest.ResponseFormat("json_object", null));
+
+        List<OpenAIRequest.Message> messages = new ArrayList<>();
+        messages.add(new OpenAIRequest.Message("system", "You are a meal planning assistant."));
+        messages.add(new OpenAIRequest.Message("user", prompt));
+        request.setMessages(messages);
+        return request;
+    }
+
+    private Meal copyOf(Meal meal) {
+        Meal copy = new Meal();
+        copy.setMealName(meal.getMealName());
+        copy.setImgUrl(meal.getImgUrl());
+        if (meal.getIngredients() != null) {
+            copy.setIngredients(new ArrayList<>(meal.getIngredients()));
+        }
+        return copy;
+    }
+
+    private MealPlanGeneration getMealPlanFromPrompt(String prompt, int totalMeals) {
+        long start = System.nanoTime();
+        try {
+            OpenAIRequest request = buildRequest(prompt, totalMeals);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -91,74 +403,67 @@ public class OpenAIServiceImpl implements OpenAIService {
 
             HttpEntity<OpenAIRequest> entity = new HttpEntity<>(request, headers);
 
-            ResponseEntity<OpenAIResponse> response = restTemplate.exchange(
+            ResponseEntity<OpenAIResponse> response = resilientCaller.call(() -> restTemplate.exchange(
                     openAiApiUrl,
                     HttpMethod.POST,
                     entity,
                     OpenAIResponse.class
-            );
+            ));
 
             if (response.getBody() != null && 
                 response.getBody().getChoices() != null && 
                 !response.getBody().getChoices().isEmpty()) {
                 
-                String content = response.getBody().getChoices().get(0).getMessage().getContent();
-                return parseMealPlanResponse(content);
+                OpenAIResponse.Choice choice = response.getBody().getChoices().get(0);
+                if ("length".equals(choice.getFinishReason())) {
+                    logger.warn("OpenAI response was truncated at max_tokens={} for {} meals",
+                            request.getMax_tokens(), totalMeals);
+                }
+                String content = choice.getMessage().getContent();
+                MealPlanPayload payload = parseMealPlanResponse(content);
+                List<Meal> meals = payload.meals().stream().map(MealPlanPayload.MealPayload::toMeal).toList();
+                OpenAIResponse.Usage usage = response.getBody().getUsage();
+                return record(blockingLatency, start, meals, payload.message(),
+                        usage != null ? toTokenUsage(usage) : null);
             }
 
+        } catch (UpstreamUnavailableException e) {
+            logger.warn("Not calling OpenAI API: {}", e.getMessage());
         } catch (Exception e) {
             logger.error("Error calling OpenAI API: ", e);
         }
 
-        return new ArrayList<>();
+        return MealPlanGeneration.failed(Duration.ofNanos(System.nanoTime() - start));
     }
 
-    private List<Meal> parseMealPlanResponse(String jsonContent) {
-        List<Meal> meals = new ArrayList<>();
-
-        try {
-            String cleanJson = cleanJson(jsonContent);
-
-            Map<String, Object> response = objectMapper.readValue(cleanJson, Map.class);
-            List<Map<String, Object>> mealsArray = (List<Map<String, Object>>) response.get("meals");
-            
-            lastGeneratedMessage = (String) response.get("message");
-            
-            if (mealsArray != null) {
-                logger.info("Successfully parsed {} meals", mealsArray.size());
-                
-                for (Map<String, Object> mealData : mealsArray) {
-                    Meal meal = new Meal();
-                    meal.setMealName((String) mealData.get("mealName"));
-                    meal.setImgUrl((String) mealData.getOrDefault("imgUrl", ""));
-                    
-                    List<String> ingredients = (List<String>) mealData.get("ingredients");
-                    if (ingredients != null) {
-                        meal.setIngredients(ingredients);
-                    }
-                    
-                    meals.add(meal);
-                }
-            }
-
-        } catch (JsonProcessingException e) {
-            logger.error("Error parsing meal plan JSON: ", e);
+    private MealPlanGeneration record(Timer latencyTimer, long start, List<Meal> meals, String message,
+                                      MealPlanGeneration.TokenUsage usage) {
+        Duration latency = Duration.ofNanos(System.nanoTime() - start);
+        latencyTimer.record(latency);
+        if (usage != null) {
+            promptTokensUsed.increment(usage.promptTokens());
+            completionTokensUsed.increment(usage.completionTokens());
         }
+        return new MealPlanGeneration(meals, meals.isEmpty() ? null : message, usage, latency);
+    }
 
-        return meals;
+    private static MealPlanGeneration.TokenUsage toTokenUsage(OpenAIResponse.Usage usage) {
+        return new MealPlanGeneration.TokenUsage(usage.getPromptTokens(), usage.getCompletionTokens());
     }
 
-    private String cleanJson(String jsonContent) {
-        jsonContent = jsonContent.trim();
-        if (jsonContent.startsWith("```json")) {
-            jsonContent = jsonContent.substring(7);
-        }
-        if (jsonContent.startsWith("```")) {
-            jsonContent = jsonContent.substring(3);
-        }
-        if (jsonContent.endsWith("```")) {
-            jsonContent = jsonContent.substring(0, jsonContent.length() - 3);
+    @Override
+    public void destroy() {
+        chunkExecutor.shutdownNow();
+    }
+
+    private MealPlanPayload parseMealPlanResponse(String content) {
+        try {
+            MealPlanPayload payload = MealPlanPayload.parse(content);
+            logger.info("Successfully parsed {} meals", payload.meals().size());
+            return payload;
+        } catch (IOException e) {
+            logger.error("Error parsing meal plan JSON: ", e);
+            return new MealPlanPayload(null, List.of());
         }
-        return jsonContent;
     }
 }
@@ -0,0 +1,89 @@
+package com.example.weeklymealplannergpt.service.openai;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.PreferenceProfile;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Normaliseret nøgle for de præferencer, som prompten bygges af.
+ * To brugere med samme kosttype, allergier, dislikes og antal uger får samme fingerprint,
+ * uanset store/små bogstaver, mellemrum og rækkefølge.
+ */
+public record PreferenceFingerprint(String dietType, List<String> allergies, List<String> dislikes, int weeks) {
+
+    // Normaliserede værdier indeholder aldrig linjeskift, se normalize(String)
+    private static final String SEPARATOR = "\n";
+
+    public static PreferenceFingerprint of(Consumer consumer, int weeks) {
+        return new PreferenceFingerprint(
+                normalize(consumer.getDietType()),
+                normalize(consumer.getAllergies()),
+                normalize(consumer.getDislikes()),
+                weeks);
+    }
+
+    public static PreferenceFingerprint of(PreferenceProfile profile) {
+        return new PreferenceFingerprint(
+                normalize(profile.getDietType()),
+                normalize(split(profile.getAllergies())),
+                normalize(split(profile.getDislikes())),
+                profile.getWeeks());
+    }
+
+    /**
+     * Gemmer fingerprintet som profil, så det kan genskabes med {@link #of(PreferenceProfile)}.
+     */
+    public PreferenceProfile toProfile() {
+        PreferenceProfile profile = new PreferenceProfile();
+        profile.setProfileKey(key());
+        profile.setDietType(dietType);
+        profile.setAllergies(String.join(SEPARATOR, allergies));
+        profile.setDislikes(String.join(SEPARATOR, dislikes));
+        profile.setWeeks(weeks);
+        return profile;
+    }
+
+    /**
+     * Stabil SHA-256 hex-nøgle (64 tegn) til at gemme profilen i databasen.
+     */
+    public String key() {
+        String canonical = dietType + SEPARATOR + SEPARATOR + String.join(SEPARATOR, allergies)
+                + SEPARATOR + SEPARATOR + String.join(SEPARATOR, dislikes) + SEPARATOR + SEPARATOR + weeks;
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static List<String> split(String values) {
+        if (values == null || values.isEmpty()) return List.of();
+        return Arrays.asList(values.split(SEPARATOR));
+    }
+
+    private static List<String> normalize(Collection<String> values) {
+        if (values == null) return List.of();
+        return values.stream()
+                .filter(Objects::nonNull)
+                .map(PreferenceFingerprint::normalize)
+                .filter(value -> !value.isEmpty())
+                .distinct()
+                .sorted()
+                .toList();
+    }
+
+    private static String normalize(String value) {
+        if (value == null) return "";
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
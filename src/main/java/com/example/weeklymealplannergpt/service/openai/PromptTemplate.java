@@ -0,0 +1,89 @@
+package com.example.weeklymealplannergpt.service.openai;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prompt-skabelon med navngivne {@code {{slot}}} pladsholdere.
+ * <p>
+ *      Teksten parses én gang ved {@link #compile} til faste tekststykker og slots, så {@link #render}
+ *      kun skal sætte stykkerne sammen i en {@link StringBuilder} med den rigtige startstørrelse.
+ *      Ingen regex eller format-parsing pr. kald. Immutable og trådsikker.
+ * </p>
+ */
+public final class PromptTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // literals har altid én mere end slots: literal, slot, literal, slot, ..., literal
+    private final String[] literals;
+    private final String[] slots;
+    private final int literalLength;
+
+    private PromptTemplate(String[] literals, String[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static PromptTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+
+        int position = 0;
+        int open;
+        while ((open = source.indexOf(OPEN, position)) >= 0) {
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed '{{' at index " + open);
+            }
+            String name = source.substring(open + OPEN.length(), close).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Empty slot at index " + open);
+            }
+            literals.add(source.substring(position, open));
+            slots.add(name);
+            position = close + CLOSE.length();
+        }
+        literals.add(source.substring(position));
+
+        return new PromptTemplate(literals.toArray(String[]::new), slots.toArray(String[]::new));
+    }
+
+    public Set<String> getSlotNames() {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, slots);
+        return names;
+    }
+
+    /**
+     * @throws IllegalArgumentException hvis en slot mangler i {@code values}
+     */
+    public String render(Map<String, String> values) {
+        String[] resolved = new String[slots.length];
+        int length = literalLength;
+        for (int i = 0; i < slots.length; i++) {
+            String value = values.get(slots[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("No value for prompt slot '" + slots[i] + "'");
+            }
+            resolved[i] = value;
+            length += value.length();
+        }
+
+        StringBuilder prompt = new StringBuilder(length);
+        for (int i = 0; i < slots.length; i++) {
+            prompt.append(literals[i]).append(resolved[i]);
+        }
+        return prompt.append(literals[slots.length]).toString();
+    }
+}
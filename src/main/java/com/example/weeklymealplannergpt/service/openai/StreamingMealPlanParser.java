@@ -0,0 +1,152 @@
+package com.example.weeklymealplannergpt.service.openai;
+
+import com.example.weeklymealplannergpt.model.Meal;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser meal-plan JSON'en bid for bid, mens den streames fra OpenAI.
+ * <p>
+ *      Bygger på Jacksons non-blocking {@link JsonParser}, så hvert element i {@code meals[]}
+ *      sendes til {@link MealStreamListener} så snart objektet er lukket, i stedet for at vente
+ *      på hele svaret. Tekst før første {@code {}} (fx en {@code ```json} fence) og alt efter
+ *      rod-objektet ignoreres.
+ * </p>
+ * Ikke trådsikker; én instans pr. stream.
+ */
+public class StreamingMealPlanParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final MealStreamListener listener;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final List<Meal> meals = new ArrayList<>();
+
+    private boolean started;
+    private boolean finished;
+    private int depth;
+    private String rootField;
+    private boolean inMeals;
+    private Meal currentMeal;
+    private String mealField;
+    private boolean inIngredients;
+    private String message;
+
+    public StreamingMealPlanParser(MealStreamListener listener) throws IOException {
+        this.listener = listener;
+        this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    public void feed(String fragment) throws IOException {
+        if (finished || fragment == null || fragment.isEmpty()) return;
+
+        if (!started) {
+            int start = fragment.indexOf('{');
+            if (start < 0) return;
+            fragment = fragment.substring(start);
+            started = true;
+        }
+
+        byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+        feeder.feedInput(bytes, 0, bytes.length);
+        pump();
+    }
+
+    public void finish() throws IOException {
+        if (!finished) {
+            feeder.endOfInput();
+            if (started) {
+                pump();
+            }
+        }
+        parser.close();
+    }
+
+    public List<Meal> getMeals() {
+        return meals;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    private void pump() throws IOException {
+        JsonToken token;
+        while (!finished && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            handle(token);
+        }
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT -> {
+                depth++;
+                if (inMeals && depth == 3) {
+                    currentMeal = new Meal();
+                    currentMeal.setImgUrl("");
+                    mealField = null;
+                }
+            }
+            case END_OBJECT -> {
+                if (currentMeal != null && depth == 3) {
+                    meals.add(currentMeal);
+                    listener.onMeal(currentMeal);
+                    currentMeal = null;
+                }
+                if (depth == 1) {
+                    finished = true;
+                }
+                depth--;
+            }
+            case START_ARRAY -> {
+                depth++;
+                if (depth == 2 && "meals".equals(rootField)) {
+                    inMeals = true;
+                } else if (currentMeal != null && depth == 4 && "ingredients".equals(mealField)) {
+                    inIngredients = true;
+                    currentMeal.setIngredients(new ArrayList<>());
+                }
+            }
+            case END_ARRAY -> {
+                if (depth == 2) {
+                    inMeals = false;
+                } else if (depth == 4) {
+                    inIngredients = false;
+                }
+                depth--;
+            }
+            case FIELD_NAME -> {
+                if (depth == 1) {
+                    rootField = parser.currentName();
+                } else if (depth == 3 && currentMeal != null) {
+                    mealField = parser.currentName();
+                }
+            }
+            case VALUE_STRING -> handleString(parser.getText());
+            default -> { }
+        }
+    }
+
+    private void handleString(String value) {
+        if (depth == 1 && "message".equals(rootField)) {
+            message = value;
+        } else if (depth == 3 && currentMeal != null) {
+            if ("mealName".equals(mealField)) {
+                currentMeal.setMealName(value);
+            } else if ("imgUrl".equals(mealField)) {
+                currentMeal.setImgUrl(value);
+            }
+        } else if (depth == 4 && inIngredients) {
+            currentMeal.getIngredients().add(value);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.weeklymealplannergpt.service.pool;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import java.util.Optional;
+
+public interface MealPlanPoolService {
+
+    /**
+     * Udleverer en forud-genereret plan til brugerens præferenceprofil, som brugeren ikke har fået før.
+     *
+     * @return tom hvis puljen er slået fra eller ikke har en plan til brugeren; kalderen genererer så selv
+     */
+    Optional<PooledPlanClaim> claim(Consumer consumer, int weeks);
+
+    /**
+     * Giver en udlevering tilbage, når kalderen ikke fik gemt planen, så brugeren kan få den senere.
+     * Fejl logges og kastes ikke videre.
+     */
+    void release(PooledPlanClaim claim);
+}
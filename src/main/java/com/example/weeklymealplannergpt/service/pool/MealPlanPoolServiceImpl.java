@@ -0,0 +1,369 @@
+package com.example.weeklymealplannergpt.service.pool;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.model.PooledMealPlan;
+import com.example.weeklymealplannergpt.model.PooledPlanDelivery;
+import com.example.weeklymealplannergpt.model.PreferenceProfile;
+import com.example.weeklymealplannergpt.repository.PooledMealPlanRepository;
+import com.example.weeklymealplannergpt.repository.PooledPlanDeliveryRepository;
+import com.example.weeklymealplannergpt.repository.PreferenceProfileRepository;
+import com.example.weeklymealplannergpt.service.openai.MealPlanGeneration;
+import com.example.weeklymealplannergpt.service.openai.OpenAIService;
+import com.example.weeklymealplannergpt.service.openai.PreferenceFingerprint;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Pulje af forud-genererede madplaner til de mest brugte præferenceprofiler.
+ * <p>
+ *      Hver {@link #claim} tæller profilen i hukommelsen, og tællingerne skrives samlet til {@code meal_plan_profile}
+ *      hvert {@code request-flush-interval}, så populære profiler ikke giver én opdatering af samme række pr. request.
+ *      Om natten ({@code mealplan.pool.refill-cron})
+ *      fyldes puljen op til {@code plans-per-profile} planer for de {@code top-profiles} mest efterspurgte profiler,
+ *      så {@code /generate} for dem kan svares med ét par DB-kald i stedet for et OpenAI-kald. Falder puljen for en
+ *      profil under {@code min-available}, eller rammer en top-profil en tom pulje, fyldes den op i baggrunden.
+ *      En plan gives aldrig to gange til samme bruger ({@code meal_plan_pool_delivery}) og højst
+ *      {@code max-deliveries-per-plan} gange i alt; planer ældre end {@code plan-ttl} bruges ikke.
+ *      Slået fra som standard ({@code mealplan.pool.enabled}).
+ * </p>
+ */
+@Service
+public class MealPlanPoolServiceImpl implements MealPlanPoolService, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MealPlanPoolServiceImpl.class);
+
+    // Flere end én, så en samtidig claim på samme plan kan falde videre til den næste
+    private static final int CLAIM_CANDIDATES = 3;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader MEALS_READER = MAPPER.readerFor(new TypeReference<List<PooledMeal>>() {});
+
+    private final PreferenceProfileRepository profileRepository;
+    private final PooledMealPlanRepository planRepository;
+    private final PooledPlanDeliveryRepository deliveryRepository;
+    private final OpenAIService openAIService;
+    private final TaskExecutor poolExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter hits;
+    private final Counter misses;
+    private final Set<String> refilling = ConcurrentHashMap.newKeySet();
+    private final Map<String, PendingRequests> pendingRequests = new ConcurrentHashMap<>();
+    private volatile Set<String> topProfileKeys = Set.of();
+
+    @Value("${mealplan.pool.enabled:false}")
+    private boolean enabled;
+
+    @Value("${mealplan.pool.top-profiles:5}")
+    private int topProfiles = 5;
+
+    @Value("${mealplan.pool.plans-per-profile:10}")
+    private int plansPerProfile = 10;
+
+    @Value("${mealplan.pool.min-available:3}")
+    private int minAvailable = 3;
+
+    @Value("${mealplan.pool.max-deliveries-per-plan:50}")
+    private int maxDeliveriesPerPlan = 50;
+
+    @Value("${mealplan.pool.plan-ttl:P7D}")
+    private Duration planTtl = Duration.ofDays(7);
+
+    @Value("${mealplan.pool.profile-window:P30D}")
+    private Duration profileWindow = Duration.ofDays(30);
+
+    public MealPlanPoolServiceImpl(
+            PreferenceProfileRepository profileRepository,
+            PooledMealPlanRepository planRepository,
+            PooledPlanDeliveryRepository deliveryRepository,
+            OpenAIService openAIService,
+            @Qualifier("mealPlanPoolExecutor") TaskExecutor poolExecutor,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.profileRepository = profileRepository;
+        this.planRepository = planRepository;
+        this.deliveryRepository = deliveryRepository;
+        this.openAIService = openAIService;
+        this.poolExecutor = poolExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.hits = Counter.builder("meal.pool.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("meal.pool.requests").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * Fejl i puljen må aldrig stoppe generering, så DB-fejl logges og giver et miss.
+     */
+    @Override
+    public Optional<PooledPlanClaim> claim(Consumer consumer, int weeks) {
+        if (!enabled) return Optional.empty();
+
+        long start = System.nanoTime();
+        PreferenceFingerprint preferences = PreferenceFingerprint.of(consumer, weeks);
+        String profileKey = preferences.key();
+        try {
+            Instant now = Instant.now();
+            recordRequest(preferences, profileKey, now);
+
+            Instant freshAfter = now.minus(planTtl);
+            List<PooledMealPlan> candidates = planRepository.findServable(
+                    profileKey, consumer.getId(), maxDeliveriesPerPlan, freshAfter, Limit.of(CLAIM_CANDIDATES));
+            for (PooledMealPlan plan : candidates) {
+                if (!tryClaim(plan, consumer.getId())) continue;
+
+                hits.increment();
+                if (planRepository.countByProfileKeyAndDeliveriesLessThanAndCreatedAtAfter(
+                        profileKey, maxDeliveriesPerPlan, freshAfter) < minAvailable) {
+                    submitRefill(preferences);
+                }
+                logger.debug("Served pooled plan {} to consumer: {}", plan.getId(), consumer.getId());
+                return Optional.of(new PooledPlanClaim(plan.getId(), consumer.getId(),
+                        new MealPlanGeneration(toMeals(plan.getMealsJson()), plan.getMessage(),
+                                MealPlanGeneration.TokenUsage.UNKNOWN, Duration.ofNanos(System.nanoTime() - start))));
+            }
+        } catch (DataAccessException | JsonProcessingException e) {
+            logger.warn("Meal plan pool unavailable for consumer {}: {}", consumer.getId(), e.getMessage());
+            return Optional.empty();
+        }
+
+        misses.increment();
+        if (topProfileKeys.contains(profileKey)) {
+            submitRefill(preferences);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Sletter brugerens udlevering og tæller planen ned igen i én transaktion. Er udleveringen allerede væk,
+     * røres tælleren ikke, så et gentaget kald ikke giver planen en ekstra udlevering.
+     */
+    @Override
+    public void release(PooledPlanClaim claim) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (deliveryRepository.deleteDelivery(claim.planId(), claim.consumerId()) > 0) {
+                    planRepository.releaseDelivery(claim.planId());
+                }
+            });
+            logger.info("Released pooled plan {} for consumer: {}", claim.planId(), claim.consumerId());
+        } catch (DataAccessException e) {
+            logger.warn("Could not release pooled plan {} for consumer {}: {}",
+                    claim.planId(), claim.consumerId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Fjerner udtjente planer og fylder puljen op for de mest efterspurgte profiler. Kører uden for spidsbelastning,
+     * så OpenAI-kaldene ikke konkurrerer med brugernes.
+     */
+    @Scheduled(cron = "${mealplan.pool.refill-cron:0 0 3 * * *}")
+    public void refillTopProfiles() {
+        if (!enabled) return;
+
+        Instant freshAfter = Instant.now().minus(planTtl);
+        planRepository.deleteRetiredDeliveries(maxDeliveriesPerPlan, freshAfter);
+        int retired = planRepository.deleteRetired(maxDeliveriesPerPlan, freshAfter);
+
+        List<PreferenceProfile> profiles = loadTopProfiles();
+        logger.info("Refilling meal plan pool for {} profiles, retired {} plans", profiles.size(), retired);
+        profiles.forEach(profile -> submitRefill(PreferenceFingerprint.of(profile)));
+    }
+
+    /**
+     * Holder listen over top-profiler frisk mellem de natlige kørsler, så et miss på en populær profil fylder op.
+     */
+    @Scheduled(fixedDelayString = "${mealplan.pool.top-profiles-refresh:PT10M}")
+    public void refreshTopProfiles() {
+        if (!enabled) return;
+        loadTopProfiles();
+    }
+
+    private List<PreferenceProfile> loadTopProfiles() {
+        List<PreferenceProfile> profiles = profileRepository.findByLastRequestedAtAfterOrderByRequestCountDesc(
+                Instant.now().minus(profileWindow), Limit.of(topProfiles));
+        topProfileKeys = profiles.stream().map(PreferenceProfile::getProfileKey).collect(Collectors.toUnmodifiableSet());
+        return profiles;
+    }
+
+    private void recordRequest(PreferenceFingerprint preferences, String profileKey, Instant now) {
+        PendingRequests pending = pendingRequests.computeIfAbsent(profileKey, key -> new PendingRequests(preferences));
+        pending.count.increment();
+        pending.lastRequestedAt = now;
+    }
+
+    /**
+     * Skriver tællingerne siden sidste kørsel til {@code meal_plan_profile}, én opdatering pr. profil.
+     * <p>
+     *      Profiler uden nye requests fjernes fra hukommelsen. En request der tæller i præcis det øjeblik, kan gå
+     *      tabt; tallene bruges kun til at rangere profiler. Fejler databasen, lægges tællingen tilbage til næste kørsel.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${mealplan.pool.request-flush-interval:PT30S}")
+    public void flushRequestCounts() {
+        for (Map.Entry<String, PendingRequests> entry : pendingRequests.entrySet()) {
+            String profileKey = entry.getKey();
+            PendingRequests pending = entry.getValue();
+            long count = pending.count.sumThenReset();
+            if (count == 0) {
+                pendingRequests.remove(profileKey, pending);
+                count = pending.count.sumThenReset();
+                if (count == 0) continue;
+            }
+
+            try {
+                writeRequests(profileKey, pending, count);
+            } catch (DataAccessException e) {
+                logger.warn("Could not record {} requests for profile {}: {}", count, profileKey, e.getMessage());
+                pendingRequests.computeIfAbsent(profileKey, key -> pending).count.add(count);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flushRequestCounts();
+    }
+
+    private void writeRequests(String profileKey, PendingRequests pending, long count) {
+        Instant lastRequestedAt = pending.lastRequestedAt;
+        if (profileRepository.recordRequests(profileKey, count, lastRequestedAt) > 0) return;
+
+        PreferenceProfile profile = pending.preferences.toProfile();
+        profile.setRequestCount(count);
+        profile.setLastRequestedAt(lastRequestedAt);
+        try {
+            profileRepository.saveAndFlush(profile);
+        } catch (DataIntegrityViolationException e) {
+            // En anden instans oprettede profilen samtidig
+            profileRepository.recordRequests(profileKey, count, lastRequestedAt);
+        }
+    }
+
+    /**
+     * Tæller udleveringen og registrerer brugeren i én transaktion. Har brugeren fået planen i mellemtiden,
+     * ruller den unikke nøgle begge dele tilbage.
+     */
+    private boolean tryClaim(PooledMealPlan plan, UUID consumerId) {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (planRepository.recordDelivery(plan.getId(), maxDeliveriesPerPlan) == 0) {
+                    return false;
+                }
+                deliveryRepository.saveAndFlush(new PooledPlanDelivery(null, plan.getId(), consumerId, Instant.now()));
+                return true;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            logger.debug("Pooled plan {} already delivered to consumer: {}", plan.getId(), consumerId);
+            return false;
+        }
+    }
+
+    private void submitRefill(PreferenceFingerprint preferences) {
+        String profileKey = preferences.key();
+        if (!refilling.add(profileKey)) return;
+
+        try {
+            poolExecutor.execute(() -> {
+                try {
+                    refill(preferences, profileKey);
+                } finally {
+                    refilling.remove(profileKey);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            refilling.remove(profileKey);
+            logger.warn("Meal plan pool executor saturated; profile {} is refilled later", profileKey);
+        }
+    }
+
+    void refill(PreferenceFingerprint preferences, String profileKey) {
+        long available = planRepository.countByProfileKeyAndDeliveriesLessThanAndCreatedAtAfter(
+                profileKey, maxDeliveriesPerPlan, Instant.now().minus(planTtl));
+        int added = 0;
+        try {
+            for (long i = available; i < plansPerProfile; i++) {
+                MealPlanGeneration generation = openAIService.generateMealPlan(preferences);
+                if (generation.isEmpty()) {
+                    // OpenAI er nede eller circuit breakeren åben; prøv igen ved næste miss eller kørsel
+                    logger.warn("Stopped refilling profile {} after {} plans: generation failed", profileKey, added);
+                    return;
+                }
+                planRepository.save(toPooledPlan(profileKey, generation));
+                added++;
+            }
+        } catch (RuntimeException | JsonProcessingException e) {
+            logger.error("Failed to refill meal plan pool for profile {}", profileKey, e);
+            return;
+        }
+        logger.info("Added {} plans to pool for profile {}", added, profileKey);
+    }
+
+    private PooledMealPlan toPooledPlan(String profileKey, MealPlanGeneration generation) throws JsonProcessingException {
+        List<PooledMeal> meals = generation.meals().stream()
+                .map(meal -> new PooledMeal(meal.getMealName(), meal.getIngredients(), meal.getImgUrl()))
+                .toList();
+
+        PooledMealPlan plan = new PooledMealPlan();
+        plan.setProfileKey(profileKey);
+        plan.setMealsJson(MAPPER.writeValueAsString(meals));
+        plan.setMessage(generation.message());
+        plan.setCreatedAt(Instant.now());
+        return plan;
+    }
+
+    // Nye Meal-objekter pr. udlevering, da de bliver gemt som entities af kalderen
+    private List<Meal> toMeals(String mealsJson) throws JsonProcessingException {
+        List<PooledMeal> meals = MEALS_READER.readValue(mealsJson);
+        return meals.stream().map(PooledMeal::toMeal).toList();
+    }
+
+    private static final class PendingRequests {
+
+        private final PreferenceFingerprint preferences;
+        private final LongAdder count = new LongAdder();
+        private volatile Instant lastRequestedAt;
+
+        PendingRequests(PreferenceFingerprint preferences) {
+            this.preferences = preferences;
+        }
+    }
+
+    private record PooledMeal(String mealName, List<String> ingredients, String imgUrl) {
+
+        Meal toMeal() {
+            Meal meal = new Meal();
+            meal.setMealName(mealName);
+            meal.setIngredients(ingredients);
+            meal.setImgUrl(imgUrl != null ? imgUrl : "");
+            return meal;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.weeklymealplannergpt.service.pool;
+
+import com.example.weeklymealplannergpt.service.openai.MealPlanGeneration;
+
+import java.util.UUID;
+
+/**
+ * En udlevering fra puljen: planen er talt som udleveret til brugeren. Gemmes planen ikke, skal udleveringen
+ * gives tilbage med {@link MealPlanPoolService#release}.
+ */
+public record PooledPlanClaim(Long planId, UUID consumerId, MealPlanGeneration generation) {
+}
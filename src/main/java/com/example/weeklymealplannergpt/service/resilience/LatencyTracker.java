@@ -0,0 +1,42 @@
+package com.example.weeklymealplannergpt.service.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Ringbuffer med de seneste vellykkede svartider, så hedge-forsinkelsen kan følge upstreams p95.
+ * Percentilen regnes ved at sortere en kopi; med et par hundrede samples er det mikrosekunder
+ * mod OpenAI-kald på sekunder.
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyTracker(int size) {
+        this.samples = new long[size];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+    }
+
+    /**
+     * @return {@code null} indtil der er mindst {@code minSamples} målinger
+     */
+    public Duration percentile(double percentile, int minSamples) {
+        long[] copy;
+        synchronized (this) {
+            if (count < Math.max(1, minSamples)) {
+                return null;
+            }
+            copy = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile * copy.length) - 1;
+        return Duration.ofNanos(copy[Math.max(0, Math.min(index, copy.length - 1))]);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.weeklymealplannergpt.service.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jævn rate-begrænsning: hver tilladelse har en fast plads i tiden ({@code 1s / permitsPerSecond}).
+ * <p>
+ *      {@link #acquire} reserverer de næste pladser og sover til den første af dem. Et batch på n
+ *      tilladelser får dermed lov at gå nu, men skubber næste batch n intervaller frem, så
+ *      gennemsnittet holder sig under grænsen uden at samle ledige tilladelser op.
+ * </p>
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeNanos = System.nanoTime();
+
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    public void acquire(int permits) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextFreeNanos);
+            nextFreeNanos = start + permits * intervalNanos;
+            waitNanos = start - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.weeklymealplannergpt.service.resilience;
+
+import com.example.weeklymealplannergpt.config.ResilienceProperties;
+import com.example.weeklymealplannergpt.exception.UpstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resilience-lag omkring kald til én downstream.
+ * <p>
+ *      Rækkefølgen pr. kald er: circuit breaker (afvis straks hvis åben), retry med jittered backoff
+ *      begrænset af et fælles {@link RetryBudget}, evt. hedging efter upstreams p95, og inderst en bulkhead
+ *      der begrænser samtidige upstream-kald. Kun timeouts/IO-fejl, 5xx og 429 tæller som upstream-fejl;
+ *      andre fejl betyder at upstream svarede og gentages ikke.
+ * </p>
+ */
+public class ResilientCaller implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientCaller.class);
+
+    private final String name;
+    private final ResilienceProperties.Retry retry;
+    private final ResilienceProperties.Hedge hedge;
+    private final Duration bulkheadMaxWait;
+
+    private final CircuitBreaker circuitBreaker;
+    private final RetryBudget retryBudget;
+    private final LatencyTracker latencies = new LatencyTracker(200);
+    private final Semaphore bulkhead;
+    private final ExecutorService hedgeExecutor;
+
+    private final Counter retries;
+    private final Counter hedges;
+    private final Counter circuitRejections;
+    private final Counter bulkheadRejections;
+
+    public ResilientCaller(String name, ResilienceProperties.Policy policy, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.retry = policy.getRetry();
+        this.hedge = policy.getHedge();
+        this.bulkheadMaxWait = policy.getBulkhead().getMaxWait();
+
+        ResilienceProperties.CircuitBreaker breaker = policy.getCircuitBreaker();
+        this.circuitBreaker = new CircuitBreaker(breaker.getWindowSize(), breaker.getMinimumCalls(),
+                breaker.getFailureRateThreshold(), breaker.getOpenDuration(), breaker.getHalfOpenCalls());
+        this.retryBudget = new RetryBudget(retry.getBudgetRatio(), retry.getBudgetCapacity());
+        this.bulkhead = new Semaphore(policy.getBulkhead().getMaxConcurrentCalls(), true);
+        this.hedgeExecutor = hedge.isEnabled()
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-hedge-", 0).factory())
+                : null;
+
+        Gauge.builder("resilience.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .tag("upstream", name)
+                .register(meterRegistry);
+        Gauge.builder("resilience.retry.budget", retryBudget, RetryBudget::getBalance)
+                .tag("upstream", name)
+                .register(meterRegistry);
+        Gauge.builder("resilience.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .tag("upstream", name)
+                .register(meterRegistry);
+        this.retries = Counter.builder("resilience.retries").tag("upstream", name).register(meterRegistry);
+        this.hedges = Counter.builder("resilience.hedges").tag("upstream", name).register(meterRegistry);
+        this.circuitRejections = Counter.builder("resilience.rejected")
+                .tag("upstream", name).tag("reason", "circuit_open").register(meterRegistry);
+        this.bulkheadRejections = Counter.builder("resilience.rejected")
+                .tag("upstream", name).tag("reason", "bulkhead_full").register(meterRegistry);
+    }
+
+    /**
+     * Kald med retries og evt. hedging. {@code call} skal være idempotent nok til at kunne køres flere gange.
+     *
+     * @throws UpstreamUnavailableException hvis kaldet afvises lokalt
+     */
+    public <T> T call(Callable<T> call) throws Exception {
+        retryBudget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            acquirePermission();
+            try {
+                T result = hedged(call);
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (Exception e) {
+                boolean upstreamFailure = record(e);
+                if (!upstreamFailure || attempt >= retry.getMaxAttempts() || !retryBudget.tryWithdraw()) {
+                    throw e;
+                }
+                Duration backoff = backoff(attempt);
+                logger.warn("{} call failed ({}), retry {} in {} ms",
+                        name, e.getMessage(), attempt, backoff.toMillis());
+                retries.increment();
+                sleep(backoff);
+            }
+        }
+    }
+
+    /**
+     * Kald uden retry og hedging, fx et streamet svar hvor events allerede er sendt videre.
+     * Circuit breaker og bulkhead gælder stadig.
+     */
+    public <T> T callOnce(Callable<T> call) throws Exception {
+        acquirePermission();
+        try {
+            T result = bulkheaded(call, false);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (Exception e) {
+            record(e);
+            throw e;
+        }
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @Override
+    public void close() {
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+
+    private void acquirePermission() {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            circuitRejections.increment();
+            throw new UpstreamUnavailableException(name + " circuit breaker is open");
+        }
+    }
+
+    /**
+     * @return om fejlen skyldtes upstream og må gentages
+     */
+    private boolean record(Exception e) {
+        if (e instanceof UpstreamUnavailableException) {
+            circuitBreaker.onIgnored();
+            return false;
+        }
+        if (isUpstreamFailure(e)) {
+            circuitBreaker.onFailure();
+            return true;
+        }
+        circuitBreaker.onSuccess();
+        return false;
+    }
+
+    static boolean isUpstreamFailure(Exception e) {
+        return e instanceof ResourceAccessException
+                || e instanceof HttpServerErrorException
+                || e instanceof HttpClientErrorException.TooManyRequests;
+    }
+
+    private <T> T hedged(Callable<T> call) throws Exception {
+        Duration delay = hedgeDelay();
+        if (delay == null) {
+            return bulkheaded(call, true);
+        }
+
+        Attempt<T> primary = submit(call);
+        try {
+            return primary.result().get(delay.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Langsommere end p95: send et ekstra kald, hvis budgettet tillader det
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+
+        if (!retryBudget.tryWithdraw()) {
+            return await(primary.result());
+        }
+        hedges.increment();
+        Attempt<T> secondary = submit(call);
+        try {
+            return await(firstSuccessful(primary.result(), secondary.result()));
+        } finally {
+            primary.task().cancel(true);
+            secondary.task().cancel(true);
+        }
+    }
+
+    private Duration hedgeDelay() {
+        if (hedgeExecutor == null) {
+            return null;
+        }
+        Duration percentile = latencies.percentile(hedge.getPercentile(), hedge.getMinSamples());
+        if (percentile == null) {
+            return null;
+        }
+        return percentile.compareTo(hedge.getMinDelay()) < 0 ? hedge.getMinDelay() : percentile;
+    }
+
+    private <T> Attempt<T> submit(Callable<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = hedgeExecutor.submit(() -> {
+            try {
+                result.complete(bulkheaded(call, true));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return new Attempt<>(result, task);
+    }
+
+    private <T> T bulkheaded(Callable<T> call, boolean recordLatency) throws Exception {
+        if (!bulkhead.tryAcquire(bulkheadMaxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+            bulkheadRejections.increment();
+            throw new UpstreamUnavailableException("Too many concurrent " + name + " calls");
+        }
+        try {
+            long start = System.nanoTime();
+            T result = call.call();
+            if (recordLatency) {
+                latencies.record(System.nanoTime() - start);
+            }
+            return result;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private Duration backoff(int attempt) {
+        // Full jitter: tilfældig ventetid i [0, min(max, initial * 2^(attempt-1))]
+        long ceiling = Math.min(retry.getMaxBackoff().toMillis(),
+                retry.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private static void sleep(Duration duration) throws InterruptedException {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> attempt : List.of(first, second)) {
+            attempt.whenComplete((value, error) -> {
+                if (error == null) {
+                    winner.complete(value);
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        return winner;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        return e.getCause() instanceof Exception cause ? cause : e;
+    }
+
+    private record Attempt<T>(CompletableFuture<T> result, Future<?> task) {}
+}
@@ -0,0 +1,45 @@
+package com.example.weeklymealplannergpt.service.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global grænse for retries, så de ikke ganger loadet op under et upstream-nedbrud.
+ * <p>
+ *      Hvert nyt kald indbetaler {@code ratio} tokens og hver retry (eller hedge) koster ét. Med fx
+ *      {@code ratio=0.2} kan retries højst lægge 20% oveni trafikken, uanset hvor mange forsøg det enkelte
+ *      kald må bruge. Saldoen er loftet af {@code capacity}, som også er startsaldoen.
+ * </p>
+ */
+public class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+    private final long capacity;
+    private final AtomicLong balance;
+
+    public RetryBudget(double ratio, int capacity) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.capacity = capacity * SCALE;
+        this.balance = new AtomicLong(this.capacity);
+    }
+
+    public void deposit() {
+        balance.accumulateAndGet(deposit, (current, amount) -> Math.min(capacity, current + amount));
+    }
+
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    public double getBalance() {
+        return (double) balance.get() / SCALE;
+    }
+}
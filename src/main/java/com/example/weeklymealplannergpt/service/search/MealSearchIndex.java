@@ -0,0 +1,382 @@
+package com.example.weeklymealplannergpt.service.search;
+
+import com.example.weeklymealplannergpt.dto.MealSearchHit;
+import com.example.weeklymealplannergpt.model.Meal;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+
+/**
+ * Inverteret index over meal-navne og ingredienser.
+ * <p>
+ *      Tekst tokeniseres til små bogstaver uden accenter. Hvert token peger på de meals, der indeholder
+ *      det; navne-tokens vægter mere end ingrediens-tokens. Ordbogen er sorteret, så prefix-opslag
+ *      ("tom" finder "tomato") er et range-opslag, og fuzzy match (én til to tastefejl) kun sammenligner
+ *      tokens med samme forbogstav. Resultater rangeres efter hvor mange søgeord de matcher og derefter
+ *      en idf-vægtet score.
+ * </p>
+ * <p>
+ *      Meals får et fast slot-nummer, og hver posting-liste er to primitive arrays (slots og vægte), så en
+ *      søgning kun løber arrays igennem og summerer i {@code double[]} uden boxing, og kun top-{@code limit}
+ *      holdes i en lille heap. Læsninger er låsefri: skrivninger ({@link #add}, {@link #remove}) serialiseres og
+ *      publicerer nye, uforanderlige snapshots af de posting-lister de ændrer. Tilføjelser skriver kun ud over
+ *      den publicerede længde, så de deler array med det forrige snapshot.
+ * </p>
+ */
+public class MealSearchIndex {
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float INGREDIENT_WEIGHT = 2.0f;
+    private static final double PREFIX_FACTOR = 0.8;
+    private static final double FUZZY_FACTOR = 0.5;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Set<String> STOP_WORDS = Set.of("and", "or", "with", "of", "the", "in", "a", "an", "to");
+
+    private final Map<Long, Integer> slotsById = new ConcurrentHashMap<>();
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+    private final NavigableSet<String> terms = new ConcurrentSkipListSet<>();
+    private final Object writeLock = new Object();
+
+    // Slot -> meal. Erstattes (ikke ændres i længden) under writeLock; fjernede meals står som null
+    private volatile IndexedMeal[] mealsBySlot = new IndexedMeal[64];
+    private int nextSlot;
+
+    public void add(Meal meal) {
+        if (meal == null || meal.getId() == null || meal.getMealName() == null) return;
+
+        Map<String, Float> weights = new LinkedHashMap<>();
+        for (String token : tokenize(meal.getMealName())) {
+            weights.merge(token, NAME_WEIGHT, Math::max);
+        }
+        List<String> ingredients = meal.getIngredients() != null ? List.copyOf(meal.getIngredients()) : List.of();
+        for (String ingredient : ingredients) {
+            for (String token : tokenize(ingredient)) {
+                weights.merge(token, INGREDIENT_WEIGHT, Math::max);
+            }
+        }
+
+        synchronized (writeLock) {
+            Integer existing = slotsById.get(meal.getId());
+            int slot;
+            if (existing != null) {
+                slot = existing;
+                unlink(slot, mealsBySlot[slot]);
+            } else {
+                slot = nextSlot++;
+                if (slot == mealsBySlot.length) {
+                    mealsBySlot = Arrays.copyOf(mealsBySlot, slot * 2);
+                }
+            }
+            IndexedMeal[] bySlot = mealsBySlot;
+            bySlot[slot] = new IndexedMeal(meal.getId(), meal.getMealName(), meal.getImgUrl(), ingredients,
+                    List.copyOf(weights.keySet()));
+            mealsBySlot = bySlot;
+            slotsById.put(meal.getId(), slot);
+
+            weights.forEach((term, weight) -> {
+                postings.put(term, postings.getOrDefault(term, Postings.EMPTY).append(slot, weight));
+                terms.add(term);
+            });
+        }
+    }
+
+    public void remove(Long mealId) {
+        synchronized (writeLock) {
+            Integer slot = slotsById.remove(mealId);
+            if (slot == null) return;
+            IndexedMeal[] bySlot = mealsBySlot;
+            unlink(slot, bySlot[slot]);
+            bySlot[slot] = null;
+            mealsBySlot = bySlot;
+        }
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            slotsById.clear();
+            postings.clear();
+            terms.clear();
+            mealsBySlot = new IndexedMeal[64];
+            nextSlot = 0;
+        }
+    }
+
+    public int size() {
+        return slotsById.size();
+    }
+
+    public List<MealSearchHit> search(String query, int limit) {
+        List<String> queryTokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTokens.isEmpty() || limit <= 0) return List.of();
+
+        IndexedMeal[] bySlot = mealsBySlot;
+        int documentCount = Math.max(1, slotsById.size());
+        double[] scores = new double[bySlot.length];
+        int[] matchedTokens = new int[bySlot.length];
+        double[] tokenBest = new double[bySlot.length];
+        IntList touched = new IntList();
+        IntList tokenTouched = new IntList();
+
+        for (String queryToken : queryTokens) {
+            for (Map.Entry<String, Double> candidate : candidateTerms(queryToken).entrySet()) {
+                Postings list = postings.get(candidate.getKey());
+                if (list == null || list.size == 0) continue;
+
+                double factor = candidate.getValue() * Math.log(1.0 + (double) documentCount / list.size);
+                for (int i = 0; i < list.size; i++) {
+                    int slot = list.slots[i];
+                    if (slot >= tokenBest.length) continue;
+                    double score = factor * list.weights[i];
+                    if (tokenBest[slot] == 0) tokenTouched.add(slot);
+                    if (score > tokenBest[slot]) tokenBest[slot] = score;
+                }
+            }
+            // Hvert søgeord tæller kun sit bedste match pr. meal
+            for (int i = 0; i < tokenTouched.size; i++) {
+                int slot = tokenTouched.values[i];
+                if (matchedTokens[slot]++ == 0) touched.add(slot);
+                scores[slot] += tokenBest[slot];
+                tokenBest[slot] = 0;
+            }
+            tokenTouched.size = 0;
+        }
+
+        TopHits top = new TopHits(limit, matchedTokens, scores);
+        for (int i = 0; i < touched.size; i++) {
+            int slot = touched.values[i];
+            if (bySlot[slot] != null) top.offer(slot);
+        }
+
+        int[] ranked = top.drainBestFirst();
+        List<MealSearchHit> hits = new ArrayList<>(ranked.length);
+        for (int slot : ranked) {
+            IndexedMeal meal = bySlot[slot];
+            hits.add(new MealSearchHit(meal.id(), meal.mealName(), meal.imgUrl(), meal.ingredients(), scores[slot]));
+        }
+        return hits;
+    }
+
+    /**
+     * Små bogstaver, uden accenter, delt på alt der ikke er bogstaver eller tal. Stopord og
+     * enkeltbogstaver fjernes.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return List.of();
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(folded)) {
+            if (token.length() > 1 && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Termer der matcher {@code token} med deres faktor: eksakt 1.0, prefix {@value #PREFIX_FACTOR}.
+     * Fuzzy ({@value #FUZZY_FACTOR}) prøves kun, hvis intet andet matcher.
+     */
+    private Map<String, Double> candidateTerms(String token) {
+        Map<String, Double> candidates = new HashMap<>();
+        if (postings.containsKey(token)) {
+            candidates.put(token, 1.0);
+        }
+        for (String term : terms.subSet(token, false, token + Character.MAX_VALUE, false)) {
+            candidates.putIfAbsent(term, PREFIX_FACTOR);
+        }
+        if (!candidates.isEmpty()) return candidates;
+
+        int maxDistance = token.length() >= 8 ? 2 : token.length() >= 4 ? 1 : 0;
+        if (maxDistance == 0) return candidates;
+
+        String first = token.substring(0, 1);
+        for (String term : terms.subSet(first, true, first + Character.MAX_VALUE, false)) {
+            if (Math.abs(term.length() - token.length()) <= maxDistance && withinDistance(token, term, maxDistance)) {
+                candidates.put(term, FUZZY_FACTOR);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Levenshtein-afstand med tidligt stop, når hele rækken overstiger {@code max}.
+     */
+    static boolean withinDistance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) return false;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()] <= max;
+    }
+
+    private void unlink(int slot, IndexedMeal meal) {
+        if (meal == null) return;
+        for (String term : meal.terms()) {
+            Postings list = postings.get(term);
+            if (list == null) continue;
+            Postings remaining = list.without(slot);
+            if (remaining.size == 0) {
+                postings.remove(term);
+                terms.remove(term);
+            } else {
+                postings.put(term, remaining);
+            }
+        }
+    }
+
+    private record IndexedMeal(Long id, String mealName, String imgUrl, List<String> ingredients, List<String> terms) {}
+
+    /**
+     * Uforanderligt snapshot af én posting-liste: de første {@code size} elementer af arrays'ene.
+     */
+    private static final class Postings {
+
+        static final Postings EMPTY = new Postings(new int[0], new float[0], 0);
+
+        final int[] slots;
+        final float[] weights;
+        final int size;
+
+        Postings(int[] slots, float[] weights, int size) {
+            this.slots = slots;
+            this.weights = weights;
+            this.size = size;
+        }
+
+        Postings append(int slot, float weight) {
+            int[] newSlots = slots;
+            float[] newWeights = weights;
+            if (size == slots.length) {
+                int capacity = Math.max(4, size * 2);
+                newSlots = Arrays.copyOf(slots, capacity);
+                newWeights = Arrays.copyOf(weights, capacity);
+            }
+            newSlots[size] = slot;
+            newWeights[size] = weight;
+            return new Postings(newSlots, newWeights, size + 1);
+        }
+
+        Postings without(int slot) {
+            int[] newSlots = new int[slots.length];
+            float[] newWeights = new float[weights.length];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (slots[i] != slot) {
+                    newSlots[count] = slots[i];
+                    newWeights[count] = weights[i];
+                    count++;
+                }
+            }
+            return new Postings(newSlots, newWeights, count);
+        }
+    }
+
+    /**
+     * Min-heap af slots med de {@code limit} bedste: flest matchede søgeord, så højeste score, så laveste slot.
+     * Primitiv, så der ikke boxes et {@code Integer} pr. kandidat.
+     */
+    private static final class TopHits {
+        private final int[] heap;
+        private final int[] matched;
+        private final double[] scores;
+        private int size;
+
+        TopHits(int limit, int[] matched, double[] scores) {
+            this.heap = new int[limit];
+            this.matched = matched;
+            this.scores = scores;
+        }
+
+        void offer(int slot) {
+            if (size < heap.length) {
+                heap[size] = slot;
+                siftUp(size++);
+            } else if (better(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(0);
+            }
+        }
+
+        int[] drainBestFirst() {
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = heap[0];
+                heap[0] = heap[--size];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private boolean better(int a, int b) {
+            if (matched[a] != matched[b]) return matched[a] > matched[b];
+            if (scores[a] != scores[b]) return scores[a] > scores[b];
+            return a < b;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!better(heap[parent], heap[index])) return;
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int worst = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && better(heap[worst], heap[left])) worst = left;
+                if (right < size && better(heap[worst], heap[right])) worst = right;
+                if (worst == index) return;
+                swap(worst, index);
+                index = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[64];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
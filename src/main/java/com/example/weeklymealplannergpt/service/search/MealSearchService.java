@@ -0,0 +1,13 @@
+package com.example.weeklymealplannergpt.service.search;
+
+import com.example.weeklymealplannergpt.dto.MealSearchHit;
+import com.example.weeklymealplannergpt.model.Meal;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MealSearchService {
+    List<MealSearchHit> search(String query, int limit);
+    void index(Collection<Meal> meals);
+    void rebuild();
+}
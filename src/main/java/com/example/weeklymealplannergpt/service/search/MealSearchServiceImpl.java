@@ -0,0 +1,66 @@
+package com.example.weeklymealplannergpt.service.search;
+
+import com.example.weeklymealplannergpt.dto.MealSearchHit;
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.repository.MealRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lokal søgning i gemte meals via {@link MealSearchIndex}.
+ * <p>
+ *      Indexet bygges fra databasen ved opstart og opdateres derefter løbende, når nye meals er committed
+ *      (se {@code MealPlanServiceImpl}), så søgninger ikke kræver et kald til TheMealDB.
+ * </p>
+ */
+@Service
+public class MealSearchServiceImpl implements MealSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MealSearchServiceImpl.class);
+
+    public static final int MAX_LIMIT = 50;
+    private static final int REBUILD_PAGE_SIZE = 500;
+
+    private final MealSearchIndex index = new MealSearchIndex();
+    private final MealRepository mealRepository;
+
+    public MealSearchServiceImpl(MealRepository mealRepository) {
+        this.mealRepository = mealRepository;
+    }
+
+    @Override
+    public List<MealSearchHit> search(String query, int limit) {
+        return index.search(query, Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+
+    @Override
+    public void index(Collection<Meal> meals) {
+        meals.forEach(index::add);
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        index.clear();
+        // Keyset-sider, så kun én side meals (med ingredienser) er i hukommelsen ad gangen
+        long lastId = 0;
+        List<Meal> page;
+        do {
+            page = mealRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(REBUILD_PAGE_SIZE));
+            page.forEach(index::add);
+            if (!page.isEmpty()) {
+                lastId = page.getLast().getId();
+            }
+        } while (page.size() == REBUILD_PAGE_SIZE);
+        logger.info("Meal search index built with {} meals in {} ms",
+                index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -1,17 +1,17 @@
 // Load history
 async function loadHistory() {
     try {
-        const cached = CacheService.get('mealplan_history');
+        const cached = CacheService.get('mealplan_history_page');
         if (cached) {
             displayHistory(cached);
             document.getElementById('historySkeleton').style.display = 'none';
             return;
         }
 
-        const response = await fetch('/api/mealplan/history');
+        const response = await fetch('/api/mealplan/history/page?size=10');
         if (response.ok) {
-            const history = await response.json();
-            CacheService.set('mealplan_history', history);
+            const history = (await response.json()).plans;
+            CacheService.set('mealplan_history_page', history);
             displayHistory(history);
         }
     } catch (error) {
@@ -36,7 +36,7 @@ function displayHistory(history) {
         const mealCount = plan.meals ? plan.meals.length : 0;
         
         return `
-            <a href="#" class="list-group-item list-group-item-action history-item" data-plan='${JSON.stringify(plan)}'>
+            <a href="#" class="list-group-item list-group-item-action history-item" data-plan-id="${plan.id}">
                 <div class="d-flex justify-content-between align-items-center">
                     <div>
                         <div class="history-date">${date}</div>
@@ -52,10 +52,12 @@ function displayHistory(history) {
     document.getElementById('historyEmpty').style.display = 'none';
     
     document.querySelectorAll('.history-item').forEach(item => {
-        item.addEventListener('click', (e) => {
+        item.addEventListener('click', async (e) => {
             e.preventDefault();
-            const plan = JSON.parse(item.dataset.plan);
-            showHistoryModal(plan);
+            const response = await fetch(`/api/mealplan/${item.dataset.planId}`);
+            if (response.ok) {
+                showHistoryModal(await response.json());
+            }
         });
     });
 }
@@ -83,7 +83,7 @@ async function generateMealPlan() {
         if (response.ok) {
             const data = await response.json();
             CacheService.invalidate('current_mealplan');
-            CacheService.invalidate('mealplan_history');
+            CacheService.invalidate('mealplan_history_page');
             CacheService.set('current_mealplan', data);
             displayMealPlan(data);
             loadHistory();
@@ -108,7 +108,7 @@ async function sendMealPlanByEmail() {
             headers: { 'Content-Type': 'application/json', 'X-XSRF-TOKEN': getCsrfToken() },
             credentials: 'same-origin'
         });
-        alert(response.ok ? 'Email sent!' : (await response.json()).error || 'Failed to send email');
+        alert(response.ok ? 'Email queued! It will arrive in a moment.' : 'Failed to send email');
     } catch (error) {
         console.error('Error sending email:', error);
         alert('Failed to send email');
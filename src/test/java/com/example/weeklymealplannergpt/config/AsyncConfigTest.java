@@ -0,0 +1,167 @@
+package com.example.weeklymealplannergpt.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load-test der sammenligner de to execution modes for blokerende I/O: 400 genereringer der hver kalder et lokalt
+ * upstream med 50 ms forsinkelse gennem en {@link RestTemplate} med {@link OutboundConcurrencyInterceptor}.
+ * {@code mealPlanStreamExecutor} bygges af {@link AsyncConfig} med {@code spring.threads.virtual.enabled} sat
+ * til hhv. false og true. Målingerne logges; kører kun med {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class AsyncConfigTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfigTest.class);
+
+    private static final int GENERATIONS = 400;
+    private static final int POOL_SIZE = 16;
+    private static final int UPSTREAM_PERMITS = 64;
+    private static final long UPSTREAM_LATENCY_MS = 50;
+
+    static {
+        // Uden TCP_NODELAY lægger Nagle + delayed ACK ~40 ms oven i hvert svar fra HttpServer
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(AsyncConfig.class)
+            .withPropertyValues(
+                    "mealplan.stream.pool-size=" + POOL_SIZE,
+                    "mealplan.stream.queue-capacity=" + GENERATIONS);
+
+    private HttpServer server;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), GENERATIONS);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/generate", exchange -> {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(UPSTREAM_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            byte[] body = "{\"meals\":[]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void virtualThreadMode_handlesBlockingHttpLoadFasterThanPlatformPool() {
+        LoadResult platform = runInMode(false);
+        LoadResult virtual = runInMode(true);
+
+        logger.info("platform pool ({} threads): {} ms, {} generations/s, peak {} upstream calls",
+                POOL_SIZE, platform.millis(), platform.perSecond(), platform.peakInFlight());
+        logger.info("virtual threads ({} permits): {} ms, {} generations/s, peak {} upstream calls",
+                UPSTREAM_PERMITS, virtual.millis(), virtual.perSecond(), virtual.peakInFlight());
+
+        // Højst 400 / 16 tråde * 50 ms ≈ 1250 ms mod 400 / 64 permits * 50 ms ≈ 300 ms. Med få kerner bliver
+        // HTTP-stakken selv flaskehalsen, så her tjekkes kun at virtual threads er hurtigst og at grænserne holder
+        assertThat(platform.peakInFlight()).isLessThanOrEqualTo(POOL_SIZE);
+        assertThat(virtual.peakInFlight()).isGreaterThan(POOL_SIZE).isLessThanOrEqualTo(UPSTREAM_PERMITS);
+        assertThat(platform.millis()).isGreaterThanOrEqualTo(GENERATIONS / POOL_SIZE * UPSTREAM_LATENCY_MS);
+        assertThat(virtual.millis()).isLessThan(platform.millis());
+    }
+
+    private LoadResult runInMode(boolean virtualThreads) {
+        LoadResult[] result = new LoadResult[1];
+        contextRunner
+                .withPropertyValues("spring.threads.virtual.enabled=" + virtualThreads)
+                .run(context -> {
+                    TaskExecutor executor = context.getBean("mealPlanStreamExecutor", TaskExecutor.class);
+                    result[0] = runHttpLoad(executor);
+                });
+        return result[0];
+    }
+
+    private LoadResult runHttpLoad(TaskExecutor executor) throws InterruptedException {
+        RestTemplate restTemplate = restTemplate();
+        // Første runde varmer forbindelser og JIT op og tælles ikke med
+        sendGenerations(executor, restTemplate);
+        peakInFlight.set(0);
+
+        long start = System.nanoTime();
+        sendGenerations(executor, restTemplate);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new LoadResult(millis, peakInFlight.get());
+    }
+
+    private void sendGenerations(TaskExecutor executor, RestTemplate restTemplate) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(GENERATIONS);
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < GENERATIONS; i++) {
+            executor.execute(() -> {
+                try {
+                    restTemplate.getForObject(url(), String.class);
+                } catch (RuntimeException e) {
+                    failures.add(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(failures).isEmpty();
+    }
+
+    private RestTemplate restTemplate() {
+        OutboundProperties.Client client = new OutboundProperties.Client();
+        client.setType(OutboundProperties.ClientType.APACHE);
+        client.setMaxConnections(UPSTREAM_PERMITS);
+        OutboundConcurrencyInterceptor interceptor = new OutboundConcurrencyInterceptor(
+                Map.of("127.0.0.1", UPSTREAM_PERMITS), POOL_SIZE, Duration.ofSeconds(30));
+        return HttpClientConfig.restTemplate(
+                HttpClientConfig.requestFactory("benchmark", client, new SimpleMeterRegistry()), interceptor);
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/generate";
+    }
+
+    private record LoadResult(long millis, int peakInFlight) {
+
+        long perSecond() {
+            return GENERATIONS * 1000L / Math.max(millis, 1);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.weeklymealplannergpt.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpClientConfigTest {
+
+    private HttpServer server;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/ok", exchange -> {
+            byte[] body = "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/hang", exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.createContext("/stall", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("{\"status\":".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @ParameterizedTest
+    @EnumSource(OutboundProperties.ClientType.class)
+    void restTemplate_reusesClientForSequentialCalls(OutboundProperties.ClientType type) {
+        // Arrange
+        RestTemplate restTemplate = restTemplate(type, Duration.ofSeconds(5));
+
+        // Act
+        String first = restTemplate.getForObject(url("/ok"), String.class);
+        String second = restTemplate.getForObject(url("/ok"), String.class);
+
+        // Assert
+        assertThat(first).isEqualTo("{\"status\":\"ok\"}");
+        assertThat(second).isEqualTo(first);
+    }
+
+    @ParameterizedTest
+    @EnumSource(OutboundProperties.ClientType.class)
+    void restTemplate_failsFastOnHangingUpstream(OutboundProperties.ClientType type) {
+        // Arrange
+        RestTemplate restTemplate = restTemplate(type, Duration.ofMillis(300));
+        long start = System.nanoTime();
+
+        // Act + Assert
+        assertThatThrownBy(() -> restTemplate.getForObject(url("/hang"), String.class))
+                .isInstanceOf(ResourceAccessException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void apacheClient_failsWhenBodyStallsAfterHeaders() {
+        // Arrange
+        RestTemplate restTemplate = restTemplate(OutboundProperties.ClientType.APACHE, Duration.ofMillis(300));
+        long start = System.nanoTime();
+
+        // Act + Assert
+        assertThatThrownBy(() -> restTemplate.getForObject(url("/stall"), String.class))
+                .isInstanceOf(RestClientException.class)
+                .hasRootCauseInstanceOf(SocketTimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void apacheClient_exposesPoolMetrics() {
+        // Arrange
+        RestTemplate restTemplate = restTemplate(OutboundProperties.ClientType.APACHE, Duration.ofSeconds(5));
+
+        // Act
+        restTemplate.getForObject(url("/ok"), String.class);
+
+        // Assert
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.max").tag("httpclient", "test").gauge().value())
+                .isEqualTo(4.0);
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.connections")
+                .tag("httpclient", "test").tag("state", "available").gauge().value())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.pending").tag("httpclient", "test").gauge().value())
+                .isZero();
+    }
+
+    private RestTemplate restTemplate(OutboundProperties.ClientType type, Duration readTimeout) {
+        OutboundProperties.Client client = new OutboundProperties.Client();
+        client.setType(type);
+        client.setReadTimeout(readTimeout);
+        client.setMaxConnections(4);
+        ClientHttpRequestFactory requestFactory = HttpClientConfig.requestFactory("test", client, meterRegistry);
+        OutboundConcurrencyInterceptor interceptor =
+                new OutboundConcurrencyInterceptor(Map.of(), 4, Duration.ofSeconds(1));
+        return HttpClientConfig.restTemplate(requestFactory, interceptor);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.weeklymealplannergpt.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OutboundConcurrencyInterceptorTest {
+
+    @Test
+    void intercept_neverExceedsLimitForHost() throws Exception {
+        OutboundConcurrencyInterceptor interceptor = new OutboundConcurrencyInterceptor(
+                Map.of("api.openai.com", 3), 10, Duration.ofSeconds(10));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ClientHttpRequestExecution slowExecution = (request, body) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        };
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<HttpStatusCode>> calls = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                calls.add(executor.submit(() -> {
+                    try (ClientHttpResponse response = interceptor.intercept(
+                            request("https://api.openai.com/v1/chat/completions"), new byte[0], slowExecution)) {
+                        return response.getStatusCode();
+                    }
+                }));
+            }
+            for (Future<HttpStatusCode> call : calls) {
+                assertThat(call.get()).isEqualTo(HttpStatus.OK);
+            }
+        }
+
+        assertThat(maxInFlight.get()).isEqualTo(3);
+        assertThat(interceptor.availablePermits("api.openai.com")).isEqualTo(3);
+    }
+
+    @Test
+    void intercept_whenNoPermitWithinTimeout_failsFast() throws Exception {
+        OutboundConcurrencyInterceptor interceptor = new OutboundConcurrencyInterceptor(
+                Map.of(), 1, Duration.ofMillis(50));
+        CountDownLatch firstCallStarted = new CountDownLatch(1);
+        ClientHttpRequestExecution blockingExecution = (request, body) -> {
+            firstCallStarted.countDown();
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+        };
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> interceptor.intercept(request("https://www.themealdb.com/api"), new byte[0], blockingExecution));
+            assertThat(firstCallStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> interceptor.intercept(
+                    request("https://www.themealdb.com/api"), new byte[0], blockingExecution))
+                    .isInstanceOf(ResourceAccessException.class)
+                    .hasMessageContaining("www.themealdb.com");
+        }
+    }
+
+    @Test
+    void intercept_holdsPermitUntilResponseIsClosed() throws Exception {
+        // Arrange
+        OutboundConcurrencyInterceptor interceptor = new OutboundConcurrencyInterceptor(
+                Map.of(), 1, Duration.ofMillis(50));
+        ClientHttpRequestExecution streaming = (request, body) ->
+                new MockClientHttpResponse("data: {}\n\n".getBytes(), HttpStatus.OK);
+
+        // Act
+        ClientHttpResponse stream = interceptor.intercept(request("https://api.openai.com/v1"), new byte[0], streaming);
+        int whileReading = interceptor.availablePermits("api.openai.com");
+        stream.getBody().readAllBytes();
+        stream.close();
+        stream.close();
+
+        // Assert
+        assertThat(whileReading).isZero();
+        assertThat(interceptor.availablePermits("api.openai.com")).isEqualTo(1);
+    }
+
+    private MockClientHttpRequest request(String url) {
+        return new MockClientHttpRequest(HttpMethod.GET, URI.create(url));
+    }
+}
@@ -1,32 +1,52 @@
 package com.example.weeklymealplannergpt.controller;
 
 import com.example.weeklymealplannergpt.dto.MealPlanResponse;
+import com.example.weeklymealplannergpt.dto.MealSummary;
+import com.example.weeklymealplannergpt.dto.PlanHistoryPage;
+import com.example.weeklymealplannergpt.dto.PlanSummary;
 import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.EmailOutbox;
+import com.example.weeklymealplannergpt.model.EmailOutboxStatus;
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.model.MealPlanJob;
+import com.example.weeklymealplannergpt.model.MealPlanJobStatus;
 import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
 import com.example.weeklymealplannergpt.service.consumer.ConsumerService;
+import com.example.weeklymealplannergpt.service.email.EmailOutboxService;
+import com.example.weeklymealplannergpt.service.job.MealPlanJobService;
 import com.example.weeklymealplannergpt.service.mealplan.MealPlanService;
+import com.example.weeklymealplannergpt.service.mealplan.MealPlanStreamListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(MealPlanController.class)
@@ -44,6 +64,15 @@ class MealPlanControllerTest {
     @MockitoBean
     private ClientRegistrationRepository clientRegistrationRepository;
 
+    @MockitoBean
+    private MealPlanJobService mealPlanJobService;
+
+    @MockitoBean
+    private EmailOutboxService emailOutboxService;
+
+    @MockitoBean(name = "mealPlanStreamExecutor")
+    private TaskExecutor mealPlanStreamExecutor;
+
     private Consumer consumer;
     private MealPlanResponse response;
     private WeeklyMealPlan plan;
@@ -72,6 +101,78 @@ class MealPlanControllerTest {
                 .andExpect(jsonPath("$.mealPlan").exists());
     }
 
+    @Test
+    void enqueueMealPlan_returnsAcceptedWithJobLocation() throws Exception {
+        // Arrange
+        MealPlanJob job = new MealPlanJob();
+        job.setId(UUID.randomUUID());
+        job.setStatus(MealPlanJobStatus.QUEUED);
+        when(consumerService.findByEmail(anyString())).thenReturn(consumer);
+        when(mealPlanJobService.enqueue(any(Consumer.class), eq(4))).thenReturn(job);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/mealplan/jobs")
+                        .with(oauth2Login()
+                                .attributes(attrs -> attrs.put("email", "test@example.com")))
+                        .with(csrf())
+                        .param("type", "monthly"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/mealplan/jobs/" + job.getId()))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
+    @Test
+    void getJob_returnsNotFoundForOtherConsumersJob() throws Exception {
+        // Arrange
+        UUID jobId = UUID.randomUUID();
+        when(consumerService.findByEmail(anyString())).thenReturn(consumer);
+        when(mealPlanJobService.getJob(jobId, consumer.getId()))
+                .thenThrow(new IllegalArgumentException("Meal plan job not found"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/mealplan/jobs/" + jobId)
+                        .with(oauth2Login()
+                                .attributes(attrs -> attrs.put("email", "test@example.com"))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void streamMealPlan_sendsMealEventsThenCompleteEvent() throws Exception {
+        // Arrange
+        when(consumerService.findByEmail(anyString())).thenReturn(consumer);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(mealPlanStreamExecutor).execute(any(Runnable.class));
+
+        Meal meal = new Meal();
+        meal.setMealName("Pasta Primavera");
+        plan.setId(7L);
+        doAnswer(invocation -> {
+            MealPlanStreamListener listener = invocation.getArgument(2);
+            listener.onMeal(0, meal);
+            listener.onComplete(response);
+            return null;
+        }).when(mealPlanService).streamMealPlan(any(Consumer.class), eq(1), any(MealPlanStreamListener.class));
+
+        // Act
+        MvcResult result = mockMvc.perform(post("/api/mealplan/generate/stream")
+                        .with(oauth2Login()
+                                .attributes(attrs -> attrs.put("email", "test@example.com")))
+                        .with(csrf())
+                        .param("type", "weekly"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("event:meal")))
+                .andExpect(content().string(containsString("Pasta Primavera")))
+                .andExpect(content().string(containsString("event:complete")))
+                .andExpect(content().string(containsString("\"mealPlanId\":7")));
+    }
+
     @Test
     void getCurrentWeekPlan_returnsOK() throws Exception {
         //Arrange
@@ -88,6 +189,26 @@ class MealPlanControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void getPlanHistoryPage_returnsSummariesAndCursor() throws Exception {
+        //Arrange
+        PlanSummary summary = new PlanSummary(3L, LocalDate.of(2026, 10, 12),
+                List.of(new MealSummary("Pasta Primavera", "")));
+        when(consumerService.findByEmail(anyString())).thenReturn(consumer);
+        when(mealPlanService.getPlanHistoryPage(consumer.getId(), null, 10))
+                .thenReturn(new PlanHistoryPage(List.of(summary), "2026-10-12_3"));
+
+        //Act & Assert
+        mockMvc.perform(get("/api/mealplan/history/page")
+                        .with(oauth2Login()
+                                .attributes(attrs -> attrs.put("email", "test@example.com"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.plans[0].id").value(3))
+                .andExpect(jsonPath("$.plans[0].meals[0].mealName").value("Pasta Primavera"))
+                .andExpect(jsonPath("$.plans[0].meals[0].ingredients").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").value("2026-10-12_3"));
+    }
+
     @Test
     void getPlanHistory_returnsList() throws Exception {
         //Arrange
@@ -110,19 +231,61 @@ class MealPlanControllerTest {
     }
 
     @Test
-    void sendMealPlanByEmail_success() throws Exception {
+    void sendMealPlanByEmail_queuesEmailAndReturnsAccepted() throws Exception {
+        // Arrange
+        EmailOutbox email = new EmailOutbox();
+        email.setId(UUID.randomUUID());
+        email.setStatus(EmailOutboxStatus.PENDING);
         when(consumerService.findByEmail(anyString())).thenReturn(consumer);
-        doNothing().when(mealPlanService).sendMealPlanByEmail(any(UUID.class), anyLong());
+        when(mealPlanService.sendMealPlanByEmail(consumer.getId(), 42L)).thenReturn(email);
 
+        // Act & Assert
         mockMvc.perform(
                         post("/api/mealplan/42/email")
                                 .with(oauth2Login().attributes(a -> a.put("email", "test@example.com")))
                                 .with(csrf())
                 )
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/mealplan/emails/" + email.getId()))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
+    @Test
+    void getEmailStatus_returnsStatusWithoutInternalFields() throws Exception {
+        // Arrange
+        EmailOutbox email = new EmailOutbox();
+        email.setId(UUID.randomUUID());
+        email.setConsumerId(consumer.getId());
+        email.setStatus(EmailOutboxStatus.PENDING);
+        email.setAttempts(2);
+        email.setLastError("SMTP 421 from mail.internal");
+        when(consumerService.findByEmail(anyString())).thenReturn(consumer);
+        when(emailOutboxService.getStatus(email.getId(), consumer.getId())).thenReturn(email);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/mealplan/emails/" + email.getId())
+                        .with(oauth2Login()
+                                .attributes(attrs -> attrs.put("email", "test@example.com"))))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.message").value("Email sent successfully"));
+                .andExpect(jsonPath("$.id").value(email.getId().toString()))
+                .andExpect(jsonPath("$.attempts").value(2))
+                .andExpect(jsonPath("$.lastError").doesNotExist())
+                .andExpect(jsonPath("$.consumerId").doesNotExist());
+    }
 
-        verify(mealPlanService).sendMealPlanByEmail(consumer.getId(), 42L);
+    @Test
+    void getEmailStatus_returnsNotFoundForOtherConsumersEmail() throws Exception {
+        // Arrange
+        UUID emailId = UUID.randomUUID();
+        when(consumerService.findByEmail(anyString())).thenReturn(consumer);
+        when(emailOutboxService.getStatus(emailId, consumer.getId()))
+                .thenThrow(new IllegalArgumentException("Email not found"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/mealplan/emails/" + emailId)
+                        .with(oauth2Login()
+                                .attributes(attrs -> attrs.put("email", "test@example.com"))))
+                .andExpect(status().isNotFound());
     }
 
     private Consumer createTestConsumer() {
@@ -0,0 +1,60 @@
+package com.example.weeklymealplannergpt.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MealNameCanonicalizerTest {
+
+    @Test
+    void displayName_stripsSchedulePrefixes() {
+        assertThat(MealNameCanonicalizer.displayName("Week 1 Monday - Spaghetti  Bolognese")).isEqualTo("Spaghetti Bolognese");
+        assertThat(MealNameCanonicalizer.displayName("Day 3: Fish Tacos")).isEqualTo("Fish Tacos");
+        assertThat(MealNameCanonicalizer.displayName("(Tuesday) Lentil Soup")).isEqualTo("Lentil Soup");
+        assertThat(MealNameCanonicalizer.displayName("Uge 2 Fredag – Frikadeller")).isEqualTo("Frikadeller");
+    }
+
+    @Test
+    void displayName_keepsWeekdayThatIsPartOfTheDish() {
+        assertThat(MealNameCanonicalizer.displayName("Monday Night Chili")).isEqualTo("Monday Night Chili");
+        assertThat(MealNameCanonicalizer.displayName("Week 1 Monday - ")).isEqualTo("Week 1 Monday -");
+    }
+
+    @Test
+    void displayName_keepsShortWeekdayWordsInDishNames() {
+        assertThat(MealNameCanonicalizer.displayName("Sun-Dried Tomato Pasta")).isEqualTo("Sun-Dried Tomato Pasta");
+        assertThat(MealNameCanonicalizer.displayName("Sat: Special Curry")).isEqualTo("Sat: Special Curry");
+        assertThat(MealNameCanonicalizer.canonicalKey("Sun-Dried Tomato Pasta")).isEqualTo("sun dried tomato pasta");
+    }
+
+    @Test
+    void canonicalKey_sameDishAcrossSlotsGivesSameKey() {
+        String key = MealNameCanonicalizer.canonicalKey("Week 3 Friday – Fish Tacos");
+
+        assertThat(key).isEqualTo("fish taco");
+        assertThat(MealNameCanonicalizer.canonicalKey("fish taco")).isEqualTo(key);
+        assertThat(MealNameCanonicalizer.canonicalKey("Week 1 Monday - FISH TACOS!")).isEqualTo(key);
+    }
+
+    @Test
+    void canonicalKey_foldsAccentsPunctuationAndPlurals() {
+        assertThat(MealNameCanonicalizer.canonicalKey("Crème Brûlée")).isEqualTo("creme brulee");
+        assertThat(MealNameCanonicalizer.canonicalKey("Mac & Cheese")).isEqualTo("mac and cheese");
+        assertThat(MealNameCanonicalizer.canonicalKey("Shepherd's Pie")).isEqualTo("shepherd pie");
+        assertThat(MealNameCanonicalizer.canonicalKey("Stuffed Potatoes")).isEqualTo("stuffed potato");
+        assertThat(MealNameCanonicalizer.canonicalKey("Berries with Molasses")).isEqualTo("berry with molasses");
+        assertThat(MealNameCanonicalizer.canonicalKey("Couscous")).isEqualTo("couscous");
+    }
+
+    @Test
+    void canonicalKey_singularAndPluralGiveSameKey() {
+        assertThat(MealNameCanonicalizer.canonicalKey("Quiches")).isEqualTo(MealNameCanonicalizer.canonicalKey("Quiche"));
+        assertThat(MealNameCanonicalizer.canonicalKey("Quiche")).isEqualTo(MealNameCanonicalizer.canonicalKey("Quiches"));
+        assertThat(MealNameCanonicalizer.canonicalKey("Cookies")).isEqualTo(MealNameCanonicalizer.canonicalKey("Cookie"));
+        assertThat(MealNameCanonicalizer.canonicalKey("Cookie")).isEqualTo(MealNameCanonicalizer.canonicalKey("Cookies"));
+        assertThat(MealNameCanonicalizer.canonicalKey("Chocolate Mousses")).isEqualTo(MealNameCanonicalizer.canonicalKey("Chocolate Mousse"));
+        assertThat(MealNameCanonicalizer.canonicalKey("Sandwiches")).isEqualTo(MealNameCanonicalizer.canonicalKey("Sandwich"));
+        assertThat(MealNameCanonicalizer.canonicalKey("Berries")).isEqualTo(MealNameCanonicalizer.canonicalKey("Berry"));
+        assertThat(MealNameCanonicalizer.canonicalKey("Pies")).isEqualTo(MealNameCanonicalizer.canonicalKey("Pie"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.EmailDispatchRun;
+import com.example.weeklymealplannergpt.model.EmailDispatchStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class EmailDispatchRunRepositoryTest {
+
+    @Autowired
+    private EmailDispatchRunRepository runRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void updateProgress_isRejectedOnceAnotherNodeClaimedTheRun() {
+        // Arrange
+        Instant now = Instant.now();
+        UUID firstOwner = UUID.randomUUID();
+        UUID secondOwner = UUID.randomUUID();
+        EmailDispatchRun run = new EmailDispatchRun();
+        run.setWeekStartDate(LocalDate.of(2026, 10, 12));
+        run.setStatus(EmailDispatchStatus.RUNNING);
+        run.setClaimToken(firstOwner);
+        run.setStartedAt(now.minusSeconds(3600));
+        run.setHeartbeatAt(now.minusSeconds(3600));
+        UUID id = entityManager.persistAndFlush(run).getId();
+
+        // Act
+        int claimed = runRepository.claimStale(id, secondOwner, now, now.minusSeconds(600));
+        int staleWrite = runRepository.updateProgress(id, firstOwner, EmailDispatchStatus.RUNNING,
+                10L, 10, 0, null, now, null);
+        int ownerWrite = runRepository.updateProgress(id, secondOwner, EmailDispatchStatus.RUNNING,
+                20L, 20, 0, null, now, null);
+
+        // Assert
+        assertThat(claimed).isEqualTo(1);
+        assertThat(staleWrite).isZero();
+        assertThat(ownerWrite).isEqualTo(1);
+        assertThat(runRepository.findById(id)).get()
+                .extracting(EmailDispatchRun::getLastPlanId).isEqualTo(20L);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.EmailOutbox;
+import com.example.weeklymealplannergpt.model.EmailOutboxStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class EmailOutboxRepositoryTest {
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void finish_isRejectedForWorkerWhoseEmailWasRequeuedAndReclaimed() {
+        // Arrange
+        Instant now = Instant.now();
+        UUID firstWorker = UUID.randomUUID();
+        UUID secondWorker = UUID.randomUUID();
+        EmailOutbox email = new EmailOutbox();
+        email.setConsumerId(UUID.randomUUID());
+        email.setMealPlanId(42L);
+        email.setStatus(EmailOutboxStatus.PENDING);
+        email.setCreatedAt(now.minusSeconds(3600));
+        email.setNextAttemptAt(now.minusSeconds(3600));
+        UUID id = entityManager.persistAndFlush(email).getId();
+        outboxRepository.claim(id, firstWorker, now.minusSeconds(3600));
+
+        // Act
+        int requeued = outboxRepository.requeueStale(now.minusSeconds(600));
+        int reclaimed = outboxRepository.claim(id, secondWorker, now);
+        int staleWrite = outboxRepository.finish(id, firstWorker, EmailOutboxStatus.PENDING,
+                1, "SMTP timeout", now.plusSeconds(30), null);
+        int ownerWrite = outboxRepository.finish(id, secondWorker, EmailOutboxStatus.SENT,
+                1, null, now, now);
+
+        // Assert
+        assertThat(requeued).isEqualTo(1);
+        assertThat(reclaimed).isEqualTo(1);
+        assertThat(staleWrite).isZero();
+        assertThat(ownerWrite).isEqualTo(1);
+        assertThat(outboxRepository.findById(id)).get()
+                .satisfies(stored -> {
+                    assertThat(stored.getStatus()).isEqualTo(EmailOutboxStatus.SENT);
+                    assertThat(stored.getLastError()).isNull();
+                    assertThat(stored.getClaimToken()).isNull();
+                });
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.MealPlanJob;
+import com.example.weeklymealplannergpt.model.MealPlanJobStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class MealPlanJobRepositoryTest {
+
+    @Autowired
+    private MealPlanJobRepository jobRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void complete_isRejectedForWorkerWhoseJobWasRequeuedAndReclaimed() {
+        // Arrange
+        Instant now = Instant.now();
+        UUID firstWorker = UUID.randomUUID();
+        UUID secondWorker = UUID.randomUUID();
+        MealPlanJob job = new MealPlanJob();
+        job.setConsumerId(UUID.randomUUID());
+        job.setWeeks(4);
+        job.setStatus(MealPlanJobStatus.QUEUED);
+        job.setCreatedAt(now.minusSeconds(3600));
+        UUID id = entityManager.persistAndFlush(job).getId();
+        jobRepository.claim(id, firstWorker, now.minusSeconds(3600));
+
+        // Act
+        int requeued = jobRepository.requeueStale(now.minusSeconds(600));
+        int reclaimed = jobRepository.claim(id, secondWorker, now);
+        int staleWrite = jobRepository.complete(id, firstWorker, MealPlanJobStatus.COMPLETED,
+                1L, "First", null, now);
+        int ownerWrite = jobRepository.complete(id, secondWorker, MealPlanJobStatus.COMPLETED,
+                2L, "Second", null, now);
+
+        // Assert
+        assertThat(requeued).isEqualTo(1);
+        assertThat(reclaimed).isEqualTo(1);
+        assertThat(staleWrite).isZero();
+        assertThat(ownerWrite).isEqualTo(1);
+        assertThat(jobRepository.findById(id)).get()
+                .extracting(MealPlanJob::getMealPlanId).isEqualTo(2L);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.Meal;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+class MealRepositoryTest {
+
+    @Autowired
+    private MealRepository mealRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void insertAll_assignsIdsAndWritesIngredients() {
+        // Arrange
+        List<Meal> meals = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            meals.add(createMeal("Meal " + i, "salt", "pepper"));
+        }
+
+        // Act
+        mealRepository.insertAll(meals);
+        entityManager.clear();
+
+        // Assert
+        assertThat(meals).allSatisfy(meal -> assertThat(meal.getId()).isNotNull());
+        List<Meal> loaded = mealRepository.findAllByNormalizedNameIn(List.of("meal 0", "meal 19"));
+        assertThat(loaded).extracting(Meal::getMealName).containsExactlyInAnyOrder("Meal 0", "Meal 19");
+        assertThat(loaded).allSatisfy(meal -> assertThat(meal.getIngredients()).containsExactlyInAnyOrder("salt", "pepper"));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from meal_ingredients", Integer.class)).isEqualTo(40);
+    }
+
+    @Test
+    void resolvingTwentyNewMeals_usesThreeStatementsInsteadOfOnePerRow() {
+        // Arrange
+        List<Meal> perMealSave = new ArrayList<>();
+        List<Meal> batched = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            perMealSave.add(createMeal("Saved " + i, "salt", "pepper", "oil"));
+            batched.add(createMeal("Batched " + i, "salt", "pepper", "oil"));
+            names.add("batched " + i);
+        }
+
+        // Act: den gamle vej, save() pr. meal
+        StatementCounting.STATEMENTS.set(0);
+        perMealSave.forEach(mealRepository::save);
+        entityManager.flush();
+        int perMealStatements = StatementCounting.STATEMENTS.get();
+
+        // Act: den nye vej, ét opslag og to batches
+        StatementCounting.STATEMENTS.set(0);
+        mealRepository.findAllByNormalizedNameIn(names);
+        mealRepository.insertAll(batched);
+        int batchedStatements = StatementCounting.STATEMENTS.get();
+
+        // Assert: 20 meal inserts + 60 ingredient inserts mod 1 select + 1 meal batch + 1 ingredient batch
+        assertThat(perMealStatements).isEqualTo(80);
+        assertThat(batchedStatements).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from meal_ingredients", Integer.class)).isEqualTo(120);
+    }
+
+    @Test
+    void insertAll_rejectsDuplicateNormalizedName() {
+        // Arrange
+        mealRepository.insertAll(List.of(createMeal("Pasta Carbonara", "egg")));
+
+        // Act & Assert
+        assertThatThrownBy(() -> mealRepository.insertAll(List.of(createMeal("  pasta   CARBONARA", "egg"))))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void save_setsNormalizedNameThroughJpa() {
+        // Act
+        Meal saved = mealRepository.saveAndFlush(createMeal("Chili  Con Carne", "beans"));
+
+        // Assert
+        assertThat(saved.getNormalizedName()).isEqualTo("chili con carne");
+    }
+
+    @Test
+    void canonicalizeNames_mergesScheduleDuplicatesAndRepointsPlans() {
+        // Arrange
+        jdbcTemplate.update("insert into meal (meal_name) values ('Week 1 Monday - Soup'), ('SOUP'), ('Fish Tacos')");
+        List<Long> ids = jdbcTemplate.queryForList("select id from meal order by id", Long.class);
+        jdbcTemplate.update("insert into meal_ingredients (meal_id, ingredients) values (?, 'water')", ids.get(1));
+        jdbcTemplate.update("insert into weekly_meal_plan (id) values (1)");
+        jdbcTemplate.update("insert into weekly_meal_plan_meals (weekly_meal_plan_id, meal_id, meal_order) values (1, ?, 0)",
+                ids.get(1));
+
+        // Act
+        MealRepositoryCustom.CanonicalizedBatch batch = mealRepository.canonicalizeNames(0, 10);
+
+        // Assert
+        assertThat(batch.rows()).isEqualTo(3);
+        assertThat(batch.lastId()).isEqualTo(ids.get(2));
+        assertThat(batch.affectedKeys()).containsExactlyInAnyOrder("soup", "fish taco");
+        assertThat(jdbcTemplate.queryForList("select meal_name from meal order by id", String.class))
+                .containsExactly("Soup", "Fish Tacos");
+        assertThat(mealRepository.findAllByNormalizedNameIn(List.of("soup", "fish taco"))).hasSize(2);
+        assertThat(jdbcTemplate.queryForObject("select meal_id from weekly_meal_plan_meals", Long.class))
+                .isEqualTo(ids.get(0));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from meal_ingredients", Integer.class)).isZero();
+    }
+
+    @Test
+    void canonicalizeNames_mergesIntoOlderMealAcrossBatchesWhenNewerRowOwnsTheKey() {
+        // Arrange
+        jdbcTemplate.update("insert into meal (meal_name, normalized_name) values " +
+                "('Week 1 Monday - Soup', 'week 1 monday soup'), ('Fish Tacos', 'fish taco'), " +
+                "('Soup', 'soup'), ('Week 2 Friday - Fish Taco', 'week 2 friday fish taco')");
+        List<Long> ids = jdbcTemplate.queryForList("select id from meal order by id", Long.class);
+        jdbcTemplate.update("insert into weekly_meal_plan (id) values (1)");
+        jdbcTemplate.update("insert into weekly_meal_plan_meals (weekly_meal_plan_id, meal_id, meal_order) values " +
+                "(1, ?, 0), (1, ?, 1)", ids.get(3), ids.get(2));
+
+        // Act
+        MealRepositoryCustom.CanonicalizedBatch first = mealRepository.canonicalizeNames(0, 2);
+        MealRepositoryCustom.CanonicalizedBatch second = mealRepository.canonicalizeNames(first.lastId(), 2);
+        MealRepositoryCustom.CanonicalizedBatch rerun = mealRepository.canonicalizeNames(0, 10);
+
+        // Assert
+        assertThat(first.lastId()).isEqualTo(ids.get(1));
+        assertThat(second.rows()).isEqualTo(1);
+        assertThat(rerun.affectedKeys()).isEmpty();
+        assertThat(jdbcTemplate.queryForList("select id from meal order by id", Long.class))
+                .containsExactly(ids.get(0), ids.get(1));
+        assertThat(jdbcTemplate.queryForList("select meal_id from weekly_meal_plan_meals order by meal_order", Long.class))
+                .containsExactly(ids.get(1), ids.get(0));
+    }
+
+    @Test
+    void findIdsByRecentUse_ordersByLatestPlanThenUsageThenNewest() {
+        // Arrange
+        List<Meal> meals = List.of(createMeal("Old Favourite"), createMeal("Latest"), createMeal("Unused"));
+        mealRepository.insertAll(meals);
+        jdbcTemplate.update("insert into weekly_meal_plan (id) values (1), (2), (3)");
+        jdbcTemplate.update("insert into weekly_meal_plan_meals (weekly_meal_plan_id, meal_id, meal_order) values " +
+                        "(1, ?, 0), (2, ?, 0), (3, ?, 0)",
+                meals.get(0).getId(), meals.get(0).getId(), meals.get(1).getId());
+
+        // Act
+        List<Long> first = mealRepository.findIdsByRecentUse(PageRequest.of(0, 2));
+        List<Long> second = mealRepository.findIdsByRecentUse(PageRequest.of(1, 2));
+
+        // Assert
+        assertThat(first).containsExactly(meals.get(1).getId(), meals.get(0).getId());
+        assertThat(second).containsExactly(meals.get(2).getId());
+    }
+
+    private Meal createMeal(String name, String... ingredients) {
+        Meal meal = new Meal();
+        meal.setMealName(name);
+        meal.setImgUrl("");
+        meal.setIngredients(new ArrayList<>(List.of(ingredients)));
+        return meal;
+    }
+
+    /**
+     * Tæller statements der sendes til databasen. En JDBC batch tæller som ét statement.
+     */
+    @TestConfiguration
+    static class StatementCounting {
+
+        static final AtomicInteger STATEMENTS = new AtomicInteger();
+
+        private static final Set<String> EXECUTE_METHODS = Set.of(
+                "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? proxy(DataSource.class, dataSource) : bean;
+                }
+            };
+        }
+
+        private static <T> T proxy(Class<T> type, T target) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> {
+                        Object result = invoke(method, target, args);
+                        if (result instanceof Connection connection) {
+                            return proxy(Connection.class, connection);
+                        }
+                        if (result instanceof Statement statement) {
+                            return proxyStatement(method.getReturnType(), statement);
+                        }
+                        return result;
+                    }));
+        }
+
+        private static Object proxyStatement(Class<?> type, Statement target) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                if (EXECUTE_METHODS.contains(method.getName())) {
+                    STATEMENTS.incrementAndGet();
+                }
+                return invoke(method, target, args);
+            });
+        }
+
+        private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.PooledMealPlan;
+import com.example.weeklymealplannergpt.model.PooledPlanDelivery;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class PooledMealPlanRepositoryTest {
+
+    private static final String PROFILE = "a".repeat(64);
+
+    @Autowired
+    private PooledMealPlanRepository pooledMealPlanRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void findServable_skipsPlansDeliveredToConsumerUsedUpOrExpired() {
+        // Arrange
+        Instant now = Instant.now();
+        UUID consumerId = UUID.randomUUID();
+        PooledMealPlan delivered = createPlan(PROFILE, 0, now);
+        createPlan(PROFILE, 50, now);
+        createPlan(PROFILE, 0, now.minus(Duration.ofDays(8)));
+        createPlan("b".repeat(64), 0, now);
+        PooledMealPlan busy = createPlan(PROFILE, 3, now);
+        PooledMealPlan fresh = createPlan(PROFILE, 1, now);
+        entityManager.persist(new PooledPlanDelivery(null, delivered.getId(), consumerId, now));
+        entityManager.flush();
+        entityManager.clear();
+
+        // Act
+        List<PooledMealPlan> servable = pooledMealPlanRepository.findServable(
+                PROFILE, consumerId, 50, now.minus(Duration.ofDays(7)), Limit.of(3));
+
+        // Assert
+        assertThat(servable).extracting(PooledMealPlan::getId).containsExactly(fresh.getId(), busy.getId());
+    }
+
+    @Test
+    void recordDelivery_stopsAtMaxDeliveries() {
+        // Arrange
+        PooledMealPlan plan = createPlan(PROFILE, 49, Instant.now());
+
+        // Act
+        int first = pooledMealPlanRepository.recordDelivery(plan.getId(), 50);
+        int second = pooledMealPlanRepository.recordDelivery(plan.getId(), 50);
+
+        // Assert
+        assertThat(first).isEqualTo(1);
+        assertThat(second).isZero();
+    }
+
+    private PooledMealPlan createPlan(String profileKey, int deliveries, Instant createdAt) {
+        return entityManager.persistAndFlush(new PooledMealPlan(null, profileKey, "[]", null, deliveries, createdAt));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.weeklymealplannergpt.repository;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class WeeklyMealPlanRepositoryTest {
+
+    @Autowired
+    private WeeklyMealPlanRepository weeklyMealPlanRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Consumer consumer;
+    private Meal pasta;
+    private Meal soup;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new Consumer();
+        consumer.setEmail("test@example.com");
+        entityManager.persist(consumer);
+
+        pasta = createMeal("Pasta");
+        soup = createMeal("Soup");
+    }
+
+    @Test
+    void findHistoryHeadersAfter_continuesFromCursorIncludingSameWeek() {
+        // Arrange
+        LocalDate week = LocalDate.of(2026, 10, 12);
+        WeeklyMealPlan newest = createPlan(week, pasta);
+        WeeklyMealPlan sameWeek = createPlan(week, soup);
+        WeeklyMealPlan older = createPlan(week.minusWeeks(1), pasta, soup);
+        entityManager.clear();
+
+        // Act
+        List<WeeklyMealPlanRepository.PlanHeader> first =
+                weeklyMealPlanRepository.findHistoryHeaders(consumer.getId(), Limit.of(2));
+        WeeklyMealPlanRepository.PlanHeader last = first.get(1);
+        List<WeeklyMealPlanRepository.PlanHeader> second = weeklyMealPlanRepository.findHistoryHeadersAfter(
+                consumer.getId(), last.getWeekStartDate(), last.getId(), Limit.of(2));
+
+        // Assert
+        assertThat(first).extracting(WeeklyMealPlanRepository.PlanHeader::getId)
+                .containsExactly(sameWeek.getId(), newest.getId());
+        assertThat(second).extracting(WeeklyMealPlanRepository.PlanHeader::getId)
+                .containsExactly(older.getId());
+    }
+
+    @Test
+    void findById_returnsMealsInPlanOrder() {
+        // Arrange
+        WeeklyMealPlan plan = createPlan(LocalDate.of(2026, 10, 12), soup, pasta, soup);
+        entityManager.clear();
+
+        // Act
+        WeeklyMealPlan loaded = weeklyMealPlanRepository.findById(plan.getId()).orElseThrow();
+
+        // Assert
+        assertThat(loaded.getMeals()).extracting(Meal::getMealName).containsExactly("Soup", "Pasta", "Soup");
+    }
+
+    @Test
+    void findMealSummaries_returnsNamesAndImagesPerPlanInPlanOrder() {
+        // Arrange
+        WeeklyMealPlan plan = createPlan(LocalDate.of(2026, 10, 12), soup, pasta);
+        entityManager.clear();
+
+        // Act
+        List<WeeklyMealPlanRepository.PlanMealRow> rows =
+                weeklyMealPlanRepository.findMealSummaries(List.of(plan.getId()));
+
+        // Assert
+        assertThat(rows).extracting(WeeklyMealPlanRepository.PlanMealRow::getMealName)
+                .containsExactly("Soup", "Pasta");
+        assertThat(rows).allSatisfy(row -> {
+            assertThat(row.getPlanId()).isEqualTo(plan.getId());
+            assertThat(row.getImgUrl()).isEqualTo("img.png");
+        });
+    }
+
+    @Test
+    void findForDispatch_returnsNewestPlanPerConsumerAfterCursor() {
+        // Arrange
+        LocalDate week = LocalDate.of(2026, 10, 12);
+        Consumer other = new Consumer();
+        other.setEmail("other@example.com");
+        entityManager.persist(other);
+
+        createPlan(week, pasta);
+        WeeklyMealPlan regenerated = createPlan(week, soup);
+        WeeklyMealPlan otherPlan = createPlan(week, pasta);
+        otherPlan.setConsumer(other);
+        entityManager.persistAndFlush(otherPlan);
+        createPlan(week.minusWeeks(1), soup);
+        entityManager.clear();
+
+        // Act
+        List<WeeklyMealPlan> first = weeklyMealPlanRepository.findForDispatch(week, 0L, Limit.of(1));
+        List<WeeklyMealPlan> second = weeklyMealPlanRepository.findForDispatch(week, first.getLast().getId(), Limit.of(1));
+
+        // Assert
+        assertThat(first).extracting(WeeklyMealPlan::getId).containsExactly(regenerated.getId());
+        assertThat(first.getFirst().getConsumer().getEmail()).isEqualTo("test@example.com");
+        assertThat(second).extracting(WeeklyMealPlan::getId).containsExactly(otherPlan.getId());
+    }
+
+    private Meal createMeal(String name) {
+        Meal meal = new Meal();
+        meal.setMealName(name);
+        meal.setImgUrl("img.png");
+        meal.setIngredients(List.of("salt"));
+        return entityManager.persist(meal);
+    }
+
+    private WeeklyMealPlan createPlan(LocalDate weekStartDate, Meal... meals) {
+        WeeklyMealPlan plan = new WeeklyMealPlan();
+        plan.setConsumer(consumer);
+        plan.setWeekStartDate(weekStartDate);
+        plan.setMeals(List.of(meals));
+        return entityManager.persistAndFlush(plan);
+    }
+}
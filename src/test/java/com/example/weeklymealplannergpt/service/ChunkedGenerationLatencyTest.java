@@ -0,0 +1,152 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.config.ResilienceProperties;
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.service.openai.MealPlanGeneration;
+import com.example.weeklymealplannergpt.service.openai.MealPlanPromptProvider;
+import com.example.weeklymealplannergpt.service.openai.OpenAIServiceImpl;
+import com.example.weeklymealplannergpt.service.resilience.ResilientCaller;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sammenligner latency for en 4-ugers plan i ét kald og i samtidige uge-kald mod en lokal mock af
+ * chat-completions, der svarer efter {@code tokens * perTokenDelay} ligesom en rigtig model.
+ * Hver uge svarer med én populær ret, som går igen på tværs af ugerne, så målingen inkluderer
+ * erstatningskaldet. Måler wall-clock tid og kører derfor kun med {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class ChunkedGenerationLatencyTest {
+
+    private static final Pattern TOTAL_MEALS = Pattern.compile("\\((\\d+) dinners total");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger dishes = new AtomicInteger();
+    private final AtomicInteger replacementCalls = new AtomicInteger();
+
+    private HttpServer server;
+    private volatile Duration perTokenDelay;
+    private OpenAIServiceImpl openAIService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/v1/chat/completions", this::complete);
+        server.start();
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        openAIService = new OpenAIServiceImpl(new RestTemplate(),
+                new ResilientCaller("openai", new ResilienceProperties.Policy(), meterRegistry),
+                new MealPlanPromptProvider(new ClassPathResource("chatgpt-prompt.txt")), meterRegistry);
+        ReflectionTestUtils.setField(openAIService, "openAiApiKey", "test-key");
+        ReflectionTestUtils.setField(openAIService, "openAiApiUrl",
+                "http://localhost:" + server.getAddress().getPort() + "/v1/chat/completions");
+        ReflectionTestUtils.setField(openAIService, "model", "mock");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        openAIService.destroy();
+    }
+
+    @Test
+    void chunkedMonthlyPlan_isFasterThanSingleCompletion() throws IOException {
+        // Arrange
+        perTokenDelay = Duration.ofMillis(2);
+        generate(false);
+        generate(true);
+
+        // Act
+        Duration single = generate(false);
+        Duration chunked = generate(true);
+
+        // Assert
+        assertThat(replacementCalls.get()).isEqualTo(2);
+        assertThat(chunked).isLessThan(single.multipliedBy(6).dividedBy(10));
+    }
+
+    private Duration generate(boolean chunked) throws IOException {
+        ReflectionTestUtils.setField(openAIService, "chunkedGeneration", chunked);
+        long start = System.nanoTime();
+        MealPlanGeneration generation = openAIService.generateMealPlan(createTestConsumer(), 4);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(generation.meals()).hasSize(20);
+        return elapsed;
+    }
+
+    private void complete(HttpExchange exchange) throws IOException {
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String prompt = request.at("/messages/1/content").asText();
+        Matcher matcher = TOTAL_MEALS.matcher(prompt);
+        int totalMeals = matcher.find() ? Integer.parseInt(matcher.group(1)) : 5;
+        boolean replacement = prompt.contains("Do not use any of these dishes");
+        if (replacement) {
+            replacementCalls.incrementAndGet();
+        }
+
+        List<Map<String, Object>> meals = new ArrayList<>();
+        for (int i = 0; i < totalMeals; i++) {
+            // Som en rigtig model foreslår hver uge-forespørgsel den samme populære ret
+            String dish = i == 0 && !replacement ? "Lasagna" : "Dish " + dishes.incrementAndGet();
+            meals.add(Map.of(
+                    "mealName", dish,
+                    "ingredients", List.of("pasta", "tomatoes", "garlic", "olive oil", "basil", "parmesan")));
+        }
+        String content = objectMapper.writeValueAsString(Map.of("message", "Hi, here's your plan", "meals", meals));
+        int completionTokens = content.length() / 4;
+
+        try {
+            Thread.sleep(perTokenDelay.multipliedBy(completionTokens));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] body = objectMapper.writeValueAsBytes(Map.of(
+                "choices", List.of(Map.of(
+                        "message", Map.of("role", "assistant", "content", content),
+                        "finish_reason", "stop")),
+                "usage", Map.of("prompt_tokens", 150, "completion_tokens", completionTokens)));
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private Consumer createTestConsumer() {
+        Consumer consumer = new Consumer();
+        consumer.setId(UUID.randomUUID());
+        consumer.setDietType("vegetarian");
+        consumer.setAllergies(Set.of());
+        consumer.setDislikes(Set.of());
+        return consumer;
+    }
+}
@@ -9,8 +9,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.crossstore.ChangeSetPersister;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -101,6 +105,84 @@ class ConsumerServiceTest {
         assertThat(exists).isTrue();
     }
 
+    @Test
+    void findByEmail_secondCallIsServedFromCache() {
+        // Arrange
+        Consumer consumer = createTestConsumer("test@example.com");
+        when(consumerRepository.findByEmail("test@example.com")).thenReturn(Optional.of(consumer));
+
+        // Act
+        consumerService.findByEmail("test@example.com");
+        Consumer cached = consumerService.findByEmail("test@example.com");
+        boolean exists = consumerService.existsById(consumer.getId());
+
+        // Assert
+        assertThat(cached).isNotSameAs(consumer);
+        assertThat(cached.getId()).isEqualTo(consumer.getId());
+        assertThat(exists).isTrue();
+        verify(consumerRepository, times(1)).findByEmail("test@example.com");
+        verify(consumerRepository, never()).existsById(any());
+    }
+
+    @Test
+    void save_evictsCachedConsumer() {
+        // Arrange
+        Consumer consumer = createTestConsumer("test@example.com");
+        Consumer updated = createTestConsumer("test@example.com");
+        updated.setId(consumer.getId());
+        updated.setDietType("vegan");
+        when(consumerRepository.findByEmail("test@example.com"))
+                .thenReturn(Optional.of(consumer))
+                .thenReturn(Optional.of(updated));
+        when(consumerRepository.save(consumer)).thenReturn(updated);
+        consumerService.findByEmail("test@example.com");
+
+        // Act
+        consumerService.save(consumer);
+        Consumer result = consumerService.findByEmail("test@example.com");
+
+        // Assert
+        assertEquals("vegan", result.getDietType());
+        verify(consumerRepository, times(2)).findByEmail("test@example.com");
+    }
+
+    @Test
+    void findByEmail_changesToReturnedConsumerDoNotLeakIntoCache() {
+        // Arrange
+        Consumer consumer = createTestConsumer("test@example.com");
+        consumer.setDietType("vegetarian");
+        consumer.setAllergies(new HashSet<>(Set.of("nuts")));
+        when(consumerRepository.findByEmail("test@example.com")).thenReturn(Optional.of(consumer));
+        when(consumerRepository.save(any(Consumer.class))).thenThrow(new IllegalStateException("db down"));
+
+        // Act
+        Consumer editing = consumerService.findByEmail("test@example.com");
+        editing.setDietType("vegan");
+        editing.getAllergies().add("gluten");
+        assertThatThrownBy(() -> consumerService.save(editing)).isInstanceOf(IllegalStateException.class);
+        Consumer other = consumerService.findByEmail("test@example.com");
+
+        // Assert
+        assertEquals("vegetarian", other.getDietType());
+        assertEquals(Set.of("nuts"), other.getAllergies());
+        verify(consumerRepository, times(1)).findByEmail("test@example.com");
+    }
+
+    @Test
+    void findByEmail_reloadsAfterTtlExpires() {
+        // Arrange
+        ReflectionTestUtils.setField(consumerService, "cacheTtl", Duration.ZERO);
+        Consumer consumer = createTestConsumer("test@example.com");
+        when(consumerRepository.findByEmail("test@example.com")).thenReturn(Optional.of(consumer));
+
+        // Act
+        consumerService.findByEmail("test@example.com");
+        consumerService.findByEmail("test@example.com");
+
+        // Assert
+        verify(consumerRepository, times(2)).findByEmail("test@example.com");
+    }
+
     //Hjælpermetode
     private Consumer createTestConsumer(String email) {
         Consumer consumer = new Consumer();
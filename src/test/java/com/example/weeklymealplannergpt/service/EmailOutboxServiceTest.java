@@ -0,0 +1,221 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.EmailOutbox;
+import com.example.weeklymealplannergpt.model.EmailOutboxStatus;
+import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
+import com.example.weeklymealplannergpt.repository.EmailOutboxRepository;
+import com.example.weeklymealplannergpt.repository.WeeklyMealPlanRepository;
+import com.example.weeklymealplannergpt.service.email.EmailOutboxServiceImpl;
+import com.example.weeklymealplannergpt.service.email.EmailService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxServiceTest {
+
+    @Mock
+    private EmailOutboxRepository outboxRepository;
+
+    @Mock
+    private WeeklyMealPlanRepository weeklyMealPlanRepository;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private TaskExecutor outboxExecutor;
+
+    @InjectMocks
+    private EmailOutboxServiceImpl outboxService;
+
+    private Consumer consumer;
+    private WeeklyMealPlan mealPlan;
+    private EmailOutbox email;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new Consumer();
+        consumer.setId(UUID.randomUUID());
+        consumer.setEmail("test@example.com");
+
+        mealPlan = new WeeklyMealPlan();
+        mealPlan.setId(42L);
+        mealPlan.setConsumer(consumer);
+
+        email = new EmailOutbox();
+        email.setId(UUID.randomUUID());
+        email.setConsumerId(consumer.getId());
+        email.setMealPlanId(42L);
+        email.setStatus(EmailOutboxStatus.SENDING);
+    }
+
+    @Test
+    void enqueueMealPlan_savesPendingEmailAndSubmitsIt() {
+        // Arrange
+        when(outboxRepository.save(any())).thenAnswer(i -> {
+            EmailOutbox saved = i.getArgument(0);
+            saved.setId(email.getId());
+            return saved;
+        });
+
+        // Act
+        EmailOutbox queued = outboxService.enqueueMealPlan(consumer.getId(), 42L);
+
+        // Assert
+        assertThat(queued.getStatus()).isEqualTo(EmailOutboxStatus.PENDING);
+        assertThat(queued.getNextAttemptAt()).isNotNull();
+        verify(outboxExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void enqueueMealPlan_keepsEmailQueuedWhenExecutorIsSaturated() {
+        // Arrange
+        when(outboxRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        doThrow(new TaskRejectedException("full")).when(outboxExecutor).execute(any(Runnable.class));
+
+        // Act
+        EmailOutbox queued = outboxService.enqueueMealPlan(consumer.getId(), 42L);
+
+        // Assert
+        assertThat(queued.getStatus()).isEqualTo(EmailOutboxStatus.PENDING);
+    }
+
+    @Test
+    void deliver_marksEmailSent() throws Exception {
+        // Arrange
+        when(outboxRepository.claim(eq(email.getId()), any(), any())).thenReturn(1);
+        when(outboxRepository.findById(email.getId())).thenReturn(Optional.of(email));
+        when(weeklyMealPlanRepository.findById(42L)).thenReturn(Optional.of(mealPlan));
+
+        // Act
+        outboxService.deliver(email.getId());
+
+        // Assert
+        verify(emailService).sendMealPlan(consumer, mealPlan);
+        assertThat(email.getStatus()).isEqualTo(EmailOutboxStatus.SENT);
+        assertThat(email.getAttempts()).isEqualTo(1);
+        assertThat(email.getSentAt()).isNotNull();
+        verify(outboxRepository).finish(eq(email.getId()), any(), eq(EmailOutboxStatus.SENT), eq(1),
+                any(), any(), eq(email.getSentAt()));
+    }
+
+    @Test
+    void deliver_finishesWithTheTokenItClaimedWith() throws Exception {
+        // Arrange
+        ArgumentCaptor<UUID> claimToken = ArgumentCaptor.forClass(UUID.class);
+        when(outboxRepository.claim(eq(email.getId()), claimToken.capture(), any())).thenReturn(1);
+        when(outboxRepository.findById(email.getId())).thenReturn(Optional.of(email));
+        when(weeklyMealPlanRepository.findById(42L)).thenReturn(Optional.of(mealPlan));
+
+        // Act
+        outboxService.deliver(email.getId());
+
+        // Assert
+        verify(outboxRepository).finish(eq(email.getId()), eq(claimToken.getValue()), eq(EmailOutboxStatus.SENT),
+                eq(1), any(), any(), any());
+    }
+
+    @Test
+    void deliver_schedulesRetryWithBackoffOnFailure() throws Exception {
+        // Arrange
+        email.setAttempts(2);
+        when(outboxRepository.claim(eq(email.getId()), any(), any())).thenReturn(1);
+        when(outboxRepository.findById(email.getId())).thenReturn(Optional.of(email));
+        when(weeklyMealPlanRepository.findById(42L)).thenReturn(Optional.of(mealPlan));
+        doThrow(new RuntimeException("Failed to send email", new RuntimeException("SMTP down")))
+                .when(emailService).sendMealPlan(consumer, mealPlan);
+
+        // Act
+        Instant before = Instant.now();
+        outboxService.deliver(email.getId());
+
+        // Assert
+        assertThat(email.getStatus()).isEqualTo(EmailOutboxStatus.PENDING);
+        assertThat(email.getAttempts()).isEqualTo(3);
+        assertThat(email.getLastError()).isEqualTo("SMTP down");
+        // Tredje forsøg: 30s * 2^2
+        assertThat(email.getNextAttemptAt()).isBetween(before.plusSeconds(120), Instant.now().plusSeconds(120));
+        assertThat(email.getClaimedAt()).isNull();
+    }
+
+    @Test
+    void deliver_marksEmailFailedAfterMaxAttempts() throws Exception {
+        // Arrange
+        email.setAttempts(7);
+        when(outboxRepository.claim(eq(email.getId()), any(), any())).thenReturn(1);
+        when(outboxRepository.findById(email.getId())).thenReturn(Optional.of(email));
+        when(weeklyMealPlanRepository.findById(42L)).thenReturn(Optional.of(mealPlan));
+        doThrow(new RuntimeException("SMTP down")).when(emailService).sendMealPlan(consumer, mealPlan);
+
+        // Act
+        outboxService.deliver(email.getId());
+
+        // Assert
+        assertThat(email.getStatus()).isEqualTo(EmailOutboxStatus.FAILED);
+        assertThat(email.getAttempts()).isEqualTo(8);
+        assertThat(email.getLastError()).isEqualTo("SMTP down");
+    }
+
+    @Test
+    void deliver_skipsEmailClaimedByAnotherWorker() throws Exception {
+        // Arrange
+        when(outboxRepository.claim(eq(email.getId()), any(), any())).thenReturn(0);
+
+        // Act
+        outboxService.deliver(email.getId());
+
+        // Assert
+        verify(emailService, never()).sendMealPlan(any(), any());
+        verify(outboxRepository, never()).finish(any(), any(), any(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void dispatchDue_submitsDueEmails() {
+        // Arrange
+        EmailOutbox due = new EmailOutbox();
+        due.setId(UUID.randomUUID());
+        when(outboxRepository.findTop50ByStatusAndNextAttemptAtBeforeOrderByNextAttemptAtAsc(
+                eq(EmailOutboxStatus.PENDING), any())).thenReturn(List.of(due));
+
+        // Act
+        outboxService.dispatchDue();
+
+        // Assert
+        verify(outboxRepository).requeueStale(any());
+        verify(outboxExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void getStatus_throwsForOtherConsumersEmail() {
+        // Arrange
+        UUID otherConsumer = UUID.randomUUID();
+        when(outboxRepository.findByIdAndConsumerId(email.getId(), otherConsumer)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThatThrownBy(() -> outboxService.getStatus(email.getId(), otherConsumer))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
+import com.example.weeklymealplannergpt.service.email.EmailServiceImpl;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mails pr. sekund for den rigtige {@code weekly-meal-plan} skabelon med 20 meals: {@link EmailServiceImpl}
+ * (én rendering pr. meal-liste, modtageren splejses ind) mod fuld rendering pr. modtager med
+ * {@code MimeMessageHelper.setText}. Hver mail skrives færdig til en null-stream, så MIME-encodingen er med.
+ * Kører kun med {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class EmailRenderBenchmarkTest {
+
+    private static final int RECIPIENTS = 2_000;
+    private static final int ROUNDS = 3;
+
+    private final JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+    private SpringTemplateEngine templateEngine;
+    private EmailServiceImpl emailService;
+    private WeeklyMealPlan plan;
+    private List<Consumer> recipients;
+
+    @BeforeEach
+    void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        emailService = new EmailServiceImpl(mailSender, templateEngine);
+
+        List<Meal> meals = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            Meal meal = new Meal();
+            meal.setId(i);
+            meal.setMealName("Dish " + i);
+            meal.setIngredients(List.of("pasta", "tomatoes", "garlic", "olive oil", "basil", "parmesan"));
+            meals.add(meal);
+        }
+        plan = new WeeklyMealPlan();
+        plan.setWeekStartDate(LocalDate.of(2026, 10, 12));
+        plan.setMeals(meals);
+
+        recipients = new ArrayList<>(RECIPIENTS);
+        for (int i = 0; i < RECIPIENTS; i++) {
+            Consumer consumer = new Consumer();
+            consumer.setName("Consumer " + i);
+            consumer.setEmail("consumer" + i + "@example.com");
+            recipients.add(consumer);
+        }
+    }
+
+    @Test
+    void splicedBody_sendsMoreMessagesPerSecondThanFullRender() throws Exception {
+        // Arrange
+        run(this::fullRender);
+        run(this::spliced);
+
+        // Act
+        double full = 0;
+        double spliced = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            full = Math.max(full, run(this::fullRender));
+            spliced = Math.max(spliced, run(this::spliced));
+        }
+
+        // Assert
+        assertThat(spliced).isGreaterThan(full * 1.5);
+    }
+
+    private MimeMessage spliced(Consumer consumer) throws Exception {
+        return emailService.createMealPlanMessage(consumer, plan);
+    }
+
+    private MimeMessage fullRender(Consumer consumer) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo(consumer.getEmail());
+        helper.setSubject("Your meal plan for this week is ready!");
+
+        Context context = new Context();
+        context.setVariable("consumer", consumer);
+        context.setVariable("mealPlan", plan);
+        helper.setText(templateEngine.process("weekly-meal-plan", context), true);
+        return message;
+    }
+
+    private double run(Build build) throws Exception {
+        long start = System.nanoTime();
+        for (Consumer consumer : recipients) {
+            MimeMessage message = build.message(consumer);
+            message.saveChanges();
+            message.writeTo(OutputStream.nullOutputStream());
+        }
+        return RECIPIENTS * 1_000_000_000.0 / (System.nanoTime() - start);
+    }
+
+    private interface Build {
+        MimeMessage message(Consumer consumer) throws Exception;
+    }
+}
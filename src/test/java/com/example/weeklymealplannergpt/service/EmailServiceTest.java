@@ -1,9 +1,11 @@
 package com.example.weeklymealplannergpt.service;
 
 import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.Meal;
 import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
 import com.example.weeklymealplannergpt.service.email.EmailServiceImpl;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,8 +17,13 @@ import org.springframework.mail.javamail.JavaMailSender;
 import org.thymeleaf.context.Context;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Properties;
 
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -70,6 +77,43 @@ public class EmailServiceTest {
                 .hasMessageContaining("Failed to send email");
     }
 
+    @Test
+    void createMealPlanMessage_rendersTemplateOncePerMealListAndSplicesRecipient() throws Exception {
+        // Arrange
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+        when(templateEngine.process(eq("weekly-meal-plan"), any(Context.class))).thenAnswer(invocation -> {
+            Consumer consumer = (Consumer) invocation.getArgument(1, Context.class).getVariable("consumer");
+            return "<p>Hi " + consumer.getName() + "</p><p>Pasta</p><small>" + consumer.getEmail() + "</small>";
+        });
+        WeeklyMealPlan plan = createTestMealPlan();
+        Meal pasta = new Meal();
+        pasta.setId(1L);
+        pasta.setMealName("Pasta");
+        plan.setMeals(List.of(pasta));
+
+        Consumer first = createTestConsumer();
+        first.setName("Tom & Jerry");
+        Consumer second = createTestConsumer();
+        second.setName("Ida");
+        second.setEmail("ida@example.com");
+
+        // Act
+        String firstBody = bodyOf(emailService.createMealPlanMessage(first, plan));
+        String secondBody = bodyOf(emailService.createMealPlanMessage(second, plan));
+
+        // Assert
+        assertThat(firstBody).contains("<p>Hi Tom &amp; Jerry</p><p>Pasta</p><small>test@example.com</small>");
+        assertThat(secondBody).contains("<p>Hi Ida</p><p>Pasta</p><small>ida@example.com</small>");
+        verify(templateEngine, times(1)).process(eq("weekly-meal-plan"), any(Context.class));
+    }
+
+    private String bodyOf(MimeMessage message) throws Exception {
+        message.saveChanges();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
     private Consumer createTestConsumer() {
         Consumer consumer = new Consumer();
         consumer.setEmail("test@example.com");
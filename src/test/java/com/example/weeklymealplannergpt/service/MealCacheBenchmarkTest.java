@@ -0,0 +1,172 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.service.cache.ConcurrentLruCache;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput og hit rate for meal-cachen under samtidige get/put: {@link ConcurrentLruCache} mod den gamle
+ * cache, en insertion-ordered {@code LinkedHashMap} der smider den ældste nøgle ud (gengivet her). Den gamle
+ * var ikke trådsikker, så her er den lagt bag {@code synchronized}, ellers går den i stykker under testen.
+ * Trådene slår navne op med en skæv fordeling som rigtige planer (få populære retter, lang hale), og ved en miss
+ * lægges meal'en i cachen ligesom i {@code MealPlanServiceImpl}. Throughput afhænger af antal kerner og bliver kun
+ * logget; hit rate og størrelsesgrænsen bliver tjekket. Kører kun med {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class MealCacheBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MealCacheBenchmarkTest.class);
+
+    private static final int MAX_SIZE = 1000;
+    private static final int DISTINCT_MEALS = 10_000;
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 500_000;
+    private static final int ROUNDS = 3;
+
+    private final List<String> names = new ArrayList<>(DISTINCT_MEALS);
+    private final Map<String, Meal> meals = new LinkedHashMap<>();
+
+    MealCacheBenchmarkTest() {
+        for (int i = 0; i < DISTINCT_MEALS; i++) {
+            String name = "meal " + i;
+            Meal meal = new Meal();
+            meal.setId((long) i);
+            meal.setMealName(name);
+            names.add(name);
+            meals.put(name, meal);
+        }
+    }
+
+    @Test
+    void concurrentLru_hitsMoreOftenThanOldCacheAndStaysBounded() throws Exception {
+        // Arrange
+        run(new LinkedHashMapCache());
+        run(new LruCache());
+
+        // Act
+        Result old = new Result(0, 0);
+        Result lru = new Result(0, 0);
+        for (int round = 0; round < ROUNDS; round++) {
+            old = old.best(run(new LinkedHashMapCache()));
+            lru = lru.best(run(new LruCache()));
+        }
+        logger.info("LinkedHashMap (synchronized, FIFO): {} ops/s, hit rate {}",
+                String.format("%,.0f", old.operationsPerSecond()), String.format("%.3f", old.hitRate()));
+        logger.info("ConcurrentLruCache:                 {} ops/s, hit rate {}",
+                String.format("%,.0f", lru.operationsPerSecond()), String.format("%.3f", lru.hitRate()));
+
+        // Assert
+        assertThat(lru.hitRate()).isGreaterThan(old.hitRate());
+    }
+
+    private Result run(Cache cache) throws Exception {
+        AtomicLong hits = new AtomicLong();
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            workers.add(() -> {
+                long localHits = 0;
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    // Kubisk skævhed: de laveste numre er de populære retter
+                    String name = names.get((int) (DISTINCT_MEALS * Math.pow(random.nextDouble(), 3)));
+                    if (cache.get(name) != null) {
+                        localHits++;
+                    } else {
+                        cache.put(name, meals.get(name));
+                    }
+                }
+                hits.addAndGet(localHits);
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            for (Future<Void> future : executor.invokeAll(workers)) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            long operations = (long) THREADS * OPERATIONS_PER_THREAD;
+            assertThat(cache.size()).isLessThanOrEqualTo(MAX_SIZE);
+            return new Result(operations * 1_000_000_000.0 / elapsed, (double) hits.get() / operations);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface Cache {
+        Meal get(String key);
+        void put(String key, Meal meal);
+        int size();
+    }
+
+    /**
+     * Den gamle {@code MealCacheServiceImpl}-cache: fjern den første nøgle når cachen er fuld.
+     */
+    private static class LinkedHashMapCache implements Cache {
+        private final Map<String, Meal> cache = new LinkedHashMap<>();
+
+        @Override
+        public synchronized Meal get(String key) {
+            return cache.get(key);
+        }
+
+        @Override
+        public synchronized void put(String key, Meal meal) {
+            if (cache.size() >= MAX_SIZE) {
+                String firstKey = cache.keySet().iterator().next();
+                cache.remove(firstKey);
+            }
+            cache.put(key, meal);
+        }
+
+        @Override
+        public synchronized int size() {
+            return cache.size();
+        }
+    }
+
+    private static class LruCache implements Cache {
+        private final ConcurrentLruCache<String, Meal> cache = new ConcurrentLruCache<>(MAX_SIZE);
+
+        @Override
+        public Meal get(String key) {
+            return cache.get(key);
+        }
+
+        @Override
+        public void put(String key, Meal meal) {
+            cache.put(key, meal);
+        }
+
+        @Override
+        public int size() {
+            return cache.size();
+        }
+    }
+
+    private record Result(double operationsPerSecond, double hitRate) {
+
+        Result best(Result other) {
+            return new Result(Math.max(operationsPerSecond, other.operationsPerSecond),
+                    Math.max(hitRate, other.hitRate));
+        }
+    }
+}
@@ -2,20 +2,39 @@ package com.example.weeklymealplannergpt.service;
 
 import com.example.weeklymealplannergpt.model.Meal;
 import com.example.weeklymealplannergpt.repository.MealRepository;
+import com.example.weeklymealplannergpt.service.cache.CacheStats;
+import com.example.weeklymealplannergpt.service.cache.InMemorySharedCacheTier;
+import com.example.weeklymealplannergpt.service.cache.SharedCacheTier;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.example.weeklymealplannergpt.service.mealplan.MealCacheService;
 import com.example.weeklymealplannergpt.service.mealplan.MealCacheServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -25,18 +44,23 @@ public class MealCacheServiceTest {
     @Mock
     private MealRepository mealRepository;
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
     private MealCacheServiceImpl mealCacheService;
 
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        mealCacheService = newService(Optional.empty());
+    }
+
     @Test
-    void initCache_loadsAllMealsFromDatabase() {
+    void initCache_loadsMostRecentlyUsedMealsPageByPage() {
         //Arrange
-        List<Meal> meals = Arrays.asList(
-                createMeal("Pizza"),
-                createMeal("Pasta"),
-                createMeal("Salad")
-        );
-        when(mealRepository.findAll()).thenReturn(meals);
+        ReflectionTestUtils.setField(mealCacheService, "warmUpPageSize", 2);
+        when(mealRepository.findIdsByRecentUse(PageRequest.of(0, 2))).thenReturn(List.of(3L, 1L));
+        when(mealRepository.findIdsByRecentUse(PageRequest.of(1, 2))).thenReturn(List.of(2L));
+        when(mealRepository.findAllById(List.of(3L, 1L))).thenReturn(List.of(createMeal("Pizza"), createMeal("Pasta")));
+        when(mealRepository.findAllById(List.of(2L))).thenReturn(List.of(createMeal("Salad")));
 
         //Act
         mealCacheService.initCache();
@@ -45,7 +69,27 @@ public class MealCacheServiceTest {
         assertThat(mealCacheService.getMealByName("Pasta")).isNotNull();
         assertThat(mealCacheService.getMealByName("Pizza")).isNotNull();
         assertThat(mealCacheService.getMealByName("Salad")).isNotNull();
-        verify(mealRepository).findAll();
+        assertThat(meterRegistry.get("meal.cache.warmup.loaded").gauge().value()).isEqualTo(3.0);
+        assertThat(meterRegistry.get("meal.cache.warmup.duration").timer().count()).isEqualTo(1);
+        verify(mealRepository, never()).findAll();
+    }
+
+    @Test
+    void initCache_stopsAtMaxMeals() {
+        //Arrange
+        ReflectionTestUtils.setField(mealCacheService, "warmUpMaxMeals", 3);
+        ReflectionTestUtils.setField(mealCacheService, "warmUpPageSize", 2);
+        when(mealRepository.findIdsByRecentUse(PageRequest.of(0, 2))).thenReturn(List.of(1L, 2L));
+        when(mealRepository.findIdsByRecentUse(PageRequest.of(1, 2))).thenReturn(List.of(3L, 4L));
+        when(mealRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(createMeal("Pizza"), createMeal("Pasta")));
+        when(mealRepository.findAllById(List.of(3L))).thenReturn(List.of(createMeal("Salad")));
+
+        //Act
+        mealCacheService.initCache();
+
+        // Assert
+        assertThat(mealCacheService.getStats().size()).isEqualTo(3);
+        verify(mealRepository, never()).findIdsByRecentUse(PageRequest.of(2, 2));
     }
 
     @Test
@@ -90,6 +134,158 @@ public class MealCacheServiceTest {
         assertThat(mealCacheService.getMealByName("extrameal")).isEqualTo(extra);
     }
 
+    @Test
+    void addToCache_evictsLeastRecentlyUsed() {
+        for (int i = 1; i <= MealCacheServiceImpl.getMAX_CACHE_SIZE(); i++) {
+            mealCacheService.addToCache(createMeal("Meal" + i));
+        }
+
+        // Meal1 bliver læst, så Meal2 er nu den mindst nyligt brugte
+        mealCacheService.getMealByName("Meal1");
+        mealCacheService.addToCache(createMeal("ExtraMeal"));
+
+        assertThat(mealCacheService.getMealByName("meal1")).isNotNull();
+        assertThat(mealCacheService.getMealByName("meal2")).isNull();
+        assertThat(mealCacheService.getStats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentReadsAndWrites_keepCacheBoundedAndCountersConsistent() throws Exception {
+        int threads = 8;
+        int operationsPerThread = 20_000;
+        AtomicLong reads = new AtomicLong();
+        AtomicLong peakSize = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < operationsPerThread; i++) {
+                        String name = "Meal" + random.nextInt(3 * MealCacheServiceImpl.getMAX_CACHE_SIZE());
+                        if (random.nextInt(4) == 0) {
+                            mealCacheService.addToCache(createMeal(name));
+                            peakSize.accumulateAndGet(mealCacheService.getStats().size(), Math::max);
+                        } else {
+                            Meal cached = mealCacheService.getMealByName(name);
+                            reads.incrementAndGet();
+                            if (cached != null) {
+                                assertThat(cached.getMealName()).isEqualTo(name);
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        CacheStats stats = mealCacheService.getStats();
+        assertThat(stats.size()).isLessThanOrEqualTo(MealCacheServiceImpl.getMAX_CACHE_SIZE());
+        // Undervejs må cachen kun overskride grænsen med det der endnu ikke er afspillet fra skrivebufferen
+        assertThat(peakSize.get()).isLessThanOrEqualTo(MealCacheServiceImpl.getMAX_CACHE_SIZE() + 256);
+        assertThat(stats.hits() + stats.misses()).isEqualTo(reads.get());
+        assertThat(stats.evictions()).isPositive();
+    }
+
+    @Test
+    void sharedTier_mealAddedOnOneNodeIsFoundOnAnother() {
+        // Arrange
+        InMemorySharedCacheTier sharedTier = new InMemorySharedCacheTier(100);
+        MealCacheServiceImpl nodeA = newService(Optional.of(sharedTier));
+        MealCacheServiceImpl nodeB = newService(Optional.of(sharedTier));
+        Meal pizza = createMeal("Pizza");
+        pizza.setId(7L);
+
+        // Act
+        nodeA.addToCache(pizza);
+        Meal fromShared = nodeB.getMealByName("pizza");
+        Meal fromNear = nodeB.getMealByName("Pizza");
+
+        // Assert
+        assertThat(fromShared.getId()).isEqualTo(7L);
+        assertThat(fromShared.getIngredients()).isEqualTo(List.of("ingredient1", "ingredient2"));
+        assertThat(fromNear).isSameAs(fromShared);
+        assertThat(meterRegistry.get("meal.cache.shared.requests").tag("result", "hit").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void sharedTier_changedMealInvalidatesOtherNodes() {
+        // Arrange
+        InMemorySharedCacheTier sharedTier = new InMemorySharedCacheTier(100);
+        MealCacheServiceImpl nodeA = newService(Optional.of(sharedTier));
+        MealCacheServiceImpl nodeB = newService(Optional.of(sharedTier));
+        Meal oldSoup = createMeal("Soup");
+        oldSoup.setId(1L);
+        Meal newSoup = createMeal("Soup");
+        newSoup.setId(2L);
+        nodeB.addToCache(oldSoup);
+
+        // Act
+        nodeA.addToCache(newSoup);
+
+        // Assert
+        assertThat(nodeB.getMealByName("Soup").getId()).isEqualTo(2L);
+    }
+
+    @Test
+    void sharedTier_sameMealAgainIsNotRewrittenOrBroadcast() {
+        // Arrange
+        SharedCacheTier sharedTier = Mockito.mock(SharedCacheTier.class);
+        MealCacheServiceImpl node = newService(Optional.of(sharedTier));
+        Meal pizza = createMeal("Pizza");
+        pizza.setId(7L);
+
+        // Act
+        node.addToCache(pizza);
+        node.addToCache(pizza);
+
+        // Assert
+        verify(sharedTier).put(eq("meal:pizza"), anyString(), any());
+        verify(sharedTier).publish(eq("meal-cache-invalidation"), anyString());
+    }
+
+    @Test
+    void sharedTier_failureIsTreatedAsMiss() {
+        // Arrange
+        SharedCacheTier sharedTier = Mockito.mock(SharedCacheTier.class);
+        when(sharedTier.get("meal:pizza")).thenThrow(new IllegalStateException("connection refused"));
+        MealCacheServiceImpl node = newService(Optional.of(sharedTier));
+
+        // Act
+        Meal result = node.getMealByName("Pizza");
+
+        // Assert
+        assertThat(result).isNull();
+        assertThat(meterRegistry.get("meal.cache.shared.requests").tag("result", "error").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void evict_removesSharedCopiesAndOtherNodesLocalCopies() {
+        // Arrange
+        InMemorySharedCacheTier sharedTier = new InMemorySharedCacheTier(100);
+        MealCacheServiceImpl otherNode = newService(Optional.of(sharedTier));
+        Meal duplicate = createMeal("Week 2 Friday - Soup");
+        duplicate.setId(9L);
+        otherNode.addToCache(duplicate);
+        MealCacheServiceImpl node = newService(Optional.of(sharedTier));
+
+        // Act
+        node.evict(Set.of("soup", "week 2 friday soup"));
+
+        // Assert
+        assertThat(sharedTier.get("meal:soup")).isNull();
+        assertThat(otherNode.getMealByName("Soup")).isNull();
+    }
+
+    private MealCacheServiceImpl newService(Optional<SharedCacheTier> sharedTier) {
+        return new MealCacheServiceImpl(mealRepository, meterRegistry, sharedTier, new ObjectMapper(),
+                "meal-cache-invalidation", Duration.ofMinutes(10));
+    }
+
     //Hjælpermetode
     private Meal createMeal(String name) {
         Meal meal = new Meal();
@@ -0,0 +1,141 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.model.DataMigration;
+import com.example.weeklymealplannergpt.repository.DataMigrationRepository;
+import com.example.weeklymealplannergpt.repository.MealRepository;
+import com.example.weeklymealplannergpt.repository.MealRepositoryCustom.CanonicalizedBatch;
+import com.example.weeklymealplannergpt.service.mealplan.MealCacheService;
+import com.example.weeklymealplannergpt.service.mealplan.MealNameMigrationServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MealNameMigrationServiceTest {
+
+    @Mock
+    private DataMigrationRepository migrationRepository;
+
+    @Mock
+    private MealRepository mealRepository;
+
+    @Mock
+    private MealCacheService mealCacheService;
+
+    private MealNameMigrationServiceImpl migrationService;
+
+    @BeforeEach
+    void setUp() {
+        migrationService = new MealNameMigrationServiceImpl(migrationRepository, mealRepository, mealCacheService);
+        ReflectionTestUtils.setField(migrationService, "batchSize", 2);
+
+        lenient().when(migrationRepository.saveAndFlush(any(DataMigration.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(migrationRepository.updateProgress(any(), any(), anyLong(), anyLong(), any(), any()))
+                .thenReturn(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        migrationService.destroy();
+    }
+
+    @Test
+    void migrate_runsBatchesUntilTableIsScannedAndEvictsAffectedKeys() {
+        // Arrange
+        when(migrationRepository.findByName("meal-name-canonicalization")).thenReturn(Optional.empty());
+        when(mealRepository.canonicalizeNames(0, 2)).thenReturn(new CanonicalizedBatch(7, 2, Set.of("soup")));
+        when(mealRepository.canonicalizeNames(7, 2)).thenReturn(new CanonicalizedBatch(9, 1, Set.of()));
+
+        // Act
+        DataMigration migration = migrationService.migrate().orElseThrow();
+
+        // Assert
+        assertThat(migration.getLastId()).isEqualTo(9);
+        assertThat(migration.getProcessed()).isEqualTo(3);
+        assertThat(migration.getFinishedAt()).isNotNull();
+        verify(mealCacheService).evict(Set.of("soup"));
+        verify(migrationRepository).updateProgress(any(), eq(migration.getClaimToken()), eq(9L), eq(3L), any(),
+                eq(migration.getFinishedAt()));
+    }
+
+    @Test
+    void migrate_skipsMigrationThatAlreadyFinished() {
+        // Arrange
+        DataMigration finished = migration();
+        finished.setFinishedAt(Instant.now());
+        when(migrationRepository.findByName("meal-name-canonicalization")).thenReturn(Optional.of(finished));
+
+        // Act
+        Optional<DataMigration> result = migrationService.migrate();
+
+        // Assert
+        assertThat(result).isEmpty();
+        verify(mealRepository, never()).canonicalizeNames(anyLong(), anyInt());
+    }
+
+    @Test
+    void migrate_skipsWhenAnotherNodeStartedItFirst() {
+        // Arrange
+        when(migrationRepository.findByName("meal-name-canonicalization")).thenReturn(Optional.empty());
+        when(migrationRepository.saveAndFlush(any(DataMigration.class)))
+                .thenThrow(new DataIntegrityViolationException("uk_data_migration_name"));
+
+        // Act
+        Optional<DataMigration> result = migrationService.migrate();
+
+        // Assert
+        assertThat(result).isEmpty();
+        verify(mealRepository, never()).canonicalizeNames(anyLong(), anyInt());
+    }
+
+    @Test
+    void migrate_resumesFromCursorAndReleasesClaimWhenBatchFails() {
+        // Arrange
+        DataMigration interrupted = migration();
+        interrupted.setLastId(40);
+        when(migrationRepository.findByName("meal-name-canonicalization")).thenReturn(Optional.of(interrupted));
+        when(migrationRepository.claim(eq(interrupted.getId()), any(UUID.class), any(Instant.class), any(Instant.class)))
+                .thenReturn(1);
+        when(migrationRepository.findById(interrupted.getId())).thenReturn(Optional.of(interrupted));
+        when(mealRepository.canonicalizeNames(40, 2)).thenThrow(new CannotAcquireLockException("lock timeout"));
+
+        // Act
+        Optional<DataMigration> result = migrationService.migrate();
+
+        // Assert
+        assertThat(result).get().extracting(DataMigration::getFinishedAt).isNull();
+        verify(migrationRepository).release(interrupted.getId(), interrupted.getClaimToken());
+    }
+
+    private DataMigration migration() {
+        DataMigration migration = new DataMigration();
+        migration.setId(UUID.randomUUID());
+        migration.setName("meal-name-canonicalization");
+        migration.setClaimToken(UUID.randomUUID());
+        migration.setStartedAt(Instant.now().minusSeconds(3600));
+        migration.setHeartbeatAt(Instant.now().minusSeconds(3600));
+        return migration;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.dto.MealPlanResponse;
+import com.example.weeklymealplannergpt.exception.MealGenerationException;
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.MealPlanJob;
+import com.example.weeklymealplannergpt.model.MealPlanJobStatus;
+import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
+import com.example.weeklymealplannergpt.repository.MealPlanJobRepository;
+import com.example.weeklymealplannergpt.service.consumer.ConsumerService;
+import com.example.weeklymealplannergpt.service.job.MealPlanJobServiceImpl;
+import com.example.weeklymealplannergpt.service.mealplan.MealPlanService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MealPlanJobServiceTest {
+
+    @Mock
+    private MealPlanJobRepository jobRepository;
+
+    @Mock
+    private MealPlanService mealPlanService;
+
+    @Mock
+    private ConsumerService consumerService;
+
+    @Mock
+    private TaskExecutor jobExecutor;
+
+    @InjectMocks
+    private MealPlanJobServiceImpl jobService;
+
+    private Consumer consumer;
+    private MealPlanJob job;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new Consumer();
+        consumer.setId(UUID.randomUUID());
+
+        job = new MealPlanJob();
+        job.setId(UUID.randomUUID());
+        job.setConsumerId(consumer.getId());
+        job.setWeeks(4);
+        job.setStatus(MealPlanJobStatus.QUEUED);
+        job.setCreatedAt(Instant.now());
+    }
+
+    @Test
+    void enqueue_savesQueuedJobAndSubmitsIt() {
+        // Arrange
+        when(jobRepository.save(any(MealPlanJob.class))).thenAnswer(invocation -> {
+            MealPlanJob saved = invocation.getArgument(0);
+            saved.setId(job.getId());
+            return saved;
+        });
+
+        // Act
+        MealPlanJob result = jobService.enqueue(consumer, 4);
+
+        // Assert
+        assertEquals(MealPlanJobStatus.QUEUED, result.getStatus());
+        assertEquals(consumer.getId(), result.getConsumerId());
+        assertNotNull(result.getCreatedAt());
+        verify(jobExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void enqueue_leavesJobQueuedWhenExecutorIsSaturated() {
+        // Arrange
+        when(jobRepository.save(any(MealPlanJob.class))).thenReturn(job);
+        doThrow(new TaskRejectedException("full")).when(jobExecutor).execute(any(Runnable.class));
+
+        // Act
+        MealPlanJob result = jobService.enqueue(consumer, 4);
+
+        // Assert
+        assertEquals(MealPlanJobStatus.QUEUED, result.getStatus());
+        verify(jobRepository, times(1)).save(any(MealPlanJob.class));
+    }
+
+    @Test
+    void runJob_recordsMealPlanIdWhenGenerationSucceeds() {
+        // Arrange
+        WeeklyMealPlan plan = new WeeklyMealPlan();
+        plan.setId(42L);
+        when(jobRepository.claim(eq(job.getId()), any(UUID.class), any(Instant.class))).thenReturn(1);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(consumerService.findById(consumer.getId())).thenReturn(Optional.of(consumer));
+        when(mealPlanService.generateMonthlyMealPlan(consumer)).thenReturn(new MealPlanResponse(plan, "Done"));
+
+        // Act
+        jobService.runJob(job.getId());
+
+        // Assert
+        ArgumentCaptor<UUID> claimToken = ArgumentCaptor.forClass(UUID.class);
+        verify(jobRepository).claim(eq(job.getId()), claimToken.capture(), any(Instant.class));
+        verify(jobRepository).complete(eq(job.getId()), eq(claimToken.getValue()), eq(MealPlanJobStatus.COMPLETED),
+                eq(42L), eq("Done"), isNull(), any(Instant.class));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void runJob_marksJobFailedWhenGenerationThrows() {
+        // Arrange
+        when(jobRepository.claim(eq(job.getId()), any(UUID.class), any(Instant.class))).thenReturn(1);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(consumerService.findById(consumer.getId())).thenReturn(Optional.of(consumer));
+        when(mealPlanService.generateMonthlyMealPlan(consumer))
+                .thenThrow(new MealGenerationException("OpenAI down"));
+
+        // Act
+        jobService.runJob(job.getId());
+
+        // Assert
+        assertEquals(MealPlanJobStatus.FAILED, job.getStatus());
+        assertNotNull(job.getError());
+        verify(jobRepository).complete(eq(job.getId()), any(UUID.class), eq(MealPlanJobStatus.FAILED),
+                isNull(), isNull(), eq(job.getError()), any(Instant.class));
+    }
+
+    @Test
+    void runJob_discardsResultWhenJobWasReclaimedByAnotherWorker() {
+        // Arrange
+        WeeklyMealPlan plan = new WeeklyMealPlan();
+        plan.setId(42L);
+        when(jobRepository.claim(eq(job.getId()), any(UUID.class), any(Instant.class))).thenReturn(1);
+        when(jobRepository.findById(job.getId())).thenReturn(Optional.of(job));
+        when(consumerService.findById(consumer.getId())).thenReturn(Optional.of(consumer));
+        when(mealPlanService.generateMonthlyMealPlan(consumer)).thenReturn(new MealPlanResponse(plan, "Done"));
+        when(jobRepository.complete(eq(job.getId()), any(UUID.class), any(), any(), any(), any(), any()))
+                .thenReturn(0);
+
+        // Act
+        jobService.runJob(job.getId());
+
+        // Assert
+        verify(jobRepository).complete(eq(job.getId()), any(UUID.class), eq(MealPlanJobStatus.COMPLETED),
+                eq(42L), eq("Done"), isNull(), any(Instant.class));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void runJob_skipsJobAlreadyClaimedByAnotherWorker() {
+        // Arrange
+        when(jobRepository.claim(eq(job.getId()), any(UUID.class), any(Instant.class))).thenReturn(0);
+
+        // Act
+        jobService.runJob(job.getId());
+
+        // Assert
+        verify(mealPlanService, never()).generateMonthlyMealPlan(any());
+        verify(jobRepository, never()).complete(any(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void dispatchPendingJobs_requeuesStaleJobsAndSubmitsQueuedOnes() {
+        // Arrange
+        when(jobRepository.requeueStale(any(Instant.class))).thenReturn(1);
+        when(jobRepository.findTop50ByStatusAndCreatedAtBeforeOrderByCreatedAtAsc(
+                eq(MealPlanJobStatus.QUEUED), any(Instant.class))).thenReturn(List.of(job));
+        doAnswer(invocation -> null).when(jobExecutor).execute(any(Runnable.class));
+
+        // Act
+        jobService.dispatchPendingJobs();
+
+        // Assert
+        verify(jobRepository).requeueStale(any(Instant.class));
+        verify(jobExecutor).execute(any(Runnable.class));
+    }
+}
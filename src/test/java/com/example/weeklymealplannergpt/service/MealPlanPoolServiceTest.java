@@ -0,0 +1,279 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.model.PooledMealPlan;
+import com.example.weeklymealplannergpt.model.PooledPlanDelivery;
+import com.example.weeklymealplannergpt.model.PreferenceProfile;
+import com.example.weeklymealplannergpt.repository.PooledMealPlanRepository;
+import com.example.weeklymealplannergpt.repository.PooledPlanDeliveryRepository;
+import com.example.weeklymealplannergpt.repository.PreferenceProfileRepository;
+import com.example.weeklymealplannergpt.service.openai.MealPlanGeneration;
+import com.example.weeklymealplannergpt.service.openai.OpenAIService;
+import com.example.weeklymealplannergpt.service.openai.PreferenceFingerprint;
+import com.example.weeklymealplannergpt.service.pool.MealPlanPoolServiceImpl;
+import com.example.weeklymealplannergpt.service.pool.PooledPlanClaim;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MealPlanPoolServiceTest {
+
+    private static final String MEALS_JSON =
+            "[{\"mealName\":\"Pasta\",\"ingredients\":[\"pasta\",\"tomato\"],\"imgUrl\":\"\"}]";
+
+    @Mock
+    private PreferenceProfileRepository profileRepository;
+
+    @Mock
+    private PooledMealPlanRepository planRepository;
+
+    @Mock
+    private PooledPlanDeliveryRepository deliveryRepository;
+
+    @Mock
+    private OpenAIService openAIService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private MealPlanPoolServiceImpl poolService;
+    private Consumer consumer;
+    private String profileKey;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Opfyldning kører på kaldende tråd, så testen kan verificere den direkte
+        poolService = new MealPlanPoolServiceImpl(profileRepository, planRepository, deliveryRepository,
+                openAIService, Runnable::run, transactionManager, meterRegistry);
+        ReflectionTestUtils.setField(poolService, "enabled", true);
+
+        consumer = new Consumer();
+        consumer.setId(UUID.randomUUID());
+        consumer.setDietType("Vegan");
+        consumer.setAllergies(Set.of("Nuts"));
+        profileKey = PreferenceFingerprint.of(consumer, 1).key();
+    }
+
+    @Test
+    void claim_servesUnseenPlanAndRecordsDelivery() {
+        // Arrange
+        PooledMealPlan plan = pooledPlan(7L);
+        when(planRepository.findServable(eq(profileKey), eq(consumer.getId()), anyInt(), any(), any()))
+                .thenReturn(List.of(plan));
+        when(planRepository.recordDelivery(7L, 50)).thenReturn(1);
+        when(planRepository.countByProfileKeyAndDeliveriesLessThanAndCreatedAtAfter(eq(profileKey), anyInt(), any()))
+                .thenReturn(5L);
+
+        // Act
+        Optional<PooledPlanClaim> claimed = poolService.claim(consumer, 1);
+
+        // Assert
+        assertThat(claimed).isPresent();
+        assertThat(claimed.get().planId()).isEqualTo(7L);
+        assertThat(claimed.get().generation().message()).isEqualTo("From the pool");
+        assertThat(claimed.get().generation().meals()).extracting(Meal::getMealName).containsExactly("Pasta");
+        assertThat(claimed.get().generation().meals().get(0).getIngredients()).containsExactly("pasta", "tomato");
+
+        ArgumentCaptor<PooledPlanDelivery> delivery = ArgumentCaptor.forClass(PooledPlanDelivery.class);
+        verify(deliveryRepository).saveAndFlush(delivery.capture());
+        assertThat(delivery.getValue().getPooledPlanId()).isEqualTo(7L);
+        assertThat(delivery.getValue().getConsumerId()).isEqualTo(consumer.getId());
+        assertThat(meterRegistry.counter("meal.pool.requests", "result", "hit").count()).isEqualTo(1.0);
+        verify(openAIService, never()).generateMealPlan(any(PreferenceFingerprint.class));
+    }
+
+    @Test
+    void claim_triesNextPlanWhenConsumerAlreadyGotTheFirst() {
+        // Arrange
+        when(planRepository.findServable(eq(profileKey), eq(consumer.getId()), anyInt(), any(), any()))
+                .thenReturn(List.of(pooledPlan(7L), pooledPlan(8L)));
+        when(planRepository.recordDelivery(anyLong(), anyInt())).thenReturn(1);
+        when(deliveryRepository.saveAndFlush(any()))
+                .thenThrow(new DataIntegrityViolationException("uk_pool_delivery"))
+                .thenAnswer(i -> i.getArgument(0));
+        when(planRepository.countByProfileKeyAndDeliveriesLessThanAndCreatedAtAfter(eq(profileKey), anyInt(), any()))
+                .thenReturn(5L);
+
+        // Act
+        Optional<PooledPlanClaim> claimed = poolService.claim(consumer, 1);
+
+        // Assert
+        assertThat(claimed).isPresent();
+        verify(planRepository).recordDelivery(8L, 50);
+    }
+
+    @Test
+    void claim_missesOnEmptyPoolAndFlushCreatesProfileWithCount() {
+        // Arrange
+        when(profileRepository.recordRequests(eq(profileKey), eq(2L), any())).thenReturn(0);
+        when(planRepository.findServable(eq(profileKey), eq(consumer.getId()), anyInt(), any(), any()))
+                .thenReturn(List.of());
+
+        // Act
+        Optional<PooledPlanClaim> claimed = poolService.claim(consumer, 1);
+        poolService.claim(consumer, 1);
+        poolService.flushRequestCounts();
+
+        // Assert
+        assertThat(claimed).isEmpty();
+        ArgumentCaptor<PreferenceProfile> profile = ArgumentCaptor.forClass(PreferenceProfile.class);
+        verify(profileRepository).saveAndFlush(profile.capture());
+        assertThat(profile.getValue().getProfileKey()).isEqualTo(profileKey);
+        assertThat(profile.getValue().getDietType()).isEqualTo("vegan");
+        assertThat(profile.getValue().getAllergies()).isEqualTo("nuts");
+        assertThat(profile.getValue().getRequestCount()).isEqualTo(2);
+        assertThat(meterRegistry.counter("meal.pool.requests", "result", "miss").count()).isEqualTo(2.0);
+        verify(openAIService, never()).generateMealPlan(any(PreferenceFingerprint.class));
+    }
+
+    @Test
+    void flushRequestCounts_writesOneUpdatePerProfileAndKeepsCountsWhenDatabaseFails() {
+        // Arrange
+        when(planRepository.findServable(eq(profileKey), eq(consumer.getId()), anyInt(), any(), any()))
+                .thenReturn(List.of());
+        when(profileRepository.recordRequests(eq(profileKey), eq(3L), any()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(1);
+        for (int i = 0; i < 3; i++) {
+            poolService.claim(consumer, 1);
+        }
+
+        // Act
+        poolService.flushRequestCounts();
+        poolService.flushRequestCounts();
+        poolService.flushRequestCounts();
+
+        // Assert
+        verify(profileRepository, times(2)).recordRequests(eq(profileKey), eq(3L), any());
+        verify(profileRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void claim_refillsTopProfileOnMissUntilGenerationFails() {
+        // Arrange
+        PreferenceProfile top = PreferenceFingerprint.of(consumer, 1).toProfile();
+        when(profileRepository.findByLastRequestedAtAfterOrderByRequestCountDesc(any(), any())).thenReturn(List.of(top));
+        when(planRepository.findServable(eq(profileKey), eq(consumer.getId()), anyInt(), any(), any()))
+                .thenReturn(List.of());
+        when(planRepository.countByProfileKeyAndDeliveriesLessThanAndCreatedAtAfter(eq(profileKey), anyInt(), any()))
+                .thenReturn(7L);
+        Meal meal = new Meal();
+        meal.setMealName("Curry");
+        meal.setIngredients(List.of("rice"));
+        when(openAIService.generateMealPlan(PreferenceFingerprint.of(consumer, 1)))
+                .thenReturn(new MealPlanGeneration(List.of(meal), "Fresh", null, Duration.ofSeconds(3)))
+                .thenReturn(new MealPlanGeneration(List.of(), null, null, Duration.ofSeconds(3)));
+        poolService.refreshTopProfiles();
+
+        // Act
+        Optional<PooledPlanClaim> claimed = poolService.claim(consumer, 1);
+
+        // Assert
+        assertThat(claimed).isEmpty();
+        ArgumentCaptor<PooledMealPlan> saved = ArgumentCaptor.forClass(PooledMealPlan.class);
+        verify(planRepository, times(1)).save(saved.capture());
+        assertThat(saved.getValue().getProfileKey()).isEqualTo(profileKey);
+        assertThat(saved.getValue().getMealsJson()).contains("\"mealName\":\"Curry\"");
+        verify(openAIService, times(2)).generateMealPlan(any(PreferenceFingerprint.class));
+    }
+
+    @Test
+    void claim_returnsEmptyWhenDatabaseFails() {
+        // Arrange
+        when(planRepository.findServable(eq(profileKey), eq(consumer.getId()), anyInt(), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        // Act
+        Optional<PooledPlanClaim> claimed = poolService.claim(consumer, 1);
+
+        // Assert
+        assertThat(claimed).isEmpty();
+        verify(deliveryRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void refillTopProfiles_retiresOldPlansAndFillsEachTopProfile() {
+        // Arrange
+        PreferenceProfile top = PreferenceFingerprint.of(consumer, 1).toProfile();
+        when(profileRepository.findByLastRequestedAtAfterOrderByRequestCountDesc(any(), any())).thenReturn(List.of(top));
+        when(planRepository.countByProfileKeyAndDeliveriesLessThanAndCreatedAtAfter(eq(profileKey), anyInt(), any()))
+                .thenReturn(9L);
+        Meal meal = new Meal();
+        meal.setMealName("Curry");
+        when(openAIService.generateMealPlan(PreferenceFingerprint.of(consumer, 1)))
+                .thenReturn(new MealPlanGeneration(List.of(meal), "Fresh", null, Duration.ofSeconds(3)));
+
+        // Act
+        poolService.refillTopProfiles();
+
+        // Assert
+        verify(planRepository).deleteRetiredDeliveries(eq(50), any(Instant.class));
+        verify(planRepository).deleteRetired(eq(50), any(Instant.class));
+        verify(planRepository, times(1)).save(any(PooledMealPlan.class));
+    }
+
+    @Test
+    void release_deletesDeliveryAndCountsThePlanDownOnce() {
+        // Arrange
+        PooledPlanClaim claim = new PooledPlanClaim(7L, consumer.getId(),
+                new MealPlanGeneration(List.of(), "From the pool", null, Duration.ZERO));
+        when(deliveryRepository.deleteDelivery(7L, consumer.getId())).thenReturn(1).thenReturn(0);
+
+        // Act
+        poolService.release(claim);
+        poolService.release(claim);
+
+        // Assert
+        verify(deliveryRepository, times(2)).deleteDelivery(7L, consumer.getId());
+        verify(planRepository, times(1)).releaseDelivery(7L);
+    }
+
+    @Test
+    void claim_isDisabledByDefault() {
+        // Arrange
+        MealPlanPoolServiceImpl defaultService = new MealPlanPoolServiceImpl(profileRepository, planRepository,
+                deliveryRepository, openAIService, Runnable::run, transactionManager, meterRegistry);
+
+        // Act
+        Optional<PooledPlanClaim> claimed = defaultService.claim(consumer, 1);
+        defaultService.flushRequestCounts();
+
+        // Assert
+        assertThat(claimed).isEmpty();
+        verify(profileRepository, never()).recordRequests(any(), anyLong(), any());
+        verify(planRepository, never()).findServable(any(), any(), anyInt(), any(), any());
+    }
+
+    private PooledMealPlan pooledPlan(Long id) {
+        return new PooledMealPlan(id, profileKey, MEALS_JSON, "From the pool", 0, Instant.now());
+    }
+}
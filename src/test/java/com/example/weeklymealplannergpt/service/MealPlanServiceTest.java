@@ -1,33 +1,58 @@
 package com.example.weeklymealplannergpt.service;
 
 import com.example.weeklymealplannergpt.dto.MealPlanResponse;
+import com.example.weeklymealplannergpt.dto.PlanHistoryPage;
+import com.example.weeklymealplannergpt.exception.MealGenerationException;
 import com.example.weeklymealplannergpt.model.Consumer;
 import com.example.weeklymealplannergpt.model.Meal;
 import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
 import com.example.weeklymealplannergpt.repository.MealRepository;
 import com.example.weeklymealplannergpt.repository.WeeklyMealPlanRepository;
 import com.example.weeklymealplannergpt.service.consumer.ConsumerService;
-import com.example.weeklymealplannergpt.service.email.EmailService;
+import com.example.weeklymealplannergpt.service.email.EmailOutboxService;
 import com.example.weeklymealplannergpt.service.mealplan.MealCacheService;
 import com.example.weeklymealplannergpt.service.mealplan.MealPlanServiceImpl;
+import com.example.weeklymealplannergpt.service.mealplan.MealPlanStreamListener;
+import com.example.weeklymealplannergpt.service.openai.MealPlanGeneration;
+import com.example.weeklymealplannergpt.service.openai.MealStreamListener;
 import com.example.weeklymealplannergpt.service.openai.OpenAIService;
+import com.example.weeklymealplannergpt.service.pool.MealPlanPoolService;
+import com.example.weeklymealplannergpt.service.pool.PooledPlanClaim;
+import com.example.weeklymealplannergpt.service.search.MealSearchService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,11 +70,20 @@ class MealPlanServiceTest {
     @Mock
     private MealCacheService mealCacheService;
 
+    @Mock
+    private MealSearchService mealSearchService;
+
     @Mock
     private ConsumerService consumerService;
 
     @Mock
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
+
+    @Mock
+    private MealPlanPoolService mealPlanPoolService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @InjectMocks
     private MealPlanServiceImpl mealPlanService;
@@ -72,10 +106,8 @@ class MealPlanServiceTest {
         meals.add(meal);
         
         when(consumerService.existsById(any())).thenReturn(true);
-        when(openAIService.generateMealPlan(any(), eq(1))).thenReturn(meals);
-        when(openAIService.getLastGeneratedMessage()).thenReturn("Plan created");
+        when(openAIService.generateMealPlan(any(), eq(1))).thenReturn(generation(meals, "Plan created"));
         when(mealCacheService.getMealByName(any())).thenReturn(null);
-        when(mealRepository.save(any())).thenReturn(meal);
         when(weeklyMealPlanRepository.save(any())).thenAnswer(i -> i.getArgument(0));
 
         MealPlanResponse result = mealPlanService.generateWeeklyMealPlan(consumer);
@@ -85,6 +117,40 @@ class MealPlanServiceTest {
         assertEquals("Plan created", result.getMessage());
     }
 
+    @Test
+    void generateWeeklyMealPlan_usesPooledPlanWithoutCallingOpenAI() throws IOException {
+        // Arrange
+        Meal meal = new Meal();
+        meal.setMealName("Pooled pasta");
+        when(consumerService.existsById(any())).thenReturn(true);
+        when(mealPlanPoolService.claim(consumer, 1)).thenReturn(Optional.of(pooledClaim(meal)));
+        when(weeklyMealPlanRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+
+        // Act
+        MealPlanResponse result = mealPlanService.generateWeeklyMealPlan(consumer);
+
+        // Assert
+        assertEquals("From the pool", result.getMessage());
+        assertEquals("Pooled pasta", result.getMealPlan().getMeals().get(0).getMealName());
+        verify(openAIService, never()).generateMealPlan(any(Consumer.class), eq(1));
+        verify(mealPlanPoolService, never()).release(any());
+    }
+
+    @Test
+    void generateWeeklyMealPlan_releasesPooledPlanWhenSavingFails() {
+        // Arrange
+        Meal meal = new Meal();
+        meal.setMealName("Pooled pasta");
+        PooledPlanClaim claim = pooledClaim(meal);
+        when(consumerService.existsById(any())).thenReturn(true);
+        when(mealPlanPoolService.claim(consumer, 1)).thenReturn(Optional.of(claim));
+        when(weeklyMealPlanRepository.save(any())).thenThrow(new IllegalStateException("db down"));
+
+        // Act & Assert
+        assertThrows(MealGenerationException.class, () -> mealPlanService.generateWeeklyMealPlan(consumer));
+        verify(mealPlanPoolService).release(claim);
+    }
+
     @Test
     void generateMonthlyMealPlan_creates20Meals() throws IOException {
         List<Meal> meals = new ArrayList<>();
@@ -95,16 +161,96 @@ class MealPlanServiceTest {
         }
         
         when(consumerService.existsById(any())).thenReturn(true);
-        when(openAIService.generateMealPlan(any(), eq(4))).thenReturn(meals);
-        when(openAIService.getLastGeneratedMessage()).thenReturn("Monthly plan created");
+        when(openAIService.generateMealPlan(any(), eq(4))).thenReturn(generation(meals, "Monthly plan created"));
         when(mealCacheService.getMealByName(any())).thenReturn(null);
-        when(mealRepository.save(any())).thenAnswer(i -> i.getArgument(0));
         when(weeklyMealPlanRepository.save(any())).thenAnswer(i -> i.getArgument(0));
 
         MealPlanResponse result = mealPlanService.generateMonthlyMealPlan(consumer);
 
         assertNotNull(result);
         assertEquals(20, result.getMealPlan().getMeals().size());
+        verify(mealRepository, times(1)).findAllByNormalizedNameIn(anyCollection());
+        verify(mealRepository, times(1)).insertAll(meals);
+    }
+
+    @Test
+    void generateMealPlan_reusesMealsFoundInDatabaseAndInsertsOnlyNewOnes() throws IOException {
+        Meal existing = new Meal();
+        existing.setId(5L);
+        existing.setMealName("Pasta");
+        existing.setNormalizedName("pasta");
+        Meal generatedPasta = new Meal();
+        generatedPasta.setMealName("  PASTA ");
+        Meal generatedSoup = new Meal();
+        generatedSoup.setMealName("Soup");
+
+        when(consumerService.existsById(any())).thenReturn(true);
+        when(openAIService.generateMealPlan(any(), eq(1))).thenReturn(generation(List.of(generatedPasta, generatedSoup), null));
+        when(mealRepository.findAllByNormalizedNameIn(anyCollection())).thenReturn(List.of(existing));
+        when(weeklyMealPlanRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+
+        MealPlanResponse result = mealPlanService.generateWeeklyMealPlan(consumer);
+
+        assertEquals(List.of(existing, generatedSoup), result.getMealPlan().getMeals());
+        verify(mealRepository).insertAll(List.of(generatedSoup));
+        verify(mealCacheService).addToCache(existing);
+        verify(mealCacheService).addToCache(generatedSoup);
+        verify(mealSearchService).index(List.of(existing, generatedSoup));
+    }
+
+    @Test
+    void generateMealPlan_retriesWhenMealIsInsertedConcurrently() throws IOException {
+        Meal generatedSoup = new Meal();
+        generatedSoup.setMealName("Soup");
+        Meal insertedElsewhere = new Meal();
+        insertedElsewhere.setId(9L);
+        insertedElsewhere.setMealName("Soup");
+        insertedElsewhere.setNormalizedName("soup");
+
+        when(consumerService.existsById(any())).thenReturn(true);
+        when(openAIService.generateMealPlan(any(), eq(1))).thenReturn(generation(List.of(generatedSoup), null));
+        when(mealRepository.findAllByNormalizedNameIn(anyCollection()))
+                .thenReturn(List.of())
+                .thenReturn(List.of(insertedElsewhere));
+        doThrow(new DuplicateKeyException("uk_meal_normalized_name"))
+                .when(mealRepository).insertAll(anyList());
+        when(weeklyMealPlanRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+
+        MealPlanResponse result = mealPlanService.generateWeeklyMealPlan(consumer);
+
+        assertEquals(9L, result.getMealPlan().getMeals().get(0).getId());
+        verify(mealRepository, times(1)).insertAll(anyList());
+        verify(mealCacheService).addToCache(same(insertedElsewhere));
+        verify(mealCacheService, never()).addToCache(same(generatedSoup));
+    }
+
+    @Test
+    void streamMealPlan_emitsEachResolvedMealBeforeSavingPlan() throws IOException {
+        Meal cached = new Meal();
+        cached.setMealName("Pasta");
+        Meal generatedPasta = new Meal();
+        generatedPasta.setMealName("Pasta");
+        Meal generatedSoup = new Meal();
+        generatedSoup.setMealName("Soup");
+
+        when(consumerService.existsById(any())).thenReturn(true);
+        doAnswer(invocation -> {
+            MealStreamListener listener = invocation.getArgument(2);
+            listener.onMeal(generatedPasta);
+            listener.onMeal(generatedSoup);
+            return generation(List.of(generatedPasta, generatedSoup), "Streamed plan");
+        }).when(openAIService).streamMealPlan(any(), eq(1), any());
+        when(mealCacheService.getMealByName("Pasta")).thenReturn(cached);
+        when(mealCacheService.getMealByName("Soup")).thenReturn(null);
+        when(weeklyMealPlanRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+
+        MealPlanStreamListener listener = mock(MealPlanStreamListener.class);
+        mealPlanService.streamMealPlan(consumer, 1, listener);
+
+        verify(listener).onMeal(0, cached);
+        verify(listener).onMeal(1, generatedSoup);
+        verify(listener).onComplete(argThat(response -> "Streamed plan".equals(response.getMessage())));
+        verify(mealRepository).insertAll(List.of(generatedSoup));
     }
 
     @Test
@@ -131,4 +277,55 @@ class MealPlanServiceTest {
         assertNotNull(result);
         assertEquals(2, result.size());
     }
+
+    @Test
+    void getPlanHistoryPage_returnsCursorWhenMorePlansExist() {
+        WeeklyMealPlanRepository.PlanHeader newest = header(2L, LocalDate.of(2026, 10, 12));
+        WeeklyMealPlanRepository.PlanHeader older = mock(WeeklyMealPlanRepository.PlanHeader.class);
+        WeeklyMealPlanRepository.PlanMealRow row = mock(WeeklyMealPlanRepository.PlanMealRow.class);
+        when(row.getPlanId()).thenReturn(2L);
+        when(row.getMealName()).thenReturn("Pasta");
+        when(weeklyMealPlanRepository.findHistoryHeaders(eq(consumer.getId()), any(Limit.class)))
+                .thenReturn(List.of(newest, older));
+        when(weeklyMealPlanRepository.findMealSummaries(List.of(2L))).thenReturn(List.of(row));
+
+        PlanHistoryPage page = mealPlanService.getPlanHistoryPage(consumer.getId(), null, 1);
+
+        assertEquals(1, page.getPlans().size());
+        assertEquals("Pasta", page.getPlans().get(0).getMeals().get(0).getMealName());
+        assertEquals("2026-10-12_2", page.getNextCursor());
+    }
+
+    @Test
+    void getPlanHistoryPage_continuesAfterCursor() {
+        when(weeklyMealPlanRepository.findHistoryHeadersAfter(
+                eq(consumer.getId()), eq(LocalDate.of(2026, 10, 12)), eq(2L), any(Limit.class)))
+                .thenReturn(List.of());
+
+        PlanHistoryPage page = mealPlanService.getPlanHistoryPage(consumer.getId(), "2026-10-12_2", 10);
+
+        assertEquals(0, page.getPlans().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getPlanHistoryPage_rejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> mealPlanService.getPlanHistoryPage(consumer.getId(), "not-a-cursor", 10));
+    }
+
+    private WeeklyMealPlanRepository.PlanHeader header(Long id, LocalDate weekStartDate) {
+        WeeklyMealPlanRepository.PlanHeader header = mock(WeeklyMealPlanRepository.PlanHeader.class);
+        when(header.getId()).thenReturn(id);
+        when(header.getWeekStartDate()).thenReturn(weekStartDate);
+        return header;
+    }
+
+    private PooledPlanClaim pooledClaim(Meal meal) {
+        return new PooledPlanClaim(7L, consumer.getId(), generation(List.of(meal), "From the pool"));
+    }
+
+    private static MealPlanGeneration generation(List<Meal> meals, String message) {
+        return new MealPlanGeneration(meals, message, MealPlanGeneration.TokenUsage.UNKNOWN, Duration.ZERO);
+    }
 }
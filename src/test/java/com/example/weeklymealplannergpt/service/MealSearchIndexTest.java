@@ -0,0 +1,115 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.dto.MealSearchHit;
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.service.search.MealSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MealSearchIndexTest {
+
+    private MealSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new MealSearchIndex();
+        index.add(meal(1L, "Tomato Soup", "tomatoes", "onion", "basil"));
+        index.add(meal(2L, "Chicken Curry", "chicken breast", "coconut milk", "onion"));
+        index.add(meal(3L, "Chicken Tomato Pasta", "chicken", "tomatoes", "pasta"));
+        index.add(meal(4L, "Crème Brûlée", "cream", "sugar", "egg yolks"));
+    }
+
+    @Test
+    void search_ranksMealsMatchingAllTermsFirst() {
+        // Act
+        List<MealSearchHit> hits = index.search("chicken tomato", 10);
+
+        // Assert
+        assertThat(hits).extracting(MealSearchHit::getId).first().isEqualTo(3L);
+        assertThat(hits).extracting(MealSearchHit::getId).containsExactlyInAnyOrder(3L, 1L, 2L);
+    }
+
+    @Test
+    void search_ranksNameMatchAboveIngredientMatch() {
+        // Arrange
+        index.add(meal(5L, "Onion Tart", "pastry", "cheese"));
+
+        // Act
+        List<MealSearchHit> hits = index.search("onion", 10);
+
+        // Assert
+        assertThat(hits).extracting(MealSearchHit::getId).first().isEqualTo(5L);
+        assertThat(hits).hasSize(3);
+    }
+
+    @Test
+    void search_matchesPrefixesTyposAndAccents() {
+        assertThat(index.search("coco", 10)).extracting(MealSearchHit::getId).containsExactly(2L);
+        assertThat(index.search("chiken", 10)).extracting(MealSearchHit::getId).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(index.search("creme brulee", 10)).extracting(MealSearchHit::getId).containsExactly(4L);
+    }
+
+    @Test
+    void search_ignoresStopWordsAndEmptyQueries() {
+        assertThat(index.search("the and of", 10)).isEmpty();
+        assertThat(index.search("  ", 10)).isEmpty();
+        assertThat(index.search("soup", 0)).isEmpty();
+    }
+
+    @Test
+    void add_reindexesChangedMealAndRemoveDropsIt() {
+        // Act
+        index.add(meal(1L, "Tomato Soup", "tomatoes", "garlic"));
+        List<MealSearchHit> basilAfterUpdate = index.search("basil", 10);
+        List<MealSearchHit> garlicAfterUpdate = index.search("garlic", 10);
+        index.remove(1L);
+
+        // Assert
+        assertThat(basilAfterUpdate).isEmpty();
+        assertThat(garlicAfterUpdate).extracting(MealSearchHit::getId).containsExactly(1L);
+        assertThat(index.search("soup", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void search_whileMealsAreRemovedConcurrently_neverReturnsEmptySlots() throws Exception {
+        // Arrange
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // Act
+        Future<?> writer = executor.submit(() -> {
+            while (running.get()) {
+                index.add(meal(5L, "Tomato Salad", "tomatoes", "basil"));
+                index.remove(5L);
+            }
+        });
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                // Assert
+                assertThat(index.search("tomato", 10)).allSatisfy(hit -> assertThat(hit.getMealName()).isNotNull());
+            }
+        } finally {
+            running.set(false);
+            executor.shutdown();
+        }
+        writer.get();
+    }
+
+    private Meal meal(Long id, String name, String... ingredients) {
+        Meal meal = new Meal();
+        meal.setId(id);
+        meal.setMealName(name);
+        meal.setImgUrl("img.png");
+        meal.setIngredients(List.of(ingredients));
+        return meal;
+    }
+}
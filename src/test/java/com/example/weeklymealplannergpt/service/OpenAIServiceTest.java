@@ -1,30 +1,57 @@
 package com.example.weeklymealplannergpt.service;
 
+import com.example.weeklymealplannergpt.config.ResilienceProperties;
+import com.example.weeklymealplannergpt.dto.OpenAIRequest;
 import com.example.weeklymealplannergpt.dto.OpenAIResponse;
 import com.example.weeklymealplannergpt.model.Consumer;
 import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.model.MealNameCanonicalizer;
+import com.example.weeklymealplannergpt.service.openai.MealPlanGeneration;
+import com.example.weeklymealplannergpt.service.openai.MealPlanPromptProvider;
 import com.example.weeklymealplannergpt.service.openai.OpenAIServiceImpl;
+import com.example.weeklymealplannergpt.service.openai.PreferenceFingerprint;
+import com.example.weeklymealplannergpt.service.resilience.ResilientCaller;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.core.io.ClassPathResource;
 
@@ -34,19 +61,25 @@ public class OpenAIServiceTest {
     @Mock
     private RestTemplate restTemplate;
 
-    @InjectMocks
+    @Captor
+    private ArgumentCaptor<HttpEntity<OpenAIRequest>> captor;
+
     private OpenAIServiceImpl openAIService;
 
+    private SimpleMeterRegistry meterRegistry;
+
     //Sætter private felter i openAIService før hver test, så API-nøgle, URL og model er tilgængelige.
     //Vi gør det for at initialisere private felter, som normalt bliver sat via Spring (@Value), så testen kan køre uden Spring-kontext.
     @BeforeEach
     void setUp(){
+        meterRegistry = new SimpleMeterRegistry();
+        openAIService = new OpenAIServiceImpl(restTemplate,
+                new ResilientCaller("openai", new ResilienceProperties.Policy(), meterRegistry),
+                new MealPlanPromptProvider(new ClassPathResource("chatgpt-prompt.txt")), meterRegistry);
+
         ReflectionTestUtils.setField(openAIService, "openAiApiKey", "test-key");
         ReflectionTestUtils.setField(openAIService, "openAiApiUrl", "https://api.openai.com/v1/chat/completions");
         ReflectionTestUtils.setField(openAIService, "model", "gpt-3.5-turbo");
-
-        ReflectionTestUtils.setField(openAIService, "promptTemplate",
-                new ClassPathResource("chatgpt-prompt.txt"));
     }
 
     @Test
@@ -64,12 +97,78 @@ public class OpenAIServiceTest {
                 .thenReturn(ResponseEntity.ok(openAIResponse));
 
         //Act
-        List<Meal> meals = openAIService.generateMealPlan(consumer, 1);
+        MealPlanGeneration generation = openAIService.generateMealPlan(consumer, 1);
+
+        //Assert
+        assertThat(generation.meals()).hasSize(5);
+        assertThat(generation.meals().getFirst().getMealName()).isNotBlank();
+        assertThat(generation.message()).isEqualTo("Here is your meal plan");
+        assertThat(generation.usage()).isEqualTo(new MealPlanGeneration.TokenUsage(900, 400));
+        assertThat(meterRegistry.counter("openai.tokens", "type", "completion").count()).isEqualTo(400);
+        assertThat(meterRegistry.timer("openai.generation.latency", "mode", "blocking").count()).isEqualTo(1);
+    }
+
+    @Test
+    void generateMealPlan_parsesFencedJsonAndIgnoresTrailingText() throws IOException {
+        //Arrange
+        String fenced = "Sure! Here you go:\n```json\n" + createMockOpenAIResponse() + "```\nEnjoy your meals.";
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(OpenAIResponse.class)))
+                .thenReturn(ResponseEntity.ok(createOpenAIResponse(fenced)));
+
+        //Act
+        MealPlanGeneration generation = openAIService.generateMealPlan(createTestConsumer(), 1);
 
         //Assert
-        assertThat(meals).isNotEmpty();
-        assertThat(meals).hasSize(5);
-        assertThat(meals.getFirst().getMealName()).isNotBlank();
+        assertThat(generation.meals()).extracting(Meal::getMealName)
+                .startsWith("Pasta Primavera", "Grilled Salmon");
+        assertThat(generation.meals().getFirst().getIngredients()).containsExactly("pasta", "vegetables");
+        assertThat(generation.message()).isEqualTo("Here is your meal plan");
+    }
+
+    @Test
+    void generateMealPlan_rendersPreferencesIntoPromptAndRecordsSize() throws IOException {
+        //Arrange
+        ReflectionTestUtils.setField(openAIService, "chunkedGeneration", false);
+        Consumer consumer = createTestConsumer();
+        consumer.setAllergies(Set.of("Peanuts"));
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), captor.capture(), eq(OpenAIResponse.class)))
+                .thenReturn(ResponseEntity.ok(createOpenAIResponse(createMockOpenAIResponse())));
+
+        //Act
+        openAIService.generateMealPlan(consumer, 4);
+
+        //Assert
+        String prompt = captor.getValue().getBody().getMessages().get(1).getContent();
+        assertThat(prompt).contains("- Allergies: [peanuts]", "- Diet: vegetarian", "Create a 4-week dinner plan (20 dinners total");
+        assertThat(prompt).doesNotContain("{{", "Week N");
+        assertThat(meterRegistry.summary("openai.prompt.size").totalAmount()).isEqualTo(prompt.length());
+        assertThat(meterRegistry.summary("openai.prompt.tokens.estimated").count()).isEqualTo(1);
+    }
+
+    @Test
+    void generateMealPlan_requestsJsonSchemaOutputWithBudgetForPlanSize() throws IOException {
+        //Arrange
+        ReflectionTestUtils.setField(openAIService, "chunkedGeneration", false);
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), captor.capture(), eq(OpenAIResponse.class)))
+                .thenReturn(ResponseEntity.ok(createOpenAIResponse(createMockOpenAIResponse())));
+
+        //Act
+        openAIService.generateMealPlan(createTestConsumer(), 1);
+        openAIService.generateMealPlan(createTestConsumer(), 4);
+
+        //Assert
+        OpenAIRequest weekly = captor.getAllValues().get(0).getBody();
+        OpenAIRequest monthly = captor.getAllValues().get(1).getBody();
+        assertThat(weekly.getMax_tokens()).isEqualTo(493);
+        assertThat(monthly.getMax_tokens()).isEqualTo(1675);
+        assertThat(monthly.getMax_tokens()).isGreaterThan(weekly.getMax_tokens() * 3);
+
+        JsonNode json = new ObjectMapper().valueToTree(monthly);
+        assertThat(json.at("/response_format/type").asText()).isEqualTo("json_schema");
+        assertThat(json.at("/response_format/json_schema/strict").asBoolean()).isTrue();
+        assertThat(json.at("/response_format/json_schema/schema/required").toString()).contains("meals");
+        assertThat(json.has("stream_options")).isFalse();
+        assertThat(monthly.getMessages().get(1).getContent()).contains("at most 8 main ingredients");
     }
 
     @Test
@@ -80,10 +179,241 @@ public class OpenAIServiceTest {
                 .thenThrow(new RestClientException("API Error"));
 
         //Act
-        List<Meal> meals = openAIService.generateMealPlan(consumer, 1);
+        MealPlanGeneration generation = openAIService.generateMealPlan(consumer, 1);
+
+        //Assert
+        assertThat(generation.isEmpty()).isTrue();
+        assertThat(generation.message()).isNull();
+    }
+
+    @Test
+    void generateMealPlan_multiWeek_generatesWeeksConcurrentlyAndReplacesRepeatedMeals() throws Exception {
+        //Arrange
+        CountDownLatch weeksInFlight = new CountDownLatch(2);
+        AtomicInteger weekCalls = new AtomicInteger();
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), captor.capture(), eq(OpenAIResponse.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<OpenAIRequest> entity = invocation.getArgument(2);
+                    if (entity.getBody().getMessages().get(1).getContent().contains("Do not use any of these dishes")) {
+                        return ResponseEntity.ok(createOpenAIResponse(mealsJson("Pasta A", "Risotto")));
+                    }
+                    weeksInFlight.countDown();
+                    assertThat(weeksInFlight.await(5, TimeUnit.SECONDS)).isTrue();
+                    return ResponseEntity.ok(createOpenAIResponse(weekCalls.getAndIncrement() == 0
+                            ? mealsJson("Pasta A", "Soup B", "Salad C", "Curry D", "Tacos E")
+                            : mealsJson("Week 2 Monday - Pasta A", "Pie F", "Stew G", "Wrap H", "Bowl I")));
+                });
+
+        //Act
+        MealPlanGeneration generation = openAIService.generateMealPlan(createTestConsumer(), 2);
+
+        //Assert
+        assertThat(generation.meals()).extracting(meal -> MealNameCanonicalizer.displayName(meal.getMealName()))
+                .doesNotHaveDuplicates()
+                .hasSize(10)
+                .contains("Risotto");
+        assertThat(generation.usage()).isEqualTo(new MealPlanGeneration.TokenUsage(2700, 1200));
+
+        OpenAIRequest replacement = captor.getAllValues().stream()
+                .map(HttpEntity::getBody)
+                .filter(request -> request.getMessages().get(1).getContent().contains("Do not use"))
+                .findFirst().orElseThrow();
+        assertThat(replacement.getMessages().get(1).getContent())
+                .contains("(1 dinners total", "Pasta A, ", "Bowl I");
+        assertThat(replacement.getMax_tokens()).isEqualTo(178);
+        assertThat(captor.getAllValues().stream()
+                .map(entity -> entity.getBody().getMessages().get(1).getContent())
+                .filter(prompt -> prompt.contains("Theme for this week:"))
+                .map(prompt -> prompt.substring(prompt.indexOf("Theme for this week:")))
+                .distinct())
+                .hasSize(2);
+    }
+
+    @Test
+    void generateMealPlan_multiWeek_keepsWeekSlotsWhenReplacementComesBackShort() throws Exception {
+        //Arrange
+        AtomicInteger weekCalls = new AtomicInteger();
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(OpenAIResponse.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<OpenAIRequest> entity = invocation.getArgument(2);
+                    if (entity.getBody().getMessages().get(1).getContent().contains("Do not use any of these dishes")) {
+                        return ResponseEntity.ok(createOpenAIResponse(mealsJson()));
+                    }
+                    return ResponseEntity.ok(createOpenAIResponse(weekCalls.getAndIncrement() == 0
+                            ? mealsJson("Pasta A", "Soup B", "Salad C", "Curry D", "Tacos E")
+                            : mealsJson("Pasta A", "Pie F", "Stew G", "Wrap H", "Bowl I")));
+                });
+
+        //Act
+        MealPlanGeneration generation = openAIService.generateMealPlan(createTestConsumer(), 2);
+
+        //Assert: ugerne svarer i vilkårlig rækkefølge, men hver uge beholder sine fem retter på sine pladser
+        List<String> names = generation.meals().stream().map(Meal::getMealName).toList();
+        assertThat(names).hasSize(10);
+        assertThat(List.of(Set.copyOf(names.subList(0, 5)), Set.copyOf(names.subList(5, 10)))).containsExactlyInAnyOrder(
+                Set.of("Pasta A", "Soup B", "Salad C", "Curry D", "Tacos E"),
+                Set.of("Pasta A", "Pie F", "Stew G", "Wrap H", "Bowl I"));
+    }
+
+    @Test
+    void generateMealPlan_multiWeek_failsInsteadOfShiftingWeeksWhenAMealIsMissing() throws Exception {
+        //Arrange
+        AtomicInteger weekCalls = new AtomicInteger();
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(OpenAIResponse.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<OpenAIRequest> entity = invocation.getArgument(2);
+                    if (entity.getBody().getMessages().get(1).getContent().contains("Do not use any of these dishes")) {
+                        return ResponseEntity.ok(createOpenAIResponse(mealsJson()));
+                    }
+                    return ResponseEntity.ok(createOpenAIResponse(weekCalls.getAndIncrement() == 0
+                            ? mealsJson("Pasta A", "Soup B", "Salad C", "Curry D")
+                            : mealsJson("Pie F", "Stew G", "Wrap H", "Bowl I", "Tacos E")));
+                });
+
+        //Act
+        MealPlanGeneration generation = openAIService.generateMealPlan(createTestConsumer(), 2);
 
         //Assert
-        assertThat(meals).isEmpty();
+        assertThat(generation.isEmpty()).isTrue();
+    }
+
+    @Test
+    void generateMealPlan_concurrentCallersWithSamePreferences_shareOneUpstreamCall() throws Exception {
+        ReflectionTestUtils.setField(openAIService, "coalescingResultTtl", Duration.ofSeconds(30));
+        CountDownLatch upstreamEntered = new CountDownLatch(1);
+        CountDownLatch releaseUpstream = new CountDownLatch(1);
+        OpenAIResponse openAIResponse = createOpenAIResponse(createMockOpenAIResponse());
+
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(OpenAIResponse.class)))
+                .thenAnswer(invocation -> {
+                    upstreamEntered.countDown();
+                    releaseUpstream.await(5, TimeUnit.SECONDS);
+                    return ResponseEntity.ok(openAIResponse);
+                });
+
+        Consumer first = createTestConsumer();
+        first.setAllergies(Set.of("Nuts", "milk"));
+        Consumer second = createTestConsumer();
+        second.setAllergies(Set.of(" MILK", "nuts "));
+
+        CompletableFuture<List<Meal>> firstCall = CompletableFuture.supplyAsync(() -> generate(first));
+        assertThat(upstreamEntered.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<List<Meal>> secondCall = CompletableFuture.supplyAsync(() -> generate(second));
+        releaseUpstream.countDown();
+
+        List<Meal> firstMeals = firstCall.get(5, TimeUnit.SECONDS);
+        List<Meal> secondMeals = secondCall.get(5, TimeUnit.SECONDS);
+
+        assertThat(firstMeals).hasSize(5);
+        assertThat(secondMeals).hasSize(5);
+        assertThat(secondMeals.getFirst()).isNotSameAs(firstMeals.getFirst());
+        verify(restTemplate, times(1)).exchange(anyString(), any(), any(), eq(OpenAIResponse.class));
+    }
+
+    @Test
+    void generateMealPlan_concurrentCallersWithDifferentPreferences_getTheirOwnMessage() throws Exception {
+        CountDownLatch bothInFlight = new CountDownLatch(2);
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(OpenAIResponse.class)))
+                .thenAnswer(invocation -> {
+                    HttpEntity<OpenAIRequest> entity = invocation.getArgument(2);
+                    String diet = entity.getBody().getMessages().get(1).getContent().contains("- Diet: vegan") ? "vegan" : "vegetarian";
+                    bothInFlight.countDown();
+                    bothInFlight.await(5, TimeUnit.SECONDS);
+                    return ResponseEntity.ok(createOpenAIResponse(
+                            createMockOpenAIResponse().replace("Here is your meal plan", "Plan for " + diet)));
+                });
+
+        Consumer vegan = createTestConsumer();
+        vegan.setDietType("vegan");
+        CompletableFuture<MealPlanGeneration> veganCall =
+                CompletableFuture.supplyAsync(() -> generation(vegan));
+        CompletableFuture<MealPlanGeneration> vegetarianCall =
+                CompletableFuture.supplyAsync(() -> generation(createTestConsumer()));
+
+        assertThat(veganCall.get(5, TimeUnit.SECONDS).message()).isEqualTo("Plan for vegan");
+        assertThat(vegetarianCall.get(5, TimeUnit.SECONDS).message()).isEqualTo("Plan for vegetarian");
+    }
+
+    @Test
+    void generateMealPlan_whenUpstreamFails_doesNotCacheEmptyResult() throws IOException {
+        ReflectionTestUtils.setField(openAIService, "coalescingResultTtl", Duration.ofSeconds(30));
+        when(restTemplate.exchange(anyString(), any(), any(), eq(OpenAIResponse.class)))
+                .thenThrow(new RestClientException("API Error"));
+
+        openAIService.generateMealPlan(createTestConsumer(), 1);
+        openAIService.generateMealPlan(createTestConsumer(), 1);
+
+        verify(restTemplate, times(2)).exchange(anyString(), any(), any(), eq(OpenAIResponse.class));
+    }
+
+    @Test
+    void preferenceFingerprint_ignoresCaseWhitespaceAndOrder() {
+        Consumer first = createTestConsumer();
+        first.setDietType("Vegetarian ");
+        first.setDislikes(Set.of("Olives", "blue  cheese"));
+        Consumer second = createTestConsumer();
+        second.setDietType("vegetarian");
+        second.setDislikes(Set.of("Blue Cheese", "olives"));
+
+        assertThat(PreferenceFingerprint.of(first, 4)).isEqualTo(PreferenceFingerprint.of(second, 4));
+        assertThat(PreferenceFingerprint.of(first, 4)).isNotEqualTo(PreferenceFingerprint.of(second, 1));
+    }
+
+    @Test
+    void streamMealPlan_emitsMealsFromEventStream() throws Exception {
+        String content = createMockOpenAIResponse();
+        StringBuilder events = new StringBuilder("data: {\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}\n\n");
+        for (int i = 0; i < content.length(); i += 7) {
+            String piece = content.substring(i, Math.min(content.length(), i + 7));
+            events.append("data: {\"choices\":[{\"delta\":{\"content\":")
+                    .append(new ObjectMapper().writeValueAsString(piece))
+                    .append("}}]}\n\n");
+        }
+        events.append("data: {\"choices\":[],\"usage\":{\"prompt_tokens\":900,\"completion_tokens\":400}}\n\n");
+        events.append("data: [DONE]\n\n");
+
+        ClientHttpResponse clientResponse = mock(ClientHttpResponse.class);
+        when(clientResponse.getBody())
+                .thenReturn(new ByteArrayInputStream(events.toString().getBytes(StandardCharsets.UTF_8)));
+        when(restTemplate.execute(anyString(), eq(HttpMethod.POST), any(RequestCallback.class), ArgumentMatchers.<ResponseExtractor<Object>>any()))
+                .thenAnswer(invocation -> {
+                    ResponseExtractor<?> extractor = invocation.getArgument(3);
+                    return extractor.extractData(clientResponse);
+                });
+
+        List<String> streamed = new ArrayList<>();
+        MealPlanGeneration generation =
+                openAIService.streamMealPlan(createTestConsumer(), 1, meal -> streamed.add(meal.getMealName()));
+
+        assertThat(generation.meals()).hasSize(5);
+        assertThat(streamed).containsExactly(
+                "Pasta Primavera", "Grilled Salmon", "Caesar Salad", "Chicken Stir Fry", "Vegetable Soup");
+        assertThat(generation.message()).isEqualTo("Here is your meal plan");
+        assertThat(generation.usage()).isEqualTo(new MealPlanGeneration.TokenUsage(900, 400));
+    }
+
+    private MealPlanGeneration generation(Consumer consumer) {
+        try {
+            return openAIService.generateMealPlan(consumer, 1);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Meal> generate(Consumer consumer) {
+        try {
+            return openAIService.generateMealPlan(consumer, 1).meals();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String mealsJson(String... names) throws IOException {
+        List<Map<String, Object>> meals = new ArrayList<>();
+        for (String name : names) {
+            meals.add(Map.of("mealName", name, "ingredients", List.of("salt")));
+        }
+        return new ObjectMapper().writeValueAsString(Map.of("message", "Here is your meal plan", "meals", meals));
     }
 
     private String createMockOpenAIResponse() {
@@ -108,6 +438,10 @@ public class OpenAIServiceTest {
         message.setContent(content);
         choice.setMessage(message);
         response.setChoices(Collections.singletonList(choice));
+        OpenAIResponse.Usage usage = new OpenAIResponse.Usage();
+        usage.setPromptTokens(900);
+        usage.setCompletionTokens(400);
+        response.setUsage(usage);
         return response;
     }
 
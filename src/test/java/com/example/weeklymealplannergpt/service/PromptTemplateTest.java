@@ -0,0 +1,83 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.service.openai.MealPlanPromptProvider;
+import com.example.weeklymealplannergpt.service.openai.PromptTemplate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PromptTemplateTest {
+
+    @Test
+    void render_replacesRepeatedNamedSlots() {
+        // Arrange
+        PromptTemplate template = PromptTemplate.compile("Plan for {{ weeks }} weeks, {{diet}} only. Again: {{weeks}}.");
+
+        // Act
+        String prompt = template.render(Map.of("weeks", "4", "diet", "vegan"));
+
+        // Assert
+        assertThat(prompt).isEqualTo("Plan for 4 weeks, vegan only. Again: 4.");
+        assertThat(template.getSlotNames()).containsExactly("weeks", "diet");
+    }
+
+    @Test
+    void render_leavesSingleBracesFromJsonExamplesAlone() {
+        // Arrange
+        PromptTemplate template = PromptTemplate.compile("{\"meals\": [{\"weeks\": {{weeks}}}]}");
+
+        // Act
+        String prompt = template.render(Map.of("weeks", "2"));
+
+        // Assert
+        assertThat(prompt).isEqualTo("{\"meals\": [{\"weeks\": 2}]}");
+    }
+
+    @Test
+    void render_failsOnMissingValue() {
+        PromptTemplate template = PromptTemplate.compile("Hello {{name}}");
+
+        assertThatThrownBy(() -> template.render(Map.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("name");
+    }
+
+    @Test
+    void compile_rejectsUnclosedSlot() {
+        assertThatThrownBy(() -> PromptTemplate.compile("Hello {{name"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void reloadIfChanged_picksUpEditedFileAndKeepsOldTemplateOnBadSlot(@TempDir Path dir) throws IOException {
+        // Arrange
+        Path file = dir.resolve("prompt.txt");
+        Files.writeString(file, "v1 {{weeks}}");
+        MealPlanPromptProvider provider = new MealPlanPromptProvider(new FileSystemResource(file));
+
+        // Act
+        Files.writeString(file, "v2 {{weeks}}");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(10)));
+        provider.reloadIfChanged();
+        String afterEdit = provider.getTemplate().render(Map.of("weeks", "1"));
+
+        Files.writeString(file, "v3 {{unknownSlot}}");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(20)));
+        provider.reloadIfChanged();
+        String afterBadEdit = provider.getTemplate().render(Map.of("weeks", "1"));
+
+        // Assert
+        assertThat(afterEdit).isEqualTo("v2 1");
+        assertThat(afterBadEdit).isEqualTo("v2 1");
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.config.ResilienceProperties;
+import com.example.weeklymealplannergpt.exception.UpstreamUnavailableException;
+import com.example.weeklymealplannergpt.service.resilience.CircuitBreaker;
+import com.example.weeklymealplannergpt.service.resilience.ResilientCaller;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Kører {@link ResilientCaller} mod en lokal HTTP-stub, hvor hvert kald får et løbenummer
+ * og stubben afgør status og forsinkelse ud fra det.
+ */
+class ResilientCallerTest {
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile IntFunction<Integer> statusForHit = hit -> 200;
+    private volatile IntFunction<Duration> delayForHit = hit -> Duration.ZERO;
+
+    private final RestTemplate restTemplate = new RestTemplate(new JdkClientHttpRequestFactory());
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ResilientCaller caller;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        server.stop(0);
+        if (caller != null) caller.close();
+    }
+
+    @Test
+    void call_retriesServerErrorsUntilSuccess() throws Exception {
+        // Arrange
+        ResilienceProperties.Policy policy = fastPolicy();
+        caller = new ResilientCaller("stub", policy, meterRegistry);
+        statusForHit = hit -> hit <= 2 ? 503 : 200;
+
+        // Act
+        String result = caller.call(this::get);
+
+        // Assert
+        assertThat(result).isEqualTo("ok");
+        assertThat(hits).hasValue(3);
+        assertThat(meterRegistry.counter("resilience.retries", "upstream", "stub").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void call_doesNotRetryClientErrors() {
+        // Arrange
+        caller = new ResilientCaller("stub", fastPolicy(), meterRegistry);
+        statusForHit = hit -> 400;
+
+        // Act + Assert
+        assertThatThrownBy(() -> caller.call(this::get)).isInstanceOf(HttpClientErrorException.BadRequest.class);
+        assertThat(hits).hasValue(1);
+    }
+
+    @Test
+    void call_stopsRetryingWhenBudgetIsSpent() {
+        // Arrange
+        ResilienceProperties.Policy policy = fastPolicy();
+        policy.getRetry().setMaxAttempts(5);
+        policy.getRetry().setBudgetCapacity(2);
+        policy.getRetry().setBudgetRatio(0);
+        policy.getCircuitBreaker().setMinimumCalls(100);
+        caller = new ResilientCaller("stub", policy, meterRegistry);
+        statusForHit = hit -> 503;
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> caller.call(this::get)).isInstanceOf(HttpServerErrorException.class);
+        }
+
+        // Assert: 3 kald + 2 retries i alt, ikke 3 * 5 forsøg
+        assertThat(hits).hasValue(5);
+    }
+
+    @Test
+    void circuitBreaker_failsFastWhenOpenAndClosesAfterSuccessfulProbe() throws Exception {
+        // Arrange
+        ResilienceProperties.Policy policy = fastPolicy();
+        policy.getRetry().setMaxAttempts(1);
+        policy.getCircuitBreaker().setMinimumCalls(4);
+        policy.getCircuitBreaker().setHalfOpenCalls(1);
+        policy.getCircuitBreaker().setOpenDuration(Duration.ofMillis(200));
+        caller = new ResilientCaller("stub", policy, meterRegistry);
+        statusForHit = hit -> hit <= 4 ? 500 : 200;
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> caller.call(this::get)).isInstanceOf(HttpServerErrorException.class);
+        }
+        CircuitBreaker.State afterFailures = caller.getCircuitState();
+        assertThatThrownBy(() -> caller.call(this::get)).isInstanceOf(UpstreamUnavailableException.class);
+        int hitsWhileOpen = hits.get();
+
+        Thread.sleep(250);
+        String probe = caller.call(this::get);
+
+        // Assert
+        assertThat(afterFailures).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(hitsWhileOpen).isEqualTo(4);
+        assertThat(probe).isEqualTo("ok");
+        assertThat(caller.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void bulkhead_rejectsCallsBeyondLimitWithoutGoingUpstream() throws Exception {
+        // Arrange
+        ResilienceProperties.Policy policy = fastPolicy();
+        policy.getBulkhead().setMaxConcurrentCalls(1);
+        policy.getBulkhead().setMaxWait(Duration.ofMillis(50));
+        caller = new ResilientCaller("stub", policy, meterRegistry);
+        delayForHit = hit -> hit == 1 ? Duration.ofSeconds(10) : Duration.ZERO;
+
+        CompletableFuture<String> blocked = CompletableFuture.supplyAsync(() -> {
+            try {
+                return caller.call(this::get);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, Executors.newVirtualThreadPerTaskExecutor());
+        while (hits.get() == 0) Thread.onSpinWait();
+
+        // Act + Assert
+        assertThatThrownBy(() -> caller.call(this::get)).isInstanceOf(UpstreamUnavailableException.class);
+        assertThat(hits).hasValue(1);
+        assertThat(caller.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        release.countDown();
+        assertThat(blocked.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+    }
+
+    @Test
+    void hedge_sendsSecondRequestWhenFirstIsSlowerThanP95() throws Exception {
+        // Arrange
+        ResilienceProperties.Policy policy = fastPolicy();
+        policy.getHedge().setEnabled(true);
+        policy.getHedge().setMinSamples(5);
+        policy.getHedge().setMinDelay(Duration.ofMillis(50));
+        caller = new ResilientCaller("stub", policy, meterRegistry);
+        for (int i = 0; i < 5; i++) {
+            caller.call(this::get);
+        }
+        // Kald 6 hænger; hedgen (kald 7) svarer straks
+        delayForHit = hit -> hit == 6 ? Duration.ofSeconds(10) : Duration.ZERO;
+
+        // Act
+        long start = System.nanoTime();
+        String result = caller.call(this::get);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // Assert
+        assertThat(result).isEqualTo("ok");
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(2));
+        assertThat(hits).hasValue(7);
+        assertThat(meterRegistry.counter("resilience.hedges", "upstream", "stub").count()).isEqualTo(1.0);
+    }
+
+    private ResilienceProperties.Policy fastPolicy() {
+        ResilienceProperties.Policy policy = new ResilienceProperties.Policy();
+        policy.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        policy.getRetry().setMaxBackoff(Duration.ofMillis(5));
+        return policy;
+    }
+
+    private String get() {
+        return restTemplate.getForObject("http://127.0.0.1:" + server.getAddress().getPort() + "/", String.class);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int hit = hits.incrementAndGet();
+        Duration delay = delayForHit.apply(hit);
+        if (!delay.isZero()) {
+            try {
+                release.await(delay.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int status = statusForHit.apply(hit);
+        byte[] body = (status == 200 ? "ok" : "error").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
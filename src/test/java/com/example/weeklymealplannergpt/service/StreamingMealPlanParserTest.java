@@ -0,0 +1,70 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.model.Meal;
+import com.example.weeklymealplannergpt.service.openai.StreamingMealPlanParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingMealPlanParserTest {
+
+    private static final String PAYLOAD = """
+            ```json
+            {
+                "meals": [
+                    {"mealName": "Week 1 Monday - Pasta Primavera", "ingredients": ["pasta", "vegetables"], "imgUrl": ""},
+                    {"mealName": "Week 1 Tuesday - Grilled Salmon", "notes": {"spicy": false}, "ingredients": ["salmon", "lemon"]},
+                    {"mealName": "Week 1 Wednesday - Crème Brûlée", "ingredients": ["cream", "sugar"], "imgUrl": "img.png"}
+                ],
+                "message": "Hi there, here's a weekly meal plan crafted just for you!"
+            }
+            ```
+            """;
+
+    @Test
+    void feed_inSmallFragments_emitsEachMealAsSoonAsItIsComplete() throws IOException {
+        List<Meal> emitted = new ArrayList<>();
+        List<Integer> emittedAtOffset = new ArrayList<>();
+        int[] fed = {0};
+        StreamingMealPlanParser parser = new StreamingMealPlanParser(meal -> {
+            emitted.add(meal);
+            emittedAtOffset.add(fed[0]);
+        });
+
+        // OpenAI sender typisk et par tegn pr. delta
+        for (int i = 0; i < PAYLOAD.length(); i += 3) {
+            String fragment = PAYLOAD.substring(i, Math.min(PAYLOAD.length(), i + 3));
+            fed[0] = i + fragment.length();
+            parser.feed(fragment);
+        }
+        parser.finish();
+
+        assertThat(emitted).extracting(Meal::getMealName).containsExactly(
+                "Week 1 Monday - Pasta Primavera",
+                "Week 1 Tuesday - Grilled Salmon",
+                "Week 1 Wednesday - Crème Brûlée");
+        assertThat(emitted.get(0).getIngredients()).containsExactly("pasta", "vegetables");
+        assertThat(emitted.get(1).getImgUrl()).isEmpty();
+        assertThat(emitted.get(2).getImgUrl()).isEqualTo("img.png");
+        assertThat(parser.getMessage()).startsWith("Hi there");
+
+        int endOfFirstMeal = PAYLOAD.indexOf('}') + 1;
+        assertThat(emittedAtOffset.getFirst()).isLessThan(endOfFirstMeal + 3);
+    }
+
+    @Test
+    void finish_withTruncatedStream_keepsCompletedMeals() throws IOException {
+        List<Meal> emitted = new ArrayList<>();
+        StreamingMealPlanParser parser = new StreamingMealPlanParser(emitted::add);
+
+        int cut = PAYLOAD.indexOf("Grilled");
+        parser.feed(PAYLOAD.substring(0, cut));
+
+        assertThat(emitted).hasSize(1);
+        assertThat(parser.getMeals()).hasSize(1);
+    }
+}
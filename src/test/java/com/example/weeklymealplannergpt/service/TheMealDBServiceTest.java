@@ -1,11 +1,15 @@
 package com.example.weeklymealplannergpt.service;
 
+import com.example.weeklymealplannergpt.config.TheMealDbCacheProperties;
 import com.example.weeklymealplannergpt.dto.TheMealDbResponse;
+import com.example.weeklymealplannergpt.repository.TheMealDbCacheRepository;
 import com.example.weeklymealplannergpt.service.mealplan.MealCacheService;
+import com.example.weeklymealplannergpt.service.mealplan.TheMealDbResponseCache;
 import com.example.weeklymealplannergpt.service.mealplan.TheMealDbServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.client.RestTemplate;
@@ -15,6 +19,7 @@ import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -27,9 +32,18 @@ public class TheMealDBServiceTest {
     @Mock
     private MealCacheService mealCacheService;
 
-    @InjectMocks
+    @Mock
+    private TheMealDbCacheRepository cacheRepository;
+
     private TheMealDbServiceImpl mealDbService;
 
+    @BeforeEach
+    void setUp() {
+        TheMealDbResponseCache responseCache =
+                new TheMealDbResponseCache(cacheRepository, new TheMealDbCacheProperties(), new ObjectMapper());
+        mealDbService = new TheMealDbServiceImpl(restTemplate, mealCacheService, responseCache);
+    }
+
     @Test
     void searchMealsByName_returnsListOfMeals() {
         //Arrange
@@ -90,6 +104,21 @@ public class TheMealDBServiceTest {
         verify(restTemplate).getForObject(contains(mealId), eq(TheMealDbResponse.class));
     }
 
+    @Test
+    void searchMealsByIngredient_repeatedLookupIsServedFromCache() {
+        // Arrange
+        when(restTemplate.getForObject(anyString(), eq(TheMealDbResponse.class)))
+                .thenReturn(createMockResponse(2));
+
+        // Act
+        List<TheMealDbResponse.MealDto> first = mealDbService.searchMealsByIngredient("Chicken");
+        List<TheMealDbResponse.MealDto> second = mealDbService.searchMealsByIngredient(" chicken ");
+
+        // Assert
+        assertThat(second).isEqualTo(first).hasSize(2);
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(TheMealDbResponse.class));
+    }
+
     private TheMealDbResponse createMockResponse(int mealCount) {
         TheMealDbResponse response = new TheMealDbResponse();
         List<TheMealDbResponse.MealDto> meals = new ArrayList<>();
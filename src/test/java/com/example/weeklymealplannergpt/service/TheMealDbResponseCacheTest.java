@@ -0,0 +1,155 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.config.TheMealDbCacheProperties;
+import com.example.weeklymealplannergpt.dto.TheMealDbResponse;
+import com.example.weeklymealplannergpt.model.TheMealDbCacheEntry;
+import com.example.weeklymealplannergpt.repository.TheMealDbCacheRepository;
+import com.example.weeklymealplannergpt.service.mealplan.TheMealDbResponseCache;
+import com.example.weeklymealplannergpt.service.mealplan.TheMealDbResponseCache.Endpoint;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class TheMealDbResponseCacheTest {
+
+    @Mock
+    private TheMealDbCacheRepository repository;
+
+    private final Map<String, TheMealDbCacheEntry> table = new ConcurrentHashMap<>();
+    private final TheMealDbCacheProperties properties = new TheMealDbCacheProperties();
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private TheMealDbResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        // Repositoryet opfører sig som tabellen, så en ny cache-instans svarer til en genstart
+        lenient().when(repository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(table.get(invocation.<String>getArgument(0))));
+        lenient().when(repository.save(any(TheMealDbCacheEntry.class))).thenAnswer(invocation -> {
+            TheMealDbCacheEntry entry = invocation.getArgument(0);
+            table.put(entry.getCacheKey(), entry);
+            return entry;
+        });
+        cache = newCache();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    void get_survivesRestartThroughPersistentTier() {
+        // Arrange
+        cache.get(Endpoint.LOOKUP, "52772", () -> upstream("Teriyaki Chicken"));
+
+        // Act
+        TheMealDbResponseCache restarted = newCache();
+        List<TheMealDbResponse.MealDto> meals = restarted.get(Endpoint.LOOKUP, "52772", () -> upstream("Other"));
+        restarted.destroy();
+
+        // Assert
+        assertThat(meals).extracting(TheMealDbResponse.MealDto::getStrMeal).containsExactly("Teriyaki Chicken");
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    void get_cachesEmptyResultsWithNegativeTtl() {
+        // Arrange
+        properties.setNegativeTtl(Duration.ofMillis(50));
+        properties.setStaleWhileRevalidate(Duration.ZERO);
+
+        // Act
+        cache.get(Endpoint.FILTER, "unicorn", this::emptyUpstream);
+        cache.get(Endpoint.FILTER, "unicorn", this::emptyUpstream);
+        int callsWithinTtl = upstreamCalls.get();
+        eventually(() -> {
+            cache.get(Endpoint.FILTER, "unicorn", this::emptyUpstream);
+            return upstreamCalls.get() > callsWithinTtl;
+        });
+
+        // Assert
+        assertThat(callsWithinTtl).isEqualTo(1);
+        assertThat(table.get("filter:unicorn").getBody()).isNull();
+    }
+
+    @Test
+    void get_servesStaleResponseWhileRefreshingInBackground() {
+        // Arrange
+        table.put("search:pasta", new TheMealDbCacheEntry("search:pasta",
+                "[{\"strMeal\":\"Old Pasta\"}]", Instant.now().minus(Duration.ofDays(2))));
+
+        // Act
+        List<TheMealDbResponse.MealDto> stale = cache.get(Endpoint.SEARCH, "pasta", () -> upstream("New Pasta"));
+        eventually(() -> upstreamCalls.get() == 1);
+        eventually(() ->
+                cache.get(Endpoint.SEARCH, "pasta", () -> upstream("Newer Pasta")).get(0).getStrMeal().equals("New Pasta"));
+
+        // Assert
+        assertThat(stale).extracting(TheMealDbResponse.MealDto::getStrMeal).containsExactly("Old Pasta");
+        assertThat(upstreamCalls).hasValue(1);
+    }
+
+    @Test
+    void get_fallsBackToExpiredResponseWhenUpstreamFails() {
+        // Arrange
+        properties.setStaleWhileRevalidate(Duration.ZERO);
+        table.put("lookup:1", new TheMealDbCacheEntry("lookup:1",
+                "[{\"strMeal\":\"Kept\"}]", Instant.now().minus(Duration.ofDays(30))));
+
+        // Act
+        List<TheMealDbResponse.MealDto> meals = cache.get(Endpoint.LOOKUP, "1", () -> {
+            throw new IllegalStateException("TheMealDB is down");
+        });
+
+        // Assert
+        assertThat(meals).extracting(TheMealDbResponse.MealDto::getStrMeal).containsExactly("Kept");
+        assertThatThrownBy(() -> cache.get(Endpoint.LOOKUP, "2", () -> {
+            throw new IllegalStateException("TheMealDB is down");
+        })).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static void eventually(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met within 2s").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private TheMealDbResponseCache newCache() {
+        return new TheMealDbResponseCache(repository, properties, new ObjectMapper());
+    }
+
+    private List<TheMealDbResponse.MealDto> upstream(String name) {
+        upstreamCalls.incrementAndGet();
+        TheMealDbResponse.MealDto meal = new TheMealDbResponse.MealDto();
+        meal.setStrMeal(name);
+        return List.of(meal);
+    }
+
+    private List<TheMealDbResponse.MealDto> emptyUpstream() {
+        upstreamCalls.incrementAndGet();
+        return List.of();
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.weeklymealplannergpt.service;
+
+import com.example.weeklymealplannergpt.model.Consumer;
+import com.example.weeklymealplannergpt.model.EmailDispatchRun;
+import com.example.weeklymealplannergpt.model.EmailDispatchStatus;
+import com.example.weeklymealplannergpt.model.WeeklyMealPlan;
+import com.example.weeklymealplannergpt.repository.EmailDispatchRunRepository;
+import com.example.weeklymealplannergpt.repository.WeeklyMealPlanRepository;
+import com.example.weeklymealplannergpt.service.email.EmailServiceImpl;
+import com.example.weeklymealplannergpt.service.email.WeeklyEmailDispatchServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.context.IContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WeeklyEmailDispatchServiceTest {
+
+    private static final LocalDate WEEK = LocalDate.of(2026, 10, 12);
+
+    @Mock
+    private WeeklyMealPlanRepository planRepository;
+
+    @Mock
+    private EmailDispatchRunRepository runRepository;
+
+    private SmtpStub smtp;
+    private WeeklyEmailDispatchServiceImpl dispatchService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtp = new SmtpStub();
+        dispatchService = newDispatchService(1000);
+
+        lenient().when(runRepository.updateProgress(any(), any(), any(), anyLong(), anyInt(), anyInt(), any(), any(), any()))
+                .thenReturn(1);
+        lenient().when(runRepository.saveAndFlush(any(EmailDispatchRun.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        dispatchService.destroy();
+        smtp.close();
+    }
+
+    @Test
+    void dispatch_sendsEveryPlanInBatchesOverOneConnectionPerBatch() {
+        // Arrange
+        when(runRepository.findByWeekStartDate(WEEK)).thenReturn(Optional.empty());
+        when(planRepository.findForDispatch(WEEK, 0L, Limit.of(2))).thenReturn(List.of(plan(1, "a@example.com"), plan(2, "b@example.com")));
+        when(planRepository.findForDispatch(WEEK, 2L, Limit.of(2))).thenReturn(List.of(plan(3, "c@example.com")));
+
+        // Act
+        EmailDispatchRun run = dispatchService.dispatch(WEEK);
+
+        // Assert
+        assertThat(smtp.recipients).containsExactly("a@example.com", "b@example.com", "c@example.com");
+        assertThat(smtp.connections.get()).isEqualTo(2);
+        assertThat(run.getStatus()).isEqualTo(EmailDispatchStatus.COMPLETED);
+        assertThat(run.getSent()).isEqualTo(3);
+        assertThat(run.getLastPlanId()).isEqualTo(3L);
+    }
+
+    @Test
+    void dispatch_countsRejectedRecipientsAndContinues() {
+        // Arrange
+        when(runRepository.findByWeekStartDate(WEEK)).thenReturn(Optional.empty());
+        when(planRepository.findForDispatch(WEEK, 0L, Limit.of(2))).thenReturn(List.of(plan(1, "bounce@example.com"), plan(2, "b@example.com")));
+        when(planRepository.findForDispatch(WEEK, 2L, Limit.of(2))).thenReturn(List.of());
+
+        // Act
+        EmailDispatchRun run = dispatchService.dispatch(WEEK);
+
+        // Assert
+        assertThat(smtp.recipients).containsExactly("b@example.com");
+        assertThat(run.getSent()).isEqualTo(1);
+        assertThat(run.getFailed()).isEqualTo(1);
+        assertThat(run.getLastError()).isNotBlank();
+        assertThat(run.getStatus()).isEqualTo(EmailDispatchStatus.COMPLETED);
+    }
+
+    @Test
+    void dispatch_resumesStaleRunAfterItsCursor() {
+        // Arrange
+        EmailDispatchRun interrupted = run(EmailDispatchStatus.RUNNING, 2L);
+        when(runRepository.findByWeekStartDate(WEEK)).thenReturn(Optional.of(interrupted));
+        when(runRepository.claimStale(eq(interrupted.getId()), any(), any(), any())).thenReturn(1);
+        when(runRepository.findById(interrupted.getId())).thenReturn(Optional.of(interrupted));
+        when(planRepository.findForDispatch(WEEK, 2L, Limit.of(2))).thenReturn(List.of(plan(3, "c@example.com")));
+
+        // Act
+        EmailDispatchRun run = dispatchService.dispatch(WEEK);
+
+        // Assert
+        assertThat(smtp.recipients).containsExactly("c@example.com");
+        assertThat(run.getSent()).isEqualTo(3);
+        assertThat(run.getStatus()).isEqualTo(EmailDispatchStatus.COMPLETED);
+    }
+
+    @Test
+    void dispatch_leavesRunOwnedByAnotherNodeAlone() {
+        // Arrange
+        EmailDispatchRun running = run(EmailDispatchStatus.RUNNING, 0L);
+        when(runRepository.findByWeekStartDate(WEEK)).thenReturn(Optional.of(running));
+        when(runRepository.claimStale(eq(running.getId()), any(), any(), any())).thenReturn(0);
+
+        // Act
+        EmailDispatchRun run = dispatchService.dispatch(WEEK);
+
+        // Assert
+        assertThat(run).isSameAs(running);
+        assertThat(smtp.connections.get()).isZero();
+        verify(planRepository, never()).findForDispatch(any(), any(Long.class), any());
+    }
+
+    @Test
+    void dispatch_stopsWhenAnotherNodeTookOverTheRun() {
+        // Arrange
+        when(runRepository.findByWeekStartDate(WEEK)).thenReturn(Optional.empty());
+        when(planRepository.findForDispatch(WEEK, 0L, Limit.of(2))).thenReturn(List.of(plan(1, "a@example.com"), plan(2, "b@example.com")));
+        when(runRepository.updateProgress(any(), any(), any(), anyLong(), anyInt(), anyInt(), any(), any(), any()))
+                .thenReturn(0);
+
+        // Act
+        EmailDispatchRun run = dispatchService.dispatch(WEEK);
+
+        // Assert
+        assertThat(run.getStatus()).isEqualTo(EmailDispatchStatus.RUNNING);
+        assertThat(smtp.recipients).containsExactly("a@example.com", "b@example.com");
+        verify(planRepository, never()).findForDispatch(WEEK, 2L, Limit.of(2));
+        verify(runRepository, times(1)).updateProgress(any(), any(), any(), anyLong(), anyInt(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void dispatchCurrentWeek_handsRunToDispatchExecutor() {
+        // Arrange
+        TaskExecutor executor = mock(TaskExecutor.class);
+        ReflectionTestUtils.setField(dispatchService, "dispatchExecutor", executor);
+        ReflectionTestUtils.setField(dispatchService, "enabled", true);
+
+        // Act
+        dispatchService.dispatchCurrentWeek();
+
+        // Assert
+        verify(executor).execute(any(Runnable.class));
+        verify(runRepository, never()).findByWeekStartDate(any());
+    }
+
+    @Test
+    void dispatch_respectsMessagesPerSecond() {
+        // Arrange
+        dispatchService.destroy();
+        dispatchService = newDispatchService(10);
+        when(runRepository.findByWeekStartDate(WEEK)).thenReturn(Optional.empty());
+        when(planRepository.findForDispatch(WEEK, 0L, Limit.of(2))).thenReturn(List.of(plan(1, "a@example.com"), plan(2, "b@example.com")));
+        when(planRepository.findForDispatch(WEEK, 2L, Limit.of(2))).thenReturn(List.of(plan(3, "c@example.com"), plan(4, "d@example.com")));
+        when(planRepository.findForDispatch(WEEK, 4L, Limit.of(2))).thenReturn(List.of());
+
+        // Act
+        long start = System.nanoTime();
+        dispatchService.dispatch(WEEK);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert: andet batch må tidligst gå 2 * 100 ms efter det første
+        assertThat(smtp.recipients).hasSize(4);
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(180);
+    }
+
+    private WeeklyEmailDispatchServiceImpl newDispatchService(double messagesPerSecond) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.port());
+        mailSender.getJavaMailProperties().put("mail.smtp.from", "planner@example.com");
+
+        SpringTemplateEngine templateEngine = mock(SpringTemplateEngine.class);
+        lenient().when(templateEngine.process(eq("weekly-meal-plan"), any(IContext.class))).thenReturn("<html>Plan</html>");
+
+        WeeklyEmailDispatchServiceImpl service = new WeeklyEmailDispatchServiceImpl(planRepository, runRepository,
+                new EmailServiceImpl(mailSender, templateEngine), mailSender, Runnable::run, messagesPerSecond, 2);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        return service;
+    }
+
+    private WeeklyMealPlan plan(long id, String email) {
+        Consumer consumer = new Consumer();
+        consumer.setEmail(email);
+        consumer.setName("Test User");
+        WeeklyMealPlan plan = new WeeklyMealPlan();
+        plan.setId(id);
+        plan.setConsumer(consumer);
+        plan.setWeekStartDate(WEEK);
+        plan.setMeals(List.of());
+        return plan;
+    }
+
+    private EmailDispatchRun run(EmailDispatchStatus status, long lastPlanId) {
+        EmailDispatchRun run = new EmailDispatchRun();
+        run.setId(UUID.randomUUID());
+        run.setWeekStartDate(WEEK);
+        run.setStatus(status);
+        run.setLastPlanId(lastPlanId);
+        run.setSent((int) lastPlanId);
+        run.setHeartbeatAt(Instant.now().minusSeconds(3600));
+        return run;
+    }
+
+    /**
+     * Minimal SMTP-server: accepterer alt undtagen modtagere der starter med "bounce", og husker modtagerne.
+     */
+    private static class SmtpStub implements AutoCloseable {
+
+        final List<String> recipients = new CopyOnWriteArrayList<>();
+        final AtomicInteger connections = new AtomicInteger();
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final Thread acceptor = Thread.ofVirtual().start(this::acceptLoop);
+
+        SmtpStub() throws IOException {
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    Thread.ofVirtual().start(() -> handle(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+                reply(out, "220 stub");
+                List<String> pending = new ArrayList<>();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase();
+                    if (command.startsWith("RCPT")) {
+                        String recipient = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+                        if (recipient.startsWith("bounce")) {
+                            reply(out, "550 no such user");
+                        } else {
+                            pending.add(recipient);
+                            reply(out, "250 ok");
+                        }
+                    } else if (command.startsWith("DATA")) {
+                        reply(out, "354 go ahead");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // body ignoreres
+                        }
+                        recipients.addAll(pending);
+                        pending.clear();
+                        reply(out, "250 queued");
+                    } else if (command.startsWith("RSET")) {
+                        pending.clear();
+                        reply(out, "250 ok");
+                    } else if (command.startsWith("QUIT")) {
+                        reply(out, "221 bye");
+                        return;
+                    } else {
+                        reply(out, "250 ok");
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void reply(PrintWriter out, String line) {
+            out.print(line + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            acceptor.interrupt();
+        }
+    }
+}
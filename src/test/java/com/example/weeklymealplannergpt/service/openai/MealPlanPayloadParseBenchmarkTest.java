@@ -0,0 +1,126 @@
+package com.example.weeklymealplannergpt.service.openai;
+
+import com.example.weeklymealplannergpt.model.Meal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput og allokering for parsing af et fenced 20-meal svar: {@link MealPlanPayload#parse} mod den
+ * gamle vej (trim/substring af fencen, {@code Map}-parsing og kopiering felt for felt), som er gengivet her.
+ * De to veje køres på skift i flere runder, og den bedste runde for hver tæller, så JIT og GC rammer begge ens.
+ * Allokering måles med {@code ThreadMXBean} på den aktuelle tråd. Kører kun med {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class MealPlanPayloadParseBenchmarkTest {
+
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 100_000;
+    private static final int ROUNDS = 5;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private String content;
+    private long sink;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        List<Map<String, Object>> meals = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            meals.add(Map.of(
+                    "mealName", "Week " + (i / 5 + 1) + " Dish " + i,
+                    "ingredients", List.of("pasta", "tomatoes", "garlic", "olive oil", "basil", "parmesan"),
+                    "imgUrl", ""));
+        }
+        content = "```json\n" + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(
+                Map.of("message", "Hi, here's a meal plan crafted just for you!", "meals", meals)) + "\n```";
+    }
+
+    @Test
+    void typedParse_allocatesLessThanMapParse() throws Exception {
+        // Arrange
+        assertThat(parseWithMap(content)).hasSize(20);
+        assertThat(MealPlanPayload.parse(content).meals()).hasSize(20);
+        run(WARMUP, this::mapParse);
+        run(WARMUP, this::typedParse);
+
+        // Act
+        Result map = new Result(0, Long.MAX_VALUE);
+        Result typed = new Result(0, Long.MAX_VALUE);
+        for (int round = 0; round < ROUNDS; round++) {
+            map = map.best(run(ITERATIONS, this::mapParse));
+            typed = typed.best(run(ITERATIONS, this::typedParse));
+        }
+
+        // Assert
+        assertThat(sink).isPositive();
+        assertThat(typed.bytesPerParse()).isLessThan(map.bytesPerParse() * 3 / 4);
+        assertThat(typed.parsesPerSecond()).isGreaterThan(map.parsesPerSecond() * 0.8);
+    }
+
+    private void mapParse() throws Exception {
+        sink += parseWithMap(content).size();
+    }
+
+    private void typedParse() throws Exception {
+        for (MealPlanPayload.MealPayload meal : MealPlanPayload.parse(content).meals()) {
+            sink += meal.toMeal().getIngredients().size();
+        }
+    }
+
+    private Result run(int iterations, Parse parse) throws Exception {
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parse.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return new Result(iterations * 1_000_000_000.0 / elapsed, allocated / iterations);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Meal> parseWithMap(String jsonContent) throws Exception {
+        jsonContent = jsonContent.trim();
+        if (jsonContent.startsWith("```json")) {
+            jsonContent = jsonContent.substring(7);
+        }
+        if (jsonContent.endsWith("```")) {
+            jsonContent = jsonContent.substring(0, jsonContent.length() - 3);
+        }
+
+        Map<String, Object> response = objectMapper.readValue(jsonContent, Map.class);
+        List<Meal> meals = new ArrayList<>();
+        for (Map<String, Object> mealData : (List<Map<String, Object>>) response.get("meals")) {
+            Meal meal = new Meal();
+            meal.setMealName((String) mealData.get("mealName"));
+            meal.setImgUrl((String) mealData.getOrDefault("imgUrl", ""));
+            meal.setIngredients((List<String>) mealData.get("ingredients"));
+            meals.add(meal);
+        }
+        return meals;
+    }
+
+    private interface Parse {
+        void run() throws Exception;
+    }
+
+    private record Result(double parsesPerSecond, long bytesPerParse) {
+
+        Result best(Result other) {
+            return new Result(Math.max(parsesPerSecond, other.parsesPerSecond),
+                    Math.min(bytesPerParse, other.bytesPerParse));
+        }
+    }
+}